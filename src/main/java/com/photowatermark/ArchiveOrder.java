@@ -0,0 +1,29 @@
+package com.photowatermark;
+
+/**
+ * 压缩包输出条目顺序枚举
+ * 
+ * @author PhotoWatermark Team
+ * @version 1.0.0
+ */
+public enum ArchiveOrder {
+    /** 与输入压缩包中的条目顺序一致 */
+    INPUT("输入顺序"),
+    /** 先处理完的条目先写出，慢条目不会阻塞后续条目的写出 */
+    COMPLETION("完成顺序");
+    
+    private final String description;
+    
+    ArchiveOrder(String description) {
+        this.description = description;
+    }
+    
+    public String getDescription() {
+        return description;
+    }
+    
+    @Override
+    public String toString() {
+        return description;
+    }
+}
\ No newline at end of file
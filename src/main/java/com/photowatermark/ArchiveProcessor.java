@@ -0,0 +1,614 @@
+package com.photowatermark;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * 压缩包流式处理
+ * 
+ * 按顺序读取输入压缩包（.zip、.tar、.tar.gz/.tgz）的条目，图片条目读入内存后交给线程池
+ * 解码、绘制和编码，同时继续读取下一个条目；结果按配置的顺序直接写入输出压缩包，
+ * 不在磁盘上解压，也不产生中间文件。同时处理中的条目数有上限，内存占用与压缩包大小无关。
+ * 
+ * 非图片条目原样复制。处理失败的图片条目不写入输出（避免无水印的原图流出），记为失败。
+ * 输出先写到同目录下的 .partial 文件，全部完成后再改名，中途失败或取消不会留下不完整的压缩包。
+ * 
+ * @author PhotoWatermark Team
+ * @version 1.0.0
+ */
+public class ArchiveProcessor {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ArchiveProcessor.class);
+    
+    // 不超过该大小的非图片条目读入内存，与图片条目一起排队写出；更大的条目等队列写完后直接流式复制
+    private static final long MAX_BUFFERED_COPY = 16L * 1024 * 1024;
+    
+    private final FileProcessor processor;
+    private final ArchiveOrder order;
+    private final int maxInFlight;
+    
+    // 处理统计
+    private int imageEntries = 0;
+    private int successfulEntries = 0;
+    private int failedEntries = 0;
+    private int copiedEntries = 0;
+    
+    /**
+     * 构造函数
+     * 
+     * @param processor 文件处理器，提供水印文本、元数据和渲染配置
+     * @param order 输出条目顺序
+     */
+    public ArchiveProcessor(FileProcessor processor, ArchiveOrder order) {
+        this.processor = processor;
+        this.order = order;
+        this.maxInFlight = Runtime.getRuntime().availableProcessors() * 2;
+    }
+    
+    /**
+     * 判断文件是否为支持的压缩包
+     * 
+     * @param file 文件
+     * @return 是否为 .zip、.tar、.tar.gz 或 .tgz
+     */
+    public static boolean isArchive(File file) {
+        return file != null && formatOf(file.getName()) != null;
+    }
+    
+    /**
+     * 生成输出压缩包的文件名，如 photos.tar.gz -> photos_watermarked.tar.gz
+     * 
+     * @param archive 输入压缩包
+     * @return 输出文件名
+     */
+    public static String outputName(File archive) {
+        String name = archive.getName();
+        String lower = name.toLowerCase();
+        int extensionLength = lower.endsWith(".tar.gz") ? 7 : name.length() - name.lastIndexOf('.');
+        int split = name.length() - extensionLength;
+        return name.substring(0, split) + "_watermarked" + name.substring(split);
+    }
+    
+    /**
+     * 处理压缩包
+     * 
+     * @param inputArchive 输入压缩包
+     * @param outputArchive 输出压缩包，格式由扩展名决定
+     * @return 是否全部处理完成（未被取消）；单个条目失败不影响返回值，见 {@link #getFailedEntries()}
+     * @throws IOException 读取或写出压缩包失败时抛出
+     */
+    public boolean process(File inputArchive, File outputArchive) throws IOException {
+        File parent = outputArchive.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs() && !parent.exists()) {
+            throw new IOException("无法创建输出目录: " + parent.getAbsolutePath());
+        }
+        
+        Path partial = new File(outputArchive.getPath() + ".partial").toPath();
+        ExecutorService pool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+                FileProcessor.daemonThreadFactory("watermark-archive"));
+        boolean completed = false;
+        
+        try {
+            try (EntryReader reader = openReader(inputArchive);
+                 EntryWriter writer = openWriter(partial.toFile())) {
+                
+                Deque<CompletableFuture<EntryOutput>> pending = new ArrayDeque<>();
+                EntryInput entry;
+                while (!processor.isCancelled() && (entry = reader.next()) != null) {
+                    if (entry.directory) {
+                        continue;
+                    }
+                    
+                    String name = entry.name;
+                    long lastModified = entry.lastModified;
+                    if (WatermarkEngine.isSupportedImageFormat(new File(name))) {
+                        imageEntries++;
+                        byte[] data = readEntry(reader.stream(), entry.size, name);
+                        pending.add(CompletableFuture.supplyAsync(() -> render(name, lastModified, data), pool));
+                    } else if (entry.size >= 0 && entry.size <= MAX_BUFFERED_COPY) {
+                        byte[] data = readEntry(reader.stream(), entry.size, name);
+                        pending.add(CompletableFuture.completedFuture(EntryOutput.copy(name, lastModified, data)));
+                    } else {
+                        drain(pending, writer, 0);
+                        writer.copy(name, lastModified, entry.size, reader.stream());
+                        copiedEntries++;
+                    }
+                    
+                    // 写出已完成的条目，队列已满时等待
+                    drain(pending, writer, maxInFlight);
+                }
+                
+                drain(pending, writer, 0);
+                if (processor.isCancelled()) {
+                    return false;
+                }
+                writer.finish();
+            }
+            
+            try {
+                Files.move(partial, outputArchive.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(partial, outputArchive.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            completed = true;
+            return true;
+            
+        } finally {
+            pool.shutdownNow();
+            if (!completed) {
+                Files.deleteIfExists(partial);
+            }
+        }
+    }
+    
+    /**
+     * 写出已完成的条目，直到队列中的条目不超过上限
+     * 
+     * @param pending 处理中的条目，按输入顺序排列
+     * @param writer 输出压缩包
+     * @param limit 允许留在队列中的条目数
+     * @throws IOException 写出失败时抛出
+     */
+    private void drain(Deque<CompletableFuture<EntryOutput>> pending, EntryWriter writer, int limit)
+            throws IOException {
+        while (!pending.isEmpty()) {
+            CompletableFuture<EntryOutput> next = nextReady(pending);
+            if (next == null) {
+                if (pending.size() <= limit) {
+                    return;
+                }
+                // 按输入顺序时等待队首，按完成顺序时等待任意一个
+                if (order == ArchiveOrder.INPUT) {
+                    pending.peekFirst().join();
+                } else {
+                    CompletableFuture.anyOf(pending.toArray(new CompletableFuture<?>[0])).join();
+                }
+                continue;
+            }
+            pending.remove(next);
+            write(writer, next.join());
+        }
+    }
+    
+    private CompletableFuture<EntryOutput> nextReady(Deque<CompletableFuture<EntryOutput>> pending) {
+        if (order == ArchiveOrder.INPUT) {
+            CompletableFuture<EntryOutput> head = pending.peekFirst();
+            return head.isDone() ? head : null;
+        }
+        for (Iterator<CompletableFuture<EntryOutput>> it = pending.iterator(); it.hasNext(); ) {
+            CompletableFuture<EntryOutput> future = it.next();
+            if (future.isDone()) {
+                return future;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * 处理一个图片条目，所有失败都记录在结果中
+     */
+    private EntryOutput render(String name, long lastModified, byte[] data) {
+        try {
+            return EntryOutput.rendered(name, lastModified, processor.processEntry(name, data));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return EntryOutput.failed(name, e);
+        } catch (Exception e) {
+            return EntryOutput.failed(name, e);
+        }
+    }
+    
+    private void write(EntryWriter writer, EntryOutput output) throws IOException {
+        if (output.error != null) {
+            failedEntries++;
+            logger.error("处理压缩包条目失败: {} - {}", output.name, output.error.getMessage());
+            return;
+        }
+        
+        if (output.outputs == null) {
+            writer.write(output.name, output.lastModified, output.data, true);
+            copiedEntries++;
+            return;
+        }
+        
+        for (Map.Entry<Rendition, byte[]> rendition : output.outputs.entrySet()) {
+            String entryName = entryName(output.name, rendition.getKey());
+            writer.write(entryName, output.lastModified, rendition.getValue(), !isCompressedImage(entryName));
+        }
+        successfulEntries++;
+    }
+    
+    /**
+     * 生成输出条目名称：单一输出时与输入条目同名，多规格输出时加上规格后缀
+     * 
+     * @param name 输入条目名称
+     * @param rendition 输出规格
+     * @return 输出条目名称
+     */
+    static String entryName(String name, Rendition rendition) {
+        if (rendition == FileProcessor.SINGLE_OUTPUT) {
+            return name;
+        }
+        int slash = name.lastIndexOf('/');
+        int dot = name.lastIndexOf('.');
+        String baseName = name.substring(0, dot > slash ? dot : name.length());
+        String extension = rendition.getFormat() != null
+                ? "." + rendition.getFormat().toLowerCase()
+                : (dot > slash ? name.substring(dot) : "");
+        String suffix = rendition.getSuffix() != null ? rendition.getSuffix() : "_" + rendition.getName();
+        return baseName + suffix + extension;
+    }
+    
+    /**
+     * 已压缩的图片格式在ZIP中直接存储，再压缩只浪费CPU
+     */
+    private static boolean isCompressedImage(String name) {
+        String lower = name.toLowerCase();
+        return lower.endsWith(".jpg") || lower.endsWith(".jpeg") || lower.endsWith(".png") || lower.endsWith(".gif");
+    }
+    
+    /**
+     * 读取条目的全部内容
+     * 
+     * @param in 条目内容
+     * @param size 条目大小，未知时为-1
+     * @param name 条目名称
+     * @return 条目内容
+     * @throws IOException 读取失败或条目过大时抛出
+     */
+    private static byte[] readEntry(InputStream in, long size, String name) throws IOException {
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new IOException("压缩包条目过大: " + name);
+        }
+        if (size < 0) {
+            ImageBuffer buffer = ImageBuffer.readFully(in);
+            try {
+                return buffer.toByteArray();
+            } finally {
+                buffer.release();
+            }
+        }
+        
+        byte[] data = new byte[(int) size];
+        int offset = 0;
+        while (offset < data.length) {
+            int read = in.read(data, offset, data.length - offset);
+            if (read < 0) {
+                throw new IOException("压缩包条目内容不完整: " + name);
+            }
+            offset += read;
+        }
+        return data;
+    }
+    
+    public int getImageEntries() {
+        return imageEntries;
+    }
+    
+    public int getSuccessfulEntries() {
+        return successfulEntries;
+    }
+    
+    public int getFailedEntries() {
+        return failedEntries;
+    }
+    
+    public int getCopiedEntries() {
+        return copiedEntries;
+    }
+    
+    /**
+     * 压缩包格式
+     */
+    private enum Format {
+        ZIP,
+        TAR,
+        TAR_GZ
+    }
+    
+    private static Format formatOf(String fileName) {
+        String lower = fileName.toLowerCase();
+        if (lower.endsWith(".zip")) {
+            return Format.ZIP;
+        }
+        if (lower.endsWith(".tar")) {
+            return Format.TAR;
+        }
+        if (lower.endsWith(".tar.gz") || lower.endsWith(".tgz")) {
+            return Format.TAR_GZ;
+        }
+        return null;
+    }
+    
+    private static EntryReader openReader(File archive) throws IOException {
+        Format format = formatOf(archive.getName());
+        if (format == null) {
+            throw new IOException("不支持的压缩包格式: " + archive.getName());
+        }
+        InputStream in = new BufferedInputStream(new FileInputStream(archive), 1 << 16);
+        try {
+            switch (format) {
+                case ZIP:
+                    return new ZipEntryReader(new ZipInputStream(in));
+                case TAR_GZ:
+                    return new TarEntryReader(new TarReader(new GZIPInputStream(in, 1 << 16)));
+                default:
+                    return new TarEntryReader(new TarReader(in));
+            }
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+    
+    private static EntryWriter openWriter(File partial) throws IOException {
+        // 根据去掉 .partial 后的名称确定格式
+        String name = partial.getName().substring(0, partial.getName().length() - ".partial".length());
+        Format format = formatOf(name);
+        if (format == null) {
+            throw new IOException("不支持的压缩包格式: " + name);
+        }
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(partial), 1 << 16);
+        switch (format) {
+            case ZIP:
+                return new ZipEntryWriter(new ZipOutputStream(out));
+            case TAR_GZ:
+                GZIPOutputStream gzip = new GZIPOutputStream(out, 1 << 16);
+                return new TarEntryWriter(new TarWriter(gzip), gzip);
+            default:
+                return new TarEntryWriter(new TarWriter(out), null);
+        }
+    }
+    
+    /**
+     * 输入条目
+     */
+    private static class EntryInput {
+        final String name;
+        final long size;
+        final long lastModified;
+        final boolean directory;
+        
+        EntryInput(String name, long size, long lastModified, boolean directory) {
+            this.name = name;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.directory = directory;
+        }
+    }
+    
+    /**
+     * 待写出的条目：渲染结果、原样复制的内容或失败原因
+     */
+    private static class EntryOutput {
+        final String name;
+        final long lastModified;
+        final Map<Rendition, byte[]> outputs;
+        final byte[] data;
+        final Throwable error;
+        
+        private EntryOutput(String name, long lastModified, Map<Rendition, byte[]> outputs, byte[] data,
+                            Throwable error) {
+            this.name = name;
+            this.lastModified = lastModified;
+            this.outputs = outputs;
+            this.data = data;
+            this.error = error;
+        }
+        
+        static EntryOutput rendered(String name, long lastModified, Map<Rendition, byte[]> outputs) {
+            return new EntryOutput(name, lastModified, outputs, null, null);
+        }
+        
+        static EntryOutput copy(String name, long lastModified, byte[] data) {
+            return new EntryOutput(name, lastModified, null, data, null);
+        }
+        
+        static EntryOutput failed(String name, Throwable error) {
+            return new EntryOutput(name, 0, null, null, error);
+        }
+    }
+    
+    private interface EntryReader extends Closeable {
+        EntryInput next() throws IOException;
+        
+        InputStream stream();
+    }
+    
+    private interface EntryWriter extends Closeable {
+        void write(String name, long lastModified, byte[] data, boolean compress) throws IOException;
+        
+        void copy(String name, long lastModified, long size, InputStream in) throws IOException;
+        
+        void finish() throws IOException;
+    }
+    
+    private static class ZipEntryReader implements EntryReader {
+        private final ZipInputStream in;
+        
+        ZipEntryReader(ZipInputStream in) {
+            this.in = in;
+        }
+        
+        @Override
+        public EntryInput next() throws IOException {
+            ZipEntry entry = in.getNextEntry();
+            if (entry == null) {
+                return null;
+            }
+            return new EntryInput(entry.getName(), entry.getSize(), entry.getTime(), entry.isDirectory());
+        }
+        
+        @Override
+        public InputStream stream() {
+            return in;
+        }
+        
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+    
+    private static class TarEntryReader implements EntryReader {
+        private final TarReader in;
+        
+        TarEntryReader(TarReader in) {
+            this.in = in;
+        }
+        
+        @Override
+        public EntryInput next() throws IOException {
+            TarReader.Entry entry = in.getNextEntry();
+            if (entry == null) {
+                return null;
+            }
+            return new EntryInput(entry.getName(), entry.getSize(), entry.getLastModified(), entry.isDirectory());
+        }
+        
+        @Override
+        public InputStream stream() {
+            return in;
+        }
+        
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+    
+    private static class ZipEntryWriter implements EntryWriter {
+        private final ZipOutputStream out;
+        
+        ZipEntryWriter(ZipOutputStream out) {
+            this.out = out;
+        }
+        
+        @Override
+        public void write(String name, long lastModified, byte[] data, boolean compress) throws IOException {
+            ZipEntry entry = new ZipEntry(name);
+            if (lastModified > 0) {
+                entry.setTime(lastModified);
+            }
+            if (!compress) {
+                CRC32 crc = new CRC32();
+                crc.update(data, 0, data.length);
+                entry.setMethod(ZipEntry.STORED);
+                entry.setSize(data.length);
+                entry.setCompressedSize(data.length);
+                entry.setCrc(crc.getValue());
+            }
+            out.putNextEntry(entry);
+            out.write(data);
+            out.closeEntry();
+        }
+        
+        @Override
+        public void copy(String name, long lastModified, long size, InputStream in) throws IOException {
+            ZipEntry entry = new ZipEntry(name);
+            if (lastModified > 0) {
+                entry.setTime(lastModified);
+            }
+            out.putNextEntry(entry);
+            transfer(in, out);
+            out.closeEntry();
+        }
+        
+        @Override
+        public void finish() throws IOException {
+            out.finish();
+        }
+        
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+    
+    private static class TarEntryWriter implements EntryWriter {
+        private final TarWriter out;
+        private final GZIPOutputStream gzip;
+        
+        TarEntryWriter(TarWriter out, GZIPOutputStream gzip) {
+            this.out = out;
+            this.gzip = gzip;
+        }
+        
+        @Override
+        public void write(String name, long lastModified, byte[] data, boolean compress) throws IOException {
+            out.putNextEntry(name, data.length, lastModified);
+            out.write(data);
+            out.closeEntry();
+        }
+        
+        @Override
+        public void copy(String name, long lastModified, long size, InputStream in) throws IOException {
+            if (size >= 0) {
+                out.putNextEntry(name, size, lastModified);
+                transfer(in, out);
+                out.closeEntry();
+                return;
+            }
+            
+            // TAR头部需要预先给出大小，大小未知的条目先暂存到临时文件
+            Path spool = Files.createTempFile("watermark-archive", ".tmp");
+            try {
+                Files.copy(in, spool, StandardCopyOption.REPLACE_EXISTING);
+                out.putNextEntry(name, Files.size(spool), lastModified);
+                Files.copy(spool, out);
+                out.closeEntry();
+            } finally {
+                Files.deleteIfExists(spool);
+            }
+        }
+        
+        @Override
+        public void finish() throws IOException {
+            out.finish();
+            if (gzip != null) {
+                gzip.finish();
+            }
+        }
+        
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+    
+    private static void transfer(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[1 << 16];
+        int read;
+        while ((read = in.read(buffer)) >= 0) {
+            out.write(buffer, 0, read);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,96 @@
+package com.photowatermark;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 批量处理日志
+ * 
+ * 每个文件处理结束后追加一行 "状态\t耗时ms\t输入路径\t说明"，
+ * 批次被取消或中途退出时已写入的记录仍然完整，可据此补跑失败和跳过的文件。
+ * 
+ * @author PhotoWatermark Team
+ * @version 1.0.0
+ */
+public class BatchJournal implements Closeable {
+    
+    /**
+     * 文件处理状态
+     */
+    public enum Status {
+        OK,
+        FAILED,
+        TIMEOUT,
+        SKIPPED
+    }
+    
+    // 每写入多少条记录刷新一次
+    private static final int FLUSH_INTERVAL = 32;
+    
+    private final BufferedWriter writer;
+    private int pending = 0;
+    
+    /**
+     * 构造函数，已存在的日志文件会被覆盖
+     * 
+     * @param journalFile 日志文件
+     * @throws IOException 无法创建日志文件时抛出
+     */
+    public BatchJournal(File journalFile) throws IOException {
+        this(journalFile, false);
+    }
+    
+    /**
+     * 构造函数
+     * 
+     * @param journalFile 日志文件
+     * @param append 是否追加到已存在的日志文件之后，否则覆盖
+     * @throws IOException 无法创建日志文件时抛出
+     */
+    public BatchJournal(File journalFile, boolean append) throws IOException {
+        File parent = journalFile.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs() && !parent.exists()) {
+            throw new IOException("无法创建日志目录: " + parent.getAbsolutePath());
+        }
+        this.writer = append
+                ? Files.newBufferedWriter(journalFile.toPath(), StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND)
+                : Files.newBufferedWriter(journalFile.toPath(), StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * 记录一个文件的处理结果
+     * 
+     * @param inputFile 输入文件
+     * @param status 处理状态
+     * @param elapsedMillis 处理耗时，未处理时为0
+     * @param detail 说明，可以为null
+     * @throws IOException 写入失败时抛出
+     */
+    public synchronized void record(File inputFile, Status status, long elapsedMillis, String detail)
+            throws IOException {
+        writer.write(status.name());
+        writer.write('\t');
+        writer.write(Long.toString(elapsedMillis));
+        writer.write('\t');
+        writer.write(inputFile.getPath());
+        writer.write('\t');
+        writer.write(detail != null ? detail.replace('\t', ' ').replace('\n', ' ') : "");
+        writer.newLine();
+        
+        if (++pending >= FLUSH_INTERVAL) {
+            writer.flush();
+            pending = 0;
+        }
+    }
+    
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,85 @@
+package com.photowatermark;
+
+import javax.imageio.stream.ImageInputStreamImpl;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 基于 ByteBuffer 的图片输入流
+ * 
+ * 直接从内存中的字节读取，不经过 ImageIO 默认的文件缓存或内存缓存，避免再复制一份数据。
+ * 
+ * @author PhotoWatermark Team
+ * @version 1.0.0
+ */
+public class ByteBufferImageInputStream extends ImageInputStreamImpl {
+    
+    private final ByteBuffer buffer;
+    
+    /**
+     * 构造函数
+     * 
+     * @param buffer 图片数据，从当前位置到上限为有效数据，调用方不应再修改其位置
+     */
+    public ByteBufferImageInputStream(ByteBuffer buffer) {
+        this.buffer = buffer.slice();
+    }
+    
+    /**
+     * 构造函数
+     * 
+     * @param data 图片数据
+     */
+    public ByteBufferImageInputStream(byte[] data) {
+        this(ByteBuffer.wrap(data));
+    }
+    
+    @Override
+    public int read() throws IOException {
+        checkClosed();
+        bitOffset = 0;
+        if (streamPos >= buffer.limit()) {
+            return -1;
+        }
+        return buffer.get((int) streamPos++) & 0xFF;
+    }
+    
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        checkClosed();
+        if (off < 0 || len < 0 || off + len > b.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        bitOffset = 0;
+        if (len == 0) {
+            return 0;
+        }
+        
+        int remaining = buffer.limit() - (int) Math.min(streamPos, buffer.limit());
+        if (remaining <= 0) {
+            return -1;
+        }
+        
+        int count = Math.min(len, remaining);
+        ByteBuffer view = buffer.duplicate();
+        view.position((int) streamPos);
+        view.get(b, off, count);
+        streamPos += count;
+        return count;
+    }
+    
+    @Override
+    public long length() {
+        return buffer.limit();
+    }
+    
+    @Override
+    public boolean isCached() {
+        return true;
+    }
+    
+    @Override
+    public boolean isCachedMemory() {
+        return true;
+    }
+}
\ No newline at end of file
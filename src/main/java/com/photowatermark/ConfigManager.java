@@ -5,11 +5,16 @@ import org.slf4j.LoggerFactory;
 
 import java.awt.*;
 import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 
 /**
  * 配置管理器
  * 
+ * 配置只在构造时读取一次，之后不再修改，同一个实例可以在一次运行的各处共用；
+ * 保存用户配置时写出的是副本，不影响已加载的配置。
+ * 
  * @author PhotoWatermark Team
  * @version 1.0.0
  */
@@ -20,7 +25,7 @@ public class ConfigManager {
     private static final String DEFAULT_CONFIG_FILE = "watermark.properties";
     private static final String USER_CONFIG_FILE = System.getProperty("user.home") + "/.photowatermark/config.properties";
     
-    private Properties properties;
+    private final Properties properties;
     
     /**
      * 构造函数
@@ -104,8 +109,26 @@ public class ConfigManager {
         properties.setProperty("watermark.shadow.color.red", "0");
         properties.setProperty("watermark.shadow.color.green", "0");
         properties.setProperty("watermark.shadow.color.blue", "0");
+        properties.setProperty("watermark.orientation.aware", "true");
         properties.setProperty("output.directory", "./output");
+        properties.setProperty("output.fsync", "NONE");
+        properties.setProperty("output.fsync.group.millis", "50");
         properties.setProperty("process.recursive", "true");
+        properties.setProperty("process.execution.mode", "CPU");
+        properties.setProperty("process.io.concurrency", "64");
+        properties.setProperty("process.schedule.policy", "LARGEST_FIRST");
+        properties.setProperty("process.schedule.small.lane", "true");
+        properties.setProperty("process.schedule.header.dimensions", "false");
+        properties.setProperty("process.file.timeout", "0");
+        properties.setProperty("process.shard.index", "0");
+        properties.setProperty("process.shard.count", "1");
+        properties.setProperty("process.lease.seconds", "300");
+        properties.setProperty("process.archive.order", "INPUT");
+        properties.setProperty("process.raster.pool.mb", "-1");
+        properties.setProperty("process.offheap.min.megapixels", "0");
+        properties.setProperty("process.input.read.mode", "READ");
+        properties.setProperty("process.dedup", "OFF");
+        properties.setProperty("process.exif.index", "");
         properties.setProperty("watermark.default.text", "Photo Watermark");
         properties.setProperty("watermark.use.exif.date", "true");
         
@@ -144,6 +167,9 @@ public class ConfigManager {
         config.setOpacity(getFloatProperty("watermark.opacity", 0.8f));
         config.setMargin(getIntProperty("watermark.margin", 20));
         
+        // 按EXIF方向放置水印
+        config.setOrientationAware(getBooleanProperty("watermark.orientation.aware", true));
+        
         // 阴影配置
         config.setEnableShadow(getBooleanProperty("watermark.shadow.enabled", true));
         config.setShadowOffset(getIntProperty("watermark.shadow.offset", 2));
@@ -153,9 +179,192 @@ public class ConfigManager {
         int shadowBlue = getIntProperty("watermark.shadow.color.blue", 0);
         config.setShadowColor(new Color(shadowRed, shadowGreen, shadowBlue));
         
+        // 输出尺寸配置
+        int maxOutputDimension = getIntProperty("output.max.dimension", 0);
+        if (maxOutputDimension < 0) {
+            logger.warn("无效的最大输出尺寸: {}, 不限制输出尺寸", maxOutputDimension);
+            maxOutputDimension = 0;
+        }
+        config.setMaxOutputDimension(maxOutputDimension);
+        config.setPreserveMetadata(getBooleanProperty("output.preserve.metadata", false));
+        
+        // 输出同步策略配置
+        String fsyncStr = getProperty("output.fsync", "NONE");
+        try {
+            config.setFsyncPolicy(FsyncPolicy.valueOf(fsyncStr.trim().toUpperCase()));
+        } catch (IllegalArgumentException e) {
+            logger.warn("无效的输出同步策略配置: {}, 使用默认值", fsyncStr);
+            config.setFsyncPolicy(FsyncPolicy.NONE);
+        }
+        int groupCommitMillis = getIntProperty("output.fsync.group.millis", 50);
+        if (groupCommitMillis < 0) {
+            logger.warn("无效的分组提交间隔: {}, 使用默认值", groupCommitMillis);
+            groupCommitMillis = 50;
+        }
+        config.setGroupCommitMillis(groupCommitMillis);
+        
+        // 多规格输出配置
+        config.setRenditions(getRenditions());
+        
+        // 执行模式配置
+        String modeStr = getProperty("process.execution.mode", "CPU");
+        try {
+            config.setExecutionMode(ExecutionMode.valueOf(modeStr.trim().toUpperCase()));
+        } catch (IllegalArgumentException e) {
+            logger.warn("无效的执行模式配置: {}, 使用默认值", modeStr);
+            config.setExecutionMode(ExecutionMode.CPU);
+        }
+        
+        int ioConcurrency = getIntProperty("process.io.concurrency", 64);
+        if (ioConcurrency <= 0) {
+            logger.warn("无效的IO并发数: {}, 使用默认值 64", ioConcurrency);
+            ioConcurrency = 64;
+        }
+        config.setIoConcurrency(ioConcurrency);
+        
+        // 调度策略配置
+        String policyStr = getProperty("process.schedule.policy", "LARGEST_FIRST");
+        try {
+            config.setSchedulingPolicy(SchedulingPolicy.valueOf(policyStr.trim().toUpperCase()));
+        } catch (IllegalArgumentException e) {
+            logger.warn("无效的调度策略配置: {}, 使用默认值", policyStr);
+            config.setSchedulingPolicy(SchedulingPolicy.LARGEST_FIRST);
+        }
+        config.setSmallJobLane(getBooleanProperty("process.schedule.small.lane", true));
+        config.setScheduleByDimensions(getBooleanProperty("process.schedule.header.dimensions", false));
+        
+        // 超时和日志配置
+        int fileTimeout = getIntProperty("process.file.timeout", 0);
+        if (fileTimeout < 0) {
+            logger.warn("无效的单文件超时: {}, 不限制处理时间", fileTimeout);
+            fileTimeout = 0;
+        }
+        config.setFileTimeoutSeconds(fileTimeout);
+        
+        String journalFile = getProperty("process.journal.file", "");
+        config.setJournalFile(journalFile.trim().isEmpty() ? null : journalFile.trim());
+        
+        // 多节点分片配置
+        int shardCount = getIntProperty("process.shard.count", 1);
+        int shardIndex = getIntProperty("process.shard.index", 0);
+        if (shardCount < 1 || shardIndex < 0 || shardIndex >= shardCount) {
+            logger.warn("无效的分片配置: {}/{}, 不分片", shardIndex, shardCount);
+            shardCount = 1;
+            shardIndex = 0;
+        }
+        config.setShardCount(shardCount);
+        config.setShardIndex(shardIndex);
+        
+        String leaseDirectory = getProperty("process.lease.dir", "");
+        config.setLeaseDirectory(leaseDirectory.trim().isEmpty() ? null : leaseDirectory.trim());
+        
+        String leaseRun = getProperty("process.lease.run", "").trim();
+        if (!leaseRun.isEmpty() && !WorkLeases.isValidRun(leaseRun)) {
+            logger.warn("无效的租约运行标识: {}, 不区分运行", leaseRun);
+            leaseRun = "";
+        }
+        config.setLeaseRun(leaseRun.isEmpty() ? null : leaseRun);
+        
+        int leaseSeconds = getIntProperty("process.lease.seconds", 300);
+        if (leaseSeconds <= 0) {
+            logger.warn("无效的租约时间: {}, 使用默认值", leaseSeconds);
+            leaseSeconds = 300;
+        }
+        config.setLeaseSeconds(leaseSeconds);
+        
+        // 压缩包输出顺序配置
+        String archiveOrderStr = getProperty("process.archive.order", "INPUT");
+        try {
+            config.setArchiveOrder(ArchiveOrder.valueOf(archiveOrderStr.trim().toUpperCase()));
+        } catch (IllegalArgumentException e) {
+            logger.warn("无效的压缩包输出顺序配置: {}, 使用默认值", archiveOrderStr);
+            config.setArchiveOrder(ArchiveOrder.INPUT);
+        }
+        
+        // 像素缓冲池上限配置
+        int rasterPoolMegabytes = getIntProperty("process.raster.pool.mb", -1);
+        if (rasterPoolMegabytes < -1) {
+            logger.warn("无效的像素缓冲池上限: {}, 使用默认值", rasterPoolMegabytes);
+            rasterPoolMegabytes = -1;
+        }
+        config.setRasterPoolMegabytes(rasterPoolMegabytes);
+        
+        // 堆外解码阈值配置
+        int offHeapMinMegapixels = getIntProperty("process.offheap.min.megapixels", 0);
+        if (offHeapMinMegapixels < 0) {
+            logger.warn("无效的堆外解码阈值: {}, 不使用堆外内存", offHeapMinMegapixels);
+            offHeapMinMegapixels = 0;
+        }
+        config.setOffHeapMinMegapixels(offHeapMinMegapixels);
+        
+        // 源文件读取方式配置
+        String inputReadModeStr = getProperty("process.input.read.mode", "READ");
+        try {
+            config.setInputReadMode(InputReadMode.valueOf(inputReadModeStr.trim().toUpperCase()));
+        } catch (IllegalArgumentException e) {
+            logger.warn("无效的源文件读取方式配置: {}, 使用默认值", inputReadModeStr);
+            config.setInputReadMode(InputReadMode.READ);
+        }
+        
+        // 重复输入处理方式配置
+        String dedupStr = getProperty("process.dedup", "OFF");
+        try {
+            config.setDuplicateMode(DuplicateMode.valueOf(dedupStr.trim().toUpperCase()));
+        } catch (IllegalArgumentException e) {
+            logger.warn("无效的重复输入处理方式配置: {}, 使用默认值", dedupStr);
+            config.setDuplicateMode(DuplicateMode.OFF);
+        }
+        
+        // EXIF日期索引配置
+        String exifIndexFile = getProperty("process.exif.index", "");
+        config.setExifIndexFile(exifIndexFile.trim().isEmpty() ? null : exifIndexFile.trim());
+        
         return config;
     }
     
+    /**
+     * 获取多规格输出配置
+     * 
+     * output.renditions 为逗号分隔的规格名称，每个规格通过
+     * output.rendition.{名称}.size/format/quality/suffix 配置
+     * 
+     * @return 输出规格列表，未配置时为空列表
+     */
+    public List<Rendition> getRenditions() {
+        List<Rendition> renditions = new ArrayList<>();
+        String names = getProperty("output.renditions", "");
+        
+        for (String name : names.split(",")) {
+            name = name.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            
+            String prefix = "output.rendition." + name + ".";
+            int size = getIntProperty(prefix + "size", 0);
+            if (size < 0) {
+                logger.warn("无效的规格尺寸 {}: {}, 使用原始尺寸", name, size);
+                size = 0;
+            }
+            
+            String format = getProperty(prefix + "format", null);
+            if (format != null && format.trim().isEmpty()) {
+                format = null;
+            }
+            
+            float quality = getFloatProperty(prefix + "quality", 0.9f);
+            if (quality < 0.0f || quality > 1.0f) {
+                logger.warn("无效的规格质量 {}: {}, 使用默认值 0.9", name, quality);
+                quality = 0.9f;
+            }
+            
+            String suffix = getProperty(prefix + "suffix", "_" + name);
+            renditions.add(new Rendition(name, size, format, quality, suffix));
+        }
+        
+        return renditions;
+    }
+    
     /**
      * 获取字符串属性
      * 
@@ -252,6 +461,55 @@ public class ConfigManager {
         return getBooleanProperty("watermark.use.exif.date", true);
     }
     
+    /**
+     * 获取水印服务监听端口
+     * 
+     * @return 端口
+     */
+    public int getServerPort() {
+        return getIntProperty("server.port", 8719);
+    }
+    
+    /**
+     * 获取水印服务同时处理的图片请求数上限
+     * 
+     * @return 并发上限，未配置时为CPU核数
+     */
+    public int getServerMaxConcurrent() {
+        int maxConcurrent = getIntProperty("server.max.concurrent", Runtime.getRuntime().availableProcessors());
+        return maxConcurrent > 0 ? maxConcurrent : Runtime.getRuntime().availableProcessors();
+    }
+    
+    /**
+     * 获取水印服务排队的批量任务数上限
+     * 
+     * @return 排队上限
+     */
+    public int getServerMaxQueuedJobs() {
+        int maxQueuedJobs = getIntProperty("server.max.queued.jobs", 16);
+        return maxQueuedJobs > 0 ? maxQueuedJobs : 16;
+    }
+    
+    /**
+     * 获取水印服务单张上传图片的大小上限
+     * 
+     * @return 字节数
+     */
+    public long getServerMaxUploadBytes() {
+        int megabytes = getIntProperty("server.max.upload.mb", 64);
+        return (megabytes > 0 ? megabytes : 64) * 1024L * 1024L;
+    }
+    
+    /**
+     * 获取监视模式下文件写入稳定的等待时间
+     * 
+     * @return 毫秒数
+     */
+    public long getWatchSettleMillis() {
+        int settleMillis = getIntProperty("watch.settle.ms", 500);
+        return settleMillis >= 0 ? settleMillis : 500;
+    }
+    
     /**
      * 保存用户配置
      * 
@@ -267,12 +525,14 @@ public class ConfigManager {
                 return false;
             }
             
-            // 更新属性
-            updatePropertiesFromConfig(config);
+            // 在副本上更新属性，已加载的配置保持不变
+            Properties saved = new Properties();
+            saved.putAll(properties);
+            updatePropertiesFromConfig(saved, config);
             
             // 保存到文件
             try (FileOutputStream outputStream = new FileOutputStream(USER_CONFIG_FILE)) {
-                properties.store(outputStream, "Photo Watermark Tool User Configuration");
+                saved.store(outputStream, "Photo Watermark Tool User Configuration");
                 logger.info("成功保存用户配置到: {}", USER_CONFIG_FILE);
                 return true;
             }
@@ -286,9 +546,10 @@ public class ConfigManager {
     /**
      * 从配置对象更新属性
      * 
+     * @param properties 要更新的属性
      * @param config 水印配置
      */
-    private void updatePropertiesFromConfig(WatermarkConfig config) {
+    private static void updatePropertiesFromConfig(Properties properties, WatermarkConfig config) {
         properties.setProperty("watermark.font.name", config.getFontName());
         properties.setProperty("watermark.font.size", String.valueOf(config.getFontSize()));
         properties.setProperty("watermark.font.style", String.valueOf(config.getFontStyle()));
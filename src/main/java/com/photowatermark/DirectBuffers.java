@@ -0,0 +1,78 @@
+package com.photowatermark;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+
+/**
+ * 直接缓冲区工具
+ * 
+ * 直接缓冲区和文件映射默认要等垃圾回收时才释放，大量处理大文件时直接内存和虚拟地址空间会在GC之前耗尽。
+ * 这里通过 JDK 内部接口立即释放，释放后缓冲区不能再访问，否则会导致JVM崩溃。
+ * 
+ * @author PhotoWatermark Team
+ * @version 1.0.0
+ */
+class DirectBuffers {
+    
+    private static final Logger logger = LoggerFactory.getLogger(DirectBuffers.class);
+    
+    private static final Cleaner CLEANER = createCleaner();
+    
+    /**
+     * 立即释放直接缓冲区或取消文件映射，堆缓冲区和切片会被忽略
+     * 
+     * @param buffer 缓冲区，可以为null
+     */
+    static void free(ByteBuffer buffer) {
+        if (buffer != null && buffer.isDirect()) {
+            CLEANER.free(buffer);
+        }
+    }
+    
+    /**
+     * 显式释放直接缓冲区
+     */
+    private interface Cleaner {
+        void free(ByteBuffer buffer);
+    }
+    
+    /**
+     * Java 9 及以上通过 Unsafe.invokeCleaner 释放，Java 8 调用缓冲区自身的 cleaner；
+     * 都不可用时交给垃圾回收。
+     */
+    private static Cleaner createCleaner() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            Object unsafe = field.get(null);
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            return buffer -> {
+                try {
+                    invokeCleaner.invoke(unsafe, buffer);
+                } catch (ReflectiveOperationException | RuntimeException e) {
+                    logger.debug("释放直接内存失败: {}", e.toString());
+                }
+            };
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            logger.debug("Unsafe.invokeCleaner 不可用: {}", e.toString());
+        }
+        
+        return buffer -> {
+            try {
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null) {
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+                }
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                logger.debug("无法显式释放直接内存，等待垃圾回收: {}", e.toString());
+            }
+        };
+    }
+}
\ No newline at end of file
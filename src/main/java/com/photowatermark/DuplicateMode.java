@@ -0,0 +1,31 @@
+package com.photowatermark;
+
+/**
+ * 重复输入的处理方式枚举
+ * 
+ * @author PhotoWatermark Team
+ * @version 1.0.0
+ */
+public enum DuplicateMode {
+    /** 不识别重复输入，每个文件都完整处理 */
+    OFF("不去重"),
+    /** 复制第一份输出 */
+    COPY("复制"),
+    /** 硬链接到第一份输出，不占用额外空间；跨文件系统或不支持硬链接时改为复制 */
+    LINK("硬链接");
+    
+    private final String description;
+    
+    DuplicateMode(String description) {
+        this.description = description;
+    }
+    
+    public String getDescription() {
+        return description;
+    }
+    
+    @Override
+    public String toString() {
+        return description;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,29 @@
+package com.photowatermark;
+
+/**
+ * 批量处理执行模式枚举
+ * 
+ * @author PhotoWatermark Team
+ * @version 1.0.0
+ */
+public enum ExecutionMode {
+    /** 按CPU核数并行处理，适合本地磁盘 */
+    CPU("CPU密集"),
+    /** 文件读写在大量轻量线程上并发进行，解码、绘制、编码仍按CPU核数限流，适合网络存储等高延迟文件系统 */
+    IO("IO密集");
+    
+    private final String description;
+    
+    ExecutionMode(String description) {
+        this.description = description;
+    }
+    
+    public String getDescription() {
+        return description;
+    }
+    
+    @Override
+    public String toString() {
+        return description;
+    }
+}
\ No newline at end of file
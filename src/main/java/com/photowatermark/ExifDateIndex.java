@@ -0,0 +1,497 @@
+package com.photowatermark;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+
+/**
+ * 跨运行保留的EXIF日期索引
+ * 
+ * 以 "路径 + 大小 + 修改时间" 为键保存拍摄日期 (或没有日期) 和方向标记，同一批文件换水印样式重新处理时
+ * 直接从索引取得，不再解析EXIF。索引文件是按路径哈希排序的定长记录，打开时映射到内存并二分查找；
+ * 新增的记录先保存在内存中，累积到已有记录数的四分之一 (至少 {@link #MIN_FLUSH_ENTRIES} 条) 或关闭时
+ * 合并写入新的索引文件，总写入量与记录数成线性关系。
+ * 
+ * 记录写在带代数后缀的数据文件 ({索引文件}.{代数}) 中，索引文件本身只保存当前数据文件的代数。
+ * 合并时写出下一代数据文件后再原子替换索引文件，旧的数据文件映射期间不会被改名或覆盖
+ * (Windows 上已映射的文件不能被替换)；旧数据文件随后删除，删除失败的留到下次打开时清理。
+ * 
+ * 数据文件格式：32字节文件头 (魔数、版本、记录长度、记录数、记录区的 XXH64 校验值)，之后是40字节的记录
+ * (路径哈希、大小、修改时间纳秒、方向、日期长度、日期)。文件头或校验值不符时视为损坏，删除后从空索引重新建立。
+ * 索引只是缓存，损坏、无法写入或路径哈希冲突 (64位，千万个文件时约百万分之三) 都只影响是否命中。
+ * 
+ * @author PhotoWatermark Team
+ * @version 1.0.0
+ */
+public class ExifDateIndex implements Closeable {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ExifDateIndex.class);
+    
+    // "PWEXIDX1"
+    private static final long MAGIC = 0x5057455849445831L;
+    // 日期格式或记录布局改变时递增，旧版本的索引会被重新建立
+    private static final int VERSION = 1;
+    
+    static final int HEADER_SIZE = 32;
+    static final int RECORD_SIZE = 40;
+    static final int MAX_DATE_BYTES = 14;
+    static final int MIN_FLUSH_ENTRIES = 4096;
+    
+    private static final int NO_DATE = 0xFF;
+    private static final Pattern GENERATION_SUFFIX = Pattern.compile("\\.(\\d+)");
+    
+    private final File file;
+    private final Map<Long, Record> pending = new ConcurrentHashMap<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    
+    // 已写入索引文件的记录，刷新后整体替换，查找时不加锁
+    private volatile Segment segment;
+    
+    /**
+     * 打开索引，文件不存在时从空索引开始，文件损坏时删除并重新建立
+     * 
+     * @param file 索引文件 (保存当前数据文件的代数)
+     */
+    public ExifDateIndex(File file) {
+        this.file = file;
+        this.segment = open(file);
+    }
+    
+    /**
+     * 取得图片文件的索引键
+     * 
+     * 应在读取文件内容之前取得，读取期间文件被改写时修改时间会变化，下次运行不会命中过期的记录。
+     * 
+     * @param imageFile 图片文件
+     * @return 索引键
+     * @throws IOException 无法读取文件属性时抛出
+     */
+    public static Key keyOf(File imageFile) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(imageFile.toPath(), BasicFileAttributes.class);
+        return new Key(imageFile.getAbsolutePath(), attributes.size(),
+                attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS));
+    }
+    
+    /**
+     * 查找文件的元数据
+     * 
+     * @param key 索引键
+     * @return 只包含拍摄日期和方向的元数据，没有记录或文件已改变时返回null
+     */
+    public SourceMetadata lookup(Key key) {
+        Record record = pending.get(key.pathHash);
+        if (record == null) {
+            record = segment.find(key.pathHash);
+        }
+        if (record == null || record.size != key.size || record.modified != key.modified) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return new SourceMetadata(record.dateTaken, record.orientation, null);
+    }
+    
+    /**
+     * 记录文件的元数据，累积足够多的新记录后写入索引文件
+     * 
+     * 日期超过 {@link #MAX_DATE_BYTES} 字节时不记录。
+     * 
+     * @param key 索引键
+     * @param metadata 从文件读取的元数据
+     */
+    public void record(Key key, SourceMetadata metadata) {
+        String dateTaken = metadata.getDateTaken();
+        if (dateTaken != null && dateTaken.getBytes(StandardCharsets.UTF_8).length > MAX_DATE_BYTES) {
+            return;
+        }
+        pending.put(key.pathHash, new Record(key.pathHash, key.size, key.modified, metadata.getOrientation(),
+                dateTaken));
+        // 其他线程正在写入时不等待，新记录留到下次
+        if (isFull() && flushLock.tryLock()) {
+            try {
+                if (isFull()) {
+                    writeIndex();
+                }
+            } finally {
+                flushLock.unlock();
+            }
+        }
+    }
+    
+    private boolean isFull() {
+        return pending.size() >= Math.max(MIN_FLUSH_ENTRIES, segment.count / 4);
+    }
+    
+    /**
+     * 把内存中的新记录与索引文件合并，写入新的索引文件
+     * 
+     * 写入失败时记录警告，新记录保留在内存中，下次刷新时重试。
+     */
+    public void flush() {
+        flushLock.lock();
+        try {
+            writeIndex();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+    
+    private void writeIndex() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<Record> added = new ArrayList<>(pending.values());
+        added.sort((a, b) -> Long.compare(a.pathHash, b.pathHash));
+        
+        Segment previous = segment;
+        long generation = previous.generation + 1;
+        ByteBuffer merged = null;
+        try {
+            merged = merge(previous, added);
+            ImageFiles.write(dataFile(file, generation), merged, false);
+            ImageFiles.write(file, Long.toString(generation).getBytes(StandardCharsets.US_ASCII));
+            segment = open(file);
+            for (Record record : added) {
+                pending.remove(record.pathHash, record);
+            }
+            logger.debug("写入EXIF日期索引: {} 条记录 (新增或更新 {} 条)", segment.count, added.size());
+            
+            // 旧的数据文件可能仍被查找中的线程访问，映射的内存在回收前保持有效
+            if (previous.generation > 0) {
+                deleteQuietly(dataFile(file, previous.generation));
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            logger.warn("无法写入EXIF日期索引 {}: {}", file.getAbsolutePath(), e.getMessage());
+        } finally {
+            if (merged != null) {
+                DirectBuffers.free(merged);
+            }
+        }
+    }
+    
+    /**
+     * 写入新记录并输出统计信息
+     */
+    @Override
+    public void close() {
+        flush();
+        logger.info(getStatistics());
+    }
+    
+    /**
+     * 获取索引统计信息
+     * 
+     * @return 统计信息字符串
+     */
+    public String getStatistics() {
+        return String.format("EXIF日期索引 - 命中: %d, 未命中: %d, 记录: %d", hits.get(), misses.get(),
+                segment.count + pending.size());
+    }
+    
+    long getHits() {
+        return hits.get();
+    }
+    
+    /**
+     * 按路径哈希归并已有记录和新记录，新记录覆盖路径相同的已有记录
+     */
+    private static ByteBuffer merge(Segment base, List<Record> added) {
+        long maxCount = base.count + added.size();
+        if (HEADER_SIZE + maxCount * RECORD_SIZE > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("索引记录过多: " + maxCount);
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect((int) (HEADER_SIZE + maxCount * RECORD_SIZE));
+        buffer.position(HEADER_SIZE);
+        
+        int baseIndex = 0;
+        int addedIndex = 0;
+        while (baseIndex < base.count || addedIndex < added.size()) {
+            if (addedIndex == added.size()) {
+                base.copyRecord(baseIndex++, buffer);
+                continue;
+            }
+            Record record = added.get(addedIndex);
+            int order = baseIndex < base.count ? Long.compare(base.pathHash(baseIndex), record.pathHash) : 1;
+            if (order < 0) {
+                base.copyRecord(baseIndex++, buffer);
+            } else {
+                if (order == 0) {
+                    baseIndex++;
+                }
+                record.write(buffer);
+                addedIndex++;
+            }
+        }
+        
+        int count = (buffer.position() - HEADER_SIZE) / RECORD_SIZE;
+        buffer.flip();
+        ByteBuffer records = buffer.duplicate();
+        records.position(HEADER_SIZE);
+        buffer.putLong(0, MAGIC);
+        buffer.putInt(8, VERSION);
+        buffer.putInt(12, RECORD_SIZE);
+        buffer.putLong(16, count);
+        buffer.putLong(24, ContentHash.xxh64(records));
+        return buffer;
+    }
+    
+    /**
+     * 取得指定代数的数据文件
+     * 
+     * @param file 索引文件
+     * @param generation 代数
+     * @return 与索引文件同目录的数据文件
+     */
+    static File dataFile(File file, long generation) {
+        return new File(file.getAbsoluteFile().getParentFile(), file.getName() + "." + generation);
+    }
+    
+    /**
+     * 读取索引文件中的当前代数
+     * 
+     * @param file 索引文件
+     * @return 当前代数，文件不存在时返回0
+     * @throws IOException 无法读取时抛出
+     * @throws NumberFormatException 内容不是有效的代数时抛出
+     */
+    static long currentGeneration(File file) throws IOException {
+        if (!file.isFile()) {
+            return 0;
+        }
+        long generation = Long.parseLong(new String(Files.readAllBytes(file.toPath()), StandardCharsets.US_ASCII)
+                .trim());
+        if (generation <= 0) {
+            throw new NumberFormatException("代数 " + generation);
+        }
+        return generation;
+    }
+    
+    /**
+     * 打开索引文件指向的数据文件，并清理其他代数的数据文件
+     */
+    private static Segment open(File file) {
+        long generation;
+        try {
+            generation = currentGeneration(file);
+        } catch (IOException | NumberFormatException e) {
+            logger.warn("EXIF日期索引无效 ({})，重新建立: {}", e.getMessage(), file.getAbsolutePath());
+            deleteQuietly(file);
+            return Segment.EMPTY;
+        }
+        if (generation == 0) {
+            return Segment.EMPTY;
+        }
+        
+        deleteStaleDataFiles(file, generation);
+        File dataFile = dataFile(file, generation);
+        Segment opened = openDataFile(dataFile, generation);
+        if (opened == null) {
+            deleteQuietly(dataFile);
+            deleteQuietly(file);
+            return Segment.EMPTY;
+        }
+        return opened;
+    }
+    
+    /**
+     * 映射并校验数据文件
+     * 
+     * @return 数据文件的记录，文件缺失或无效时返回null
+     */
+    private static Segment openDataFile(File file, long generation) {
+        String problem;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length < HEADER_SIZE || length > Integer.MAX_VALUE) {
+                problem = "文件长度 " + length;
+            } else {
+                ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+                long count = buffer.getLong(16);
+                if (buffer.getLong(0) != MAGIC) {
+                    problem = "不是EXIF日期索引";
+                } else if (buffer.getInt(8) != VERSION || buffer.getInt(12) != RECORD_SIZE) {
+                    problem = "索引版本 " + buffer.getInt(8);
+                } else if (count < 0 || HEADER_SIZE + count * RECORD_SIZE != length) {
+                    problem = "记录数 " + count + " 与文件长度不符";
+                } else {
+                    ByteBuffer records = buffer.duplicate();
+                    records.position(HEADER_SIZE);
+                    if (ContentHash.xxh64(records) != buffer.getLong(24)) {
+                        problem = "校验值不符";
+                    } else {
+                        logger.debug("打开EXIF日期索引: {} ({} 条记录)", file.getAbsolutePath(), count);
+                        return new Segment(buffer, (int) count, generation);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            problem = e.getMessage();
+        }
+        
+        logger.warn("EXIF日期索引无效 ({})，重新建立: {}", problem, file.getAbsolutePath());
+        return null;
+    }
+    
+    /**
+     * 删除不是当前代数的数据文件 (上次删除失败或写入中途退出留下的)
+     */
+    private static void deleteStaleDataFiles(File file, long generation) {
+        String prefix = file.getName();
+        File[] candidates = file.getAbsoluteFile().getParentFile().listFiles(
+                (dir, name) -> name.startsWith(prefix)
+                        && GENERATION_SUFFIX.matcher(name.substring(prefix.length())).matches());
+        if (candidates == null) {
+            return;
+        }
+        for (File candidate : candidates) {
+            if (!candidate.getName().equals(prefix + "." + generation)) {
+                deleteQuietly(candidate);
+            }
+        }
+    }
+    
+    private static void deleteQuietly(File file) {
+        try {
+            Files.deleteIfExists(file.toPath());
+        } catch (IOException e) {
+            logger.debug("无法删除EXIF日期索引文件 {}: {}", file.getName(), e.getMessage());
+        }
+    }
+    
+    /**
+     * 索引键：路径哈希、文件大小和修改时间
+     */
+    public static final class Key {
+        
+        private final long pathHash;
+        private final long size;
+        private final long modified;
+        
+        /**
+         * 构造函数
+         * 
+         * @param path 文件的绝对路径
+         * @param size 文件大小
+         * @param modified 修改时间 (纳秒)
+         */
+        Key(String path, long size, long modified) {
+            this.pathHash = ContentHash.xxh64(ByteBuffer.wrap(path.getBytes(StandardCharsets.UTF_8)));
+            this.size = size;
+            this.modified = modified;
+        }
+    }
+    
+    /**
+     * 一条索引记录
+     */
+    private static final class Record {
+        
+        final long pathHash;
+        final long size;
+        final long modified;
+        final int orientation;
+        final String dateTaken;
+        
+        Record(long pathHash, long size, long modified, int orientation, String dateTaken) {
+            this.pathHash = pathHash;
+            this.size = size;
+            this.modified = modified;
+            this.orientation = orientation;
+            this.dateTaken = dateTaken;
+        }
+        
+        void write(ByteBuffer buffer) {
+            int start = buffer.position();
+            buffer.putLong(pathHash).putLong(size).putLong(modified).put((byte) orientation);
+            if (dateTaken == null) {
+                buffer.put((byte) NO_DATE);
+            } else {
+                byte[] date = dateTaken.getBytes(StandardCharsets.UTF_8);
+                buffer.put((byte) date.length).put(date);
+            }
+            while (buffer.position() < start + RECORD_SIZE) {
+                buffer.put((byte) 0);
+            }
+        }
+    }
+    
+    /**
+     * 映射到内存的已排序记录
+     */
+    private static final class Segment {
+        
+        static final Segment EMPTY = new Segment(null, 0, 0);
+        
+        final ByteBuffer buffer;
+        final int count;
+        final long generation;
+        
+        Segment(ByteBuffer buffer, int count, long generation) {
+            this.buffer = buffer;
+            this.count = count;
+            this.generation = generation;
+        }
+        
+        long pathHash(int index) {
+            return buffer.getLong(HEADER_SIZE + index * RECORD_SIZE);
+        }
+        
+        Record find(long pathHash) {
+            int low = 0;
+            int high = count - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                long value = pathHash(middle);
+                if (value < pathHash) {
+                    low = middle + 1;
+                } else if (value > pathHash) {
+                    high = middle - 1;
+                } else {
+                    return read(middle);
+                }
+            }
+            return null;
+        }
+        
+        private Record read(int index) {
+            int offset = HEADER_SIZE + index * RECORD_SIZE;
+            int dateLength = buffer.get(offset + 25) & 0xFF;
+            String dateTaken = null;
+            if (dateLength != NO_DATE) {
+                byte[] date = new byte[Math.min(dateLength, MAX_DATE_BYTES)];
+                for (int i = 0; i < date.length; i++) {
+                    date[i] = buffer.get(offset + 26 + i);
+                }
+                dateTaken = new String(date, StandardCharsets.UTF_8);
+            }
+            return new Record(buffer.getLong(offset), buffer.getLong(offset + 8), buffer.getLong(offset + 16),
+                    buffer.get(offset + 24), dateTaken);
+        }
+        
+        void copyRecord(int index, ByteBuffer target) {
+            ByteBuffer source = buffer.duplicate();
+            source.position(HEADER_SIZE + index * RECORD_SIZE);
+            source.limit(source.position() + RECORD_SIZE);
+            target.put(source);
+        }
+    }
+}
\ No newline at end of file
@@ -2,16 +2,29 @@ package com.photowatermark;
 
 import com.drew.imaging.ImageMetadataReader;
 import com.drew.imaging.ImageProcessingException;
+import com.drew.imaging.jpeg.JpegMetadataReader;
+import com.drew.imaging.jpeg.JpegSegmentData;
+import com.drew.imaging.jpeg.JpegSegmentReader;
+import com.drew.imaging.jpeg.JpegSegmentType;
+import com.drew.lang.StreamReader;
 import com.drew.metadata.Directory;
 import com.drew.metadata.Metadata;
+import com.drew.metadata.exif.ExifIFD0Directory;
 import com.drew.metadata.exif.ExifSubIFDDirectory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 
 /**
  * EXIF信息读取器
@@ -26,6 +39,9 @@ public class ExifReader {
     // 日期格式化器
     private static final SimpleDateFormat DATE_FORMATTER = new SimpleDateFormat("yyyy-MM-dd");
     
+    // 需要随输出保留的JPEG段：APP1 (EXIF/XMP) 和 APP2 中的ICC配置文件
+    private static final byte[] ICC_PROFILE_ID = "ICC_PROFILE\0".getBytes(StandardCharsets.US_ASCII);
+    
     /**
      * 从图片文件中提取拍摄日期
      * 
@@ -38,57 +54,268 @@ public class ExifReader {
             return null;
         }
         
+        String dateTaken = readMetadata(imageFile).getDateTaken();
+        if (dateTaken == null) {
+            logger.warn("文件 {} 中未找到拍摄时间信息", imageFile.getName());
+        }
+        return dateTaken;
+    }
+    
+    /**
+     * 一次读取图片的元数据
+     * 
+     * JPEG文件只读取到图像数据之前的段，在解析EXIF的同时保留APP1/APP2原始段，
+     * 以便输出时原样写回而无需再次打开源文件。
+     * 
+     * @param imageFile 图片文件
+     * @return 源图片元数据，读取失败时返回空元数据
+     */
+    public static SourceMetadata readMetadata(File imageFile) {
+        if (imageFile == null || !imageFile.exists() || !imageFile.isFile()) {
+            logger.warn("无效的图片文件: {}", imageFile);
+            return SourceMetadata.empty();
+        }
+        
+        try (InputStream inputStream = new BufferedInputStream(new FileInputStream(imageFile))) {
+            return readMetadata(inputStream, imageFile.getName());
+        } catch (IOException e) {
+            logger.error("读取图片文件时出错: {}", imageFile.getName(), e);
+            return SourceMetadata.empty();
+        }
+    }
+    
+    /**
+     * 从输入流一次读取图片的元数据
+     * 
+     * 用于源文件已经整体读入内存的场景，元数据和图像解码共用同一份数据。
+     * 
+     * @param inputStream 图片数据输入流，由调用方关闭
+     * @param fileName 文件名（用于判断格式和日志）
+     * @return 源图片元数据，读取失败时返回空元数据
+     */
+    public static SourceMetadata readMetadata(InputStream inputStream, String fileName) {
+        return readMetadata(inputStream, isJpegFileName(fileName), fileName);
+    }
+    
+    /**
+     * 从内存中或映射到内存的图片数据读取元数据
+     * 
+     * 与解码共用同一个缓冲区，不复制数据，也不改变缓冲区的位置。
+     * 
+     * @param data 图片数据
+     * @param fileName 文件名（用于判断格式和日志）
+     * @return 源图片元数据，读取失败时返回空元数据
+     */
+    public static SourceMetadata readMetadata(ByteBuffer data, String fileName) {
+        return readMetadata(new ByteBufferInputStream(data.duplicate()), isJpegFileName(fileName), fileName);
+    }
+    
+    /**
+     * 从内存中的图片数据读取元数据
+     * 
+     * 根据SOI标记识别JPEG，只解析JPEG的元数据，其他格式返回空元数据。不改变缓冲区的位置。
+     * 
+     * @param data 图片数据
+     * @return 源图片元数据，读取失败时返回空元数据
+     */
+    public static SourceMetadata readMetadata(ByteBuffer data) {
+        if (data.remaining() < 2 || (data.get(data.position()) & 0xFF) != 0xFF
+                || (data.get(data.position() + 1) & 0xFF) != 0xD8) {
+            return SourceMetadata.empty();
+        }
+        return readMetadata(new ByteBufferInputStream(data.duplicate()), true, "内存图片");
+    }
+    
+    /**
+     * 从输入流一次读取图片的元数据
+     * 
+     * @param inputStream 图片数据输入流
+     * @param jpeg 是否按JPEG读取
+     * @param fileName 文件名（用于日志）
+     * @return 源图片元数据，读取失败时返回空元数据
+     */
+    private static SourceMetadata readMetadata(InputStream inputStream, boolean jpeg, String fileName) {
         try {
-            // 读取图片元数据
-            Metadata metadata = ImageMetadataReader.readMetadata(imageFile);
-            
-            // 尝试从EXIF SubIFD目录获取拍摄时间
-            ExifSubIFDDirectory directory = metadata.getFirstDirectoryOfType(ExifSubIFDDirectory.class);
+            Metadata metadata;
+            List<byte[]> segments = new ArrayList<>();
             
-            if (directory != null) {
-                // 尝试获取原始拍摄时间
-                Date dateTaken = directory.getDate(ExifSubIFDDirectory.TAG_DATETIME_ORIGINAL);
-                
-                if (dateTaken != null) {
-                    String formattedDate = DATE_FORMATTER.format(dateTaken);
-                    logger.debug("从文件 {} 提取到拍摄日期: {}", imageFile.getName(), formattedDate);
-                    return formattedDate;
-                }
+            if (jpeg) {
+                JpegSegmentData segmentData = JpegSegmentReader.readSegments(new StreamReader(inputStream), null);
                 
-                // 如果没有原始拍摄时间，尝试获取数字化时间
-                Date dateDigitized = directory.getDate(ExifSubIFDDirectory.TAG_DATETIME_DIGITIZED);
-                if (dateDigitized != null) {
-                    String formattedDate = DATE_FORMATTER.format(dateDigitized);
-                    logger.debug("从文件 {} 提取到数字化日期: {}", imageFile.getName(), formattedDate);
-                    return formattedDate;
-                }
+                metadata = new Metadata();
+                JpegMetadataReader.processJpegSegmentData(metadata, JpegMetadataReader.ALL_READERS, segmentData);
+                collectPreservedSegments(segmentData, segments);
+            } else {
+                metadata = ImageMetadataReader.readMetadata(inputStream);
             }
             
-            // 如果EXIF SubIFD中没有找到，尝试从其他目录查找
-            for (Directory dir : metadata.getDirectories()) {
-                if (dir.hasTagName(ExifSubIFDDirectory.TAG_DATETIME_ORIGINAL)) {
-                    Date dateTaken = dir.getDate(ExifSubIFDDirectory.TAG_DATETIME_ORIGINAL);
-                    if (dateTaken != null) {
-                        String formattedDate = DATE_FORMATTER.format(dateTaken);
-                        logger.debug("从文件 {} 的其他目录提取到拍摄日期: {}", imageFile.getName(), formattedDate);
-                        return formattedDate;
-                    }
-                }
-            }
-            
-            logger.warn("文件 {} 中未找到拍摄时间信息", imageFile.getName());
-            return null;
+            return new SourceMetadata(extractDateTaken(metadata, fileName), extractOrientation(metadata), segments);
             
         } catch (ImageProcessingException e) {
-            logger.error("处理图片元数据时出错: {}", imageFile.getName(), e);
-            return null;
+            logger.error("处理图片元数据时出错: {}", fileName, e);
+            return SourceMetadata.empty();
         } catch (IOException e) {
-            logger.error("读取图片文件时出错: {}", imageFile.getName(), e);
-            return null;
+            logger.error("读取图片文件时出错: {}", fileName, e);
+            return SourceMetadata.empty();
         } catch (Exception e) {
-            logger.error("提取EXIF信息时发生未知错误: {}", imageFile.getName(), e);
-            return null;
+            logger.error("提取EXIF信息时发生未知错误: {}", fileName, e);
+            return SourceMetadata.empty();
+        }
+    }
+    
+    /**
+     * 从已解析的元数据中提取拍摄日期
+     * 
+     * @param metadata 元数据
+     * @param fileName 文件名（用于日志）
+     * @return 格式化的拍摄日期字符串，没有时返回null
+     */
+    private static String extractDateTaken(Metadata metadata, String fileName) {
+        // 尝试从EXIF SubIFD目录获取拍摄时间
+        ExifSubIFDDirectory directory = metadata.getFirstDirectoryOfType(ExifSubIFDDirectory.class);
+        
+        if (directory != null) {
+            // 尝试获取原始拍摄时间
+            Date dateTaken = directory.getDate(ExifSubIFDDirectory.TAG_DATETIME_ORIGINAL);
+            
+            if (dateTaken != null) {
+                String formattedDate = formatDate(dateTaken);
+                logger.debug("从文件 {} 提取到拍摄日期: {}", fileName, formattedDate);
+                return formattedDate;
+            }
+            
+            // 如果没有原始拍摄时间，尝试获取数字化时间
+            Date dateDigitized = directory.getDate(ExifSubIFDDirectory.TAG_DATETIME_DIGITIZED);
+            if (dateDigitized != null) {
+                String formattedDate = formatDate(dateDigitized);
+                logger.debug("从文件 {} 提取到数字化日期: {}", fileName, formattedDate);
+                return formattedDate;
+            }
         }
+        
+        // 如果EXIF SubIFD中没有找到，尝试从其他目录查找
+        for (Directory dir : metadata.getDirectories()) {
+            if (dir.hasTagName(ExifSubIFDDirectory.TAG_DATETIME_ORIGINAL)) {
+                Date dateTaken = dir.getDate(ExifSubIFDDirectory.TAG_DATETIME_ORIGINAL);
+                if (dateTaken != null) {
+                    String formattedDate = formatDate(dateTaken);
+                    logger.debug("从文件 {} 的其他目录提取到拍摄日期: {}", fileName, formattedDate);
+                    return formattedDate;
+                }
+            }
+        }
+        
+        return null;
+    }
+    
+    /**
+     * 从已解析的元数据中提取方向标记
+     * 
+     * @param metadata 元数据
+     * @return 方向标记值 (1-8)，没有时返回1
+     */
+    private static int extractOrientation(Metadata metadata) {
+        ExifIFD0Directory directory = metadata.getFirstDirectoryOfType(ExifIFD0Directory.class);
+        if (directory != null && directory.containsTag(ExifIFD0Directory.TAG_ORIENTATION)) {
+            Integer orientation = directory.getInteger(ExifIFD0Directory.TAG_ORIENTATION);
+            if (orientation != null) {
+                return orientation;
+            }
+        }
+        return SourceMetadata.ORIENTATION_NORMAL;
+    }
+    
+    /**
+     * 格式化日期（SimpleDateFormat 非线程安全，批量处理时多个线程会同时调用）
+     * 
+     * @param date 日期
+     * @return 格式化后的日期字符串
+     */
+    private static String formatDate(Date date) {
+        synchronized (DATE_FORMATTER) {
+            return DATE_FORMATTER.format(date);
+        }
+    }
+    
+    /**
+     * 收集需要保留的JPEG段，转换为包含标记和长度的完整段
+     * 
+     * APP2中只保留ICC配置文件，MPF等段包含指向原文件的偏移量，拼接到新文件后会失效。
+     * 
+     * @param segmentData JPEG段数据
+     * @param segments 输出的完整段列表
+     */
+    private static void collectPreservedSegments(JpegSegmentData segmentData, List<byte[]> segments) {
+        for (byte[] payload : segmentData.getSegments(JpegSegmentType.APP1)) {
+            addSegment(segments, JpegSegmentType.APP1.byteValue, payload);
+        }
+        for (byte[] payload : segmentData.getSegments(JpegSegmentType.APP2)) {
+            if (startsWith(payload, ICC_PROFILE_ID)) {
+                addSegment(segments, JpegSegmentType.APP2.byteValue, payload);
+            }
+        }
+    }
+    
+    /**
+     * 添加完整段，超过JPEG段长度上限的段会被忽略
+     * 
+     * @param segments 完整段列表
+     * @param marker 段标记
+     * @param payload 段内容
+     */
+    private static void addSegment(List<byte[]> segments, byte marker, byte[] payload) {
+        int length = payload.length + 2;
+        if (length > 0xFFFF) {
+            return;
+        }
+        
+        byte[] segment = new byte[payload.length + 4];
+        segment[0] = (byte) 0xFF;
+        segment[1] = marker;
+        segment[2] = (byte) (length >> 8);
+        segment[3] = (byte) length;
+        System.arraycopy(payload, 0, segment, 4, payload.length);
+        segments.add(segment);
+    }
+    
+    /**
+     * 判断字节数组是否以指定前缀开头
+     * 
+     * @param data 字节数组
+     * @param prefix 前缀
+     * @return 是否以前缀开头
+     */
+    private static boolean startsWith(byte[] data, byte[] prefix) {
+        if (data.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (data[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * 根据扩展名判断是否为JPEG文件
+     * 
+     * @param file 文件
+     * @return 是否为JPEG文件
+     */
+    static boolean isJpegFile(File file) {
+        return isJpegFileName(file.getName());
+    }
+    
+    /**
+     * 根据文件名判断是否为JPEG文件
+     * 
+     * @param fileName 文件名
+     * @return 是否为JPEG文件
+     */
+    private static boolean isJpegFileName(String fileName) {
+        String lowerName = fileName.toLowerCase();
+        return lowerName.endsWith(".jpg") || lowerName.endsWith(".jpeg");
     }
     
     /**
@@ -149,4 +376,45 @@ public class ExifReader {
             return "读取EXIF信息时出错: " + e.getMessage();
         }
     }
+    
+    /**
+     * 基于 ByteBuffer 的输入流，读取时不复制整个缓冲区
+     */
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+        
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+        
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+        
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+        
+        @Override
+        public long skip(long n) {
+            int skipped = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + skipped);
+            return skipped;
+        }
+        
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
 }
\ No newline at end of file
@@ -3,17 +3,47 @@ package com.photowatermark;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.imageio.stream.ImageInputStream;
 import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 批量文件处理器
  * 
+ * 每个文件分为三个阶段处理：整体读入源文件、在内存中解码/绘制/编码、写出结果。
+ * IO模式下读写阶段在大量轻量线程上并发进行，只有中间的计算阶段按CPU核数限流。
+ * 
+ * 配置了单文件超时时，超时的文件被记为失败，卡住的工作线程被中断并由新的工作线程接替，
+ * 单个损坏的文件不会拖住整个批次。调用 {@link #cancel()} 后不再领取新文件，
+ * 等进行中的文件完成后写出日志和统计并返回。
+ * 
  * @author PhotoWatermark Team
  * @version 1.0.0
  */
@@ -21,17 +51,60 @@ public class FileProcessor {
     
     private static final Logger logger = LoggerFactory.getLogger(FileProcessor.class);
     
+    // 未配置多规格输出时的结果键，命名规则与 generateOutputFile(File) 一致
+    static final Rendition SINGLE_OUTPUT = new Rendition("watermarked", 0, null, 0.9f, "_watermarked");
+    
     private final WatermarkConfig config;
     private final boolean useExifDate;
     private final String customWatermark;
     private final File outputDir;
     private final boolean recursive;
     
+    // 调用方提供的跨批次线程池，为null时每个批次自行创建和关闭线程池
+    private ProcessorExecutors sharedExecutors;
+    
+    // 多规格输出时用于并行编码的线程池
+    private ExecutorService encodeExecutor;
+    
+    // IO模式下限制计算阶段的并发数，CPU模式下为null
+    private Semaphore cpuPermits;
+    
+    // 单文件超时监控，未配置超时时为null
+    private ScheduledExecutorService watchdog;
+    
+    // 批量处理期间的输出写入器，按配置的同步策略写出
+    private OutputWriter outputWriter;
+    
+    // 内容去重：内容键到第一份输出的映射，输出就位后完成，处理失败时为null；未开启去重时映射为null
+    private Map<String, CompletableFuture<Map<Rendition, File>>> producedOutputs;
+    
+    // 批量处理期间打开的EXIF日期索引，未配置或保留元数据时为null
+    private ExifDateIndex exifIndex;
+    
+    // 多节点协调：输入根目录用于计算相对路径，未配置租约目录时租约为null
+    private File inputRoot;
+    private WorkLeases leases;
+    
+    // 批量取消
+    private volatile boolean cancelled = false;
+    private volatile Deque<ImageJob> pendingJobs;
+    private volatile List<CompletableFuture<Boolean>> batchResults;
+    private final CountDownLatch finished = new CountDownLatch(1);
+    
+    // 本处理器是否已经写过处理日志，之后的批次追加而不覆盖
+    private boolean journalStarted = false;
+    
+    // 是否已经检查过租约目录中遗留的完成标记，只在第一个批次检查
+    private boolean leasesChecked = false;
+    
     // 处理统计
     private int totalFiles = 0;
     private int processedFiles = 0;
     private int successfulFiles = 0;
     private int failedFiles = 0;
+    private int timedOutFiles = 0;
+    private int skippedFiles = 0;
+    private final AtomicInteger duplicateFiles = new AtomicInteger();
     
     /**
      * 构造函数
@@ -58,6 +131,70 @@ public class FileProcessor {
      * @return 处理结果
      */
     public ProcessResult processPath(String inputPath) {
+        try {
+            return scanAndProcess(inputPath);
+        } finally {
+            finished.countDown();
+        }
+    }
+    
+    /**
+     * 处理一组已知的图片文件，不扫描目录
+     * 
+     * 可以多次调用（例如监视模式下每次处理新到达的文件），统计信息在多次调用间累计。
+     * 
+     * @param imageFiles 图片文件列表
+     * @return 本批的处理结果
+     */
+    public ProcessResult processFiles(List<File> imageFiles) {
+        if (imageFiles.isEmpty()) {
+            return new ProcessResult(true, "没有待处理的文件");
+        }
+        
+        if (outputDir != null && !outputDir.exists() && !outputDir.mkdirs()) {
+            logger.error("无法创建输出目录: {}", outputDir.getAbsolutePath());
+            return new ProcessResult(false, "无法创建输出目录");
+        }
+        
+        List<File> selected = selectShard(imageFiles);
+        if (selected.isEmpty()) {
+            return new ProcessResult(true, "没有属于本分片的文件");
+        }
+        
+        totalFiles += selected.size();
+        return processBatch(createJobs(selected));
+    }
+    
+    /**
+     * 设置输入根目录，分片和租约按文件相对于该目录的路径计算
+     * 
+     * 扫描输入路径时自动设置；直接调用 {@link #processFiles(List)} 时 (监视模式) 应设置为监视的目录，
+     * 否则按绝对路径计算，不同挂载点的节点无法协调。
+     * 
+     * @param inputRoot 输入根目录
+     */
+    public void setInputRoot(File inputRoot) {
+        this.inputRoot = inputRoot;
+    }
+    
+    /**
+     * 设置跨批次复用的线程池
+     * 
+     * 设置后批次不再自行创建工作、编码和超时监控线程池，结束时也不关闭它们。
+     * 
+     * @param sharedExecutors 共享线程池，为null时每个批次自行创建
+     */
+    public void setSharedExecutors(ProcessorExecutors sharedExecutors) {
+        this.sharedExecutors = sharedExecutors;
+    }
+    
+    /**
+     * 扫描输入路径并批量处理
+     * 
+     * @param inputPath 输入路径
+     * @return 处理结果
+     */
+    private ProcessResult scanAndProcess(String inputPath) {
         File inputFile = new File(inputPath);
         
         if (!inputFile.exists()) {
@@ -67,6 +204,10 @@ public class FileProcessor {
         
         List<File> imageFiles = new ArrayList<>();
         
+        if (inputFile.isFile() && ArchiveProcessor.isArchive(inputFile)) {
+            return processArchive(inputFile);
+        }
+        
         if (inputFile.isFile()) {
             if (WatermarkEngine.isSupportedImageFormat(inputFile)) {
                 imageFiles.add(inputFile);
@@ -83,6 +224,17 @@ public class FileProcessor {
             return new ProcessResult(false, "未找到支持的图片文件");
         }
         
+        inputRoot = inputFile;
+        int foundFiles = imageFiles.size();
+        imageFiles = selectShard(imageFiles);
+        if (imageFiles.size() < foundFiles) {
+            logger.info("分片 {}/{}: 共找到 {} 个图片文件，本节点处理 {} 个", config.getShardIndex(),
+                    config.getShardCount(), foundFiles, imageFiles.size());
+        }
+        if (imageFiles.isEmpty()) {
+            return new ProcessResult(true, "没有属于本分片的文件");
+        }
+        
         totalFiles = imageFiles.size();
         logger.info("找到 {} 个图片文件待处理", totalFiles);
         
@@ -93,55 +245,335 @@ public class FileProcessor {
         }
         
         // 批量处理文件
-        return processBatch(imageFiles);
+        return processBatch(createJobs(imageFiles));
     }
     
     /**
-     * 批量处理图片文件
+     * 处理压缩包，输出为同格式的压缩包 (如 photos_watermarked.zip)
+     * 
+     * @param archive 输入压缩包
+     * @return 处理结果
+     */
+    private ProcessResult processArchive(File archive) {
+        File targetDir = outputDir != null ? outputDir : archive.getAbsoluteFile().getParentFile();
+        File target = new File(targetDir, ArchiveProcessor.outputName(archive));
+        logger.info("处理压缩包: {} -> {}", archive.getName(), target.getAbsolutePath());
+        
+        long startTime = System.currentTimeMillis();
+        ArchiveProcessor archiveProcessor = new ArchiveProcessor(this, config.getArchiveOrder());
+        boolean completed;
+        try {
+            completed = archiveProcessor.process(archive, target);
+        } catch (IOException e) {
+            logger.error("处理压缩包失败: {}", archive.getName(), e);
+            return new ProcessResult(false, "处理压缩包失败: " + e.getMessage());
+        } finally {
+            totalFiles = archiveProcessor.getImageEntries();
+            successfulFiles = archiveProcessor.getSuccessfulEntries();
+            failedFiles = archiveProcessor.getFailedEntries();
+            processedFiles = successfulFiles + failedFiles;
+        }
+        
+        long duration = System.currentTimeMillis() - startTime;
+        String message = String.format("%s - 总计: %d, 成功: %d, 失败: %d, 耗时: %d ms",
+                                     completed ? "处理完成" : "处理已取消",
+                                     totalFiles, successfulFiles, failedFiles, duration);
+        if (archiveProcessor.getCopiedEntries() > 0) {
+            message += String.format(" (另复制非图片条目: %d)", archiveProcessor.getCopiedEntries());
+        }
+        logger.info(message);
+        
+        return new ProcessResult(completed && failedFiles == 0, message);
+    }
+    
+    /**
+     * 按分片筛选文件
+     * 
+     * 配置了租约目录时不筛选，所有节点都可以领取任意文件，由租约保证每个文件只处理一次。
+     * 
+     * @param imageFiles 扫描到的文件
+     * @return 属于本节点的文件，保持原有顺序
+     */
+    private List<File> selectShard(List<File> imageFiles) {
+        if (config.getShardCount() <= 1 || config.getLeaseDirectory() != null) {
+            return imageFiles;
+        }
+        
+        List<File> selected = new ArrayList<>();
+        for (File imageFile : imageFiles) {
+            if (isOwnShard(imageFile)) {
+                selected.add(imageFile);
+            }
+        }
+        return selected;
+    }
+    
+    private boolean isOwnShard(File imageFile) {
+        return WorkPartition.shardOf(WorkPartition.relativePath(inputRoot, imageFile), config.getShardCount())
+                == config.getShardIndex();
+    }
+    
+    /**
+     * 为扫描到的文件创建任务并估算处理开销
+     * 
+     * 先进先出策略不需要估算开销，不访问文件。
      * 
      * @param imageFiles 图片文件列表
+     * @return 任务列表，按扫描顺序排列
+     */
+    private List<ImageJob> createJobs(List<File> imageFiles) {
+        boolean estimate = config.getSchedulingPolicy() != SchedulingPolicy.FIFO;
+        List<ImageJob> jobs = new ArrayList<>(imageFiles.size());
+        for (int i = 0; i < imageFiles.size(); i++) {
+            File imageFile = imageFiles.get(i);
+            long cost = estimate ? JobSizeEstimator.estimate(imageFile, config.isScheduleByDimensions()) : 0;
+            jobs.add(new ImageJob(imageFile, i, cost));
+        }
+        return jobs;
+    }
+    
+    /**
+     * 取消批量处理
+     * 
+     * 不再领取新文件，尚未开始的文件记为跳过；进行中的文件继续完成。可以从任意线程调用。
+     */
+    public void cancel() {
+        if (cancelled) {
+            return;
+        }
+        cancelled = true;
+        logger.warn("批量处理已取消，等待进行中的文件完成");
+        skipPendingJobs();
+    }
+    
+    public boolean isCancelled() {
+        return cancelled;
+    }
+    
+    /**
+     * 等待处理结束（包括日志和统计的写出）
+     * 
+     * @param timeout 最长等待时间
+     * @param unit 时间单位
+     * @return 是否在等待时间内结束
+     * @throws InterruptedException 等待时被中断
+     */
+    public boolean awaitCompletion(long timeout, TimeUnit unit) throws InterruptedException {
+        return finished.await(timeout, unit);
+    }
+    
+    /**
+     * 将队列中尚未开始的任务标记为跳过
+     */
+    private void skipPendingJobs() {
+        Deque<ImageJob> queue = pendingJobs;
+        List<CompletableFuture<Boolean>> results = batchResults;
+        if (queue == null || results == null) {
+            return;
+        }
+        
+        ImageJob job;
+        while ((job = queue.pollFirst()) != null) {
+            results.get(job.getIndex()).cancel(false);
+        }
+    }
+    
+    /**
+     * 批量处理图片文件
+     * 
+     * 任务按调度策略排序后放入共享队列，由工作线程依次领取。大文件优先时，
+     * 小任务通道的工作线程从队尾领取最小的任务，使小文件不必排在所有大文件之后。
+     * 
+     * @param jobs 任务列表，按扫描顺序排列
      * @return 处理结果
      */
-    private ProcessResult processBatch(List<File> imageFiles) {
+    private ProcessResult processBatch(List<ImageJob> jobs) {
         long startTime = System.currentTimeMillis();
         
-        // 使用线程池进行并行处理
-        int threadCount = Math.min(Runtime.getRuntime().availableProcessors(), imageFiles.size());
-        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        // 统计信息在多次调用间累计，本批的结果按开始前后的差值计算
+        int successfulBefore = successfulFiles;
+        int failedBefore = failedFiles;
+        int timedOutBefore = timedOutFiles;
+        int skippedBefore = skippedFiles;
+        int duplicateBefore = duplicateFiles.get();
+        
+        SchedulingPolicy policy = config.getSchedulingPolicy();
+        List<ImageJob> ordered = new ArrayList<>(jobs);
+        policy.sort(ordered);
+        
+        // 租约协调时先处理本分片的文件，本分片处理完后再领取其他节点尚未开始的文件
+        if (config.getLeaseDirectory() != null) {
+            try {
+                File leaseDirectory = config.getLeaseRun() != null
+                        ? new File(config.getLeaseDirectory(), config.getLeaseRun())
+                        : new File(config.getLeaseDirectory());
+                leases = new WorkLeases(leaseDirectory, config.getLeaseSeconds());
+                warnCompletedLeases(leaseDirectory);
+            } catch (IOException e) {
+                logger.error("无法创建租约目录: {}", config.getLeaseDirectory(), e);
+                return new ProcessResult(false, "无法创建租约目录");
+            }
+            if (config.getShardCount() > 1) {
+                List<ImageJob> others = new ArrayList<>();
+                ordered.removeIf(job -> !isOwnShard(job.getFile()) && others.add(job));
+                ordered.addAll(others);
+            }
+        }
+        Deque<ImageJob> queue = new ConcurrentLinkedDeque<>(ordered);
+        
+        List<CompletableFuture<Boolean>> results = new ArrayList<>(jobs.size());
+        for (int i = 0; i < jobs.size(); i++) {
+            results.add(new CompletableFuture<>());
+        }
+        long[] elapsedMillis = new long[jobs.size()];
+        
+        batchResults = results;
+        pendingJobs = queue;
+        if (cancelled) {
+            skipPendingJobs();
+        }
+        
+        ProcessorExecutors shared = sharedExecutors;
+        int workerCount;
+        ExecutorService executor;
+        if (config.getExecutionMode() == ExecutionMode.IO) {
+            cpuPermits = new Semaphore(Runtime.getRuntime().availableProcessors());
+            workerCount = Math.min(config.getIoConcurrency(), jobs.size());
+            executor = shared != null ? shared.workers(ExecutionMode.IO) : createIoExecutor();
+        } else {
+            // 工作线程数即并发数；使用可增长的线程池，使超时后接替的工作线程可以立即启动
+            workerCount = Math.min(Runtime.getRuntime().availableProcessors(), jobs.size());
+            executor = shared != null ? shared.workers(ExecutionMode.CPU)
+                    : Executors.newCachedThreadPool(daemonThreadFactory("watermark-worker"));
+        }
+        
+        // 共享线程池不能关闭，改为记录本批次的工作线程，结束时等待它们退出
+        Phaser activeWorkers = new Phaser(1);
+        Executor workers = task -> {
+            activeWorkers.register();
+            try {
+                executor.execute(() -> {
+                    try {
+                        task.run();
+                    } finally {
+                        activeWorkers.arriveAndDeregister();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                activeWorkers.arriveAndDeregister();
+                throw e;
+            }
+        };
+        
+        boolean smallJobLane = config.isSmallJobLane() && policy == SchedulingPolicy.LARGEST_FIRST
+                && workerCount > 1;
+        logger.debug("调度策略: {}，工作线程: {}，小任务通道: {}", policy, workerCount, smallJobLane);
+        
+        if (!config.getRenditions().isEmpty()) {
+            encodeExecutor = shared != null ? shared.encoder()
+                    : Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+                            daemonThreadFactory("watermark-encode"));
+        }
+        
+        if (config.getFileTimeoutSeconds() > 0) {
+            watchdog = shared != null ? shared.watchdog()
+                    : Executors.newSingleThreadScheduledExecutor(daemonThreadFactory("watermark-watchdog"));
+        }
+        outputWriter = new OutputWriter(config.getFsyncPolicy(), config.getGroupCommitMillis());
+        if (config.getDuplicateMode() != DuplicateMode.OFF) {
+            producedOutputs = new ConcurrentHashMap<>();
+        }
+        if (config.getExifIndexFile() != null && !config.isPreserveMetadata()) {
+            exifIndex = new ExifDateIndex(new File(config.getExifIndexFile()));
+        }
         
-        List<Future<Boolean>> futures = new ArrayList<>();
+        BatchJournal journal = openJournal();
+        boolean interrupted = false;
         
         try {
-            for (File imageFile : imageFiles) {
-                Future<Boolean> future = executor.submit(() -> processImageFile(imageFile));
-                futures.add(future);
+            for (int i = 0; i < workerCount; i++) {
+                boolean fromTail = smallJobLane && i == workerCount - 1;
+                workers.execute(() -> runWorker(queue, fromTail, results, elapsedMillis, workers));
             }
             
-            // 等待所有任务完成
-            for (Future<Boolean> future : futures) {
+            // 按扫描顺序等待所有任务完成
+            for (int i = 0; i < results.size(); i++) {
+                File imageFile = jobs.get(i).getFile();
+                BatchJournal.Status status;
+                String detail = null;
                 try {
-                    boolean success = future.get();
-                    processedFiles++;
-                    if (success) {
-                        successfulFiles++;
+                    status = results.get(i).get() ? BatchJournal.Status.OK : BatchJournal.Status.FAILED;
+                } catch (CancellationException e) {
+                    status = BatchJournal.Status.SKIPPED;
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    detail = cause.getMessage();
+                    if (cause instanceof TimeoutException) {
+                        status = BatchJournal.Status.TIMEOUT;
+                        elapsedMillis[i] = config.getFileTimeoutSeconds() * 1000L;
+                        logger.error("处理文件超时: {}", imageFile.getName());
                     } else {
-                        failedFiles++;
+                        status = BatchJournal.Status.FAILED;
+                        logger.error("处理任务时出错", cause);
                     }
-                } catch (Exception e) {
-                    logger.error("处理任务时出错", e);
-                    processedFiles++;
-                    failedFiles++;
+                } catch (InterruptedException e) {
+                    // 等待被中断时取消批次，并继续等待进行中的文件
+                    interrupted = true;
+                    cancel();
+                    i--;
+                    continue;
                 }
+                
+                countResult(status);
+                recordJournal(journal, imageFile, status, elapsedMillis[i], detail);
             }
             
         } finally {
-            executor.shutdown();
-            try {
-                if (!executor.awaitTermination(60, TimeUnit.SECONDS)) {
+            closeJournal(journal);
+            outputWriter.close();
+            outputWriter = null;
+            producedOutputs = null;
+            if (exifIndex != null) {
+                exifIndex.close();
+                exifIndex = null;
+            }
+            
+            // 超时的工作线程可能仍卡在解码器中，它们是守护线程，不再等待
+            boolean timedOut = timedOutFiles > timedOutBefore;
+            if (shared != null) {
+                if (!timedOut) {
+                    awaitWorkers(activeWorkers);
+                }
+                encodeExecutor = null;
+                watchdog = null;
+            } else {
+                if (timedOut) {
                     executor.shutdownNow();
+                } else {
+                    shutdownExecutor(executor);
                 }
-            } catch (InterruptedException e) {
-                executor.shutdownNow();
+                if (encodeExecutor != null) {
+                    if (timedOut) {
+                        encodeExecutor.shutdownNow();
+                    } else {
+                        shutdownExecutor(encodeExecutor);
+                    }
+                    encodeExecutor = null;
+                }
+                if (watchdog != null) {
+                    watchdog.shutdownNow();
+                    watchdog = null;
+                }
+            }
+            cpuPermits = null;
+            if (leases != null) {
+                leases.close();
+                leases = null;
+            }
+            pendingJobs = null;
+            batchResults = null;
+            
+            if (interrupted) {
                 Thread.currentThread().interrupt();
             }
         }
@@ -149,65 +581,703 @@ public class FileProcessor {
         long endTime = System.currentTimeMillis();
         long duration = endTime - startTime;
         
-        String message = String.format("处理完成 - 总计: %d, 成功: %d, 失败: %d, 耗时: %d ms", 
-                                     totalFiles, successfulFiles, failedFiles, duration);
+        int batchFailed = failedFiles - failedBefore;
+        int batchTimedOut = timedOutFiles - timedOutBefore;
+        int batchSkipped = skippedFiles - skippedBefore;
+        int batchDuplicates = duplicateFiles.get() - duplicateBefore;
+        String message = String.format("%s - 总计: %d, 成功: %d, 失败: %d, 耗时: %d ms",
+                                     cancelled ? "处理已取消" : "处理完成",
+                                     jobs.size(), successfulFiles - successfulBefore, batchFailed, duration);
+        if (batchTimedOut > 0 || batchSkipped > 0) {
+            message += String.format(" (其中超时: %d, 跳过: %d)", batchTimedOut, batchSkipped);
+        }
+        if (batchDuplicates > 0) {
+            message += String.format(" (内容重复直接复用输出: %d)", batchDuplicates);
+        }
         
         logger.info(message);
         
-        return new ProcessResult(failedFiles == 0, message);
+        return new ProcessResult(batchFailed == 0 && !cancelled, message);
+    }
+    
+    /**
+     * 工作线程：从队列领取任务直到队列为空或批次被取消
+     * 
+     * 配置了单文件超时时，由监控线程在超时后将任务记为超时、中断本线程，
+     * 并启动新的工作线程接替；本线程之后返回时直接退出。
+     * 
+     * @param queue 任务队列
+     * @param fromTail 是否从队尾领取（小任务通道）
+     * @param results 按扫描顺序排列的任务结果
+     * @param elapsedMillis 按扫描顺序记录的处理耗时
+     * @param executor 工作线程池
+     */
+    private void runWorker(Deque<ImageJob> queue, boolean fromTail, List<CompletableFuture<Boolean>> results,
+                           long[] elapsedMillis, Executor executor) {
+        ImageJob job;
+        while (!cancelled && (job = fromTail ? queue.pollLast() : queue.pollFirst()) != null) {
+            CompletableFuture<Boolean> result = results.get(job.getIndex());
+            String leaseKey = null;
+            if (leases != null) {
+                leaseKey = WorkPartition.relativePath(inputRoot, job.getFile());
+                try {
+                    if (!leases.tryAcquire(leaseKey)) {
+                        // 已完成或正由其他节点处理
+                        result.cancel(false);
+                        continue;
+                    }
+                } catch (IOException e) {
+                    result.completeExceptionally(e);
+                    continue;
+                }
+            }
+            
+            long start = System.nanoTime();
+            long deadline = 0;
+            ScheduledFuture<?> timer = null;
+            
+            if (watchdog != null) {
+                long timeoutNanos = TimeUnit.SECONDS.toNanos(config.getFileTimeoutSeconds());
+                deadline = start + timeoutNanos;
+                Thread worker = Thread.currentThread();
+                String fileName = job.getFile().getName();
+                timer = watchdog.schedule(() -> {
+                    if (result.completeExceptionally(new TimeoutException(
+                            "处理超过 " + config.getFileTimeoutSeconds() + " 秒"))) {
+                        logger.warn("文件 {} 处理超时，中断并启动新的工作线程", fileName);
+                        try {
+                            executor.execute(() -> runWorker(queue, fromTail, results, elapsedMillis, executor));
+                        } catch (RejectedExecutionException e) {
+                            logger.debug("批次已结束，不再启动新的工作线程");
+                        }
+                        worker.interrupt();
+                    }
+                }, timeoutNanos, TimeUnit.NANOSECONDS);
+            }
+            
+            boolean completed;
+            boolean success = false;
+            List<CompletableFuture<Void>> commits = new ArrayList<>();
+            try {
+                success = processImageFile(job.getFile(), deadline, commits);
+                elapsedMillis[job.getIndex()] = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                CompletableFuture<Void> committed =
+                        CompletableFuture.allOf(commits.toArray(new CompletableFuture<?>[0]));
+                if (success && !committed.isDone()) {
+                    // 分组提交：输出同步到磁盘后才算完成，工作线程不等待，继续处理下一个文件
+                    completed = !result.isDone();
+                    completeAfterCommit(committed, result, leaseKey);
+                    leaseKey = null;
+                } else {
+                    completed = success ? completeCommitted(committed, result) : result.complete(false);
+                }
+            } catch (Throwable t) {
+                completed = result.completeExceptionally(t);
+            } finally {
+                if (timer != null) {
+                    timer.cancel(false);
+                }
+            }
+            
+            if (leaseKey != null) {
+                finishLease(leaseKey, success && completed);
+            }
+            
+            if (!completed) {
+                // 已超时并由新的工作线程接替
+                Thread.interrupted();
+                return;
+            }
+        }
+    }
+    
+    /**
+     * 输出提交后完成任务结果和租约
+     * 
+     * 先结束租约再完成结果，批次等待所有结果后不会再有租约更新。
+     * 
+     * @param committed 所有输出的提交结果
+     * @param result 任务结果
+     * @param leaseKey 文件租约，没有租约时为null
+     */
+    private void completeAfterCommit(CompletableFuture<Void> committed, CompletableFuture<Boolean> result,
+                                     String leaseKey) {
+        committed.whenComplete((ignored, error) -> {
+            if (leaseKey != null) {
+                finishLease(leaseKey, error == null && !result.isDone());
+            }
+            completeCommitted(committed, result);
+        });
+    }
+    
+    /**
+     * 按已结束的提交结果完成任务结果
+     * 
+     * @return 任务结果是否由本次调用完成
+     */
+    private static boolean completeCommitted(CompletableFuture<Void> committed, CompletableFuture<Boolean> result) {
+        try {
+            committed.join();
+            return result.complete(true);
+        } catch (CompletionException e) {
+            return result.completeExceptionally(e.getCause());
+        }
+    }
+    
+    /**
+     * 结束文件租约：成功时留下完成标记，失败时释放，其他节点之后可以重试
+     * 
+     * @param leaseKey 文件的相对路径
+     * @param success 是否处理成功
+     */
+    private void finishLease(String leaseKey, boolean success) {
+        WorkLeases current = leases;
+        if (current == null) {
+            return;
+        }
+        try {
+            if (success) {
+                current.complete(leaseKey);
+            } else {
+                current.release(leaseKey);
+            }
+        } catch (IOException e) {
+            logger.warn("更新租约失败: {}", leaseKey, e);
+        }
+    }
+    
+    /**
+     * 统计单个文件的处理结果
+     * 
+     * @param status 处理状态
+     */
+    private void countResult(BatchJournal.Status status) {
+        switch (status) {
+            case OK:
+                processedFiles++;
+                successfulFiles++;
+                break;
+            case TIMEOUT:
+                timedOutFiles++;
+                processedFiles++;
+                failedFiles++;
+                break;
+            case SKIPPED:
+                skippedFiles++;
+                break;
+            default:
+                processedFiles++;
+                failedFiles++;
+                break;
+        }
+    }
+    
+    /**
+     * 租约目录中已有完成标记时提示：这些文件会被跳过，可能来自之前的运行
+     * 
+     * @param leaseDirectory 租约目录
+     */
+    private void warnCompletedLeases(File leaseDirectory) {
+        if (leasesChecked) {
+            return;
+        }
+        leasesChecked = true;
+        try {
+            long completed = leases.countCompleted();
+            if (completed > 0) {
+                logger.warn("租约目录 {} 中已有 {} 个文件的完成标记，这些文件将被跳过；"
+                        + "重新处理同一批文件时请换用新的运行标识 (--lease-run) 或清空租约目录",
+                        leaseDirectory.getAbsolutePath(), completed);
+            }
+        } catch (IOException e) {
+            logger.debug("无法检查租约目录: {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * 打开批量处理日志
+     * 
+     * @return 日志，未配置或无法创建时返回null
+     */
+    private BatchJournal openJournal() {
+        String journalPath = config.getJournalFile();
+        if (journalPath == null || journalPath.trim().isEmpty()) {
+            return null;
+        }
+        
+        try {
+            // 同一个处理器的后续批次 (监视模式) 追加到本次运行的日志之后
+            BatchJournal journal = new BatchJournal(new File(journalPath), journalStarted);
+            journalStarted = true;
+            return journal;
+        } catch (IOException e) {
+            logger.warn("无法创建处理日志: {}", journalPath, e);
+            return null;
+        }
+    }
+    
+    private void recordJournal(BatchJournal journal, File imageFile, BatchJournal.Status status,
+                               long elapsedMillis, String detail) {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.record(imageFile, status, elapsedMillis, detail);
+        } catch (IOException e) {
+            logger.warn("写入处理日志失败: {}", imageFile.getName(), e);
+        }
+    }
+    
+    private void closeJournal(BatchJournal journal) {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.close();
+        } catch (IOException e) {
+            logger.warn("关闭处理日志失败", e);
+        }
+    }
+    
+    /**
+     * 创建IO模式的执行器
+     * 
+     * 运行在JDK 21及以上时每个工作线程都是虚拟线程，否则退回到平台线程。
+     * 
+     * @return 执行器
+     */
+    static ExecutorService createIoExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            logger.debug("IO模式使用虚拟线程");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            logger.debug("当前JDK不支持虚拟线程，IO模式使用平台线程");
+            return Executors.newCachedThreadPool(daemonThreadFactory("watermark-io"));
+        }
+    }
+    
+    /**
+     * 创建守护线程工厂，卡住的线程不会阻止JVM退出
+     * 
+     * @param namePrefix 线程名前缀
+     * @return 线程工厂
+     */
+    static ThreadFactory daemonThreadFactory(String namePrefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, namePrefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+    
+    /**
+     * 关闭线程池并等待任务结束
+     * 
+     * @param executor 线程池
+     */
+    private void shutdownExecutor(ExecutorService executor) {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(60, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * 等待本批次在共享线程池中的工作线程退出
+     * 
+     * @param activeWorkers 本批次的工作线程
+     */
+    private void awaitWorkers(Phaser activeWorkers) {
+        try {
+            activeWorkers.awaitAdvanceInterruptibly(activeWorkers.arrive(), 60, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            logger.warn("等待工作线程退出超时");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
     
     /**
      * 处理单个图片文件
      * 
      * @param imageFile 图片文件
+     * @param deadline 处理期限（System.nanoTime），0表示不限制
+     * @param commits 输出文件的提交结果，分组提交时在返回后才完成
      * @return 是否处理成功
      */
-    private boolean processImageFile(File imageFile) {
+    private boolean processImageFile(File imageFile, long deadline, List<CompletableFuture<Void>> commits)
+            throws TimeoutException {
+        ByteBuffer mapped = null;
+        CompletableFuture<Map<Rendition, File>> produced = null;
         try {
+            ExifDateIndex.Key indexKey = indexKey(imageFile);
+            ByteBuffer source;
+            if (shouldMap(imageFile)) {
+                mapped = mapSource(imageFile);
+                source = mapped;
+            } else {
+                source = ByteBuffer.wrap(readSource(imageFile));
+            }
+            checkDeadline(deadline);
+            
+            // 只读取一次元数据，同时用于水印文本、方向感知和输出元数据保留
+            SourceMetadata metadata = readMetadata(imageFile, source, indexKey);
+            
             // 确定水印文本
-            String watermarkText = determineWatermarkText(imageFile);
+            String watermarkText = determineWatermarkText(imageFile.getName(), metadata);
             
             if (watermarkText == null || watermarkText.trim().isEmpty()) {
                 logger.warn("无法确定水印文本，跳过文件: {}", imageFile.getName());
                 return false;
             }
             
-            // 生成输出文件路径
-            File outputFile = generateOutputFile(imageFile);
-            
-            // 添加水印
-            boolean success = WatermarkEngine.addWatermark(imageFile, outputFile, watermarkText, config);
+            // 内容相同的文件已经处理过 (或正在处理) 时等待其输出就位，然后直接复用
+            Map<String, CompletableFuture<Map<Rendition, File>>> dedup = producedOutputs;
+            if (dedup != null) {
+                CompletableFuture<Map<Rendition, File>> claim = new CompletableFuture<>();
+                CompletableFuture<Map<Rendition, File>> original =
+                        dedup.putIfAbsent(contentKey(imageFile, source, watermarkText), claim);
+                if (original == null) {
+                    produced = claim;
+                } else if (copyDuplicate(imageFile, awaitOriginal(original, deadline), commits)) {
+                    return true;
+                }
+            }
             
-            if (success) {
-                logger.debug("成功处理文件: {} -> {}", imageFile.getName(), outputFile.getName());
-            } else {
+            checkDeadline(deadline);
+            Map<Rendition, byte[]> outputs = render(imageFile.getName(), source, watermarkText, metadata);
+            if (outputs == null) {
                 logger.error("处理文件失败: {}", imageFile.getName());
+                return false;
             }
             
-            return success;
+            Map<Rendition, File> outputFiles = new LinkedHashMap<>();
+            for (Map.Entry<Rendition, byte[]> output : outputs.entrySet()) {
+                checkDeadline(deadline);
+                File outputFile = generateOutputFile(imageFile, output.getKey());
+                commits.add(writeOutput(outputFile, output.getValue()));
+                outputFiles.put(output.getKey(), outputFile);
+            }
+            
+            if (produced != null) {
+                CompletableFuture<Map<Rendition, File>> claim = produced;
+                CompletableFuture.allOf(commits.toArray(new CompletableFuture<?>[0]))
+                        .whenComplete((ignored, error) -> claim.complete(error == null ? outputFiles : null));
+                produced = null;
+            }
+            
+            logger.debug("成功处理文件: {} -> {} 个输出", imageFile.getName(), outputs.size());
+            return true;
             
+        } catch (TimeoutException e) {
+            throw e;
+        } catch (InterruptedException | ClosedByInterruptException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("处理文件时被中断: {}", imageFile.getName());
+            return false;
         } catch (Exception e) {
             logger.error("处理文件时发生异常: {}", imageFile.getName(), e);
             return false;
+        } catch (InternalError e) {
+            // 映射期间文件被截断时访问映射抛出 InternalError
+            logger.error("读取映射的文件时出错: {}", imageFile.getName(), e);
+            return false;
+        } finally {
+            // 解码和元数据读取都已结束，立即取消映射，不等待垃圾回收
+            DirectBuffers.free(mapped);
+            
+            // 处理失败时通知等待的重复文件自行处理
+            if (produced != null) {
+                produced.complete(null);
+            }
         }
     }
     
     /**
-     * 确定水印文本
+     * 在处理期限内等待内容相同的文件的输出就位
+     * 
+     * 等到期限仍未就位时返回null，由调用方自行处理该文件 (期限已到时随后的期限检查会使其超时)，
+     * 不会因为等待另一个文件而无限阻塞。
+     * 
+     * @param original 内容相同的文件的输出
+     * @param deadline 处理期限（System.nanoTime），0表示不限制
+     * @return 输出文件，对方处理失败或等待超时时返回null
+     */
+    static Map<Rendition, File> awaitOriginal(CompletableFuture<Map<Rendition, File>> original, long deadline)
+            throws InterruptedException, ExecutionException {
+        if (deadline == 0) {
+            return original.get();
+        }
+        try {
+            return original.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            logger.debug("等待内容相同的文件输出超时，自行处理");
+            return null;
+        }
+    }
+    
+    /**
+     * 计算去重用的内容键
+     * 
+     * 除内容哈希和大小外还包括输出格式 (由扩展名决定) 和水印文本，内容相同但输出不同的文件不会误用输出。
+     * 
+     * @param imageFile 源文件
+     * @param source 源文件内容
+     * @param watermarkText 水印文本
+     * @return 内容键
+     */
+    private static String contentKey(File imageFile, ByteBuffer source, String watermarkText) {
+        return Long.toHexString(ContentHash.xxh64(source)) + ':' + source.remaining() + ':'
+                + WatermarkEngine.getImageFormat(imageFile.getName()) + ':' + watermarkText;
+    }
+    
+    /**
+     * 用内容相同的文件的输出生成本文件的输出
+     * 
+     * @param imageFile 源文件
+     * @param original 内容相同的文件的输出，该文件处理失败时为null
+     * @param commits 输出文件的提交结果
+     * @return 是否已复用输出，false表示需要自行处理
+     * @throws IOException 复制失败时抛出
+     */
+    private boolean copyDuplicate(File imageFile, Map<Rendition, File> original,
+                                  List<CompletableFuture<Void>> commits) throws IOException {
+        if (original == null) {
+            return false;
+        }
+        
+        boolean hardLink = config.getDuplicateMode() == DuplicateMode.LINK;
+        for (Map.Entry<Rendition, File> output : original.entrySet()) {
+            File outputFile = generateOutputFile(imageFile, output.getKey());
+            if (!outputFile.getAbsoluteFile().equals(output.getValue().getAbsoluteFile())) {
+                commits.add(outputWriter.copy(output.getValue(), outputFile, hardLink));
+            }
+        }
+        duplicateFiles.incrementAndGet();
+        logger.debug("文件 {} 与已处理的文件内容相同，复用输出", imageFile.getName());
+        return true;
+    }
+    
+    /**
+     * 判断源文件是否使用内存映射读取
+     * 
+     * @param imageFile 源文件
+     * @return 是否使用内存映射
+     */
+    private boolean shouldMap(File imageFile) {
+        switch (config.getInputReadMode()) {
+            case MMAP:
+                return imageFile.length() >= ImageFiles.MIN_MAPPED_SIZE;
+            case AUTO:
+                return ImageFiles.isMappable(imageFile);
+            default:
+                return false;
+        }
+    }
+    
+    /**
+     * 检查是否已超过单文件处理期限
+     * 
+     * @param deadline 期限（System.nanoTime），0表示不限制
+     * @throws TimeoutException 已超过期限时抛出
+     */
+    private void checkDeadline(long deadline) throws TimeoutException {
+        if (deadline != 0 && System.nanoTime() - deadline > 0) {
+            throw new TimeoutException("处理超过 " + config.getFileTimeoutSeconds() + " 秒");
+        }
+    }
+    
+    /**
+     * 处理压缩包中的一个图片条目
+     * 
+     * 与处理文件相同的读取元数据、确定水印文本和渲染步骤，只是源数据来自压缩包。
+     * 
+     * @param entryName 条目名称（用于确定格式）
+     * @param source 条目内容
+     * @return 输出规格到编码数据的映射，未配置多规格输出时键为 {@link #SINGLE_OUTPUT}
+     * @throws IOException 无法确定水印文本、解码或编码失败时抛出
+     * @throws InterruptedException 等待计算许可时被中断
+     */
+    Map<Rendition, byte[]> processEntry(String entryName, byte[] source) throws IOException, InterruptedException {
+        ByteBuffer data = ByteBuffer.wrap(source);
+        SourceMetadata metadata = needsMetadata(new File(entryName))
+                ? ExifReader.readMetadata(data, entryName)
+                : null;
+        
+        String watermarkText = determineWatermarkText(entryName, metadata);
+        if (watermarkText == null || watermarkText.trim().isEmpty()) {
+            throw new IOException("无法确定水印文本");
+        }
+        
+        Map<Rendition, byte[]> outputs = render(entryName, data, watermarkText, metadata);
+        if (outputs == null) {
+            throw new IOException("无法解码图片");
+        }
+        return outputs;
+    }
+    
+    /**
+     * 在内存中解码、绘制水印并编码
+     * 
+     * IO模式下需要先取得计算许可，使同时进行的计算不超过CPU核数。
+     * 
+     * @param fileName 源文件名（用于确定格式）
+     * @param source 源文件内容，读入内存或映射的缓冲区，返回后不再访问
+     * @param watermarkText 水印文本
+     * @param metadata 源图片元数据，可以为null
+     * @return 输出规格到编码数据的映射，未配置多规格输出时键为 {@link #SINGLE_OUTPUT}，无法解码时返回null
+     * @throws IOException 解码或编码失败时抛出
+     * @throws InterruptedException 等待计算许可时被中断
+     */
+    private Map<Rendition, byte[]> render(String fileName, ByteBuffer source, String watermarkText,
+                                          SourceMetadata metadata) throws IOException, InterruptedException {
+        if (cpuPermits != null) {
+            cpuPermits.acquire();
+        }
+        try (ImageInputStream input = new ByteBufferImageInputStream(source)) {
+            String format = WatermarkEngine.getImageFormat(fileName);
+            
+            // 配置了多规格输出时，一次解码生成所有规格；不在批量处理中时在当前线程依次编码
+            if (!config.getRenditions().isEmpty()) {
+                Executor executor = encodeExecutor != null ? encodeExecutor : Runnable::run;
+                return WatermarkEngine.watermarkRenditions(input, format, config.getRenditions(), watermarkText,
+                        config, executor, metadata);
+            }
+            
+            byte[] encoded = WatermarkEngine.watermark(input, format, watermarkText, config, metadata);
+            if (encoded == null) {
+                return null;
+            }
+            Map<Rendition, byte[]> outputs = new LinkedHashMap<>();
+            outputs.put(SINGLE_OUTPUT, encoded);
+            return outputs;
+        } finally {
+            if (cpuPermits != null) {
+                cpuPermits.release();
+            }
+        }
+    }
+    
+    /**
+     * 读取源文件的全部内容
+     * 
+     * 线程被中断（超时）时读取立即以 ClosedByInterruptException 结束。
+     * 
+     * @param imageFile 源文件
+     * @return 文件内容
+     * @throws IOException 读取失败时抛出
+     */
+    byte[] readSource(File imageFile) throws IOException {
+        return ImageFiles.read(imageFile);
+    }
+    
+    /**
+     * 把源文件映射到内存
+     * 
+     * @param imageFile 源文件
+     * @return 映射的缓冲区，处理结束后取消映射
+     * @throws IOException 映射失败时抛出
+     */
+    ByteBuffer mapSource(File imageFile) throws IOException {
+        return ImageFiles.map(imageFile);
+    }
+    
+    /**
+     * 写出输出文件
+     * 
+     * @param outputFile 输出文件
+     * @param data 编码后的图片数据
+     * @return 输出文件就位后完成的结果，分组提交时在后台同步后完成
+     * @throws IOException 写出失败时抛出
+     */
+    CompletableFuture<Void> writeOutput(File outputFile, byte[] data) throws IOException {
+        OutputWriter writer = outputWriter;
+        if (writer == null) {
+            ImageFiles.write(outputFile, data);
+            return CompletableFuture.completedFuture(null);
+        }
+        return writer.write(outputFile, data);
+    }
+    
+    /**
+     * 判断处理该文件是否需要读取元数据
+     * 
+     * 方向标记只在JPEG中常见，仅为方向感知时不读取其他格式的元数据。
+     * 
+     * @param imageFile 图片文件
+     * @return 是否需要读取元数据
+     */
+    private boolean needsMetadata(File imageFile) {
+        return useExifDate || config.isPreserveMetadata()
+                || (config.isOrientationAware() && ExifReader.isJpegFile(imageFile));
+    }
+    
+    /**
+     * 在读取源文件之前取得EXIF日期索引的键
+     * 
+     * @param imageFile 图片文件
+     * @return 索引键，未使用索引、不需要元数据或无法读取文件属性时为null
+     */
+    private ExifDateIndex.Key indexKey(File imageFile) {
+        if (exifIndex == null || !needsMetadata(imageFile)) {
+            return null;
+        }
+        try {
+            return ExifDateIndex.keyOf(imageFile);
+        } catch (IOException e) {
+            logger.debug("无法读取文件属性，不使用EXIF日期索引: {}", imageFile.getName());
+            return null;
+        }
+    }
+    
+    /**
+     * 读取源图片元数据，索引中有该文件的记录时直接使用，否则解析后记入索引
      * 
      * @param imageFile 图片文件
+     * @param source 源文件内容
+     * @param indexKey EXIF日期索引的键，为null时不使用索引
+     * @return 源图片元数据，不需要元数据时为null
+     */
+    private SourceMetadata readMetadata(File imageFile, ByteBuffer source, ExifDateIndex.Key indexKey) {
+        if (!needsMetadata(imageFile)) {
+            return null;
+        }
+        ExifDateIndex index = exifIndex;
+        if (indexKey == null || index == null) {
+            return ExifReader.readMetadata(source, imageFile.getName());
+        }
+        
+        SourceMetadata metadata = index.lookup(indexKey);
+        if (metadata == null) {
+            metadata = ExifReader.readMetadata(source, imageFile.getName());
+            index.record(indexKey, metadata);
+        }
+        return metadata;
+    }
+    
+    /**
+     * 确定水印文本
+     * 
+     * @param fileName 图片文件名
+     * @param metadata 已读取的源图片元数据
      * @return 水印文本
      */
-    private String determineWatermarkText(File imageFile) {
+    private String determineWatermarkText(String fileName, SourceMetadata metadata) {
         String result = null;
         
         if (useExifDate) {
-            String exifDate = ExifReader.extractDateTaken(imageFile);
+            String exifDate = metadata != null ? metadata.getDateTaken() : null;
             if (exifDate != null && !exifDate.trim().isEmpty()) {
                 result = exifDate;
             } else {
-                logger.warn("文件 {} 无法提取EXIF日期，使用自定义水印", imageFile.getName());
+                logger.warn("文件 {} 无法提取EXIF日期，使用自定义水印", fileName);
                 result = customWatermark;
             }
         } else {
@@ -242,6 +1312,100 @@ public class FileProcessor {
         return new File(targetDir, outputFileName);
     }
     
+    /**
+     * 生成指定规格的输出文件路径
+     * 
+     * @param inputFile 输入文件
+     * @param rendition 输出规格
+     * @return 输出文件
+     */
+    private File generateOutputFile(File inputFile, Rendition rendition) {
+        String fileName = inputFile.getName();
+        String baseName = fileName.substring(0, fileName.lastIndexOf('.'));
+        String extension = rendition.getFormat() != null
+                ? "." + rendition.getFormat().toLowerCase()
+                : fileName.substring(fileName.lastIndexOf('.'));
+        
+        String suffix = rendition.getSuffix() != null ? rendition.getSuffix() : "_" + rendition.getName();
+        String outputFileName = baseName + suffix + extension;
+        
+        File targetDir = (outputDir != null) ? outputDir : inputFile.getParentFile();
+        
+        return new File(targetDir, outputFileName);
+    }
+    
+    /**
+     * 判断文件是否是本处理器生成的输出
+     * 
+     * 输出目录下的文件，以及带有水印后缀或输出规格后缀的文件都视为输出，
+     * 避免未指定输出目录时把输出文件当作新的源文件再次处理。
+     * 
+     * @param file 文件
+     * @return 是否是输出文件
+     */
+    boolean isGeneratedOutput(File file) {
+        if (isInOutputDirectory(file)) {
+            return true;
+        }
+        
+        String fileName = file.getName();
+        int dot = fileName.lastIndexOf('.');
+        String baseName = dot > 0 ? fileName.substring(0, dot) : fileName;
+        if (baseName.endsWith("_watermarked")) {
+            return true;
+        }
+        for (Rendition rendition : config.getRenditions()) {
+            String suffix = rendition.getSuffix() != null ? rendition.getSuffix() : "_" + rendition.getName();
+            if (baseName.endsWith(suffix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * 判断文件或目录是否位于指定的输出目录中
+     * 
+     * @param file 文件或目录
+     * @return 是否位于输出目录中，未指定输出目录时返回false
+     */
+    boolean isInOutputDirectory(File file) {
+        if (outputDir == null) {
+            return false;
+        }
+        File target = outputDir.getAbsoluteFile();
+        for (File current = file.getAbsoluteFile(); current != null; current = current.getParentFile()) {
+            if (current.equals(target)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * 判断源文件的输出是否都已存在且不早于源文件
+     * 
+     * @param imageFile 源文件
+     * @return 是否无需重新处理
+     */
+    boolean isUpToDate(File imageFile) {
+        long sourceModified = imageFile.lastModified();
+        List<File> outputs = new ArrayList<>();
+        if (config.getRenditions().isEmpty()) {
+            outputs.add(generateOutputFile(imageFile));
+        } else {
+            for (Rendition rendition : config.getRenditions()) {
+                outputs.add(generateOutputFile(imageFile, rendition));
+            }
+        }
+        for (File output : outputs) {
+            if (!output.isFile() || output.lastModified() < sourceModified) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
     /**
      * 递归收集图片文件
      * 
@@ -270,8 +1434,8 @@ public class FileProcessor {
      * @return 统计信息字符串
      */
     public String getStatistics() {
-        return String.format("处理统计 - 总计: %d, 已处理: %d, 成功: %d, 失败: %d", 
-                           totalFiles, processedFiles, successfulFiles, failedFiles);
+        return String.format("处理统计 - 总计: %d, 已处理: %d, 成功: %d, 失败: %d, 超时: %d, 跳过: %d", 
+                           totalFiles, processedFiles, successfulFiles, failedFiles, timedOutFiles, skippedFiles);
     }
     
     /**
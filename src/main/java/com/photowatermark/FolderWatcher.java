@@ -0,0 +1,418 @@
+package com.photowatermark;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 监视文件夹，处理新到达和被修改的图片
+ * 
+ * 基于 {@link WatchService} 接收目录变化，不再定时重新扫描整个目录树。
+ * 文件的大小和修改时间在稳定等待时间内不再变化后才交给处理器，避免处理尚未写完的文件；
+ * 已处理文件的大小和修改时间被记录下来，重复的修改事件不会导致重复处理。
+ * 事件溢出时对目录树做一次增量扫描，只补处理有变化或没有输出的文件。
+ * 
+ * 没有待稳定的文件时监视线程阻塞等待事件，空闲时不占用CPU。
+ * 
+ * @author PhotoWatermark Team
+ * @version 1.0.0
+ */
+public class FolderWatcher implements Closeable {
+    
+    private static final Logger logger = LoggerFactory.getLogger(FolderWatcher.class);
+    
+    // 检查待稳定文件的最短间隔（毫秒）
+    private static final long MIN_POLL_MILLIS = 50;
+    
+    private final FileProcessor processor;
+    private final Path root;
+    private final boolean recursive;
+    private final long settleNanos;
+    private final long pollMillis;
+    private final WatchService watchService;
+    
+    private final Map<WatchKey, Path> watchedDirs = new HashMap<>();
+    private final Set<Path> registeredDirs = new HashSet<>();
+    
+    // 等待写入稳定的文件
+    private final Map<Path, FileState> pending = new LinkedHashMap<>();
+    
+    // 已处理文件在处理时的状态
+    private final Map<Path, FileState> processed = new HashMap<>();
+    
+    private volatile boolean running = true;
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    private int batches = 0;
+    
+    // 是否没有待稳定的文件、阻塞等待新事件
+    private volatile boolean idle = false;
+    
+    /**
+     * 构造函数
+     * 
+     * @param processor 文件处理器
+     * @param directory 监视的目录
+     * @param recursive 是否监视子目录
+     * @param settleMillis 文件大小和修改时间保持不变多久后视为写入完成（毫秒）
+     * @throws IOException 无法创建监视服务时抛出
+     */
+    public FolderWatcher(FileProcessor processor, File directory, boolean recursive, long settleMillis)
+            throws IOException {
+        if (!directory.isDirectory()) {
+            throw new IllegalArgumentException("监视路径不是目录: " + directory);
+        }
+        this.processor = processor;
+        this.root = directory.toPath().toAbsolutePath().normalize();
+        processor.setInputRoot(root.toFile());
+        this.recursive = recursive;
+        this.settleNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, settleMillis));
+        this.pollMillis = Math.max(MIN_POLL_MILLIS, settleMillis / 2);
+        this.watchService = root.getFileSystem().newWatchService();
+    }
+    
+    /**
+     * 在当前线程运行监视循环，直到 {@link #close()} 被调用或处理器被取消
+     * 
+     * 启动时先扫描一次目录，处理没有输出或输出早于源文件的图片。
+     */
+    public void run() {
+        try {
+            registerTree(root);
+            rescan(root);
+            logger.info("开始监视目录: {} ({} 个目录)", root, registeredDirs.size());
+            
+            while (running && !processor.isCancelled()) {
+                idle = pending.isEmpty();
+                WatchKey key = idle
+                        ? watchService.take()
+                        : watchService.poll(pollMillis, TimeUnit.MILLISECONDS);
+                idle = false;
+                
+                boolean overflow = false;
+                while (key != null) {
+                    overflow |= handleEvents(key);
+                    key = watchService.poll();
+                }
+                if (overflow) {
+                    logger.warn("监视事件溢出，增量扫描目录: {}", root);
+                    rescan(root);
+                }
+                
+                processSettledFiles();
+            }
+        } catch (ClosedWatchServiceException e) {
+            logger.debug("监视服务已关闭");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("监视线程被中断");
+        } catch (IOException e) {
+            logger.error("监视目录失败: {}", root, e);
+        } finally {
+            closeWatchService();
+            logger.info("停止监视目录: {}，共处理 {} 批", root, batches);
+            stopped.countDown();
+        }
+    }
+    
+    /**
+     * 停止监视，可以从任意线程调用
+     * 
+     * 正在进行的一批处理不受影响，需要同时停止时再调用处理器的 {@link FileProcessor#cancel()}。
+     */
+    @Override
+    public void close() {
+        running = false;
+        closeWatchService();
+    }
+    
+    /**
+     * 等待监视循环结束
+     * 
+     * @param timeout 最长等待时间
+     * @param unit 时间单位
+     * @return 是否在等待时间内结束
+     * @throws InterruptedException 等待时被中断
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return stopped.await(timeout, unit);
+    }
+    
+    /**
+     * 是否没有待稳定的文件、正在阻塞等待新事件
+     * 
+     * @return 是否空闲
+     */
+    boolean isIdle() {
+        return idle;
+    }
+    
+    /**
+     * 处理一个目录的事件
+     * 
+     * @param key 监视键
+     * @return 是否发生了事件溢出
+     * @throws IOException 注册新目录失败时抛出
+     */
+    private boolean handleEvents(WatchKey key) throws IOException {
+        Path dir = watchedDirs.get(key);
+        boolean overflow = false;
+        
+        for (WatchEvent<?> event : key.pollEvents()) {
+            WatchEvent.Kind<?> kind = event.kind();
+            if (kind == StandardWatchEventKinds.OVERFLOW) {
+                overflow = true;
+                continue;
+            }
+            if (dir == null) {
+                continue;
+            }
+            
+            Path child = dir.resolve((Path) event.context());
+            if (kind == StandardWatchEventKinds.ENTRY_DELETE) {
+                pending.remove(child);
+                processed.remove(child);
+            } else if (Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+                // 新目录可能在注册前就已经有文件，注册后扫描一次
+                if (recursive && kind == StandardWatchEventKinds.ENTRY_CREATE) {
+                    registerTree(child);
+                    rescan(child);
+                }
+            } else {
+                track(child);
+            }
+        }
+        
+        if (!key.reset()) {
+            watchedDirs.remove(key);
+            registeredDirs.remove(dir);
+        }
+        return overflow;
+    }
+    
+    /**
+     * 注册目录（递归时包括所有子目录）
+     * 
+     * @param dir 目录
+     * @throws IOException 注册失败时抛出
+     */
+    private void registerTree(Path dir) throws IOException {
+        if (registeredDirs.contains(dir) || processor.isInOutputDirectory(dir.toFile())) {
+            return;
+        }
+        
+        WatchKey key = dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        watchedDirs.put(key, dir);
+        registeredDirs.add(dir);
+        
+        if (!recursive) {
+            return;
+        }
+        try (DirectoryStream<Path> children = Files.newDirectoryStream(dir)) {
+            for (Path child : children) {
+                if (Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+                    registerTree(child);
+                }
+            }
+        } catch (NoSuchFileException e) {
+            logger.debug("目录已被删除: {}", dir);
+        }
+    }
+    
+    /**
+     * 增量扫描目录，将有变化或尚未生成输出的图片加入待处理
+     * 
+     * @param dir 目录
+     * @throws IOException 注册新目录失败时抛出
+     */
+    private void rescan(Path dir) throws IOException {
+        if (processor.isInOutputDirectory(dir.toFile())) {
+            return;
+        }
+        
+        List<Path> subdirs = new ArrayList<>();
+        try (DirectoryStream<Path> children = Files.newDirectoryStream(dir)) {
+            for (Path child : children) {
+                if (Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+                    subdirs.add(child);
+                    continue;
+                }
+                if (!isCandidate(child) || pending.containsKey(child)) {
+                    continue;
+                }
+                
+                FileState current = FileState.of(child);
+                if (current == null) {
+                    continue;
+                }
+                FileState previous = processed.get(child);
+                if (previous != null && previous.sameAs(current)) {
+                    continue;
+                }
+                if (previous == null && processor.isUpToDate(child.toFile())) {
+                    processed.put(child, current);
+                    continue;
+                }
+                track(child);
+            }
+        } catch (NoSuchFileException e) {
+            logger.debug("目录已被删除: {}", dir);
+            return;
+        }
+        
+        if (recursive) {
+            for (Path subdir : subdirs) {
+                registerTree(subdir);
+                rescan(subdir);
+            }
+        }
+    }
+    
+    /**
+     * 开始跟踪一个文件的写入状态
+     * 
+     * @param file 文件
+     */
+    private void track(Path file) {
+        if (pending.containsKey(file) || !isCandidate(file)) {
+            return;
+        }
+        FileState state = FileState.of(file);
+        if (state != null) {
+            pending.put(file, state);
+        }
+    }
+    
+    /**
+     * 是否是需要处理的源图片
+     * 
+     * @param file 文件
+     * @return 是否是支持格式的图片且不是处理器生成的输出
+     */
+    private boolean isCandidate(Path file) {
+        File imageFile = file.toFile();
+        return WatermarkEngine.isSupportedImageFormat(imageFile) && !processor.isGeneratedOutput(imageFile);
+    }
+    
+    /**
+     * 将写入已稳定的文件交给处理器
+     */
+    private void processSettledFiles() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        
+        long now = System.nanoTime();
+        List<File> ready = new ArrayList<>();
+        Map<Path, FileState> readyStates = new HashMap<>();
+        
+        Iterator<Map.Entry<Path, FileState>> iterator = pending.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Path, FileState> entry = iterator.next();
+            Path file = entry.getKey();
+            FileState tracked = entry.getValue();
+            FileState current = FileState.of(file);
+            
+            if (current == null) {
+                iterator.remove();
+            } else if (!tracked.sameAs(current)) {
+                // 仍在写入，重新计时
+                entry.setValue(current);
+            } else if (now - tracked.observedAt >= settleNanos) {
+                // 稳定的空文件 (占位文件) 不再跟踪，之后写入内容时会重新收到修改事件
+                iterator.remove();
+                if (current.size == 0) {
+                    continue;
+                }
+                FileState previous = processed.get(file);
+                if (previous == null || !previous.sameAs(current)) {
+                    ready.add(file.toFile());
+                    readyStates.put(file, current);
+                }
+            }
+        }
+        
+        if (ready.isEmpty()) {
+            return;
+        }
+        
+        batches++;
+        logger.info("处理 {} 个新文件", ready.size());
+        FileProcessor.ProcessResult result = processor.processFiles(ready);
+        if (!result.isSuccess()) {
+            logger.warn(result.getMessage());
+        }
+        
+        // 失败的文件同样记录，文件再次被修改时重试
+        processed.putAll(readyStates);
+    }
+    
+    private void closeWatchService() {
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            logger.debug("关闭监视服务失败", e);
+        }
+    }
+    
+    /**
+     * 文件在某一时刻的大小和修改时间
+     */
+    private static class FileState {
+        private final long size;
+        private final long modified;
+        private final long observedAt;
+        
+        private FileState(long size, long modified, long observedAt) {
+            this.size = size;
+            this.modified = modified;
+            this.observedAt = observedAt;
+        }
+        
+        /**
+         * 读取文件当前状态
+         * 
+         * @param file 文件
+         * @return 文件状态，文件不存在或不是普通文件时返回null
+         */
+        static FileState of(Path file) {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                if (!attributes.isRegularFile()) {
+                    return null;
+                }
+                return new FileState(attributes.size(), attributes.lastModifiedTime().toMillis(), System.nanoTime());
+            } catch (IOException e) {
+                return null;
+            }
+        }
+        
+        boolean sameAs(FileState other) {
+            return size == other.size && modified == other.modified;
+        }
+    }
+}
\ No newline at end of file
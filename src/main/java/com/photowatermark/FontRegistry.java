@@ -0,0 +1,113 @@
+package com.photowatermark;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.Font;
+import java.awt.FontFormatException;
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 字体注册表
+ * 
+ * 每种字体 (名称 + 样式) 只创建一次，之后按需要的字号派生，在所有工作线程间共享。
+ * 字体名称可以是已安装的字体族名，也可以是 TTF/OTF/TTC 字体文件的路径。
+ * 请求的字体不可用时 Java 会静默替换为默认字体，注册表在第一次加载时记录警告；
+ * 字体文件无法读取时改用 SansSerif。
+ * 
+ * @author PhotoWatermark Team
+ * @version 1.0.0
+ */
+public class FontRegistry {
+    
+    private static final Logger logger = LoggerFactory.getLogger(FontRegistry.class);
+    
+    // 缓存的字体数量上限，按请求指定字体 (清单、服务接口) 时防止无限增长
+    private static final int MAX_CACHED_FONTS = 64;
+    
+    private static final Map<String, Font> fonts = new ConcurrentHashMap<>();
+    
+    /**
+     * 获取字体
+     * 
+     * @param fontName 字体名称或字体文件路径
+     * @param style 字体样式 (Font.PLAIN、Font.BOLD、Font.ITALIC 的组合)
+     * @param size 字号
+     * @return 字体
+     */
+    public static Font getFont(String fontName, int style, float size) {
+        String key = fontName + '|' + style;
+        Font base = fonts.get(key);
+        if (base == null) {
+            base = loadFont(fontName, style);
+            if (fonts.size() < MAX_CACHED_FONTS) {
+                Font existing = fonts.putIfAbsent(key, base);
+                if (existing != null) {
+                    base = existing;
+                }
+            }
+        }
+        return base.deriveFont(size);
+    }
+    
+    /**
+     * 预先加载配置的字体，第一张图片不用再等待字体加载
+     * 
+     * @param config 水印配置
+     * @return 加载的字体
+     */
+    public static Font preload(WatermarkConfig config) {
+        return getFont(config.getFontName(), config.getFontStyle(), Math.max(config.getFontSize(), 1));
+    }
+    
+    /**
+     * 判断字体名称是否指向字体文件
+     * 
+     * @param fontName 字体名称
+     * @return 是否为字体文件路径
+     */
+    static boolean isFontFile(String fontName) {
+        String lower = fontName.toLowerCase(Locale.ROOT);
+        return lower.endsWith(".ttf") || lower.endsWith(".otf") || lower.endsWith(".ttc");
+    }
+    
+    private static Font loadFont(String fontName, int style) {
+        if (fontName == null || fontName.trim().isEmpty()) {
+            return new Font(Font.SANS_SERIF, style, 1);
+        }
+        
+        if (isFontFile(fontName)) {
+            File file = new File(fontName);
+            try {
+                Font font = Font.createFont(Font.TRUETYPE_FONT, file).deriveFont(style, 1f);
+                logger.info("从文件加载字体: {} ({})", file.getAbsolutePath(), font.getFamily(Locale.ROOT));
+                return font;
+            } catch (FontFormatException | IOException e) {
+                logger.warn("无法加载字体文件 {}: {}，使用 {}", fontName, e.getMessage(), Font.SANS_SERIF);
+                return new Font(Font.SANS_SERIF, style, 1);
+            }
+        }
+        
+        Font font = new Font(fontName, style, 1);
+        if (!matches(font, fontName)) {
+            logger.warn("字体 {} 不可用，实际使用 {}", fontName, font.getFamily(Locale.ROOT));
+        } else {
+            logger.debug("加载字体: {}", fontName);
+        }
+        return font;
+    }
+    
+    /**
+     * 判断创建的字体是否就是请求的字体，而不是替换后的默认字体
+     */
+    private static boolean matches(Font font, String fontName) {
+        return fontName.equalsIgnoreCase(font.getFamily(Locale.ROOT))
+                || fontName.equalsIgnoreCase(font.getFamily())
+                || fontName.equalsIgnoreCase(font.getFontName(Locale.ROOT))
+                || fontName.equalsIgnoreCase(font.getPSName());
+    }
+}
\ No newline at end of file
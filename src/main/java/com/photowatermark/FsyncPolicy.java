@@ -0,0 +1,34 @@
+package com.photowatermark;
+
+/**
+ * 输出文件同步到磁盘的策略枚举
+ * 
+ * 所有策略都先写临时文件再原子重命名，进程崩溃不会留下不完整的输出；
+ * 策略只决定断电或系统崩溃后已报告成功的输出是否一定完整。
+ * 
+ * @author PhotoWatermark Team
+ * @version 1.0.0
+ */
+public enum FsyncPolicy {
+    /** 不主动同步，由操作系统决定何时写回磁盘 */
+    NONE("不同步"),
+    /** 每个文件在重命名前同步，写出线程等待磁盘完成 */
+    PER_FILE("逐个同步"),
+    /** 后台线程分组并行同步，一组文件同步完成后再重命名，写出线程不等待 */
+    GROUP("分组提交");
+    
+    private final String description;
+    
+    FsyncPolicy(String description) {
+        this.description = description;
+    }
+    
+    public String getDescription() {
+        return description;
+    }
+    
+    @Override
+    public String toString() {
+        return description;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,202 @@
+package com.photowatermark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * 可增长的池化字节缓冲区
+ * 
+ * 编码结果直接写入内部数组，调用方可以通过 {@link #asByteBuffer()} 或 {@link #writeTo(OutputStream)}
+ * 取用数据而不复制。用完后调用 {@link #release()} 将数组归还缓冲池，供后续图片复用。
+ * 
+ * @author PhotoWatermark Team
+ * @version 1.0.0
+ */
+public class ImageBuffer extends OutputStream {
+    
+    private static final int INITIAL_CAPACITY = 64 * 1024;
+    
+    // 超过该大小的数组不归还缓冲池，避免少数超大图片长期占用内存
+    private static final int MAX_POOLED_CAPACITY = 32 * 1024 * 1024;
+    
+    private static final BlockingQueue<byte[]> POOL =
+            new ArrayBlockingQueue<>(Math.max(4, Runtime.getRuntime().availableProcessors() * 2));
+    
+    private byte[] buffer;
+    private int count;
+    
+    private ImageBuffer(byte[] buffer) {
+        this.buffer = buffer;
+    }
+    
+    /**
+     * 从缓冲池取得一个空缓冲区
+     * 
+     * @return 缓冲区
+     */
+    public static ImageBuffer acquire() {
+        byte[] pooled = POOL.poll();
+        return new ImageBuffer(pooled != null ? pooled : new byte[INITIAL_CAPACITY]);
+    }
+    
+    /**
+     * 从缓冲池取得缓冲区并读入输入流的全部内容
+     * 
+     * @param input 输入流，由调用方关闭
+     * @return 包含全部内容的缓冲区
+     * @throws IOException 读取失败时抛出
+     */
+    public static ImageBuffer readFully(InputStream input) throws IOException {
+        ImageBuffer result = acquire();
+        try {
+            int read;
+            while (true) {
+                result.ensureCapacity(result.count + 8192);
+                read = input.read(result.buffer, result.count, result.buffer.length - result.count);
+                if (read < 0) {
+                    return result;
+                }
+                result.count += read;
+            }
+        } catch (IOException | RuntimeException e) {
+            result.release();
+            throw e;
+        }
+    }
+    
+    @Override
+    public void write(int b) {
+        ensureCapacity(count + 1);
+        buffer[count++] = (byte) b;
+    }
+    
+    @Override
+    public void write(byte[] b, int off, int len) {
+        if (off < 0 || len < 0 || off + len > b.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        ensureCapacity(count + len);
+        System.arraycopy(b, off, buffer, count, len);
+        count += len;
+    }
+    
+    /**
+     * 在指定位置写入数据，超出当前长度的部分追加到末尾
+     * 
+     * @param position 写入位置
+     * @param b 数据
+     * @param off 数据起始偏移
+     * @param len 数据长度
+     */
+    void write(int position, byte[] b, int off, int len) {
+        ensureCapacity(position + len);
+        System.arraycopy(b, off, buffer, position, len);
+        count = Math.max(count, position + len);
+    }
+    
+    /**
+     * 读取指定位置的数据
+     * 
+     * @param position 读取位置
+     * @param b 目标数组
+     * @param off 目标起始偏移
+     * @param len 最多读取的长度
+     * @return 实际读取的长度，位置超出当前长度时返回-1
+     */
+    int read(int position, byte[] b, int off, int len) {
+        if (position >= count) {
+            return -1;
+        }
+        int n = Math.min(len, count - position);
+        System.arraycopy(buffer, position, b, off, n);
+        return n;
+    }
+    
+    private void ensureCapacity(int capacity) {
+        if (buffer == null) {
+            throw new IllegalStateException("缓冲区已归还");
+        }
+        if (capacity > buffer.length) {
+            int newCapacity = Math.max(capacity, buffer.length * 2);
+            if (newCapacity < 0) {
+                newCapacity = Integer.MAX_VALUE - 8;
+            }
+            buffer = Arrays.copyOf(buffer, newCapacity);
+        }
+    }
+    
+    public int size() {
+        return count;
+    }
+    
+    /**
+     * 获取内部数组，有效数据为前 {@link #size()} 个字节
+     * 
+     * @return 内部数组
+     */
+    byte[] array() {
+        return buffer;
+    }
+    
+    /**
+     * 清空内容，保留已分配的数组
+     */
+    public void reset() {
+        count = 0;
+    }
+    
+    /**
+     * 获取内容的只读视图，不复制数据
+     * 
+     * 视图在调用 {@link #release()} 或继续写入后失效。
+     * 
+     * @return 只读视图
+     */
+    public ByteBuffer asByteBuffer() {
+        return ByteBuffer.wrap(buffer, 0, count).asReadOnlyBuffer();
+    }
+    
+    /**
+     * 复制内容
+     * 
+     * @return 内容的副本
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, count);
+    }
+    
+    /**
+     * 将内容写出到输出流
+     * 
+     * @param output 输出流
+     * @throws IOException 写出失败时抛出
+     */
+    public void writeTo(OutputStream output) throws IOException {
+        output.write(buffer, 0, count);
+    }
+    
+    /**
+     * 将数组归还缓冲池，之后不能再使用该缓冲区
+     */
+    public void release() {
+        byte[] released = buffer;
+        buffer = null;
+        count = 0;
+        if (released != null && released.length <= MAX_POOLED_CAPACITY) {
+            POOL.offer(released);
+        }
+    }
+    
+    /**
+     * 关闭输出流不会归还数组，需要显式调用 {@link #release()}
+     */
+    @Override
+    public void close() {
+        // 保留内容供调用方读取
+    }
+}
\ No newline at end of file
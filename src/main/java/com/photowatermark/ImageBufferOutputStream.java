@@ -0,0 +1,74 @@
+package com.photowatermark;
+
+import javax.imageio.stream.ImageOutputStreamImpl;
+import java.io.IOException;
+
+/**
+ * 直接写入 {@link ImageBuffer} 的图片输出流
+ * 
+ * ImageIO 的 MemoryCacheImageOutputStream 先写入自己的分块缓存再复制到目标流，
+ * 这里编码器直接写入缓冲区数组，支持编码器回写已写出的位置。
+ * 
+ * @author PhotoWatermark Team
+ * @version 1.0.0
+ */
+public class ImageBufferOutputStream extends ImageOutputStreamImpl {
+    
+    private final ImageBuffer buffer;
+    private final int origin;
+    
+    /**
+     * 构造函数，从缓冲区当前末尾开始写入
+     * 
+     * @param buffer 目标缓冲区
+     */
+    public ImageBufferOutputStream(ImageBuffer buffer) {
+        this.buffer = buffer;
+        this.origin = buffer.size();
+    }
+    
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+    
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        checkClosed();
+        flushBits();
+        buffer.write(origin + (int) streamPos, b, off, len);
+        streamPos += len;
+    }
+    
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+    }
+    
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        checkClosed();
+        bitOffset = 0;
+        int n = buffer.read(origin + (int) streamPos, b, off, len);
+        if (n > 0) {
+            streamPos += n;
+        }
+        return n;
+    }
+    
+    @Override
+    public long length() {
+        return buffer.size() - origin;
+    }
+    
+    @Override
+    public boolean isCached() {
+        return true;
+    }
+    
+    @Override
+    public boolean isCachedMemory() {
+        return true;
+    }
+}
\ No newline at end of file
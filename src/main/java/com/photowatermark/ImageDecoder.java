@@ -0,0 +1,285 @@
+package com.photowatermark;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.imageio.IIOException;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * 图片解码器
+ * 
+ * 当输出尺寸远小于原图时，利用 ImageReadParam 的源子采样直接解码出接近目标尺寸的图片，
+ * 使解码耗时和内存占用随输出尺寸而不是原图尺寸增长。
+ * 
+ * 默认解码为不透明sRGB图片时（绝大多数JPEG），解码结果写入 {@link RasterPool} 的像素数组；
+ * 超过堆外阈值且按原始尺寸解码的图片写入 {@link OffHeapImage}。用完后由调用方调用 {@link DecodedImage#release()}。
+ * 
+ * @author PhotoWatermark Team
+ * @version 1.0.0
+ */
+public class ImageDecoder {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ImageDecoder.class);
+    
+    // 子采样后至少保留目标尺寸的倍数，留给后续逐级缩小做平滑，避免子采样产生明显锯齿
+    private static final int SUBSAMPLING_HEADROOM = 2;
+    
+    /**
+     * 解码图片文件
+     * 
+     * @param imageFile 图片文件
+     * @param targetLongEdge 目标长边像素，0表示按原始尺寸解码
+     * @return 解码结果，没有可用的解码器时返回null
+     * @throws IOException 读取或解码失败时抛出
+     */
+    public static DecodedImage decode(File imageFile, int targetLongEdge) throws IOException {
+        return decode(imageFile, targetLongEdge, 0);
+    }
+    
+    /**
+     * 解码图片文件，大图片解码到堆外
+     * 
+     * @param imageFile 图片文件
+     * @param targetLongEdge 目标长边像素，0表示按原始尺寸解码
+     * @param offHeapMinPixels 按原始尺寸解码且像素数不小于该值时解码到堆外，0表示不使用堆外内存
+     * @return 解码结果，没有可用的解码器时返回null
+     * @throws IOException 读取或解码失败时抛出
+     */
+    public static DecodedImage decode(File imageFile, int targetLongEdge, long offHeapMinPixels) throws IOException {
+        if (!imageFile.canRead()) {
+            throw new IIOException("Can't read input file!");
+        }
+        
+        try (ImageInputStream input = ImageIO.createImageInputStream(imageFile)) {
+            return decode(input, targetLongEdge, offHeapMinPixels);
+        }
+    }
+    
+    /**
+     * 从图片输入流解码
+     * 
+     * @param input 图片输入流
+     * @param targetLongEdge 目标长边像素，0表示按原始尺寸解码
+     * @return 解码结果，没有可用的解码器时返回null
+     * @throws IOException 读取或解码失败时抛出
+     */
+    public static DecodedImage decode(ImageInputStream input, int targetLongEdge) throws IOException {
+        return decode(input, targetLongEdge, 0);
+    }
+    
+    /**
+     * 从图片输入流解码，大图片解码到堆外
+     * 
+     * @param input 图片输入流
+     * @param targetLongEdge 目标长边像素，0表示按原始尺寸解码
+     * @param offHeapMinPixels 按原始尺寸解码且像素数不小于该值时解码到堆外，0表示不使用堆外内存
+     * @return 解码结果，没有可用的解码器时返回null
+     * @throws IOException 读取或解码失败时抛出
+     */
+    public static DecodedImage decode(ImageInputStream input, int targetLongEdge, long offHeapMinPixels)
+            throws IOException {
+        if (input == null) {
+            return null;
+        }
+        
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+        if (!readers.hasNext()) {
+            return null;
+        }
+        
+        ImageReader reader = readers.next();
+        try {
+            reader.setInput(input, true, true);
+            
+            int sourceWidth = reader.getWidth(0);
+            int sourceHeight = reader.getHeight(0);
+            int factor = subsamplingFactor(Math.max(sourceWidth, sourceHeight), targetLongEdge);
+            
+            ImageReadParam param = reader.getDefaultReadParam();
+            if (factor > 1) {
+                param.setSourceSubsampling(factor, factor, 0, 0);
+                logger.debug("子采样解码 {}x{}，采样因子: {}", sourceWidth, sourceHeight, factor);
+            }
+            
+            String formatName = reader.getFormatName().toLowerCase();
+            boolean fullSize = targetLongEdge <= 0 || targetLongEdge >= Math.max(sourceWidth, sourceHeight);
+            if (offHeapMinPixels > 0 && fullSize && (long) sourceWidth * sourceHeight >= offHeapMinPixels
+                    && isOpaqueSrgb(reader, BufferedImage.TYPE_3BYTE_BGR)) {
+                OffHeapImage offHeap = OffHeapImage.allocate(sourceWidth, sourceHeight);
+                try {
+                    param.setDestination(offHeap.getImage());
+                    reader.read(0, param);
+                } catch (IOException | RuntimeException e) {
+                    offHeap.release();
+                    throw e;
+                }
+                logger.debug("堆外解码 {}x{}", sourceWidth, sourceHeight);
+                return new DecodedImage(offHeap, formatName);
+            }
+            
+            BufferedImage destination = pooledDestination(reader, (sourceWidth + factor - 1) / factor,
+                    (sourceHeight + factor - 1) / factor);
+            if (destination != null) {
+                param.setDestination(destination);
+            }
+            
+            BufferedImage image = reader.read(0, param);
+            return new DecodedImage(image, sourceWidth, sourceHeight, factor, formatName);
+        } finally {
+            reader.dispose();
+        }
+    }
+    
+    /**
+     * 从缓冲池取得解码目标图片
+     * 
+     * 只在解码器默认输出不透明sRGB图片、并且默认类型可以池化时使用缓冲池，解码结果与不指定目标时相同；
+     * 带ICC配置文件、灰度或透明的图片仍由解码器自行创建图片。
+     * 
+     * @param reader 已设置输入的解码器
+     * @param width 解码结果宽度
+     * @param height 解码结果高度
+     * @return 目标图片，不适用缓冲池时返回null
+     * @throws IOException 读取图片信息失败时抛出
+     */
+    private static BufferedImage pooledDestination(ImageReader reader, int width, int height) throws IOException {
+        if ((long) width * height < RasterPool.MIN_POOLED_PIXELS) {
+            return null;
+        }
+        
+        Iterator<ImageTypeSpecifier> types = reader.getImageTypes(0);
+        if (types == null || !types.hasNext()) {
+            return null;
+        }
+        int imageType = types.next().getBufferedImageType();
+        if (!RasterPool.isPooledType(imageType) || !isOpaqueSrgb(reader, imageType)) {
+            return null;
+        }
+        return RasterPool.acquire(width, height, imageType);
+    }
+    
+    /**
+     * 判断解码器的默认输出是否为指定类型的不透明sRGB图片
+     * 
+     * @param reader 已设置输入的解码器
+     * @param imageType 图片类型
+     * @return 是否匹配
+     * @throws IOException 读取图片信息失败时抛出
+     */
+    private static boolean isOpaqueSrgb(ImageReader reader, int imageType) throws IOException {
+        Iterator<ImageTypeSpecifier> types = reader.getImageTypes(0);
+        if (types == null || !types.hasNext()) {
+            return false;
+        }
+        ImageTypeSpecifier type = types.next();
+        ColorModel colorModel = type.getColorModel();
+        return type.getBufferedImageType() == imageType && !colorModel.hasAlpha()
+                && colorModel.getColorSpace().isCS_sRGB();
+    }
+    
+    /**
+     * 计算子采样因子
+     * 
+     * 解码结果的长边不小于目标长边的 SUBSAMPLING_HEADROOM 倍。
+     * 
+     * @param sourceLongEdge 原图长边像素
+     * @param targetLongEdge 目标长边像素，0表示不缩小
+     * @return 子采样因子，1表示不进行子采样
+     */
+    static int subsamplingFactor(int sourceLongEdge, int targetLongEdge) {
+        if (targetLongEdge <= 0 || sourceLongEdge <= targetLongEdge) {
+            return 1;
+        }
+        return Math.max(1, sourceLongEdge / (targetLongEdge * SUBSAMPLING_HEADROOM));
+    }
+    
+    /**
+     * 解码结果
+     */
+    public static class DecodedImage {
+        private final BufferedImage image;
+        private final int sourceWidth;
+        private final int sourceHeight;
+        private final int subsampling;
+        private final String formatName;
+        private final OffHeapImage offHeap;
+        
+        public DecodedImage(BufferedImage image, int sourceWidth, int sourceHeight, int subsampling,
+                            String formatName) {
+            this.image = image;
+            this.sourceWidth = sourceWidth;
+            this.sourceHeight = sourceHeight;
+            this.subsampling = subsampling;
+            this.formatName = formatName;
+            this.offHeap = null;
+        }
+        
+        DecodedImage(OffHeapImage offHeap, String formatName) {
+            this.image = offHeap.getImage();
+            this.sourceWidth = offHeap.getWidth();
+            this.sourceHeight = offHeap.getHeight();
+            this.subsampling = 1;
+            this.formatName = formatName;
+            this.offHeap = offHeap;
+        }
+        
+        public BufferedImage getImage() {
+            return image;
+        }
+        
+        public int getSourceWidth() {
+            return sourceWidth;
+        }
+        
+        public int getSourceHeight() {
+            return sourceHeight;
+        }
+        
+        public int getSourceLongEdge() {
+            return Math.max(sourceWidth, sourceHeight);
+        }
+        
+        public int getSubsampling() {
+            return subsampling;
+        }
+        
+        /**
+         * 获取源图片格式
+         * 
+         * @return 解码器识别的格式名称（小写）
+         */
+        public String getFormatName() {
+            return formatName;
+        }
+        
+        /**
+         * 获取堆外图片
+         * 
+         * @return 解码到堆外时为堆外图片，否则为null
+         */
+        public OffHeapImage getOffHeap() {
+            return offHeap;
+        }
+        
+        /**
+         * 释放解码结果：堆外图片释放直接内存，堆内图片归还像素缓冲池
+         */
+        public void release() {
+            if (offHeap != null) {
+                offHeap.release();
+            } else {
+                RasterPool.release(image);
+            }
+        }
+    }
+}
\ No newline at end of file
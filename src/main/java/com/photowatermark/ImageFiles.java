@@ -0,0 +1,314 @@
+package com.photowatermark;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 图片文件读写工具
+ * 
+ * 批量处理和异步服务共用的读写阶段：源文件整体读入内存或映射到内存，编码结果一次写出。
+ * 输出先写入同目录下的临时文件，再原子地重命名为目标文件，写出失败或进程崩溃时不会留下不完整的输出。
+ * 
+ * @author PhotoWatermark Team
+ * @version 1.0.0
+ */
+public class ImageFiles {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ImageFiles.class);
+    
+    // 小于该大小的文件映射的开销 (建立映射、缺页) 超过复制，直接读入内存
+    static final long MIN_MAPPED_SIZE = 64 * 1024;
+    
+    // 目录数量上限，超过后不再缓存，防止遍历大量目录时无限增长
+    private static final int MAX_CACHED_DIRECTORIES = 4096;
+    
+    // 网络文件系统类型 (Linux 的 /proc/mounts、macOS 的 mount 输出中的名称)
+    private static final String[] NETWORK_FILE_SYSTEMS = {
+        "nfs", "cifs", "smb", "afp", "9p", "afs", "ceph", "glusterfs", "lustre", "davfs", "sshfs", "fuse."
+    };
+    
+    // 目录到是否为本地存储的缓存，查询文件存储在 Linux 上需要解析挂载表
+    private static final Map<Path, Boolean> localDirectories = new ConcurrentHashMap<>();
+    
+    /**
+     * 读取文件的全部内容
+     * 
+     * 通过 FileChannel 读取，线程被中断时读取立即以 ClosedByInterruptException 结束。
+     * 
+     * @param file 文件
+     * @return 文件内容
+     * @throws IOException 读取失败时抛出
+     */
+    public static byte[] read(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE - 8) {
+                throw new IOException("文件过大: " + file.getName());
+            }
+            
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // 读到文件末尾或缓冲区填满为止
+            }
+            return buffer.position() == buffer.capacity()
+                    ? buffer.array()
+                    : Arrays.copyOf(buffer.array(), buffer.position());
+        }
+    }
+    
+    /**
+     * 以只读方式把文件映射到内存
+     * 
+     * 映射建立后即关闭通道，映射在缓冲区释放前保持有效。解码和元数据读取直接访问页缓存，
+     * 不再复制到堆中。处理期间文件被其他进程截断时，访问映射会抛出 InternalError。
+     * 用完后可以通过 {@link DirectBuffers#free(ByteBuffer)} 立即取消映射。
+     * 
+     * @param file 文件
+     * @return 映射的缓冲区
+     * @throws IOException 打开或映射失败、文件超过2GB时抛出
+     */
+    public static MappedByteBuffer map(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("文件过大: " + file.getName());
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+    }
+    
+    /**
+     * 判断文件是否适合内存映射：位于本地文件系统且不小于 {@link #MIN_MAPPED_SIZE}
+     * 
+     * 网络文件系统上映射的每次缺页都是一次远程读取，且文件被其他客户端修改时可能读到不一致的数据，
+     * 因此只映射本地文件。无法确定文件系统类型时按网络文件系统处理。
+     * 
+     * @param file 文件
+     * @return 是否适合内存映射
+     */
+    public static boolean isMappable(File file) {
+        return file.length() >= MIN_MAPPED_SIZE && isLocalStorage(file);
+    }
+    
+    /**
+     * 判断文件是否位于本地文件系统，结果按所在目录缓存
+     * 
+     * @param file 文件
+     * @return 是否为本地存储
+     */
+    public static boolean isLocalStorage(File file) {
+        Path directory = file.getAbsoluteFile().toPath().getParent();
+        if (directory == null) {
+            return false;
+        }
+        Boolean local = localDirectories.get(directory);
+        if (local == null) {
+            local = detectLocalStorage(directory);
+            if (localDirectories.size() < MAX_CACHED_DIRECTORIES) {
+                localDirectories.put(directory, local);
+            }
+        }
+        return local;
+    }
+    
+    private static boolean detectLocalStorage(Path directory) {
+        try {
+            FileStore store = Files.getFileStore(directory);
+            boolean local = !isNetworkFileSystem(store.type());
+            logger.debug("目录 {} 的文件系统: {} ({})", directory, store.type(), local ? "本地" : "网络");
+            return local;
+        } catch (IOException | RuntimeException e) {
+            logger.debug("无法确定 {} 的文件系统类型: {}", directory, e.toString());
+            return false;
+        }
+    }
+    
+    /**
+     * 判断文件系统类型是否为网络文件系统
+     * 
+     * @param type 文件系统类型，如 ext4、nfs4、cifs
+     * @return 是否为网络文件系统
+     */
+    static boolean isNetworkFileSystem(String type) {
+        if (type == null) {
+            return true;
+        }
+        String lower = type.toLowerCase(Locale.ROOT);
+        for (String network : NETWORK_FILE_SYSTEMS) {
+            if (lower.startsWith(network)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * 写出文件，必要时创建父目录
+     * 
+     * 先写入临时文件再重命名为目标文件，已存在的目标文件被原子地替换，不会被其他进程看到写了一半的内容。
+     * 
+     * @param file 输出文件
+     * @param data 文件内容
+     * @throws IOException 写出失败时抛出
+     */
+    public static void write(File file, byte[] data) throws IOException {
+        write(file, ByteBuffer.wrap(data), false);
+    }
+    
+    /**
+     * 写出文件，必要时创建父目录
+     * 
+     * @param file 输出文件
+     * @param data 文件内容，从当前位置到上限，不改变缓冲区的位置
+     * @param force 是否在重命名前后把文件内容和目录项同步到磁盘
+     * @throws IOException 写出失败时抛出
+     */
+    public static void write(File file, ByteBuffer data, boolean force) throws IOException {
+        Path temp = writeTemp(file, data, force);
+        moveIntoPlace(temp, file);
+        if (force) {
+            syncDirectory(file.getAbsoluteFile().getParentFile().toPath());
+        }
+    }
+    
+    /**
+     * 把内容写入目标文件同目录下的临时文件，必要时创建目录
+     * 
+     * 临时文件以 "." 开头、以 ".tmp" 结尾，目录扫描不会把它当作图片。内容通过一次 FileChannel 写出，
+     * 写出失败时删除临时文件。
+     * 
+     * @param file 目标文件
+     * @param data 文件内容，从当前位置到上限，不改变缓冲区的位置
+     * @param force 是否把内容同步到磁盘
+     * @return 临时文件
+     * @throws IOException 创建目录或写出失败时抛出
+     */
+    static Path writeTemp(File file, ByteBuffer data, boolean force) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (!parent.exists() && !parent.mkdirs() && !parent.exists()) {
+            throw new IOException("无法创建输出目录: " + parent.getAbsolutePath());
+        }
+        
+        Path temp = tempPath(parent, file);
+        boolean written = false;
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.WRITE)) {
+            ByteBuffer remaining = data.duplicate();
+            while (remaining.hasRemaining()) {
+                channel.write(remaining);
+            }
+            if (force) {
+                channel.force(true);
+            }
+            written = true;
+        } finally {
+            if (!written) {
+                Files.deleteIfExists(temp);
+            }
+        }
+        return temp;
+    }
+    
+    /**
+     * 把已有文件复制或硬链接到目标文件同目录下的临时文件，必要时创建目录
+     * 
+     * 硬链接与源文件共享数据，之后源文件被原子替换时不受影响 (替换的是目录项而不是数据)。
+     * 
+     * @param source 源文件
+     * @param file 目标文件
+     * @param hardLink 是否优先使用硬链接，跨文件系统或文件系统不支持时改为复制
+     * @return 临时文件
+     * @throws IOException 创建目录或复制失败时抛出
+     */
+    static Path copyTemp(File source, File file, boolean hardLink) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (!parent.exists() && !parent.mkdirs() && !parent.exists()) {
+            throw new IOException("无法创建输出目录: " + parent.getAbsolutePath());
+        }
+        
+        Path temp = tempPath(parent, file);
+        if (hardLink) {
+            try {
+                return Files.createLink(temp, source.toPath());
+            } catch (IOException | UnsupportedOperationException e) {
+                logger.debug("无法创建硬链接 {}，改为复制: {}", file.getName(), e.toString());
+            }
+        }
+        try {
+            Files.copy(source.toPath(), temp);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        return temp;
+    }
+    
+    private static Path tempPath(File parent, File file) {
+        return parent.toPath().resolve("." + file.getName() + "."
+                + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+    }
+    
+    /**
+     * 把临时文件原子地重命名为目标文件，替换已存在的文件；文件系统不支持原子重命名时退回普通重命名
+     * 
+     * @param temp 临时文件，与目标文件在同一目录
+     * @param file 目标文件
+     * @throws IOException 重命名失败时抛出，临时文件已被删除
+     */
+    static void moveIntoPlace(Path temp, File file) throws IOException {
+        try {
+            try {
+                Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+    
+    /**
+     * 把已写出的文件内容同步到磁盘
+     * 
+     * @param file 文件
+     * @throws IOException 打开或同步失败时抛出
+     */
+    static void force(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+    
+    /**
+     * 把目录项 (新建和重命名的文件) 同步到磁盘
+     * 
+     * Windows 等不支持打开目录的平台上忽略，这些平台的重命名由文件系统日志保证。
+     * 
+     * @param directory 目录
+     */
+    static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            logger.debug("无法同步目录 {}: {}", directory, e.toString());
+        }
+    }
+}
\ No newline at end of file
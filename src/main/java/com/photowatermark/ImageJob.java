@@ -0,0 +1,52 @@
+package com.photowatermark;
+
+import java.io.File;
+
+/**
+ * 批量处理中的单个图片任务
+ * 
+ * 扫描时记录文件的开销估算，供调度策略排序。
+ * 
+ * @author PhotoWatermark Team
+ * @version 1.0.0
+ */
+public class ImageJob {
+    
+    private final File file;
+    private final int index;
+    private final long estimatedCost;
+    
+    /**
+     * 构造函数
+     * 
+     * @param file 图片文件
+     * @param index 扫描顺序
+     * @param estimatedCost 处理开销估算（文件字节数或像素数）
+     */
+    public ImageJob(File file, int index, long estimatedCost) {
+        this.file = file;
+        this.index = index;
+        this.estimatedCost = estimatedCost;
+    }
+    
+    public File getFile() {
+        return file;
+    }
+    
+    public int getIndex() {
+        return index;
+    }
+    
+    public long getEstimatedCost() {
+        return estimatedCost;
+    }
+    
+    @Override
+    public String toString() {
+        return "ImageJob{" +
+                "file=" + file.getName() +
+                ", index=" + index +
+                ", estimatedCost=" + estimatedCost +
+                '}';
+    }
+}
\ No newline at end of file
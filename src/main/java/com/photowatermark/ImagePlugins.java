@@ -0,0 +1,97 @@
+package com.photowatermark;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.imageio.spi.IIORegistry;
+import javax.imageio.spi.ImageReaderSpi;
+import javax.imageio.spi.ImageReaderWriterSpi;
+import javax.imageio.spi.ImageWriterSpi;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * ImageIO插件注册
+ * 
+ * 命令行启动时只保留本工具支持的格式 (JPEG、PNG、GIF、BMP) 的读写插件，并把JPEG排在最前面。
+ * 按内容识别格式时 ImageIO 会依次询问每个插件能否解码，去掉 TIFF、WBMP 等用不到的插件并优先询问JPEG，
+ * 大多数照片第一次询问就能确定解码器，也不会初始化用不到的插件。
+ * 
+ * 修改的是进程全局的注册表，只应在命令行入口调用，作为库使用时不要调用。
+ * 
+ * @author PhotoWatermark Team
+ * @version 1.0.0
+ */
+public class ImagePlugins {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ImagePlugins.class);
+    
+    private static final Set<String> USED_FORMATS = new HashSet<>(Arrays.asList("jpeg", "jpg", "png", "gif", "bmp"));
+    
+    private static boolean registered = false;
+    
+    /**
+     * 只保留用到的格式的读写插件，重复调用无效果
+     */
+    public static synchronized void registerUsedPlugins() {
+        if (registered) {
+            return;
+        }
+        registered = true;
+        
+        IIORegistry registry = IIORegistry.getDefaultInstance();
+        retainUsed(registry, ImageReaderSpi.class);
+        retainUsed(registry, ImageWriterSpi.class);
+    }
+    
+    private static <T extends ImageReaderWriterSpi> void retainUsed(IIORegistry registry, Class<T> category) {
+        List<T> used = new ArrayList<>();
+        List<T> unused = new ArrayList<>();
+        T jpeg = null;
+        
+        for (Iterator<T> it = registry.getServiceProviders(category, false); it.hasNext(); ) {
+            T provider = it.next();
+            if (!supportsUsedFormat(provider)) {
+                unused.add(provider);
+            } else if (jpeg == null && supportsFormat(provider, "jpeg")) {
+                jpeg = provider;
+            } else {
+                used.add(provider);
+            }
+        }
+        
+        for (T provider : unused) {
+            registry.deregisterServiceProvider(provider, category);
+            logger.debug("移除未使用的图片插件: {}", provider.getDescription(Locale.ROOT));
+        }
+        
+        if (jpeg != null) {
+            for (T provider : used) {
+                registry.setOrdering(category, jpeg, provider);
+            }
+        }
+    }
+    
+    private static boolean supportsUsedFormat(ImageReaderWriterSpi provider) {
+        for (String format : provider.getFormatNames()) {
+            if (USED_FORMATS.contains(format.toLowerCase(Locale.ROOT))) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private static boolean supportsFormat(ImageReaderWriterSpi provider, String format) {
+        for (String name : provider.getFormatNames()) {
+            if (name.equalsIgnoreCase(format)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
\ No newline at end of file
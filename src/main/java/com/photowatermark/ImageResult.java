@@ -0,0 +1,154 @@
+package com.photowatermark;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单张图片的处理结果
+ * 
+ * 包含各阶段耗时、输入输出大小，失败时包含失败原因。
+ * 
+ * @author PhotoWatermark Team
+ * @version 1.0.0
+ */
+public class ImageResult {
+    
+    private final File source;
+    private final File target;
+    private final Throwable error;
+    private final long readNanos;
+    private final long processNanos;
+    private final long writeNanos;
+    private final long sourceBytes;
+    private final long outputBytes;
+    
+    private ImageResult(Builder builder) {
+        this.source = builder.source;
+        this.target = builder.target;
+        this.error = builder.error;
+        this.readNanos = builder.readNanos;
+        this.processNanos = builder.processNanos;
+        this.writeNanos = builder.writeNanos;
+        this.sourceBytes = builder.sourceBytes;
+        this.outputBytes = builder.outputBytes;
+    }
+    
+    public File getSource() {
+        return source;
+    }
+    
+    public File getTarget() {
+        return target;
+    }
+    
+    public boolean isSuccess() {
+        return error == null;
+    }
+    
+    /**
+     * 获取失败原因
+     * 
+     * @return 失败原因，成功时为null
+     */
+    public Throwable getError() {
+        return error;
+    }
+    
+    /**
+     * 获取读取源文件的耗时
+     * 
+     * @return 毫秒数
+     */
+    public long getReadMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(readNanos);
+    }
+    
+    /**
+     * 获取解码、绘制水印和编码的耗时
+     * 
+     * @return 毫秒数
+     */
+    public long getProcessMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(processNanos);
+    }
+    
+    /**
+     * 获取写出结果的耗时
+     * 
+     * @return 毫秒数
+     */
+    public long getWriteMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(writeNanos);
+    }
+    
+    public long getTotalMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(readNanos + processNanos + writeNanos);
+    }
+    
+    public long getSourceBytes() {
+        return sourceBytes;
+    }
+    
+    public long getOutputBytes() {
+        return outputBytes;
+    }
+    
+    @Override
+    public String toString() {
+        return "ImageResult{" +
+                "source=" + (source != null ? source.getName() : null) +
+                ", success=" + isSuccess() +
+                ", readMillis=" + getReadMillis() +
+                ", processMillis=" + getProcessMillis() +
+                ", writeMillis=" + getWriteMillis() +
+                ", sourceBytes=" + sourceBytes +
+                ", outputBytes=" + outputBytes +
+                (error != null ? ", error=" + error : "") +
+                '}';
+    }
+    
+    /**
+     * 处理结果构建器，处理过程中逐阶段记录
+     */
+    static class Builder {
+        private final File source;
+        private final File target;
+        private Throwable error;
+        private long readNanos;
+        private long processNanos;
+        private long writeNanos;
+        private long sourceBytes;
+        private long outputBytes;
+        
+        Builder(File source, File target) {
+            this.source = source;
+            this.target = target;
+        }
+        
+        Builder read(long nanos, long bytes) {
+            this.readNanos = nanos;
+            this.sourceBytes = bytes;
+            return this;
+        }
+        
+        Builder process(long nanos) {
+            this.processNanos = nanos;
+            return this;
+        }
+        
+        Builder write(long nanos, long bytes) {
+            this.writeNanos = nanos;
+            this.outputBytes = bytes;
+            return this;
+        }
+        
+        Builder error(Throwable error) {
+            this.error = error;
+            return this;
+        }
+        
+        ImageResult build() {
+            return new ImageResult(this);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,31 @@
+package com.photowatermark;
+
+/**
+ * 源文件读取方式枚举
+ * 
+ * @author PhotoWatermark Team
+ * @version 1.0.0
+ */
+public enum InputReadMode {
+    /** 整体读入堆内存，适用于任何存储 */
+    READ("读入内存"),
+    /** 内存映射，解码和元数据读取直接访问页缓存，不再复制到堆中；不适合网络文件系统 */
+    MMAP("内存映射"),
+    /** 本地文件系统使用内存映射，网络文件系统 (NFS/SMB等) 读入内存 */
+    AUTO("按存储类型选择");
+    
+    private final String description;
+    
+    InputReadMode(String description) {
+        this.description = description;
+    }
+    
+    public String getDescription() {
+        return description;
+    }
+    
+    @Override
+    public String toString() {
+        return description;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,72 @@
+package com.photowatermark;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * 任务开销估算器
+ * 
+ * 默认使用文件字节数，只需一次stat；可选读取图片头部的宽高，
+ * 按像素数估算，对PNG等压缩率差异大的格式更准确。
+ * 
+ * @author PhotoWatermark Team
+ * @version 1.0.0
+ */
+public class JobSizeEstimator {
+    
+    private static final Logger logger = LoggerFactory.getLogger(JobSizeEstimator.class);
+    
+    /**
+     * 估算处理开销
+     * 
+     * @param imageFile 图片文件
+     * @param useHeaderDimensions 是否读取图片头部的宽高
+     * @return 开销估算，读取头部失败时退回到文件字节数
+     */
+    public static long estimate(File imageFile, boolean useHeaderDimensions) {
+        if (useHeaderDimensions) {
+            long pixels = readPixelCount(imageFile);
+            if (pixels > 0) {
+                return pixels;
+            }
+        }
+        return imageFile.length();
+    }
+    
+    /**
+     * 从图片头部读取像素数，不解码图像数据
+     * 
+     * @param imageFile 图片文件
+     * @return 像素数，无法读取时返回-1
+     */
+    private static long readPixelCount(File imageFile) {
+        try (ImageInputStream input = ImageIO.createImageInputStream(imageFile)) {
+            if (input == null) {
+                return -1;
+            }
+            
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return -1;
+            }
+            
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                return (long) reader.getWidth(0) * reader.getHeight(0);
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException e) {
+            logger.debug("无法读取图片尺寸: {}", imageFile.getName(), e);
+            return -1;
+        }
+    }
+}
\ No newline at end of file
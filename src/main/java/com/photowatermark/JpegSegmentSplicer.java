@@ -0,0 +1,117 @@
+package com.photowatermark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * JPEG段拼接器
+ * 
+ * 在段级别把源图片的APP段插入编码器输出的JPEG数据流，不重新解析或重新编码图像数据。
+ * 
+ * @author PhotoWatermark Team
+ * @version 1.0.0
+ */
+public class JpegSegmentSplicer {
+    
+    private static final int MARKER_PREFIX = 0xFF;
+    private static final int SOI = 0xD8;
+    private static final int APP0 = 0xE0;
+    private static final int APP1 = 0xE1;
+    private static final byte[] EXIF_ID = "Exif\0\0".getBytes(StandardCharsets.US_ASCII);
+    
+    /**
+     * 将APP段拼接到编码后的JPEG数据中并写出
+     * 
+     * 拼接的段中包含EXIF时去掉编码器生成的JFIF APP0段，拼接的段紧跟在SOI之后，
+     * 使EXIF APP1位于文件开头，符合EXIF规范；不包含EXIF (只有ICC或XMP) 时保留APP0，
+     * 拼接的段放在APP0之后，符合JFIF要求APP0紧跟SOI的规定。
+     * 
+     * @param encoded 编码器输出的完整JPEG数据
+     * @param segments 包含标记和长度的完整APP段
+     * @param output 输出流
+     * @throws IOException 数据不是有效的JPEG或写出失败时抛出
+     */
+    public static void splice(byte[] encoded, List<byte[]> segments, OutputStream output) throws IOException {
+        splice(encoded, encoded.length, segments, output);
+    }
+    
+    /**
+     * 将APP段拼接到编码后的JPEG数据中并写出
+     * 
+     * @param encoded 存放编码器输出的数组，可以比数据长
+     * @param length 编码数据的长度
+     * @param segments 包含标记和长度的完整APP段
+     * @param output 输出流
+     * @throws IOException 数据不是有效的JPEG或写出失败时抛出
+     */
+    public static void splice(byte[] encoded, int length, List<byte[]> segments, OutputStream output)
+            throws IOException {
+        if (length < 4 || (encoded[0] & 0xFF) != MARKER_PREFIX || (encoded[1] & 0xFF) != SOI) {
+            throw new IOException("编码输出不是有效的JPEG数据");
+        }
+        
+        // 编码器写出的JFIF APP0段的结束位置，没有时为SOI之后
+        int app0End = 2;
+        if (length > app0End + 4
+                && (encoded[2] & 0xFF) == MARKER_PREFIX && (encoded[3] & 0xFF) == APP0) {
+            int segmentLength = ((encoded[4] & 0xFF) << 8) | (encoded[5] & 0xFF);
+            app0End = Math.min(length, 4 + segmentLength);
+        }
+        
+        // 包含EXIF时跳过APP0，否则原样保留APP0并在其后插入
+        boolean hasExif = containsExif(segments);
+        output.write(encoded, 0, hasExif ? 2 : app0End);
+        for (byte[] segment : segments) {
+            output.write(segment);
+        }
+        output.write(encoded, app0End, length - app0End);
+    }
+    
+    /**
+     * 判断APP段中是否包含EXIF
+     * 
+     * @param segments 包含标记和长度的完整APP段，可以为null
+     * @return 是否包含EXIF APP1段
+     */
+    public static boolean containsExif(List<byte[]> segments) {
+        if (segments == null) {
+            return false;
+        }
+        for (byte[] segment : segments) {
+            if (isExifSegment(segment)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * 判断是否为EXIF APP1段
+     * 
+     * @param segment 包含标记和长度的完整段
+     * @return 是否为EXIF段
+     */
+    private static boolean isExifSegment(byte[] segment) {
+        if (segment.length < 4 + EXIF_ID.length || (segment[1] & 0xFF) != APP1) {
+            return false;
+        }
+        for (int i = 0; i < EXIF_ID.length; i++) {
+            if (segment[4 + i] != EXIF_ID[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * 判断格式是否为JPEG
+     * 
+     * @param format 图片格式名称
+     * @return 是否为JPEG
+     */
+    public static boolean isJpegFormat(String format) {
+        return "jpg".equalsIgnoreCase(format) || "jpeg".equalsIgnoreCase(format);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,366 @@
+package com.photowatermark;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 按任务清单批量处理
+ * 
+ * 清单中的每条记录指定输入、输出、水印文本和样式覆盖项，读到一条提交一条，
+ * 不扫描目录，也不把清单整体载入内存；同时处理中的记录数有上限，读取速度受处理速度约束。
+ * 无效的记录（无法解析、缺少输入、覆盖项无效、输入不存在）和处理失败的记录写入错误输出，
+ * 格式为 "行号\t原因\t原始行"，不影响其他记录。
+ * 
+ * 未指定文本的记录与目录模式相同：启用EXIF日期时使用拍摄日期，没有日期时使用默认文本；
+ * 记录中的 exif 覆盖项可以单独开启或关闭。
+ * 
+ * @author PhotoWatermark Team
+ * @version 1.0.0
+ */
+public class ManifestProcessor {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ManifestProcessor.class);
+    
+    private final WatermarkConfig config;
+    private final String defaultText;
+    private final File outputDir;
+    private final File errorFile;
+    private final int maxInFlight;
+    
+    private volatile boolean cancelled = false;
+    private final CountDownLatch finished = new CountDownLatch(1);
+    
+    // 处理统计，由处理线程在完成时更新
+    private final AtomicInteger totalRecords = new AtomicInteger();
+    private final AtomicInteger successfulRecords = new AtomicInteger();
+    private final AtomicInteger failedRecords = new AtomicInteger();
+    private final AtomicInteger invalidRecords = new AtomicInteger();
+    
+    /**
+     * 构造函数，未指定文本的记录使用默认文本
+     * 
+     * @param config 基础水印配置，记录中的覆盖项在其副本上生效
+     * @param defaultText 记录未指定文本时使用的水印文本
+     * @param outputDir 记录未指定输出时的输出目录，为null时输出到源文件所在目录
+     * @param errorFile 错误输出文件，为null时写到标准错误
+     */
+    public ManifestProcessor(WatermarkConfig config, String defaultText, File outputDir, File errorFile) {
+        this(config, false, defaultText, outputDir, errorFile);
+    }
+    
+    /**
+     * 构造函数
+     * 
+     * @param config 基础水印配置，记录中的覆盖项在其副本上生效
+     * @param useExifDate 记录未指定文本时是否使用EXIF拍摄日期，记录的 exif 覆盖项优先
+     * @param defaultText 记录未指定文本且没有拍摄日期时使用的水印文本
+     * @param outputDir 记录未指定输出时的输出目录，为null时输出到源文件所在目录
+     * @param errorFile 错误输出文件，为null时写到标准错误
+     */
+    public ManifestProcessor(WatermarkConfig config, boolean useExifDate, String defaultText, File outputDir,
+                             File errorFile) {
+        this.config = config.copy();
+        this.config.setUseExifDate(useExifDate);
+        this.defaultText = defaultText;
+        this.outputDir = outputDir;
+        this.errorFile = errorFile;
+        this.maxInFlight = Runtime.getRuntime().availableProcessors() * 2;
+    }
+    
+    /**
+     * 处理清单中的所有记录
+     * 
+     * @param manifestFile 清单文件（.csv 按CSV解析，其他按JSONL）
+     * @return 处理结果
+     */
+    public FileProcessor.ProcessResult process(File manifestFile) {
+        try {
+            return processRecords(manifestFile);
+        } finally {
+            finished.countDown();
+        }
+    }
+    
+    private FileProcessor.ProcessResult processRecords(File manifestFile) {
+        long startTime = System.currentTimeMillis();
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        boolean interrupted = false;
+        
+        try (ManifestReader reader = ManifestReader.open(manifestFile);
+             PrintWriter errors = openErrorSink();
+             WatermarkService service = new WatermarkService()) {
+            
+            BatchJournal journal = openJournal();
+            try {
+                ManifestRecord record;
+                while (!cancelled && (record = reader.next()) != null) {
+                    totalRecords.incrementAndGet();
+                    if (!submit(record, service, inFlight, errors, journal)) {
+                        interrupted = true;
+                        cancel();
+                    }
+                }
+            } finally {
+                // 等待进行中的记录完成
+                while (true) {
+                    try {
+                        inFlight.acquire(maxInFlight);
+                        break;
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                        cancel();
+                    }
+                }
+                
+                if (journal != null) {
+                    try {
+                        journal.close();
+                    } catch (IOException e) {
+                        logger.warn("关闭处理日志失败", e);
+                    }
+                }
+            }
+            
+        } catch (IOException e) {
+            logger.error("读取任务清单失败: {}", manifestFile, e);
+            return new FileProcessor.ProcessResult(false, "读取任务清单失败: " + e.getMessage());
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        
+        long duration = System.currentTimeMillis() - startTime;
+        String message = String.format("%s - 总计: %d, 成功: %d, 失败: %d, 无效: %d, 耗时: %d ms",
+                cancelled ? "处理已取消" : "处理完成", totalRecords.get(), successfulRecords.get(),
+                failedRecords.get(), invalidRecords.get(), duration);
+        logger.info(message);
+        
+        return new FileProcessor.ProcessResult(
+                failedRecords.get() == 0 && invalidRecords.get() == 0 && !cancelled, message);
+    }
+    
+    /**
+     * 校验并提交一条记录
+     * 
+     * @return 是否继续读取；等待处理名额时被中断返回false
+     */
+    private boolean submit(ManifestRecord record, WatermarkService service, Semaphore inFlight,
+                           PrintWriter errors, BatchJournal journal) {
+        if (!record.isValid()) {
+            reject(record, record.getError(), errors);
+            return true;
+        }
+        
+        WatermarkConfig options;
+        try {
+            options = record.applyOverrides(config);
+        } catch (IllegalArgumentException e) {
+            reject(record, e.getMessage(), errors);
+            return true;
+        }
+        
+        File source = new File(record.getInput());
+        if (!source.isFile()) {
+            reject(record, "输入文件不存在", errors);
+            return true;
+        }
+        if (!WatermarkEngine.isSupportedImageFormat(source)) {
+            reject(record, "不支持的文件格式", errors);
+            return true;
+        }
+        
+        File target = record.getOutput() != null ? new File(record.getOutput()) : generateOutputFile(source);
+        String text = watermarkText(record, source);
+        
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            return false;
+        }
+        
+        service.submit(source, target, text, options).whenComplete((result, error) -> {
+            try {
+                if (result != null && result.isSuccess()) {
+                    successfulRecords.incrementAndGet();
+                    recordJournal(journal, source, BatchJournal.Status.OK, result.getTotalMillis(), null);
+                } else {
+                    Throwable cause = result != null ? result.getError() : error;
+                    String reason = cause != null && cause.getMessage() != null ? cause.getMessage() : "处理失败";
+                    failedRecords.incrementAndGet();
+                    logger.error("处理清单第 {} 行失败: {}", record.getLineNumber(), reason);
+                    writeError(errors, record, reason);
+                    recordJournal(journal, source, BatchJournal.Status.FAILED,
+                            result != null ? result.getTotalMillis() : 0, reason);
+                }
+            } finally {
+                inFlight.release();
+            }
+        });
+        return true;
+    }
+    
+    /**
+     * 确定记录的水印文本：记录指定的文本，其次是启用时的EXIF拍摄日期，最后是默认文本
+     * 
+     * @param record 清单记录，覆盖项应已校验
+     * @param source 输入文件
+     * @return 水印文本
+     */
+    String watermarkText(ManifestRecord record, File source) {
+        if (record.getText() != null && !record.getText().trim().isEmpty()) {
+            return record.getText();
+        }
+        if (record.applyOverrides(config).isUseExifDate()) {
+            String exifDate = ExifReader.readMetadata(source).getDateTaken();
+            if (exifDate != null && !exifDate.trim().isEmpty()) {
+                return exifDate;
+            }
+            logger.warn("文件 {} 无法提取EXIF日期，使用默认水印", source.getName());
+        }
+        return defaultText;
+    }
+    
+    private void reject(ManifestRecord record, String reason, PrintWriter errors) {
+        invalidRecords.incrementAndGet();
+        logger.warn("清单第 {} 行无效: {}", record.getLineNumber(), reason);
+        writeError(errors, record, reason);
+    }
+    
+    private static void writeError(PrintWriter errors, ManifestRecord record, String reason) {
+        synchronized (errors) {
+            errors.print(record.getLineNumber());
+            errors.print('\t');
+            errors.print(reason.replace('\t', ' ').replace('\n', ' '));
+            errors.print('\t');
+            errors.println(record.getRaw());
+            errors.flush();
+        }
+    }
+    
+    private static void recordJournal(BatchJournal journal, File source, BatchJournal.Status status,
+                                      long elapsedMillis, String detail) {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.record(source, status, elapsedMillis, detail);
+        } catch (IOException e) {
+            logger.warn("写入处理日志失败", e);
+        }
+    }
+    
+    /**
+     * 打开错误输出
+     * 
+     * @return 错误输出；写到标准错误时关闭它不会关闭标准错误
+     * @throws IOException 无法创建错误输出文件时抛出
+     */
+    private PrintWriter openErrorSink() throws IOException {
+        if (errorFile == null) {
+            return new PrintWriter(new NonClosingWriter(System.err));
+        }
+        File parent = errorFile.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs() && !parent.exists()) {
+            throw new IOException("无法创建错误输出目录: " + parent.getAbsolutePath());
+        }
+        BufferedWriter writer = Files.newBufferedWriter(errorFile.toPath(), StandardCharsets.UTF_8);
+        return new PrintWriter(writer);
+    }
+    
+    private BatchJournal openJournal() {
+        String journalPath = config.getJournalFile();
+        if (journalPath == null || journalPath.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            return new BatchJournal(new File(journalPath));
+        } catch (IOException e) {
+            logger.warn("无法创建处理日志: {}", journalPath, e);
+            return null;
+        }
+    }
+    
+    private File generateOutputFile(File inputFile) {
+        String fileName = inputFile.getName();
+        String baseName = fileName.substring(0, fileName.lastIndexOf('.'));
+        String extension = fileName.substring(fileName.lastIndexOf('.'));
+        File targetDir = (outputDir != null) ? outputDir : inputFile.getAbsoluteFile().getParentFile();
+        return new File(targetDir, baseName + "_watermarked" + extension);
+    }
+    
+    /**
+     * 停止读取新记录，进行中的记录继续完成。可以从任意线程调用。
+     */
+    public void cancel() {
+        if (!cancelled) {
+            cancelled = true;
+            logger.warn("清单处理已取消，等待进行中的记录完成");
+        }
+    }
+    
+    public boolean isCancelled() {
+        return cancelled;
+    }
+    
+    /**
+     * 等待处理结束
+     * 
+     * @param timeout 最长等待时间
+     * @param unit 时间单位
+     * @return 是否在等待时间内结束
+     * @throws InterruptedException 等待时被中断
+     */
+    public boolean awaitCompletion(long timeout, TimeUnit unit) throws InterruptedException {
+        return finished.await(timeout, unit);
+    }
+    
+    /**
+     * 获取处理统计信息
+     * 
+     * @return 统计信息字符串
+     */
+    public String getStatistics() {
+        return String.format("处理统计 - 总计: %d, 成功: %d, 失败: %d, 无效: %d",
+                totalRecords.get(), successfulRecords.get(), failedRecords.get(), invalidRecords.get());
+    }
+    
+    /**
+     * 写到标准错误但忽略关闭
+     */
+    private static class NonClosingWriter extends Writer {
+        private final PrintStream out;
+        
+        NonClosingWriter(PrintStream out) {
+            this.out = out;
+        }
+        
+        @Override
+        public void write(char[] buffer, int offset, int length) {
+            out.print(new String(buffer, offset, length));
+        }
+        
+        @Override
+        public void flush() {
+            out.flush();
+        }
+        
+        @Override
+        public void close() {
+            out.flush();
+        }
+    }
+}
\ No newline at end of file
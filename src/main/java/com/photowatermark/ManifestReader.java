@@ -0,0 +1,355 @@
+package com.photowatermark;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 任务清单读取器
+ * 
+ * 逐行读取，每次只解析一条记录，清单再大也不会整体载入内存。支持两种格式：
+ * <ul>
+ *   <li>JSONL：每行一个对象，如
+ *       {"input":"a.jpg","output":"out/a.jpg","text":"摄影: 张三","overrides":{"position":"CENTER"}}，
+ *       顶层的其他标量字段同样视为覆盖项</li>
+ *   <li>CSV：首行为列名，必须包含 input，其他列名视为覆盖项；字段可用双引号包围，
+ *       不支持字段内换行</li>
+ * </ul>
+ * 空行和以 # 开头的行被忽略。无法解析的行作为无效记录返回，不中断读取。
+ * 
+ * @author PhotoWatermark Team
+ * @version 1.0.0
+ */
+public class ManifestReader implements Closeable {
+    
+    private final BufferedReader reader;
+    private final boolean csv;
+    private List<String> header;
+    private long lineNumber = 0;
+    
+    /**
+     * 构造函数
+     * 
+     * @param reader 清单内容
+     * @param csv 是否为CSV格式，否则按JSONL解析
+     */
+    public ManifestReader(Reader reader, boolean csv) {
+        this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        this.csv = csv;
+    }
+    
+    /**
+     * 打开清单文件，按扩展名判断格式（.csv 为CSV，其他按JSONL）
+     * 
+     * @param manifestFile 清单文件
+     * @return 读取器
+     * @throws IOException 无法打开文件时抛出
+     */
+    public static ManifestReader open(File manifestFile) throws IOException {
+        boolean csv = manifestFile.getName().toLowerCase().endsWith(".csv");
+        return new ManifestReader(Files.newBufferedReader(manifestFile.toPath(), StandardCharsets.UTF_8), csv);
+    }
+    
+    /**
+     * 读取下一条记录
+     * 
+     * @return 下一条记录（可能是无效记录），没有更多记录时返回null
+     * @throws IOException 读取失败时抛出
+     */
+    public ManifestRecord next() throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (lineNumber == 1 && !line.isEmpty() && line.charAt(0) == '\uFEFF') {
+                line = line.substring(1);
+            }
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+            
+            if (csv && header == null) {
+                header = parseCsvHeader(line);
+                if (header == null) {
+                    throw new IOException("CSV清单的首行必须是包含 input 的列名");
+                }
+                continue;
+            }
+            
+            try {
+                return csv ? parseCsvRecord(line) : parseJsonRecord(trimmed);
+            } catch (IllegalArgumentException e) {
+                return ManifestRecord.invalid(lineNumber, line, e.getMessage());
+            }
+        }
+        return null;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+    
+    private static List<String> parseCsvHeader(String line) {
+        List<String> columns = new ArrayList<>();
+        for (String column : splitCsv(line)) {
+            columns.add(column.trim().toLowerCase());
+        }
+        return columns.contains("input") ? columns : null;
+    }
+    
+    private ManifestRecord parseCsvRecord(String line) {
+        List<String> values = splitCsv(line);
+        if (values.size() > header.size()) {
+            throw new IllegalArgumentException("列数多于表头");
+        }
+        
+        Map<String, String> fields = new LinkedHashMap<>();
+        for (int i = 0; i < values.size(); i++) {
+            String value = values.get(i);
+            if (!value.isEmpty()) {
+                fields.put(header.get(i), value);
+            }
+        }
+        return toRecord(line, fields);
+    }
+    
+    private ManifestRecord parseJsonRecord(String line) {
+        Map<String, Object> object = new JsonLine(line).parseObject();
+        Map<String, String> fields = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> entry : object.entrySet()) {
+            Object value = entry.getValue();
+            if ("overrides".equals(entry.getKey())) {
+                if (value instanceof Map) {
+                    for (Map.Entry<?, ?> override : ((Map<?, ?>) value).entrySet()) {
+                        if (override.getValue() instanceof Map) {
+                            throw new IllegalArgumentException("覆盖项不能是对象: " + override.getKey());
+                        }
+                        if (override.getValue() != null) {
+                            fields.put(String.valueOf(override.getKey()), String.valueOf(override.getValue()));
+                        }
+                    }
+                } else if (value != null) {
+                    throw new IllegalArgumentException("overrides 必须是对象");
+                }
+            } else if (value instanceof Map) {
+                throw new IllegalArgumentException("字段不能是对象: " + entry.getKey());
+            } else if (value != null) {
+                fields.put(entry.getKey(), String.valueOf(value));
+            }
+        }
+        return toRecord(line, fields);
+    }
+    
+    private ManifestRecord toRecord(String line, Map<String, String> fields) {
+        String input = fields.remove("input");
+        if (input == null || input.trim().isEmpty()) {
+            throw new IllegalArgumentException("缺少 input");
+        }
+        String output = fields.remove("output");
+        String text = fields.remove("text");
+        return new ManifestRecord(lineNumber, line, input, output, text, fields);
+    }
+    
+    /**
+     * 按逗号拆分一行CSV，支持双引号包围和 "" 转义
+     * 
+     * @param line 一行内容
+     * @return 字段列表
+     */
+    static List<String> splitCsv(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        current.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        
+        if (quoted) {
+            throw new IllegalArgumentException("引号未闭合");
+        }
+        values.add(current.toString());
+        return values;
+    }
+    
+    /**
+     * 单行JSON解析，只支持清单需要的子集：对象、字符串、数字、布尔值和null，不支持数组
+     */
+    private static class JsonLine {
+        private final String text;
+        private int pos = 0;
+        
+        JsonLine(String text) {
+            this.text = text;
+        }
+        
+        Map<String, Object> parseObject() {
+            Map<String, Object> object = readObject();
+            skipWhitespace();
+            if (pos < text.length()) {
+                throw error("对象之后有多余内容");
+            }
+            return object;
+        }
+        
+        private Map<String, Object> readObject() {
+            expect('{');
+            Map<String, Object> object = new LinkedHashMap<>();
+            skipWhitespace();
+            if (peek() == '}') {
+                pos++;
+                return object;
+            }
+            while (true) {
+                skipWhitespace();
+                String key = readString();
+                skipWhitespace();
+                expect(':');
+                skipWhitespace();
+                object.put(key, readValue());
+                skipWhitespace();
+                char c = next();
+                if (c == '}') {
+                    return object;
+                }
+                if (c != ',') {
+                    throw error("应为 , 或 }");
+                }
+            }
+        }
+        
+        private Object readValue() {
+            char c = peek();
+            if (c == '{') {
+                return readObject();
+            }
+            if (c == '"') {
+                return readString();
+            }
+            if (text.startsWith("true", pos)) {
+                pos += 4;
+                return Boolean.TRUE;
+            }
+            if (text.startsWith("false", pos)) {
+                pos += 5;
+                return Boolean.FALSE;
+            }
+            if (text.startsWith("null", pos)) {
+                pos += 4;
+                return null;
+            }
+            int start = pos;
+            while (pos < text.length() && "+-.0123456789eE".indexOf(text.charAt(pos)) >= 0) {
+                pos++;
+            }
+            if (start == pos) {
+                throw error("无法识别的值");
+            }
+            return text.substring(start, pos);
+        }
+        
+        private String readString() {
+            expect('"');
+            StringBuilder value = new StringBuilder();
+            while (true) {
+                char c = next();
+                if (c == '"') {
+                    return value.toString();
+                }
+                if (c != '\\') {
+                    value.append(c);
+                    continue;
+                }
+                char escaped = next();
+                switch (escaped) {
+                    case 'n':
+                        value.append('\n');
+                        break;
+                    case 't':
+                        value.append('\t');
+                        break;
+                    case 'r':
+                        value.append('\r');
+                        break;
+                    case 'b':
+                        value.append('\b');
+                        break;
+                    case 'f':
+                        value.append('\f');
+                        break;
+                    case 'u':
+                        if (pos + 4 > text.length()) {
+                            throw error("不完整的 \\u 转义");
+                        }
+                        try {
+                            value.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw error("无效的 \\u 转义");
+                        }
+                        pos += 4;
+                        break;
+                    default:
+                        value.append(escaped);
+                        break;
+                }
+            }
+        }
+        
+        private void skipWhitespace() {
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+                pos++;
+            }
+        }
+        
+        private char peek() {
+            if (pos >= text.length()) {
+                throw error("意外的行尾");
+            }
+            return text.charAt(pos);
+        }
+        
+        private char next() {
+            char c = peek();
+            pos++;
+            return c;
+        }
+        
+        private void expect(char expected) {
+            if (next() != expected) {
+                throw error("应为 " + expected);
+            }
+        }
+        
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("JSON格式错误 (第 " + (pos + 1) + " 列): " + message);
+        }
+    }
+}
\ No newline at end of file
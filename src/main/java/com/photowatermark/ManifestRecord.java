@@ -0,0 +1,207 @@
+package com.photowatermark;
+
+import java.awt.Color;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 任务清单中的一条记录
+ * 
+ * 除 input、output、text 外的字段都作为样式覆盖项，名称与命令行选项一致：
+ * position、size、font、color、alpha、margin、shadow、shadow-color、max-size、exif-keep、
+ * exif (未指定文本时是否使用EXIF拍摄日期)。
+ * 
+ * @author PhotoWatermark Team
+ * @version 1.0.0
+ */
+public class ManifestRecord {
+    
+    private final long lineNumber;
+    private final String raw;
+    private final String input;
+    private final String output;
+    private final String text;
+    private final Map<String, String> overrides;
+    private final String error;
+    
+    /**
+     * 构造有效记录
+     * 
+     * @param lineNumber 所在行号（从1开始）
+     * @param raw 原始行内容
+     * @param input 输入文件路径
+     * @param output 输出文件路径，为null时按默认规则生成
+     * @param text 水印文本，为null时使用默认文本
+     * @param overrides 样式覆盖项
+     */
+    public ManifestRecord(long lineNumber, String raw, String input, String output, String text,
+                          Map<String, String> overrides) {
+        this.lineNumber = lineNumber;
+        this.raw = raw;
+        this.input = input;
+        this.output = output;
+        this.text = text;
+        this.overrides = overrides != null
+                ? Collections.unmodifiableMap(new LinkedHashMap<>(overrides))
+                : Collections.<String, String>emptyMap();
+        this.error = null;
+    }
+    
+    private ManifestRecord(long lineNumber, String raw, String error) {
+        this.lineNumber = lineNumber;
+        this.raw = raw;
+        this.input = null;
+        this.output = null;
+        this.text = null;
+        this.overrides = Collections.emptyMap();
+        this.error = error;
+    }
+    
+    /**
+     * 创建无效记录
+     * 
+     * @param lineNumber 所在行号
+     * @param raw 原始行内容
+     * @param error 无效原因
+     * @return 无效记录
+     */
+    public static ManifestRecord invalid(long lineNumber, String raw, String error) {
+        return new ManifestRecord(lineNumber, raw, error);
+    }
+    
+    public boolean isValid() {
+        return error == null;
+    }
+    
+    public String getError() {
+        return error;
+    }
+    
+    public long getLineNumber() {
+        return lineNumber;
+    }
+    
+    public String getRaw() {
+        return raw;
+    }
+    
+    public String getInput() {
+        return input;
+    }
+    
+    public String getOutput() {
+        return output;
+    }
+    
+    public String getText() {
+        return text;
+    }
+    
+    public Map<String, String> getOverrides() {
+        return overrides;
+    }
+    
+    /**
+     * 在基础配置的副本上应用本记录的覆盖项
+     * 
+     * @param base 基础配置，不会被修改
+     * @return 应用覆盖项后的配置，没有覆盖项时直接返回基础配置
+     * @throws IllegalArgumentException 覆盖项名称未知或取值无效时抛出
+     */
+    public WatermarkConfig applyOverrides(WatermarkConfig base) {
+        if (overrides.isEmpty()) {
+            return base;
+        }
+        
+        WatermarkConfig config = base.copy();
+        for (Map.Entry<String, String> entry : overrides.entrySet()) {
+            String key = entry.getKey();
+            String value = entry.getValue() != null ? entry.getValue().trim() : "";
+            try {
+                switch (key) {
+                    case "position":
+                        config.setPosition(WatermarkPosition.valueOf(value.toUpperCase()));
+                        break;
+                    case "size":
+                        config.setFontSize(positive(key, Integer.parseInt(value)));
+                        break;
+                    case "font":
+                        config.setFontName(value);
+                        break;
+                    case "color":
+                        config.setColor(parseColor(value));
+                        break;
+                    case "alpha":
+                        float alpha = Float.parseFloat(value);
+                        if (alpha < 0.0f || alpha > 1.0f) {
+                            throw new IllegalArgumentException("透明度必须在0.0-1.0之间");
+                        }
+                        config.setOpacity(alpha);
+                        break;
+                    case "margin":
+                        config.setMargin(Integer.parseInt(value));
+                        break;
+                    case "shadow":
+                        config.setEnableShadow(Boolean.parseBoolean(value));
+                        break;
+                    case "shadow-color":
+                        config.setShadowColor(parseColor(value));
+                        break;
+                    case "max-size":
+                        config.setMaxOutputDimension(Integer.parseInt(value));
+                        break;
+                    case "exif-keep":
+                        config.setPreserveMetadata(Boolean.parseBoolean(value));
+                        break;
+                    case "exif":
+                        config.setUseExifDate(Boolean.parseBoolean(value));
+                        break;
+                    default:
+                        throw new IllegalArgumentException("未知的覆盖项: " + key);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("无效的 " + key + ": " + value, e);
+            }
+        }
+        return config;
+    }
+    
+    private static int positive(String key, int value) {
+        if (value <= 0) {
+            throw new IllegalArgumentException(key + " 必须大于0");
+        }
+        return value;
+    }
+    
+    /**
+     * 解析颜色字符串
+     * 
+     * @param value 颜色字符串 (格式: R,G,B)
+     * @return 颜色对象
+     */
+    private static Color parseColor(String value) {
+        String[] rgb = value.split(",");
+        if (rgb.length != 3) {
+            throw new IllegalArgumentException("无效的颜色格式，应为 R,G,B: " + value);
+        }
+        try {
+            return new Color(Integer.parseInt(rgb[0].trim()), Integer.parseInt(rgb[1].trim()),
+                    Integer.parseInt(rgb[2].trim()));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("无效的颜色: " + value, e);
+        }
+    }
+    
+    @Override
+    public String toString() {
+        return "ManifestRecord{" +
+                "line=" + lineNumber +
+                ", input='" + input + '\'' +
+                ", output='" + output + '\'' +
+                ", text='" + text + '\'' +
+                ", overrides=" + overrides +
+                (error != null ? ", error='" + error + '\'' : "") +
+                '}';
+    }
+}
\ No newline at end of file
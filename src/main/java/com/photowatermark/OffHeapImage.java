@@ -0,0 +1,157 @@
+package com.photowatermark;
+
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.nio.ByteBuffer;
+
+/**
+ * 堆外图片
+ * 
+ * 像素以BGR字节顺序保存在直接缓冲区中，通过自定义的 DataBuffer 包装成 BufferedImage，
+ * 解码器可以直接写入、编码器逐行读取，像素数据不占用Java堆。水印通过 {@link #blend(BufferedImage, int, int)}
+ * 在原像素上就地混合。用完后调用 {@link #release()} 立即释放直接内存，不必等待垃圾回收。
+ * 
+ * 直接内存总量受 -XX:MaxDirectMemorySize 限制（默认与最大堆相同），使用小堆运行时需要相应调大。
+ * 
+ * @author PhotoWatermark Team
+ * @version 1.0.0
+ */
+public class OffHeapImage {
+    
+    private static final ColorModel BGR_MODEL = new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_sRGB),
+            new int[] {8, 8, 8}, false, false, Transparency.OPAQUE, DataBuffer.TYPE_BYTE);
+    
+    private final int width;
+    private final int height;
+    private final BufferedImage image;
+    private ByteBuffer pixels;
+    
+    private OffHeapImage(int width, int height, ByteBuffer pixels) {
+        this.width = width;
+        this.height = height;
+        this.pixels = pixels;
+        
+        PixelInterleavedSampleModel sampleModel = new PixelInterleavedSampleModel(DataBuffer.TYPE_BYTE, width, height,
+                3, width * 3, new int[] {2, 1, 0});
+        WritableRaster raster = Raster.createWritableRaster(sampleModel, new DirectDataBuffer(pixels), null);
+        this.image = new BufferedImage(BGR_MODEL, raster, false, null);
+    }
+    
+    /**
+     * 分配一张像素全部为0的堆外图片
+     * 
+     * @param width 宽度
+     * @param height 高度
+     * @return 堆外图片
+     * @throws IllegalArgumentException 像素数据超过2GB时抛出
+     */
+    public static OffHeapImage allocate(int width, int height) {
+        long size = (long) width * height * 3;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("图片过大，无法分配堆外内存: " + width + "x" + height);
+        }
+        return new OffHeapImage(width, height, ByteBuffer.allocateDirect((int) size));
+    }
+    
+    /**
+     * 获取包装直接缓冲区的图片，类型为 TYPE_CUSTOM，释放后不能再使用
+     * 
+     * @return 图片
+     */
+    public BufferedImage getImage() {
+        return image;
+    }
+    
+    public int getWidth() {
+        return width;
+    }
+    
+    public int getHeight() {
+        return height;
+    }
+    
+    /**
+     * 把带透明度的图片按 SRC_OVER 混合到指定位置
+     * 
+     * @param overlay 叠加图片，按非预乘的ARGB读取
+     * @param x 叠加位置左上角横坐标
+     * @param y 叠加位置左上角纵坐标
+     */
+    public void blend(BufferedImage overlay, int x, int y) {
+        ByteBuffer target = buffer();
+        int startX = Math.max(0, x);
+        int endX = Math.min(width, x + overlay.getWidth());
+        int[] row = new int[Math.max(0, endX - startX)];
+        if (row.length == 0) {
+            return;
+        }
+        
+        for (int targetY = Math.max(0, y); targetY < Math.min(height, y + overlay.getHeight()); targetY++) {
+            overlay.getRGB(startX - x, targetY - y, row.length, 1, row, 0, row.length);
+            int offset = (targetY * width + startX) * 3;
+            for (int argb : row) {
+                int alpha = argb >>> 24;
+                if (alpha != 0) {
+                    int inverse = 255 - alpha;
+                    target.put(offset, mix(argb & 0xFF, target.get(offset), alpha, inverse));
+                    target.put(offset + 1, mix((argb >> 8) & 0xFF, target.get(offset + 1), alpha, inverse));
+                    target.put(offset + 2, mix((argb >> 16) & 0xFF, target.get(offset + 2), alpha, inverse));
+                }
+                offset += 3;
+            }
+        }
+    }
+    
+    private static byte mix(int source, byte target, int alpha, int inverse) {
+        return (byte) ((source * alpha + (target & 0xFF) * inverse + 127) / 255);
+    }
+    
+    /**
+     * 立即释放直接内存，重复调用无效果
+     */
+    public synchronized void release() {
+        if (pixels == null) {
+            return;
+        }
+        ByteBuffer released = pixels;
+        pixels = null;
+        DirectBuffers.free(released);
+    }
+    
+    private synchronized ByteBuffer buffer() {
+        if (pixels == null) {
+            throw new IllegalStateException("堆外图片已释放");
+        }
+        return pixels;
+    }
+    
+    /**
+     * 以直接缓冲区为存储的字节 DataBuffer
+     */
+    private static final class DirectDataBuffer extends DataBuffer {
+        
+        private final ByteBuffer data;
+        
+        DirectDataBuffer(ByteBuffer data) {
+            super(TYPE_BYTE, data.capacity());
+            this.data = data;
+        }
+        
+        @Override
+        public int getElem(int bank, int i) {
+            return data.get(i) & 0xFF;
+        }
+        
+        @Override
+        public void setElem(int bank, int i, int val) {
+            data.put(i, (byte) val);
+        }
+    }
+}
\ No newline at end of file
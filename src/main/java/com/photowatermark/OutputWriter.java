@@ -0,0 +1,278 @@
+package com.photowatermark;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 输出文件写入器
+ * 
+ * 编码结果通过一次 FileChannel 写出到同目录的临时文件，再原子地重命名为输出文件，
+ * 按 {@link FsyncPolicy} 决定何时同步到磁盘：
+ * 分组提交时临时文件写出后立即交给同步线程池并行同步，写出线程不等待磁盘；
+ * 提交线程积累一段时间内的文件，等这一组同步完成后依次重命名，再同步一次涉及的目录，多个文件共享目录同步。
+ * 
+ * @author PhotoWatermark Team
+ * @version 1.0.0
+ */
+public class OutputWriter implements Closeable {
+    
+    private static final Logger logger = LoggerFactory.getLogger(OutputWriter.class);
+    
+    // 一组最多提交的文件数
+    private static final int MAX_GROUP_SIZE = 256;
+    
+    // 并行同步的线程数，NVMe 等设备可以同时处理多个同步请求
+    private static final int FSYNC_THREADS = Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+    
+    private final FsyncPolicy policy;
+    private final long groupCommitNanos;
+    private final BlockingQueue<PendingFile> queue = new LinkedBlockingQueue<>();
+    private final ExecutorService fsyncExecutor;
+    private final Thread committer;
+    private volatile boolean closed = false;
+    
+    /**
+     * 构造函数，分组提交时启动后台提交线程
+     * 
+     * @param policy 同步策略
+     * @param groupCommitMillis 分组提交时一组文件的最长积累时间 (毫秒)
+     */
+    public OutputWriter(FsyncPolicy policy, int groupCommitMillis) {
+        this.policy = policy;
+        this.groupCommitNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, groupCommitMillis));
+        if (policy == FsyncPolicy.GROUP) {
+            fsyncExecutor = Executors.newFixedThreadPool(FSYNC_THREADS,
+                    FileProcessor.daemonThreadFactory("output-fsync"));
+            committer = new Thread(this::runCommitter, "output-commit");
+            committer.setDaemon(true);
+            committer.start();
+        } else {
+            fsyncExecutor = null;
+            committer = null;
+        }
+    }
+    
+    /**
+     * 写出文件
+     * 
+     * @param file 输出文件
+     * @param data 文件内容
+     * @return 输出文件就位 (按策略同步) 后完成的结果，不分组提交时已经完成
+     * @throws IOException 写出失败或写入器已关闭时抛出
+     */
+    public CompletableFuture<Void> write(File file, byte[] data) throws IOException {
+        return write(file, ByteBuffer.wrap(data));
+    }
+    
+    /**
+     * 写出文件
+     * 
+     * @param file 输出文件
+     * @param data 文件内容，从当前位置到上限，不改变缓冲区的位置；返回后可以重用
+     * @return 输出文件就位 (按策略同步) 后完成的结果，不分组提交时已经完成
+     * @throws IOException 写出失败或写入器已关闭时抛出
+     */
+    public CompletableFuture<Void> write(File file, ByteBuffer data) throws IOException {
+        if (policy != FsyncPolicy.GROUP) {
+            ImageFiles.write(file, data, policy == FsyncPolicy.PER_FILE);
+            return CompletableFuture.completedFuture(null);
+        }
+        
+        checkOpen();
+        return enqueue(ImageFiles.writeTemp(file, data, false), file);
+    }
+    
+    /**
+     * 把已有的输出复制或硬链接为另一个输出文件，同样原子地就位并按策略同步
+     * 
+     * @param source 已有的输出文件
+     * @param file 输出文件
+     * @param hardLink 是否优先使用硬链接
+     * @return 输出文件就位 (按策略同步) 后完成的结果，不分组提交时已经完成
+     * @throws IOException 复制失败或写入器已关闭时抛出
+     */
+    public CompletableFuture<Void> copy(File source, File file, boolean hardLink) throws IOException {
+        if (policy == FsyncPolicy.GROUP) {
+            checkOpen();
+            return enqueue(ImageFiles.copyTemp(source, file, hardLink), file);
+        }
+        
+        Path temp = ImageFiles.copyTemp(source, file, hardLink);
+        if (policy == FsyncPolicy.PER_FILE) {
+            try {
+                ImageFiles.force(temp);
+            } catch (IOException e) {
+                Files.deleteIfExists(temp);
+                throw e;
+            }
+        }
+        ImageFiles.moveIntoPlace(temp, file);
+        if (policy == FsyncPolicy.PER_FILE) {
+            ImageFiles.syncDirectory(temp.getParent());
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+    
+    private void checkOpen() throws IOException {
+        if (closed) {
+            throw new IOException("输出写入器已关闭");
+        }
+    }
+    
+    /**
+     * 把临时文件交给同步线程池，并加入待提交队列
+     */
+    private CompletableFuture<Void> enqueue(Path temp, File file) {
+        CompletableFuture<Void> synced = CompletableFuture.runAsync(() -> {
+            try {
+                ImageFiles.force(temp);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, fsyncExecutor);
+        PendingFile pending = new PendingFile(temp, file, synced);
+        queue.add(pending);
+        return pending.committed;
+    }
+    
+    public FsyncPolicy getPolicy() {
+        return policy;
+    }
+    
+    /**
+     * 提交所有已写出的文件并停止后台线程
+     */
+    @Override
+    public void close() {
+        if (committer == null || closed) {
+            return;
+        }
+        closed = true;
+        try {
+            committer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        
+        // 关闭时正在加入队列的文件在当前线程提交
+        List<PendingFile> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            commit(remaining);
+        }
+        fsyncExecutor.shutdown();
+    }
+    
+    /**
+     * 后台提交线程：取得第一个文件后继续积累，直到达到最长积累时间或组大小上限
+     */
+    private void runCommitter() {
+        List<PendingFile> group = new ArrayList<>();
+        try {
+            while (true) {
+                PendingFile first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    if (closed) {
+                        return;
+                    }
+                    continue;
+                }
+                
+                group.add(first);
+                long deadline = System.nanoTime() + groupCommitNanos;
+                while (group.size() < MAX_GROUP_SIZE) {
+                    long wait = deadline - System.nanoTime();
+                    PendingFile next = closed || wait <= 0 ? queue.poll() : queue.poll(wait, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    group.add(next);
+                }
+                
+                commit(group);
+                group.clear();
+            }
+        } catch (InterruptedException e) {
+            // 剩余的文件由 close() 提交
+            queue.addAll(group);
+        }
+    }
+    
+    /**
+     * 提交一组文件：等待内容同步完成，依次重命名，再同步涉及的目录
+     * 
+     * @param group 待提交的文件
+     */
+    private void commit(List<PendingFile> group) {
+        long start = System.nanoTime();
+        List<PendingFile> moved = new ArrayList<>(group.size());
+        Set<Path> directories = new LinkedHashSet<>();
+        for (PendingFile pending : group) {
+            try {
+                pending.synced.join();
+                ImageFiles.moveIntoPlace(pending.temp, pending.file);
+                moved.add(pending);
+                directories.add(pending.temp.getParent());
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause();
+                fail(pending, cause instanceof UncheckedIOException ? cause.getCause() : cause);
+            } catch (IOException e) {
+                fail(pending, e);
+            }
+        }
+        
+        for (Path directory : directories) {
+            ImageFiles.syncDirectory(directory);
+        }
+        for (PendingFile pending : moved) {
+            pending.committed.complete(null);
+        }
+        logger.debug("分组提交 {} 个文件，耗时 {} ms", group.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+    
+    private static void fail(PendingFile pending, Throwable cause) {
+        logger.error("提交输出文件失败: {}", pending.file.getName(), cause);
+        try {
+            Files.deleteIfExists(pending.temp);
+        } catch (IOException e) {
+            logger.debug("无法删除临时文件: {}", pending.temp);
+        }
+        pending.committed.completeExceptionally(cause);
+    }
+    
+    /**
+     * 已写出临时文件、等待提交的输出
+     */
+    private static final class PendingFile {
+        final Path temp;
+        final File file;
+        final CompletableFuture<Void> synced;
+        final CompletableFuture<Void> committed = new CompletableFuture<>();
+        
+        PendingFile(Path temp, File file, CompletableFuture<Void> synced) {
+            this.temp = temp;
+            this.file = file;
+            this.synced = synced;
+        }
+    }
+}
\ No newline at end of file
@@ -5,7 +5,16 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.awt.*;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 照片水印工具主程序
@@ -17,7 +26,18 @@ public class PhotoWatermarkTool {
     
     private static final Logger logger = LoggerFactory.getLogger(PhotoWatermarkTool.class);
     
+    // 收到中断信号后等待进行中的文件完成的最长时间（秒）
+    private static final long SHUTDOWN_GRACE_SECONDS = 120;
+    
+    // 本次运行的配置，第一次使用时加载，之后各处共用同一份
+    private static ConfigManager loadedConfig;
+    
     public static void main(String[] args) {
+        // 命令行工具不需要显示器，在任何AWT类加载前设置，避免在服务器上探测图形环境
+        if (System.getProperty("java.awt.headless") == null) {
+            System.setProperty("java.awt.headless", "true");
+        }
+        
         try {
             // 创建命令行选项
             Options options = createOptions();
@@ -44,19 +64,51 @@ public class PhotoWatermarkTool {
                 return;
             }
             
+            // 管道模式下标准输出只用于图片数据，日志和提示信息改写到标准错误
+            boolean pipeMode = "-".equals(cmd.getOptionValue("input")) || "-".equals(cmd.getOptionValue("output"));
+            OutputStream stdout = null;
+            if (pipeMode) {
+                stdout = new FileOutputStream(FileDescriptor.out);
+                System.setOut(System.err);
+            }
+            
+            // 只保留用到的图片格式插件，减少按内容识别格式时的探测次数
+            ImagePlugins.registerUsedPlugins();
+            
             // 解析配置参数
             WatermarkConfig config = parseConfig(cmd);
             
+            // 在后台预热字体和图形环境，与扫描目录、读取输入同时进行
+            WatermarkEngine.startWarmUp(config);
+            RasterPool.setCapacity(config.getRasterPoolMegabytes());
+            
+            // 常驻服务模式
+            if (cmd.hasOption("serve")) {
+                startServer(config, cmd);
+                return;
+            }
+            
             // 获取输入和输出路径
             String inputPath = cmd.getOptionValue("input");
             String outputPath = cmd.getOptionValue("output");
             
+            // 任务清单模式
+            if (cmd.hasOption("manifest")) {
+                processManifest(cmd.getOptionValue("manifest"), outputPath, config, cmd);
+                return;
+            }
+            
             if (inputPath == null) {
                 System.err.println("错误: 必须指定输入路径");
                 printHelp(options);
                 System.exit(1);
             }
             
+            if (pipeMode) {
+                processPipe(inputPath, outputPath, stdout, config, cmd);
+                return;
+            }
+            
             // 执行水印处理
             processWatermark(inputPath, outputPath, config, cmd);
             
@@ -86,9 +138,11 @@ public class PhotoWatermarkTool {
         options.addOption(null, "show-config", false, "显示当前配置");
         
         // 输入输出选项
-        options.addOption("i", "input", true, "输入文件或目录路径 (必需)");
-        options.addOption("o", "output", true, "输出目录路径");
+        options.addOption("i", "input", true, "输入文件、目录或压缩包 (.zip/.tar/.tar.gz) 路径，- 表示标准输入 (必需)");
+        options.addOption("o", "output", true, "输出目录路径，- 表示标准输出");
         options.addOption("r", "recursive", false, "递归处理子目录");
+        options.addOption(null, "manifest", true, "任务清单文件 (JSONL或CSV，每条记录指定输入、输出、文本和样式)，代替 -i");
+        options.addOption(null, "manifest-errors", true, "清单中无效和失败记录的输出文件 (默认输出到标准错误)");
         
         // 水印文本选项
         options.addOption("t", "text", true, "自定义水印文本");
@@ -96,7 +150,7 @@ public class PhotoWatermarkTool {
         
         // 水印样式选项
         options.addOption("s", "size", true, "字体大小 (默认: 24)");
-        options.addOption("f", "font", true, "字体名称 (默认: Arial)");
+        options.addOption("f", "font", true, "字体名称或TTF/OTF字体文件路径 (默认: Arial)");
         options.addOption("p", "position", true, "水印位置 (TOP_LEFT|TOP_RIGHT|CENTER|BOTTOM_LEFT|BOTTOM_RIGHT)");
         options.addOption("a", "alpha", true, "透明度 (0.0-1.0, 默认: 0.8)");
         options.addOption("m", "margin", true, "边距 (像素, 默认: 20)");
@@ -106,9 +160,48 @@ public class PhotoWatermarkTool {
         options.addOption(null, "shadow", false, "启用阴影效果");
         options.addOption(null, "shadow-color", true, "阴影颜色 (格式: R,G,B)");
         
+        // 执行选项
+        options.addOption(null, "exec-mode", true, "执行模式 (CPU|IO，IO适合网络存储等高延迟文件系统)");
+        options.addOption(null, "io-concurrency", true, "IO模式下同时读写的最大文件数 (默认: 64)");
+        options.addOption(null, "schedule", true, "调度策略 (FIFO|LARGEST_FIRST|SMALLEST_FIRST)");
+        options.addOption(null, "file-timeout", true, "单个文件的处理时限 (秒, 默认: 0 不限制)");
+        options.addOption(null, "journal", true, "批量处理日志文件路径");
+        options.addOption(null, "archive-order", true, "压缩包输出条目顺序 (INPUT|COMPLETION)");
+        options.addOption(null, "read-mode", true, "源文件读取方式 (READ|MMAP|AUTO，AUTO只对本地文件系统使用内存映射)");
+        options.addOption(null, "fsync", true, "输出同步到磁盘的策略 (NONE|PER_FILE|GROUP)");
+        options.addOption(null, "dedup", true, "内容相同的输入只处理一次，其余复用输出 (OFF|COPY|LINK)");
+        options.addOption(null, "exif-index", true, "EXIF日期索引文件路径，重复处理同一批文件时不再解析EXIF");
+        
+        // 多节点选项
+        options.addOption(null, "shard-index", true, "本节点的分片序号 (0 到 shard-count-1)");
+        options.addOption(null, "shard-count", true, "参与处理的节点总数 (默认: 1)");
+        options.addOption(null, "lease-dir", true, "多节点共享的租约目录，设置后各节点可领取其他节点未开始的文件");
+        options.addOption(null, "lease-run", true, "本次处理的运行标识，完成标记按标识区分，重新处理同一批文件时换用新标识");
+        
+        // 服务选项
+        options.addOption(null, "serve", false, "启动本地HTTP水印服务");
+        options.addOption(null, "port", true, "水印服务监听端口 (默认: 8719)");
+        options.addOption(null, "watch", false, "持续监视输入目录，处理新到达和被修改的图片");
+        options.addOption(null, "framed", false, "分帧流模式：标准输入/输出为连续的 4字节长度+图片数据 帧 (配合 -i - -o -)");
+        
         return options;
     }
     
+    /**
+     * 获取本次运行的配置，只在第一次调用时读取配置文件
+     * 
+     * @param cmd 命令行参数
+     * @return 配置管理器
+     */
+    private static ConfigManager loadConfig(CommandLine cmd) {
+        if (loadedConfig == null) {
+            loadedConfig = cmd.hasOption("config")
+                    ? new ConfigManager(cmd.getOptionValue("config"))
+                    : new ConfigManager();
+        }
+        return loadedConfig;
+    }
+    
     /**
      * 解析配置参数
      * 
@@ -116,13 +209,7 @@ public class PhotoWatermarkTool {
      * @return 水印配置
      */
     private static WatermarkConfig parseConfig(CommandLine cmd) {
-        // 创建配置管理器
-        ConfigManager configManager;
-        if (cmd.hasOption("config")) {
-            configManager = new ConfigManager(cmd.getOptionValue("config"));
-        } else {
-            configManager = new ConfigManager();
-        }
+        ConfigManager configManager = loadConfig(cmd);
         
         // 从配置文件创建基础配置
         WatermarkConfig config = configManager.createWatermarkConfig();
@@ -190,6 +277,124 @@ public class PhotoWatermarkTool {
             }
         }
         
+        if (cmd.hasOption("exec-mode")) {
+            try {
+                ExecutionMode mode = ExecutionMode.valueOf(cmd.getOptionValue("exec-mode").toUpperCase());
+                config.setExecutionMode(mode);
+            } catch (IllegalArgumentException e) {
+                System.err.println("警告: 无效的执行模式，使用默认值");
+            }
+        }
+        
+        if (cmd.hasOption("io-concurrency")) {
+            try {
+                int ioConcurrency = Integer.parseInt(cmd.getOptionValue("io-concurrency"));
+                if (ioConcurrency > 0) {
+                    config.setIoConcurrency(ioConcurrency);
+                } else {
+                    System.err.println("警告: IO并发数必须大于0，使用默认值");
+                }
+            } catch (NumberFormatException e) {
+                System.err.println("警告: 无效的IO并发数，使用默认值");
+            }
+        }
+        
+        if (cmd.hasOption("schedule")) {
+            try {
+                SchedulingPolicy policy = SchedulingPolicy.valueOf(cmd.getOptionValue("schedule").toUpperCase());
+                config.setSchedulingPolicy(policy);
+            } catch (IllegalArgumentException e) {
+                System.err.println("警告: 无效的调度策略，使用默认值");
+            }
+        }
+        
+        if (cmd.hasOption("file-timeout")) {
+            try {
+                int fileTimeout = Integer.parseInt(cmd.getOptionValue("file-timeout"));
+                if (fileTimeout >= 0) {
+                    config.setFileTimeoutSeconds(fileTimeout);
+                } else {
+                    System.err.println("警告: 单文件超时不能为负数，使用默认值");
+                }
+            } catch (NumberFormatException e) {
+                System.err.println("警告: 无效的单文件超时，使用默认值");
+            }
+        }
+        
+        if (cmd.hasOption("journal")) {
+            config.setJournalFile(cmd.getOptionValue("journal"));
+        }
+        
+        if (cmd.hasOption("archive-order")) {
+            try {
+                config.setArchiveOrder(ArchiveOrder.valueOf(cmd.getOptionValue("archive-order").toUpperCase()));
+            } catch (IllegalArgumentException e) {
+                System.err.println("警告: 无效的压缩包输出顺序，使用默认值");
+            }
+        }
+        
+        if (cmd.hasOption("read-mode")) {
+            try {
+                config.setInputReadMode(InputReadMode.valueOf(cmd.getOptionValue("read-mode").toUpperCase()));
+            } catch (IllegalArgumentException e) {
+                System.err.println("警告: 无效的源文件读取方式，使用默认值");
+            }
+        }
+        
+        if (cmd.hasOption("fsync")) {
+            try {
+                config.setFsyncPolicy(FsyncPolicy.valueOf(cmd.getOptionValue("fsync").toUpperCase()));
+            } catch (IllegalArgumentException e) {
+                System.err.println("警告: 无效的输出同步策略，使用默认值");
+            }
+        }
+        
+        if (cmd.hasOption("dedup")) {
+            try {
+                config.setDuplicateMode(DuplicateMode.valueOf(cmd.getOptionValue("dedup").toUpperCase()));
+            } catch (IllegalArgumentException e) {
+                System.err.println("警告: 无效的重复输入处理方式，使用默认值");
+            }
+        }
+        
+        if (cmd.hasOption("exif-index")) {
+            config.setExifIndexFile(cmd.getOptionValue("exif-index"));
+        }
+        
+        if (cmd.hasOption("shard-index") || cmd.hasOption("shard-count")) {
+            try {
+                int shardCount = Integer.parseInt(cmd.getOptionValue("shard-count",
+                        String.valueOf(config.getShardCount())));
+                int shardIndex = Integer.parseInt(cmd.getOptionValue("shard-index",
+                        String.valueOf(config.getShardIndex())));
+                if (shardCount >= 1 && shardIndex >= 0 && shardIndex < shardCount) {
+                    config.setShardCount(shardCount);
+                    config.setShardIndex(shardIndex);
+                } else {
+                    System.err.println("警告: 分片序号必须在 0 到 shard-count-1 之间，不分片");
+                    config.setShardCount(1);
+                    config.setShardIndex(0);
+                }
+            } catch (NumberFormatException e) {
+                System.err.println("警告: 无效的分片参数，不分片");
+                config.setShardCount(1);
+                config.setShardIndex(0);
+            }
+        }
+        
+        if (cmd.hasOption("lease-dir")) {
+            config.setLeaseDirectory(cmd.getOptionValue("lease-dir"));
+        }
+        
+        if (cmd.hasOption("lease-run")) {
+            String leaseRun = cmd.getOptionValue("lease-run").trim();
+            if (WorkLeases.isValidRun(leaseRun)) {
+                config.setLeaseRun(leaseRun);
+            } else {
+                System.err.println("警告: 运行标识只能包含字母、数字、点、下划线和连字符，不区分运行");
+            }
+        }
+        
         return config;
     }
     
@@ -219,6 +424,58 @@ public class PhotoWatermarkTool {
         return null;
     }
     
+    /**
+     * 管道模式处理：-i - 从标准输入读取，-o - 写到标准输出
+     * 
+     * @param inputPath 输入文件路径，"-" 表示标准输入
+     * @param outputPath 输出文件路径，"-" 或未指定表示标准输出
+     * @param stdout 标准输出（System.out 已改写到标准错误）
+     * @param config 水印配置
+     * @param cmd 命令行参数
+     * @throws IOException 读写失败时抛出
+     */
+    private static void processPipe(String inputPath, String outputPath, OutputStream stdout, WatermarkConfig config,
+                                    CommandLine cmd) throws IOException {
+        boolean useExifDate = cmd.hasOption("exif");
+        String customWatermark = cmd.getOptionValue("text");
+        
+        if (!useExifDate && (customWatermark == null || customWatermark.trim().isEmpty())) {
+            ConfigManager configManager = loadConfig(cmd);
+            useExifDate = configManager.useExifDate();
+            customWatermark = configManager.getDefaultWatermarkText();
+        }
+        
+        PipeProcessor pipe = new PipeProcessor(config, useExifDate, customWatermark);
+        boolean toStdout = outputPath == null || "-".equals(outputPath);
+        
+        if (cmd.hasOption("framed")) {
+            if (!"-".equals(inputPath) || !toStdout) {
+                System.err.println("错误: 分帧模式只能从标准输入读取并写到标准输出 (-i - -o -)");
+                System.exit(1);
+            }
+            FileProcessor.ProcessResult result = pipe.processFrames(new BufferedInputStream(System.in, 1 << 16),
+                    new BufferedOutputStream(stdout, 1 << 16));
+            System.err.println(result.getMessage());
+            if (!result.isSuccess()) {
+                System.exit(1);
+            }
+            return;
+        }
+        
+        boolean success;
+        try (InputStream in = "-".equals(inputPath) ? System.in : new FileInputStream(inputPath);
+             OutputStream out = toStdout ? stdout : new FileOutputStream(outputPath)) {
+            success = pipe.processSingle(in, out);
+        }
+        if (!success) {
+            System.err.println("处理失败: " + pipe.getStatistics());
+            if (!toStdout) {
+                new File(outputPath).delete();
+            }
+            System.exit(1);
+        }
+    }
+    
     /**
      * 执行水印处理
      * 
@@ -233,8 +490,7 @@ public class PhotoWatermarkTool {
         if (outputPath != null) {
             outputDir = new File(outputPath);
         } else {
-            ConfigManager configManager = new ConfigManager();
-            outputDir = new File(configManager.getOutputDirectory());
+            outputDir = new File(loadConfig(cmd).getOutputDirectory());
         }
         
         // 确定水印文本和处理选项
@@ -242,7 +498,7 @@ public class PhotoWatermarkTool {
         String customWatermark = cmd.getOptionValue("text");
         
         if (!useExifDate && (customWatermark == null || customWatermark.trim().isEmpty())) {
-            ConfigManager configManager = new ConfigManager();
+            ConfigManager configManager = loadConfig(cmd);
             useExifDate = configManager.useExifDate();
             customWatermark = configManager.getDefaultWatermarkText();
         }
@@ -258,7 +514,40 @@ public class PhotoWatermarkTool {
         System.out.println("输出目录: " + outputDir.getAbsolutePath());
         System.out.println("水印配置: " + config);
         
-        FileProcessor.ProcessResult result = processor.processPath(inputPath);
+        if (cmd.hasOption("watch")) {
+            watchFolder(processor, new File(inputPath), recursive, cmd);
+            return;
+        }
+        
+        // Ctrl+C 时停止领取新文件，等进行中的文件完成并写出日志和统计后再退出
+        Thread shutdownHook = new Thread(() -> {
+            processor.cancel();
+            try {
+                if (!processor.awaitCompletion(SHUTDOWN_GRACE_SECONDS, TimeUnit.SECONDS)) {
+                    System.err.println("警告: 等待进行中的文件超时，强制退出");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "watermark-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+        
+        FileProcessor.ProcessResult result;
+        try {
+            result = processor.processPath(inputPath);
+        } finally {
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException e) {
+                // JVM正在退出，钩子已经在运行
+            }
+        }
+        
+        if (processor.isCancelled()) {
+            System.err.println(result.getMessage());
+            System.err.println(processor.getStatistics());
+            return;
+        }
         
         if (result.isSuccess()) {
             System.out.println("处理完成！");
@@ -270,17 +559,157 @@ public class PhotoWatermarkTool {
     }
     
     /**
-     * 显示当前配置
+     * 按任务清单处理
      * 
+     * @param manifestPath 清单文件路径
+     * @param outputPath 记录未指定输出时的输出目录
+     * @param config 水印配置
      * @param cmd 命令行参数
      */
-    private static void showCurrentConfig(CommandLine cmd) {
-        ConfigManager configManager;
-        if (cmd.hasOption("config")) {
-            configManager = new ConfigManager(cmd.getOptionValue("config"));
+    private static void processManifest(String manifestPath, String outputPath, WatermarkConfig config,
+                                        CommandLine cmd) {
+        File manifestFile = new File(manifestPath);
+        if (!manifestFile.isFile()) {
+            System.err.println("错误: 任务清单不存在: " + manifestPath);
+            System.exit(1);
+        }
+        
+        ConfigManager configManager = loadConfig(cmd);
+        
+        File outputDir = outputPath != null ? new File(outputPath) : new File(configManager.getOutputDirectory());
+        String defaultText = cmd.getOptionValue("text", configManager.getDefaultWatermarkText());
+        File errorFile = cmd.hasOption("manifest-errors") ? new File(cmd.getOptionValue("manifest-errors")) : null;
+        
+        // 与目录模式相同：指定 -e，或者既未指定 -e 也未指定 -t 时按配置文件决定是否使用EXIF日期
+        String customWatermark = cmd.getOptionValue("text");
+        boolean useExifDate = cmd.hasOption("exif")
+                || ((customWatermark == null || customWatermark.trim().isEmpty()) && configManager.useExifDate());
+        
+        ManifestProcessor processor = new ManifestProcessor(config, useExifDate, defaultText, outputDir, errorFile);
+        
+        System.out.println("开始处理...");
+        System.out.println("任务清单: " + manifestFile.getAbsolutePath());
+        System.out.println("默认输出目录: " + outputDir.getAbsolutePath());
+        
+        // Ctrl+C 时停止读取清单，等进行中的记录完成后再退出
+        Thread shutdownHook = new Thread(() -> {
+            processor.cancel();
+            try {
+                if (!processor.awaitCompletion(SHUTDOWN_GRACE_SECONDS, TimeUnit.SECONDS)) {
+                    System.err.println("警告: 等待进行中的文件超时，强制退出");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "watermark-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+        
+        FileProcessor.ProcessResult result;
+        try {
+            result = processor.process(manifestFile);
+        } finally {
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException e) {
+                // JVM正在退出，钩子已经在运行
+            }
+        }
+        
+        if (processor.isCancelled()) {
+            System.err.println(result.getMessage());
+            System.err.println(processor.getStatistics());
+            return;
+        }
+        
+        if (result.isSuccess()) {
+            System.out.println("处理完成！");
+            System.out.println(result.getMessage());
         } else {
-            configManager = new ConfigManager();
+            System.err.println("处理失败: " + result.getMessage());
+            System.exit(1);
         }
+    }
+    
+    /**
+     * 监视输入目录，直到进程退出
+     * 
+     * @param processor 文件处理器
+     * @param inputDir 输入目录
+     * @param recursive 是否监视子目录
+     * @param cmd 命令行参数
+     */
+    private static void watchFolder(FileProcessor processor, File inputDir, boolean recursive, CommandLine cmd) {
+        if (!inputDir.isDirectory()) {
+            System.err.println("错误: 监视模式的输入路径必须是目录");
+            System.exit(1);
+        }
+        
+        ConfigManager configManager = loadConfig(cmd);
+        
+        FolderWatcher watcher;
+        try {
+            watcher = new FolderWatcher(processor, inputDir, recursive, configManager.getWatchSettleMillis());
+        } catch (IOException e) {
+            System.err.println("错误: 无法监视目录: " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+        
+        // Ctrl+C 时停止监视，等进行中的文件完成后再退出
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            watcher.close();
+            processor.cancel();
+            try {
+                if (!watcher.awaitTermination(SHUTDOWN_GRACE_SECONDS, TimeUnit.SECONDS)) {
+                    System.err.println("警告: 等待进行中的文件超时，强制退出");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            System.err.println(processor.getStatistics());
+        }, "watermark-watch-shutdown"));
+        
+        System.out.println("正在监视目录，按 Ctrl+C 停止");
+        watcher.run();
+    }
+    
+    /**
+     * 启动本地HTTP水印服务，直到进程退出
+     * 
+     * @param config 水印配置
+     * @param cmd 命令行参数
+     * @throws IOException 无法监听端口时抛出
+     */
+    private static void startServer(WatermarkConfig config, CommandLine cmd) throws IOException {
+        ConfigManager configManager = loadConfig(cmd);
+        
+        int port = configManager.getServerPort();
+        if (cmd.hasOption("port")) {
+            try {
+                port = Integer.parseInt(cmd.getOptionValue("port"));
+            } catch (NumberFormatException e) {
+                System.err.println("警告: 无效的端口，使用默认值");
+            }
+        }
+        
+        String defaultText = cmd.getOptionValue("text", configManager.getDefaultWatermarkText());
+        WatermarkServer server = new WatermarkServer(config, defaultText, port,
+                configManager.getServerMaxConcurrent(), configManager.getServerMaxQueuedJobs(),
+                configManager.getServerMaxUploadBytes());
+        server.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> server.stop(5), "watermark-server-shutdown"));
+        
+        System.out.println("水印服务已启动: http://127.0.0.1:" + server.getPort());
+        System.out.println("按 Ctrl+C 停止");
+    }
+    
+    /**
+     * 显示当前配置
+     * 
+     * @param cmd 命令行参数
+     */
+    private static void showCurrentConfig(CommandLine cmd) {
+        ConfigManager configManager = loadConfig(cmd);
         
         configManager.printCurrentConfig();
     }
@@ -304,6 +733,14 @@ public class PhotoWatermarkTool {
                           "  java -jar photo-watermark-tool.jar -i photo.jpg -e -o ./output\n\n" +
                           "  # 使用自定义文本批量处理目录\n" +
                           "  java -jar photo-watermark-tool.jar -i ./photos -t \"我的照片\" -r -o ./output\n\n" +
+                          "  # 处理压缩包中的图片，输出 ./output/photos_watermarked.zip\n" +
+                          "  java -jar photo-watermark-tool.jar -i photos.zip -e -o ./output\n\n" +
+                          "  # 在管道中使用，从标准输入读取、写到标准输出\n" +
+                          "  curl -s https://example.com/a.jpg | java -jar photo-watermark-tool.jar -i - -o - -t \"水印\" > a.jpg\n\n" +
+                          "  # 分帧流模式，一个进程处理任意多张图片 (每帧为4字节大端长度+图片数据)\n" +
+                          "  producer | java -jar photo-watermark-tool.jar -i - -o - --framed -e | consumer\n\n" +
+                          "  # 按任务清单处理，每条记录使用各自的水印文本\n" +
+                          "  java -jar photo-watermark-tool.jar --manifest jobs.jsonl --manifest-errors rejected.tsv\n\n" +
                           "  # 自定义水印样式\n" +
                           "  java -jar photo-watermark-tool.jar -i photo.jpg -t \"水印\" -s 32 -p CENTER --color 255,0,0\n");
     }
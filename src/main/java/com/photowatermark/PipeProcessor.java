@@ -0,0 +1,262 @@
+package com.photowatermark;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * 管道模式处理
+ * 
+ * 单张模式从输入流读取一张图片，把带水印的图片写到输出流，用于 {@code -i - -o -}。
+ * 分帧模式在同一个进程中处理任意多张图片：每帧为4字节大端长度加图片数据，输出帧格式相同，
+ * 处理失败的图片输出长度为-1的空帧，原因写到日志（标准错误）。输出帧与输入帧一一对应、顺序相同，
+ * 读取下一帧与处理前面的帧同时进行；每帧在它和之前的帧都处理完后立即写出，不等待下一帧到达，
+ * 发送一帧后等待结果的客户端不会阻塞。
+ * 
+ * 图片格式根据数据头部识别，输出格式与输入相同；管道模式只输出一份图片，忽略多规格输出配置。
+ * 
+ * @author PhotoWatermark Team
+ * @version 1.0.0
+ */
+public class PipeProcessor {
+    
+    private static final Logger logger = LoggerFactory.getLogger(PipeProcessor.class);
+    
+    // 单帧大小上限，防止错误的长度前缀导致申请过大的内存
+    private static final int MAX_FRAME_SIZE = 1 << 30;
+    
+    // 输出帧中表示处理失败的长度
+    static final int FAILED_FRAME = -1;
+    
+    private final FileProcessor processor;
+    private final int maxInFlight;
+    
+    // 处理统计
+    private int totalImages = 0;
+    private int successfulImages = 0;
+    private int failedImages = 0;
+    
+    /**
+     * 构造函数
+     * 
+     * @param config 水印配置
+     * @param useExifDate 是否使用EXIF日期作为水印
+     * @param customWatermark 自定义水印文本
+     */
+    public PipeProcessor(WatermarkConfig config, boolean useExifDate, String customWatermark) {
+        WatermarkConfig single = config.copy();
+        single.setRenditions(new ArrayList<>());
+        this.processor = new FileProcessor(single, useExifDate, customWatermark, null, false);
+        this.maxInFlight = Runtime.getRuntime().availableProcessors() * 2;
+    }
+    
+    /**
+     * 处理单张图片
+     * 
+     * @param in 图片输入流，读到末尾，不会被关闭
+     * @param out 输出流，不会被关闭
+     * @return 是否成功；失败时不向输出流写入任何内容
+     * @throws IOException 读取输入或写出结果失败时抛出
+     */
+    public boolean processSingle(InputStream in, OutputStream out) throws IOException {
+        byte[] source;
+        ImageBuffer buffer = ImageBuffer.readFully(in);
+        try {
+            source = buffer.toByteArray();
+        } finally {
+            buffer.release();
+        }
+        
+        totalImages++;
+        byte[] output = render("stdin", source);
+        if (output == null) {
+            failedImages++;
+            return false;
+        }
+        out.write(output);
+        out.flush();
+        successfulImages++;
+        return true;
+    }
+    
+    /**
+     * 处理分帧图片流，直到输入流结束
+     * 
+     * @param in 分帧输入流，不会被关闭
+     * @param out 分帧输出流，每写出一帧刷新一次，不会被关闭
+     * @return 处理结果
+     * @throws IOException 帧格式无效、读取输入或写出结果失败时抛出
+     */
+    public FileProcessor.ProcessResult processFrames(InputStream in, OutputStream out) throws IOException {
+        long startTime = System.currentTimeMillis();
+        DataInputStream frames = new DataInputStream(in);
+        DataOutputStream results = new DataOutputStream(out);
+        ExecutorService pool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+                FileProcessor.daemonThreadFactory("watermark-pipe"));
+        
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        // 按输入顺序串起的写出链，每帧在前一帧写出且自身处理完后由完成它的线程写出
+        CompletableFuture<Void> written = CompletableFuture.completedFuture(null);
+        try {
+            byte[] source;
+            while ((source = readFrame(frames)) != null) {
+                // 处理中和等待写出的帧达到上限时等待最早的一帧写出
+                inFlight.acquire();
+                if (written.isCompletedExceptionally()) {
+                    break;
+                }
+                
+                String name = "frame-" + (++totalImages);
+                byte[] frame = source;
+                CompletableFuture<byte[]> rendered = CompletableFuture.supplyAsync(() -> render(name, frame), pool);
+                written = written.thenCombine(rendered, (ignored, data) -> {
+                    try {
+                        writeFrame(results, data);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    return (Void) null;
+                }).whenComplete((ignored, error) -> inFlight.release());
+            }
+            written.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("处理分帧输入时被中断");
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            throw e;
+        } finally {
+            pool.shutdownNow();
+        }
+        
+        long duration = System.currentTimeMillis() - startTime;
+        String message = String.format("处理完成 - 总计: %d, 成功: %d, 失败: %d, 耗时: %d ms",
+                totalImages, successfulImages, failedImages, duration);
+        logger.info(message);
+        return new FileProcessor.ProcessResult(failedImages == 0, message);
+    }
+    
+    /**
+     * 读取一帧
+     * 
+     * @return 帧数据，输入流在帧边界结束时返回null
+     * @throws IOException 帧长度无效或帧数据不完整时抛出
+     */
+    private static byte[] readFrame(DataInputStream in) throws IOException {
+        int first = in.read();
+        if (first < 0) {
+            return null;
+        }
+        int length = (first << 24) | (in.readUnsignedByte() << 16) | (in.readUnsignedByte() << 8)
+                | in.readUnsignedByte();
+        if (length < 0 || length > MAX_FRAME_SIZE) {
+            throw new IOException("无效的帧长度: " + length);
+        }
+        
+        byte[] data = new byte[length];
+        try {
+            in.readFully(data);
+        } catch (EOFException e) {
+            throw new IOException("帧数据不完整，声明长度 " + length + " 字节", e);
+        }
+        return data;
+    }
+    
+    private void writeFrame(DataOutputStream out, byte[] data) throws IOException {
+        if (data == null) {
+            failedImages++;
+            out.writeInt(FAILED_FRAME);
+        } else {
+            successfulImages++;
+            out.writeInt(data.length);
+            out.write(data);
+        }
+        out.flush();
+    }
+    
+    /**
+     * 为一张图片添加水印
+     * 
+     * @param name 图片名称，用于日志
+     * @param source 图片数据
+     * @return 带水印的图片数据，失败时返回null
+     */
+    private byte[] render(String name, byte[] source) {
+        String format = detectFormat(source);
+        if (format == null) {
+            logger.error("无法识别的图片格式: {}", name);
+            return null;
+        }
+        
+        try {
+            Map<Rendition, byte[]> outputs = processor.processEntry(name + "." + format, source);
+            return outputs.get(FileProcessor.SINGLE_OUTPUT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (Exception e) {
+            logger.error("处理图片失败: {} - {}", name, e.getMessage());
+            return null;
+        }
+    }
+    
+    /**
+     * 根据数据头部识别图片格式
+     * 
+     * @param data 图片数据
+     * @return 格式名称 (jpg|png|gif|bmp)，无法识别时返回null
+     */
+    static String detectFormat(byte[] data) {
+        if (startsWith(data, 0xFF, 0xD8, 0xFF)) {
+            return "jpg";
+        }
+        if (startsWith(data, 0x89, 'P', 'N', 'G')) {
+            return "png";
+        }
+        if (startsWith(data, 'G', 'I', 'F', '8')) {
+            return "gif";
+        }
+        if (startsWith(data, 'B', 'M')) {
+            return "bmp";
+        }
+        return null;
+    }
+    
+    private static boolean startsWith(byte[] data, int... prefix) {
+        if (data.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if ((data[i] & 0xFF) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * 获取处理统计信息
+     * 
+     * @return 统计信息字符串
+     */
+    public String getStatistics() {
+        return String.format("处理统计 - 总计: %d, 成功: %d, 失败: %d", totalImages, successfulImages, failedImages);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,99 @@
+package com.photowatermark;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * 跨批次复用的处理线程池
+ * 
+ * 长期运行的调用方 (例如HTTP服务) 为每个批次创建新的 {@link FileProcessor} 时，
+ * 通过 {@link FileProcessor#setSharedExecutors(ProcessorExecutors)} 共享同一组线程池，
+ * 避免每个批次都创建和销毁工作、编码和超时监控线程。各线程池在第一次使用时创建，
+ * 由本对象的所有者负责关闭。
+ * 
+ * @author PhotoWatermark Team
+ * @version 1.0.0
+ */
+public class ProcessorExecutors implements Closeable {
+    
+    private ExecutorService cpuWorkers;
+    private ExecutorService ioWorkers;
+    private ExecutorService encoder;
+    private ScheduledExecutorService watchdog;
+    private boolean closed = false;
+    
+    /**
+     * 获取工作线程池
+     * 
+     * @param mode 执行模式
+     * @return 工作线程池
+     */
+    synchronized ExecutorService workers(ExecutionMode mode) {
+        checkOpen();
+        if (mode == ExecutionMode.IO) {
+            if (ioWorkers == null) {
+                ioWorkers = FileProcessor.createIoExecutor();
+            }
+            return ioWorkers;
+        }
+        if (cpuWorkers == null) {
+            cpuWorkers = Executors.newCachedThreadPool(FileProcessor.daemonThreadFactory("watermark-worker"));
+        }
+        return cpuWorkers;
+    }
+    
+    /**
+     * 获取多规格输出的编码线程池
+     * 
+     * @return 编码线程池
+     */
+    synchronized ExecutorService encoder() {
+        checkOpen();
+        if (encoder == null) {
+            encoder = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+                    FileProcessor.daemonThreadFactory("watermark-encode"));
+        }
+        return encoder;
+    }
+    
+    /**
+     * 获取单文件超时监控线程池
+     * 
+     * @return 超时监控线程池
+     */
+    synchronized ScheduledExecutorService watchdog() {
+        checkOpen();
+        if (watchdog == null) {
+            watchdog = Executors.newSingleThreadScheduledExecutor(FileProcessor.daemonThreadFactory("watermark-watchdog"));
+        }
+        return watchdog;
+    }
+    
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("线程池已关闭");
+        }
+    }
+    
+    /**
+     * 关闭所有线程池，不等待进行中的任务
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        List<ExecutorService> executors = new ArrayList<>();
+        executors.add(cpuWorkers);
+        executors.add(ioWorkers);
+        executors.add(encoder);
+        executors.add(watchdog);
+        for (ExecutorService executor : executors) {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+    }
+}
\ No newline at end of file
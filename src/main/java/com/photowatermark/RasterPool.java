@@ -0,0 +1,333 @@
+package com.photowatermark;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按尺寸分级的像素缓冲池
+ * 
+ * 每张图片的解码结果和绘制水印的画布都是数十MB的像素数组，对G1来说是巨型对象，
+ * 频繁分配会引起混合回收甚至疏散失败。缓冲池按图片类型 (TYPE_INT_RGB 用于绘制，TYPE_3BYTE_BGR 用于JPEG解码)
+ * 和大小分级保存用完的像素数组，相近尺寸的图片可以复用；每级的容量是2的幂次之间再四等分，最多浪费约25%。
+ * 
+ * 取得的图片与 new BufferedImage 相同，像素全部为0；用完后调用 {@link #release(BufferedImage)} 归还。
+ * 池中空闲数组的总大小有上限，归还时超过上限则先淘汰空闲最久的数组；空闲超过 {@link #IDLE_MILLIS}
+ * 的数组在下一次取得或归还时交给垃圾回收，处理完一批大图后缓冲池不会一直占着堆。
+ * 小于 {@link #MIN_POOLED_PIXELS} 的图片不进入缓冲池。
+ * 
+ * @author PhotoWatermark Team
+ * @version 1.0.0
+ */
+public class RasterPool {
+    
+    private static final Logger logger = LoggerFactory.getLogger(RasterPool.class);
+    
+    // 小于该像素数 (1MB) 的图片不是巨型对象，直接分配
+    static final int MIN_POOLED_PIXELS = 256 * 1024;
+    
+    // 空闲数组的最长保留时间
+    static final long IDLE_MILLIS = 30_000;
+    
+    private static final DirectColorModel INT_RGB_MODEL =
+            new DirectColorModel(24, 0x00FF0000, 0x0000FF00, 0x000000FF, 0);
+    private static final ColorModel BYTE_BGR_MODEL = new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_sRGB),
+            new int[] {8, 8, 8}, false, false, Transparency.OPAQUE, DataBuffer.TYPE_BYTE);
+    
+    // 键为图片类型和分级容量，值为空闲的数组，最近归还的在队首
+    private static final Map<Long, Deque<PooledArray>> buckets = new ConcurrentHashMap<>();
+    private static final AtomicLong pooledBytes = new AtomicLong();
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+    
+    private static volatile long capacityBytes = defaultCapacity();
+    private static volatile long idleNanos = TimeUnit.MILLISECONDS.toNanos(IDLE_MILLIS);
+    
+    /**
+     * 取得一张像素全部为0的 TYPE_INT_RGB 图片
+     * 
+     * @param width 宽度
+     * @param height 高度
+     * @return 图片，像素数组可能来自缓冲池
+     */
+    public static BufferedImage acquire(int width, int height) {
+        return acquire(width, height, BufferedImage.TYPE_INT_RGB);
+    }
+    
+    /**
+     * 取得一张像素全部为0的图片
+     * 
+     * @param width 宽度
+     * @param height 高度
+     * @param imageType 图片类型，{@link #isPooledType(int)} 为false的类型直接分配
+     * @return 图片，像素数组可能来自缓冲池
+     */
+    public static BufferedImage acquire(int width, int height, int imageType) {
+        long pixels = (long) width * height;
+        int samplesPerPixel = imageType == BufferedImage.TYPE_3BYTE_BGR ? 3 : 1;
+        if (!isPooledType(imageType) || pixels < MIN_POOLED_PIXELS || pixels * samplesPerPixel > Integer.MAX_VALUE
+                || capacityBytes <= 0) {
+            return new BufferedImage(width, height, imageType);
+        }
+        
+        trimIdle(System.nanoTime());
+        
+        int length = (int) pixels * samplesPerPixel;
+        int size = sizeClass(length);
+        Object data = null;
+        Deque<PooledArray> bucket = buckets.get(key(imageType, size));
+        if (bucket != null) {
+            synchronized (bucket) {
+                PooledArray pooled = bucket.pollFirst();
+                data = pooled != null ? pooled.data : null;
+            }
+        }
+        
+        if (data != null) {
+            pooledBytes.addAndGet(-bytesOf(imageType, size));
+            if (imageType == BufferedImage.TYPE_INT_RGB) {
+                Arrays.fill((int[]) data, 0, length, 0);
+            } else {
+                Arrays.fill((byte[]) data, 0, length, (byte) 0);
+            }
+            hits.incrementAndGet();
+        } else {
+            data = imageType == BufferedImage.TYPE_INT_RGB ? new int[size] : new byte[size];
+            misses.incrementAndGet();
+        }
+        
+        if (imageType == BufferedImage.TYPE_INT_RGB) {
+            DataBufferInt buffer = new DataBufferInt((int[]) data, size);
+            WritableRaster raster = Raster.createPackedRaster(buffer, width, height, width,
+                    INT_RGB_MODEL.getMasks(), null);
+            return new BufferedImage(INT_RGB_MODEL, raster, false, null);
+        }
+        DataBufferByte buffer = new DataBufferByte((byte[]) data, size);
+        WritableRaster raster = Raster.createInterleavedRaster(buffer, width, height, width * 3, 3,
+                new int[] {2, 1, 0}, null);
+        return new BufferedImage(BYTE_BGR_MODEL, raster, false, null);
+    }
+    
+    /**
+     * 归还图片的像素数组，之后不能再使用该图片
+     * 
+     * 不是由缓冲池分配的图片会被忽略，可以对任意图片调用。
+     * 
+     * @param image 图片，可以为null
+     */
+    public static void release(BufferedImage image) {
+        if (image == null || !isPooledType(image.getType())) {
+            return;
+        }
+        DataBuffer buffer = image.getRaster().getDataBuffer();
+        if (buffer.getNumBanks() != 1) {
+            return;
+        }
+        
+        Object data;
+        int length;
+        if (buffer instanceof DataBufferInt) {
+            data = ((DataBufferInt) buffer).getData();
+            length = ((int[]) data).length;
+        } else if (buffer instanceof DataBufferByte) {
+            data = ((DataBufferByte) buffer).getData();
+            length = ((byte[]) data).length;
+        } else {
+            return;
+        }
+        if (length < MIN_POOLED_PIXELS || length != sizeClass(length)) {
+            return;
+        }
+        
+        long now = System.nanoTime();
+        trimIdle(now);
+        
+        long bytes = bytesOf(image.getType(), length);
+        if (bytes > capacityBytes) {
+            return;
+        }
+        while (pooledBytes.get() + bytes > capacityBytes && evictOldest()) {
+            // 淘汰空闲最久的数组，直到放得下
+        }
+        if (pooledBytes.addAndGet(bytes) > capacityBytes) {
+            pooledBytes.addAndGet(-bytes);
+            return;
+        }
+        Deque<PooledArray> bucket = buckets.computeIfAbsent(key(image.getType(), length), k -> new ArrayDeque<>());
+        synchronized (bucket) {
+            bucket.addFirst(new PooledArray(data, now));
+        }
+    }
+    
+    /**
+     * 丢弃空闲超过保留时间的数组
+     * 
+     * 每级中最近归还的数组在队首，从队尾开始丢弃直到遇到未超时的数组。
+     * 
+     * @param now 当前时间 (System.nanoTime)
+     */
+    private static void trimIdle(long now) {
+        long idle = idleNanos;
+        for (Map.Entry<Long, Deque<PooledArray>> entry : buckets.entrySet()) {
+            long bytes = bytesOf((int) (entry.getKey() >>> 32), (int) (long) entry.getKey());
+            Deque<PooledArray> bucket = entry.getValue();
+            synchronized (bucket) {
+                PooledArray oldest;
+                while ((oldest = bucket.peekLast()) != null && now - oldest.releasedAt > idle) {
+                    bucket.pollLast();
+                    pooledBytes.addAndGet(-bytes);
+                }
+            }
+        }
+    }
+    
+    /**
+     * 丢弃整个缓冲池中空闲最久的一个数组
+     * 
+     * @return 是否丢弃了数组，缓冲池为空时返回false
+     */
+    private static boolean evictOldest() {
+        Long oldestKey = null;
+        long oldestTime = 0;
+        for (Map.Entry<Long, Deque<PooledArray>> entry : buckets.entrySet()) {
+            Deque<PooledArray> bucket = entry.getValue();
+            synchronized (bucket) {
+                PooledArray last = bucket.peekLast();
+                if (last != null && (oldestKey == null || last.releasedAt - oldestTime < 0)) {
+                    oldestKey = entry.getKey();
+                    oldestTime = last.releasedAt;
+                }
+            }
+        }
+        if (oldestKey == null) {
+            return false;
+        }
+        
+        Deque<PooledArray> bucket = buckets.get(oldestKey);
+        synchronized (bucket) {
+            // 其他线程可能已经取走，此时重新查找
+            if (bucket.pollLast() != null) {
+                pooledBytes.addAndGet(-bytesOf((int) (oldestKey >>> 32), (int) (long) oldestKey));
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * 判断图片类型是否使用缓冲池
+     * 
+     * @param imageType 图片类型
+     * @return 是否为 TYPE_INT_RGB 或 TYPE_3BYTE_BGR
+     */
+    public static boolean isPooledType(int imageType) {
+        return imageType == BufferedImage.TYPE_INT_RGB || imageType == BufferedImage.TYPE_3BYTE_BGR;
+    }
+    
+    /**
+     * 计算数组长度所属的分级容量：2的幂次之间四等分
+     * 
+     * @param length 数组长度
+     * @return 不小于数组长度的分级容量
+     */
+    static int sizeClass(int length) {
+        int highBit = Integer.highestOneBit(Math.max(length, 4));
+        if (highBit == length) {
+            return length;
+        }
+        int step = highBit / 4;
+        long size = ((long) length + step - 1) / step * step;
+        return (int) Math.min(size, Integer.MAX_VALUE - 8);
+    }
+    
+    private static Long key(int imageType, int size) {
+        return ((long) imageType << 32) | size;
+    }
+    
+    private static long bytesOf(int imageType, int length) {
+        return imageType == BufferedImage.TYPE_INT_RGB ? 4L * length : length;
+    }
+    
+    /**
+     * 设置缓冲池中空闲数组的总大小上限
+     * 
+     * @param megabytes 上限 (MB)，0表示不使用缓冲池，小于0时使用默认值 (最大堆的八分之一)
+     */
+    public static void setCapacity(int megabytes) {
+        capacityBytes = megabytes < 0 ? defaultCapacity() : megabytes * 1024L * 1024L;
+        if (capacityBytes == 0) {
+            clear();
+        }
+        logger.debug("像素缓冲池上限: {} MB", capacityBytes / (1024 * 1024));
+    }
+    
+    /**
+     * 清空缓冲池
+     */
+    public static void clear() {
+        for (Map.Entry<Long, Deque<PooledArray>> entry : buckets.entrySet()) {
+            int imageType = (int) (entry.getKey() >>> 32);
+            int size = (int) (long) entry.getKey();
+            Deque<PooledArray> bucket = entry.getValue();
+            synchronized (bucket) {
+                pooledBytes.addAndGet(-bytesOf(imageType, size) * bucket.size());
+                bucket.clear();
+            }
+        }
+    }
+    
+    /**
+     * 获取缓冲池统计信息
+     * 
+     * @return 统计信息字符串
+     */
+    public static String getStatistics() {
+        return String.format("像素缓冲池 - 复用: %d, 新分配: %d, 空闲: %d MB", hits.get(), misses.get(),
+                pooledBytes.get() / (1024 * 1024));
+    }
+    
+    static long getPooledBytes() {
+        return pooledBytes.get();
+    }
+    
+    /**
+     * 设置空闲数组的最长保留时间，小于0时恢复默认值 {@link #IDLE_MILLIS}
+     */
+    static void setIdleMillis(long millis) {
+        idleNanos = TimeUnit.MILLISECONDS.toNanos(millis < 0 ? IDLE_MILLIS : millis);
+    }
+    
+    private static long defaultCapacity() {
+        return Runtime.getRuntime().maxMemory() / 8;
+    }
+    
+    /**
+     * 空闲的 int[] 或 byte[] 数组及其归还时间
+     */
+    private static final class PooledArray {
+        final Object data;
+        final long releasedAt;
+        
+        PooledArray(Object data, long releasedAt) {
+            this.data = data;
+            this.releasedAt = releasedAt;
+        }
+    }
+}
\ No newline at end of file
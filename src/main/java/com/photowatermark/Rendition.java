@@ -0,0 +1,87 @@
+package com.photowatermark;
+
+/**
+ * 输出规格（同一张图片的一种输出尺寸/格式）
+ * 
+ * @author PhotoWatermark Team
+ * @version 1.0.0
+ */
+public class Rendition {
+    private String name;
+    private int maxSize = 0;
+    private String format;
+    private float quality = 0.9f;
+    private String suffix = "_watermarked";
+    
+    public Rendition() {
+    }
+    
+    /**
+     * 构造函数
+     * 
+     * @param name 规格名称
+     * @param maxSize 长边最大像素，0表示保持原始尺寸
+     * @param format 输出格式 (jpg|png|gif|bmp)，为null时沿用源文件格式
+     * @param quality 压缩质量 (0.0-1.0)，仅对支持压缩的格式生效
+     * @param suffix 输出文件名后缀
+     */
+    public Rendition(String name, int maxSize, String format, float quality, String suffix) {
+        this.name = name;
+        this.maxSize = maxSize;
+        this.format = format;
+        this.quality = quality;
+        this.suffix = suffix;
+    }
+    
+    // Getters and Setters
+    public String getName() {
+        return name;
+    }
+    
+    public void setName(String name) {
+        this.name = name;
+    }
+    
+    public int getMaxSize() {
+        return maxSize;
+    }
+    
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+    }
+    
+    public String getFormat() {
+        return format;
+    }
+    
+    public void setFormat(String format) {
+        this.format = format;
+    }
+    
+    public float getQuality() {
+        return quality;
+    }
+    
+    public void setQuality(float quality) {
+        this.quality = quality;
+    }
+    
+    public String getSuffix() {
+        return suffix;
+    }
+    
+    public void setSuffix(String suffix) {
+        this.suffix = suffix;
+    }
+    
+    @Override
+    public String toString() {
+        return "Rendition{" +
+                "name='" + name + '\'' +
+                ", maxSize=" + maxSize +
+                ", format='" + format + '\'' +
+                ", quality=" + quality +
+                ", suffix='" + suffix + '\'' +
+                '}';
+    }
+}
\ No newline at end of file
@@ -0,0 +1,58 @@
+package com.photowatermark;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 批量任务调度策略枚举
+ * 
+ * @author PhotoWatermark Team
+ * @version 1.0.0
+ */
+public enum SchedulingPolicy {
+    /** 按扫描顺序处理 */
+    FIFO("扫描顺序"),
+    /** 大文件优先（LPT），缩短整批处理的总耗时 */
+    LARGEST_FIRST("大文件优先"),
+    /** 小文件优先，尽快产出首批结果 */
+    SMALLEST_FIRST("小文件优先");
+    
+    private static final Comparator<ImageJob> BY_SCAN_ORDER = Comparator.comparingInt(ImageJob::getIndex);
+    private static final Comparator<ImageJob> BY_COST =
+            Comparator.comparingLong(ImageJob::getEstimatedCost).thenComparing(BY_SCAN_ORDER);
+    
+    private final String description;
+    
+    SchedulingPolicy(String description) {
+        this.description = description;
+    }
+    
+    public String getDescription() {
+        return description;
+    }
+    
+    /**
+     * 按策略对任务排序，开销相同的任务保持扫描顺序
+     * 
+     * @param jobs 任务列表
+     */
+    public void sort(List<ImageJob> jobs) {
+        switch (this) {
+            case LARGEST_FIRST:
+                jobs.sort(Comparator.comparingLong(ImageJob::getEstimatedCost).reversed()
+                        .thenComparing(BY_SCAN_ORDER));
+                break;
+            case SMALLEST_FIRST:
+                jobs.sort(BY_COST);
+                break;
+            default:
+                jobs.sort(BY_SCAN_ORDER);
+                break;
+        }
+    }
+    
+    @Override
+    public String toString() {
+        return description;
+    }
+}
\ No newline at end of file
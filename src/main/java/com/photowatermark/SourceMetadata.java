@@ -0,0 +1,77 @@
+package com.photowatermark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 源图片元数据
+ * 
+ * 在读取EXIF时一次性获得，随处理流程传递，避免为获取元数据重复打开源文件。
+ * 
+ * @author PhotoWatermark Team
+ * @version 1.0.0
+ */
+public class SourceMetadata {
+    
+    /** EXIF方向：正常显示，无需变换 */
+    public static final int ORIENTATION_NORMAL = 1;
+    
+    private final String dateTaken;
+    private final int orientation;
+    private final List<byte[]> jpegSegments;
+    
+    /**
+     * 构造函数
+     * 
+     * @param dateTaken 格式化的拍摄日期，没有时为null
+     * @param orientation EXIF方向标记值 (1-8)，无效值按1处理
+     * @param jpegSegments 完整的JPEG APP段（含标记和长度），用于写出时原样拼接
+     */
+    public SourceMetadata(String dateTaken, int orientation, List<byte[]> jpegSegments) {
+        this.dateTaken = dateTaken;
+        this.orientation = (orientation >= 1 && orientation <= 8) ? orientation : ORIENTATION_NORMAL;
+        this.jpegSegments = jpegSegments != null
+                ? Collections.unmodifiableList(new ArrayList<>(jpegSegments))
+                : Collections.<byte[]>emptyList();
+    }
+    
+    /**
+     * 创建空的元数据
+     * 
+     * @return 不包含任何信息的元数据
+     */
+    public static SourceMetadata empty() {
+        return new SourceMetadata(null, ORIENTATION_NORMAL, null);
+    }
+    
+    public String getDateTaken() {
+        return dateTaken;
+    }
+    
+    /**
+     * 获取EXIF方向标记
+     * 
+     * @return 方向标记值 (1-8)，没有时为1
+     */
+    public int getOrientation() {
+        return orientation;
+    }
+    
+    public List<byte[]> getJpegSegments() {
+        return jpegSegments;
+    }
+    
+    public boolean hasJpegSegments() {
+        return !jpegSegments.isEmpty();
+    }
+    
+    @Override
+    public String toString() {
+        return "SourceMetadata{" +
+                "dateTaken='" + dateTaken + '\'' +
+                ", orientation=" + orientation +
+                ", jpegSegments=" + jpegSegments.size() +
+                '}';
+    }
+}
\ No newline at end of file
@@ -0,0 +1,65 @@
+package com.photowatermark;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * 类数据共享 (AppCDS) 归档的训练运行
+ * 
+ * 在临时目录中生成各种支持格式的样例图片，按命令行的方式处理一遍，再走一遍管道模式，
+ * 使单文件调用会加载的类（命令行解析、日志、元数据读取、AWT字体和渲染、ImageIO插件）都被加载。
+ * 配合 -XX:ArchiveClassesAtExit 运行即可生成归档，见 pom.xml 中的 startup 构建配置。
+ * 
+ * @author PhotoWatermark Team
+ * @version 1.0.0
+ */
+public class StartupTraining {
+    
+    public static void main(String[] args) throws IOException {
+        Path workDir = Files.createTempDirectory("watermark-training");
+        try {
+            File inputDir = workDir.resolve("input").toFile();
+            File outputDir = workDir.resolve("output").toFile();
+            if (!inputDir.mkdirs()) {
+                throw new IOException("无法创建训练目录: " + inputDir);
+            }
+            
+            BufferedImage sample = createSample();
+            for (String format : new String[] {"jpg", "png", "gif", "bmp"}) {
+                ImageIO.write(sample, format, new File(inputDir, "sample." + format));
+            }
+            
+            PhotoWatermarkTool.main(new String[] {
+                    "-i", inputDir.getAbsolutePath(), "-o", outputDir.getAbsolutePath(), "-e", "-t", "训练", "-r"});
+            
+            ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+            ImageIO.write(sample, "jpg", encoded);
+            PipeProcessor pipe = new PipeProcessor(new ConfigManager().createWatermarkConfig(), false, "训练");
+            pipe.processSingle(new ByteArrayInputStream(encoded.toByteArray()), new ByteArrayOutputStream());
+        } finally {
+            try (Stream<Path> paths = Files.walk(workDir)) {
+                paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+    
+    private static BufferedImage createSample() {
+        BufferedImage image = new BufferedImage(640, 480, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = image.createGraphics();
+        g2d.setPaint(new GradientPaint(0, 0, Color.ORANGE, 640, 480, Color.BLUE));
+        g2d.fillRect(0, 0, 640, 480);
+        g2d.dispose();
+        return image;
+    }
+}
\ No newline at end of file
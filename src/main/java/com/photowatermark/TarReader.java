@@ -0,0 +1,324 @@
+package com.photowatermark;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * TAR流读取器
+ * 
+ * 按顺序读取条目，用法与 {@link java.util.zip.ZipInputStream} 相同：{@link #getNextEntry()}
+ * 定位到下一个条目后，通过本流的 read 方法读取该条目的内容。支持 ustar、GNU长文件名 (L)
+ * 和 pax 扩展头中的 path/size；超过8GB的大小按 base-256 编码读取。
+ * 
+ * @author PhotoWatermark Team
+ * @version 1.0.0
+ */
+public class TarReader extends InputStream {
+    
+    private static final int BLOCK_SIZE = 512;
+    
+    private final InputStream in;
+    private final byte[] header = new byte[BLOCK_SIZE];
+    private long remaining = 0;
+    private long padding = 0;
+    private boolean finished = false;
+    
+    /**
+     * TAR条目
+     */
+    public static class Entry {
+        private final String name;
+        private final long size;
+        private final long lastModified;
+        private final boolean directory;
+        
+        Entry(String name, long size, long lastModified, boolean directory) {
+            this.name = name;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.directory = directory;
+        }
+        
+        public String getName() {
+            return name;
+        }
+        
+        public long getSize() {
+            return size;
+        }
+        
+        /**
+         * 获取修改时间
+         * 
+         * @return 毫秒时间戳
+         */
+        public long getLastModified() {
+            return lastModified;
+        }
+        
+        public boolean isDirectory() {
+            return directory;
+        }
+    }
+    
+    /**
+     * 构造函数
+     * 
+     * @param in TAR数据（未压缩）
+     */
+    public TarReader(InputStream in) {
+        this.in = in;
+    }
+    
+    /**
+     * 定位到下一个普通文件或目录条目，跳过当前条目未读完的内容和其他类型的条目
+     * 
+     * @return 下一个条目，到达归档末尾时返回null
+     * @throws IOException 读取失败或头部无效时抛出
+     */
+    public Entry getNextEntry() throws IOException {
+        String longName = null;
+        Long paxSize = null;
+        
+        while (true) {
+            skipRemaining();
+            if (finished || !readHeader()) {
+                finished = true;
+                return null;
+            }
+            
+            char type = (char) header[156];
+            long size = parseNumber(124, 12);
+            String name = longName != null ? longName : headerName();
+            if (paxSize != null) {
+                size = paxSize;
+            }
+            remaining = size;
+            padding = (BLOCK_SIZE - size % BLOCK_SIZE) % BLOCK_SIZE;
+            
+            switch (type) {
+                case 'L':
+                    longName = trimNul(new String(readData(size), StandardCharsets.UTF_8));
+                    continue;
+                case 'x':
+                    String paxPath = null;
+                    for (String record : parsePax(readData(size))) {
+                        if (record.startsWith("path=")) {
+                            paxPath = record.substring(5);
+                        } else if (record.startsWith("size=")) {
+                            paxSize = Long.parseLong(record.substring(5));
+                        }
+                    }
+                    if (paxPath != null) {
+                        longName = paxPath;
+                    }
+                    continue;
+                case '0':
+                case '\0':
+                case '7':
+                case '5':
+                    break;
+                default:
+                    // 链接、设备文件、全局扩展头等不包含需要处理的内容
+                    longName = null;
+                    paxSize = null;
+                    continue;
+            }
+            
+            boolean directory = type == '5' || name.endsWith("/");
+            long lastModified = parseNumber(136, 12) * 1000L;
+            return new Entry(name, directory ? 0 : size, lastModified, directory);
+        }
+    }
+    
+    @Override
+    public int read() throws IOException {
+        if (remaining <= 0) {
+            return -1;
+        }
+        int b = in.read();
+        if (b < 0) {
+            throw new EOFException("TAR条目内容不完整");
+        }
+        remaining--;
+        return b;
+    }
+    
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (remaining <= 0) {
+            return -1;
+        }
+        int read = in.read(b, off, (int) Math.min(len, remaining));
+        if (read < 0) {
+            throw new EOFException("TAR条目内容不完整");
+        }
+        remaining -= read;
+        return read;
+    }
+    
+    @Override
+    public int available() throws IOException {
+        return (int) Math.min(in.available(), remaining);
+    }
+    
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+    
+    private boolean readHeader() throws IOException {
+        int offset = 0;
+        while (offset < BLOCK_SIZE) {
+            int read = in.read(header, offset, BLOCK_SIZE - offset);
+            if (read < 0) {
+                if (offset == 0) {
+                    return false;
+                }
+                throw new EOFException("TAR头部不完整");
+            }
+            offset += read;
+        }
+        
+        // 全零块表示归档结束
+        boolean empty = true;
+        for (byte b : header) {
+            if (b != 0) {
+                empty = false;
+                break;
+            }
+        }
+        if (empty) {
+            return false;
+        }
+        
+        long expected = parseNumber(148, 8);
+        long actual = 0;
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            actual += (i >= 148 && i < 156) ? ' ' : (header[i] & 0xFF);
+        }
+        if (expected != actual) {
+            throw new IOException("无效的TAR头部校验和");
+        }
+        return true;
+    }
+    
+    private byte[] readData(long size) throws IOException {
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new IOException("TAR扩展头过大");
+        }
+        byte[] data = new byte[(int) size];
+        int offset = 0;
+        while (offset < data.length) {
+            int read = read(data, offset, data.length - offset);
+            if (read < 0) {
+                throw new EOFException("TAR扩展头不完整");
+            }
+            offset += read;
+        }
+        return data;
+    }
+    
+    private void skipRemaining() throws IOException {
+        long toSkip = remaining + padding;
+        while (toSkip > 0) {
+            long skipped = in.skip(toSkip);
+            if (skipped <= 0) {
+                if (in.read() < 0) {
+                    throw new EOFException("TAR条目内容不完整");
+                }
+                skipped = 1;
+            }
+            toSkip -= skipped;
+        }
+        remaining = 0;
+        padding = 0;
+    }
+    
+    private String headerName() {
+        String name = field(0, 100);
+        // 只有 POSIX ustar 使用前缀字段，GNU格式 ("ustar  ") 的同一位置存放其他信息
+        if ("ustar".equals(field(257, 6))) {
+            String prefix = field(345, 155);
+            if (!prefix.isEmpty()) {
+                name = prefix + "/" + name;
+            }
+        }
+        return name;
+    }
+    
+    private String field(int offset, int length) {
+        int end = offset;
+        while (end < offset + length && header[end] != 0) {
+            end++;
+        }
+        return new String(header, offset, end - offset, StandardCharsets.UTF_8);
+    }
+    
+    private long parseNumber(int offset, int length) throws IOException {
+        // base-256 编码：首字节最高位为1
+        if ((header[offset] & 0x80) != 0) {
+            long value = header[offset] & 0x7F;
+            for (int i = 1; i < length; i++) {
+                value = (value << 8) | (header[offset + i] & 0xFF);
+            }
+            return value;
+        }
+        
+        long value = 0;
+        boolean digits = false;
+        for (int i = offset; i < offset + length; i++) {
+            byte b = header[i];
+            if (b == 0 || (b == ' ' && digits)) {
+                break;
+            }
+            if (b == ' ') {
+                continue;
+            }
+            if (b < '0' || b > '7') {
+                throw new IOException("无效的TAR数值字段");
+            }
+            value = (value << 3) + (b - '0');
+            digits = true;
+        }
+        return value;
+    }
+    
+    /**
+     * 解析 pax 扩展头，每条记录为 "长度 键=值\n"，长度为整条记录的字节数
+     */
+    private static List<String> parsePax(byte[] data) throws IOException {
+        List<String> records = new ArrayList<>();
+        int pos = 0;
+        while (pos < data.length) {
+            int space = pos;
+            int length = 0;
+            while (space < data.length && data[space] >= '0' && data[space] <= '9') {
+                length = length * 10 + (data[space] - '0');
+                space++;
+            }
+            if (space >= data.length || data[space] != ' ' || length <= 0 || pos + length > data.length) {
+                break;
+            }
+            // 记录长度包含长度数字、空格和结尾的换行
+            if (length < space - pos + 2) {
+                throw new IOException("无效的pax扩展头");
+            }
+            records.add(new String(data, space + 1, pos + length - space - 2, StandardCharsets.UTF_8));
+            pos += length;
+        }
+        return records;
+    }
+    
+    private static String trimNul(String value) {
+        int end = value.indexOf('\0');
+        return end >= 0 ? value.substring(0, end) : value;
+    }
+}
\ No newline at end of file
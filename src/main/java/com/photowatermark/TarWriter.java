@@ -0,0 +1,209 @@
+package com.photowatermark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * TAR流写入器
+ * 
+ * 用法与 {@link java.util.zip.ZipOutputStream} 相同：{@link #putNextEntry(String, long, long)}
+ * 开始一个条目（大小必须预先给出），写入内容后 {@link #closeEntry()}，最后 {@link #finish()}。
+ * 写出 POSIX ustar 格式，名称放不下时使用GNU长文件名扩展，超过8GB的大小使用 base-256 编码。
+ * 
+ * @author PhotoWatermark Team
+ * @version 1.0.0
+ */
+public class TarWriter extends OutputStream {
+    
+    private static final int BLOCK_SIZE = 512;
+    private static final long MAX_OCTAL_SIZE = 077777777777L;
+    
+    private final OutputStream out;
+    private long remaining = 0;
+    private long padding = 0;
+    private boolean entryOpen = false;
+    
+    /**
+     * 构造函数
+     * 
+     * @param out 输出流（未压缩的TAR数据）
+     */
+    public TarWriter(OutputStream out) {
+        this.out = out;
+    }
+    
+    /**
+     * 开始一个普通文件条目
+     * 
+     * @param name 条目名称，使用 '/' 分隔
+     * @param size 内容字节数
+     * @param lastModified 修改时间（毫秒时间戳）
+     * @throws IOException 写出失败或上一个条目未写完时抛出
+     */
+    public void putNextEntry(String name, long size, long lastModified) throws IOException {
+        if (entryOpen) {
+            closeEntry();
+        }
+        
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        String prefix = "";
+        String shortName = name;
+        if (nameBytes.length > 100) {
+            int split = findPrefixSplit(name);
+            if (split > 0) {
+                prefix = name.substring(0, split);
+                shortName = name.substring(split + 1);
+            } else {
+                // GNU长文件名：先写出一个内容为完整名称的 L 条目
+                byte[] longName = new byte[nameBytes.length + 1];
+                System.arraycopy(nameBytes, 0, longName, 0, nameBytes.length);
+                writeHeader("././@LongLink", "", longName.length, 0, (byte) 'L');
+                out.write(longName);
+                writePadding(longName.length);
+                shortName = name.substring(0, Math.min(name.length(), 100));
+            }
+        }
+        
+        writeHeader(shortName, prefix, size, lastModified / 1000, (byte) '0');
+        remaining = size;
+        padding = (BLOCK_SIZE - size % BLOCK_SIZE) % BLOCK_SIZE;
+        entryOpen = true;
+    }
+    
+    /**
+     * 结束当前条目，写出块对齐的填充
+     * 
+     * @throws IOException 写入的内容少于声明的大小时抛出
+     */
+    public void closeEntry() throws IOException {
+        if (!entryOpen) {
+            return;
+        }
+        if (remaining != 0) {
+            throw new IOException("TAR条目内容少于声明的大小，还差 " + remaining + " 字节");
+        }
+        out.write(new byte[(int) padding]);
+        padding = 0;
+        entryOpen = false;
+    }
+    
+    /**
+     * 写出归档结束标记（两个全零块），不关闭底层流
+     * 
+     * @throws IOException 写出失败时抛出
+     */
+    public void finish() throws IOException {
+        closeEntry();
+        out.write(new byte[BLOCK_SIZE * 2]);
+        out.flush();
+    }
+    
+    @Override
+    public void write(int b) throws IOException {
+        checkRemaining(1);
+        out.write(b);
+        remaining--;
+    }
+    
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        checkRemaining(len);
+        out.write(b, off, len);
+        remaining -= len;
+    }
+    
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+    
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+    
+    private void checkRemaining(int length) throws IOException {
+        if (!entryOpen || length > remaining) {
+            throw new IOException("写入的内容超过TAR条目声明的大小");
+        }
+    }
+    
+    private void writePadding(long size) throws IOException {
+        out.write(new byte[(int) ((BLOCK_SIZE - size % BLOCK_SIZE) % BLOCK_SIZE)]);
+    }
+    
+    /**
+     * 寻找可以把名称拆成 ustar 前缀 (最多155字节) 和名称 (最多100字节) 的 '/' 位置
+     * 
+     * @param name 条目名称
+     * @return '/' 的位置，无法拆分时返回-1
+     */
+    private static int findPrefixSplit(String name) {
+        for (int i = name.indexOf('/'); i > 0; i = name.indexOf('/', i + 1)) {
+            int prefixLength = name.substring(0, i).getBytes(StandardCharsets.UTF_8).length;
+            int nameLength = name.substring(i + 1).getBytes(StandardCharsets.UTF_8).length;
+            if (prefixLength > 155) {
+                return -1;
+            }
+            if (nameLength <= 100 && nameLength > 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    private void writeHeader(String name, String prefix, long size, long modifiedSeconds, byte type)
+            throws IOException {
+        byte[] header = new byte[BLOCK_SIZE];
+        putString(header, 0, 100, name);
+        putOctal(header, 100, 8, 0644);
+        putOctal(header, 108, 8, 0);
+        putOctal(header, 116, 8, 0);
+        if (size > MAX_OCTAL_SIZE) {
+            header[124] = (byte) 0x80;
+            for (int i = 0; i < 8; i++) {
+                header[135 - i] = (byte) (size >>> (8 * i));
+            }
+        } else {
+            putOctal(header, 124, 12, size);
+        }
+        putOctal(header, 136, 12, Math.max(0, modifiedSeconds));
+        header[156] = type;
+        putString(header, 257, 6, "ustar");
+        header[263] = '0';
+        header[264] = '0';
+        putString(header, 345, 155, prefix);
+        
+        // 校验和按校验和字段为空格计算
+        for (int i = 148; i < 156; i++) {
+            header[i] = ' ';
+        }
+        long checksum = 0;
+        for (byte b : header) {
+            checksum += b & 0xFF;
+        }
+        putOctal(header, 148, 7, checksum);
+        header[155] = ' ';
+        
+        out.write(header);
+    }
+    
+    private static void putString(byte[] header, int offset, int length, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(bytes, 0, header, offset, Math.min(bytes.length, length));
+    }
+    
+    /**
+     * 写出以NUL结尾、左侧补0的八进制数
+     */
+    private static void putOctal(byte[] header, int offset, int length, long value) {
+        String octal = Long.toOctalString(value);
+        int digits = length - 1;
+        for (int i = 0; i < digits; i++) {
+            int index = octal.length() - digits + i;
+            header[offset + i] = index >= 0 ? (byte) octal.charAt(index) : (byte) '0';
+        }
+        header[offset + digits] = 0;
+    }
+}
\ No newline at end of file
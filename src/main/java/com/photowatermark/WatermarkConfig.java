@@ -1,6 +1,8 @@
 package com.photowatermark;
 
 import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * 水印配置类
@@ -8,7 +10,7 @@ import java.awt.Color;
  * @author PhotoWatermark Team
  * @version 1.0.0
  */
-public class WatermarkConfig {
+public class WatermarkConfig implements Cloneable {
     private int fontSize = 24;
     private String fontColor = "white";
     private String fontName = "SansSerif";
@@ -26,6 +28,30 @@ public class WatermarkConfig {
     private boolean recursive = false;
     private String defaultWatermarkText = "";
     private boolean useExifDate = true;
+    private List<Rendition> renditions = new ArrayList<>();
+    private int maxOutputDimension = 0;
+    private boolean preserveMetadata = false;
+    private FsyncPolicy fsyncPolicy = FsyncPolicy.NONE;
+    private int groupCommitMillis = 50;
+    private boolean orientationAware = true;
+    private ExecutionMode executionMode = ExecutionMode.CPU;
+    private int ioConcurrency = 64;
+    private SchedulingPolicy schedulingPolicy = SchedulingPolicy.LARGEST_FIRST;
+    private boolean smallJobLane = true;
+    private boolean scheduleByDimensions = false;
+    private int fileTimeoutSeconds = 0;
+    private String journalFile;
+    private int shardIndex = 0;
+    private int shardCount = 1;
+    private String leaseDirectory;
+    private String leaseRun;
+    private int leaseSeconds = 300;
+    private ArchiveOrder archiveOrder = ArchiveOrder.INPUT;
+    private int rasterPoolMegabytes = -1;
+    private int offHeapMinMegapixels = 0;
+    private InputReadMode inputReadMode = InputReadMode.READ;
+    private DuplicateMode duplicateMode = DuplicateMode.OFF;
+    private String exifIndexFile;
     
     // Getters and Setters
     public int getFontSize() {
@@ -164,6 +190,288 @@ public class WatermarkConfig {
         this.fontStyle = fontStyle;
     }
     
+    public List<Rendition> getRenditions() {
+        return renditions;
+    }
+    
+    public void setRenditions(List<Rendition> renditions) {
+        this.renditions = renditions;
+    }
+    
+    public int getMaxOutputDimension() {
+        return maxOutputDimension;
+    }
+    
+    public void setMaxOutputDimension(int maxOutputDimension) {
+        this.maxOutputDimension = maxOutputDimension;
+    }
+    
+    public boolean isPreserveMetadata() {
+        return preserveMetadata;
+    }
+    
+    public void setPreserveMetadata(boolean preserveMetadata) {
+        this.preserveMetadata = preserveMetadata;
+    }
+    
+    public FsyncPolicy getFsyncPolicy() {
+        return fsyncPolicy;
+    }
+    
+    public void setFsyncPolicy(FsyncPolicy fsyncPolicy) {
+        this.fsyncPolicy = fsyncPolicy;
+    }
+    
+    /**
+     * 获取分组提交时一组输出文件的最长积累时间
+     * 
+     * @return 毫秒数
+     */
+    public int getGroupCommitMillis() {
+        return groupCommitMillis;
+    }
+    
+    public void setGroupCommitMillis(int groupCommitMillis) {
+        this.groupCommitMillis = groupCommitMillis;
+    }
+    
+    public boolean isOrientationAware() {
+        return orientationAware;
+    }
+    
+    public void setOrientationAware(boolean orientationAware) {
+        this.orientationAware = orientationAware;
+    }
+    
+    public ExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+    
+    public void setExecutionMode(ExecutionMode executionMode) {
+        this.executionMode = executionMode;
+    }
+    
+    /**
+     * 获取IO模式下同时进行文件读写的最大任务数
+     * 
+     * @return 最大并发数
+     */
+    public int getIoConcurrency() {
+        return ioConcurrency;
+    }
+    
+    public void setIoConcurrency(int ioConcurrency) {
+        this.ioConcurrency = ioConcurrency;
+    }
+    
+    public SchedulingPolicy getSchedulingPolicy() {
+        return schedulingPolicy;
+    }
+    
+    public void setSchedulingPolicy(SchedulingPolicy schedulingPolicy) {
+        this.schedulingPolicy = schedulingPolicy;
+    }
+    
+    /**
+     * 大文件优先时是否保留一个从最小任务开始领取的工作线程
+     * 
+     * @return 是否启用小任务通道
+     */
+    public boolean isSmallJobLane() {
+        return smallJobLane;
+    }
+    
+    public void setSmallJobLane(boolean smallJobLane) {
+        this.smallJobLane = smallJobLane;
+    }
+    
+    /**
+     * 是否读取图片头部的宽高估算任务开销，否则使用文件字节数
+     * 
+     * @return 是否按像素数估算
+     */
+    public boolean isScheduleByDimensions() {
+        return scheduleByDimensions;
+    }
+    
+    public void setScheduleByDimensions(boolean scheduleByDimensions) {
+        this.scheduleByDimensions = scheduleByDimensions;
+    }
+    
+    /**
+     * 获取单个文件的处理时限
+     * 
+     * @return 秒数，0表示不限制
+     */
+    public int getFileTimeoutSeconds() {
+        return fileTimeoutSeconds;
+    }
+    
+    public void setFileTimeoutSeconds(int fileTimeoutSeconds) {
+        this.fileTimeoutSeconds = fileTimeoutSeconds;
+    }
+    
+    /**
+     * 获取批量处理日志文件路径
+     * 
+     * @return 日志文件路径，为null时不写日志
+     */
+    public String getJournalFile() {
+        return journalFile;
+    }
+    
+    public void setJournalFile(String journalFile) {
+        this.journalFile = journalFile;
+    }
+    
+    /**
+     * 获取本节点的分片序号
+     * 
+     * @return 分片序号，从0开始
+     */
+    public int getShardIndex() {
+        return shardIndex;
+    }
+    
+    public void setShardIndex(int shardIndex) {
+        this.shardIndex = shardIndex;
+    }
+    
+    /**
+     * 获取参与处理的节点总数
+     * 
+     * @return 分片数，1表示不分片
+     */
+    public int getShardCount() {
+        return shardCount;
+    }
+    
+    public void setShardCount(int shardCount) {
+        this.shardCount = shardCount;
+    }
+    
+    /**
+     * 获取多节点协调使用的共享租约目录
+     * 
+     * @return 租约目录，为null时按分片静态分配
+     */
+    public String getLeaseDirectory() {
+        return leaseDirectory;
+    }
+    
+    public void setLeaseDirectory(String leaseDirectory) {
+        this.leaseDirectory = leaseDirectory;
+    }
+    
+    /**
+     * 获取租约和完成标记所属的运行标识，同一次处理的各节点使用相同的标识
+     * 
+     * @return 运行标识，租约保存在租约目录下的同名子目录中；为null时直接保存在租约目录中
+     */
+    public String getLeaseRun() {
+        return leaseRun;
+    }
+    
+    public void setLeaseRun(String leaseRun) {
+        this.leaseRun = leaseRun;
+    }
+    
+    /**
+     * 获取租约的有效时间，超过该时间未完成的文件可被其他节点接手
+     * 
+     * @return 秒数
+     */
+    public int getLeaseSeconds() {
+        return leaseSeconds;
+    }
+    
+    public void setLeaseSeconds(int leaseSeconds) {
+        this.leaseSeconds = leaseSeconds;
+    }
+    
+    /**
+     * 获取压缩包输入时输出条目的顺序
+     * 
+     * @return 条目顺序
+     */
+    public ArchiveOrder getArchiveOrder() {
+        return archiveOrder;
+    }
+    
+    public void setArchiveOrder(ArchiveOrder archiveOrder) {
+        this.archiveOrder = archiveOrder;
+    }
+    
+    /**
+     * 获取像素缓冲池中空闲数组的总大小上限
+     * 
+     * @return 上限 (MB)，0表示不使用缓冲池，小于0表示使用默认值 (最大堆的八分之一)
+     */
+    public int getRasterPoolMegabytes() {
+        return rasterPoolMegabytes;
+    }
+    
+    public void setRasterPoolMegabytes(int rasterPoolMegabytes) {
+        this.rasterPoolMegabytes = rasterPoolMegabytes;
+    }
+    
+    /**
+     * 获取解码到堆外内存的图片像素数下限
+     * 
+     * @return 百万像素数，0表示不使用堆外内存
+     */
+    public int getOffHeapMinMegapixels() {
+        return offHeapMinMegapixels;
+    }
+    
+    public void setOffHeapMinMegapixels(int offHeapMinMegapixels) {
+        this.offHeapMinMegapixels = offHeapMinMegapixels;
+    }
+    
+    public InputReadMode getInputReadMode() {
+        return inputReadMode;
+    }
+    
+    public void setInputReadMode(InputReadMode inputReadMode) {
+        this.inputReadMode = inputReadMode;
+    }
+    
+    public DuplicateMode getDuplicateMode() {
+        return duplicateMode;
+    }
+    
+    public void setDuplicateMode(DuplicateMode duplicateMode) {
+        this.duplicateMode = duplicateMode;
+    }
+    
+    /**
+     * 获取EXIF日期索引文件路径
+     * 
+     * @return 索引文件路径，null表示不使用索引
+     */
+    public String getExifIndexFile() {
+        return exifIndexFile;
+    }
+    
+    public void setExifIndexFile(String exifIndexFile) {
+        this.exifIndexFile = exifIndexFile;
+    }
+    
+    /**
+     * 复制配置，用于在共享的基础配置上为单个任务覆盖部分设置
+     * 
+     * @return 配置副本，输出规格列表为独立的副本
+     */
+    public WatermarkConfig copy() {
+        try {
+            WatermarkConfig copy = (WatermarkConfig) super.clone();
+            copy.renditions = new ArrayList<>(renditions);
+            return copy;
+        } catch (CloneNotSupportedException e) {
+            throw new AssertionError(e);
+        }
+    }
+    
     @Override
     public String toString() {
         return "WatermarkConfig{" +
@@ -3,11 +3,36 @@ package com.photowatermark;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.FileImageInputStream;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
 import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
 /**
  * 水印绘制引擎
@@ -19,6 +44,61 @@ public class WatermarkEngine {
     
     private static final Logger logger = LoggerFactory.getLogger(WatermarkEngine.class);
     
+    private static final int APP2_MARKER = 0xE2;
+    
+    private static final AtomicBoolean warmUpStarted = new AtomicBoolean(false);
+    
+    /**
+     * 在后台线程预热图形环境、字体和JPEG编解码器
+     * 
+     * 第一次绘制文字时需要初始化图形环境、扫描系统字体并加载字体光栅化器，耗时可达数百毫秒。
+     * 配置的字体通过字体注册表加载，处理图片时直接使用。
+     * 在扫描目录、读取输入的同时提前完成这些初始化，第一张图片就不用等待。每个进程只预热一次。
+     * 
+     * @param config 水印配置，预热其中的字体
+     * @return 预热线程 (守护线程)，已经预热过时返回null
+     */
+    public static Thread startWarmUp(WatermarkConfig config) {
+        if (!warmUpStarted.compareAndSet(false, true)) {
+            return null;
+        }
+        WatermarkConfig fontConfig = config.copy();
+        
+        Thread thread = new Thread(() -> {
+            long start = System.currentTimeMillis();
+            try {
+                GraphicsEnvironment.getLocalGraphicsEnvironment();
+                BufferedImage image = new BufferedImage(64, 32, BufferedImage.TYPE_INT_ARGB);
+                Graphics2D g2d = image.createGraphics();
+                try {
+                    g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+                    g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+                    g2d.setFont(FontRegistry.preload(fontConfig));
+                    g2d.getFontMetrics().stringWidth("2024-01-01");
+                    g2d.drawString("2024-01-01", 0, 24);
+                } finally {
+                    g2d.dispose();
+                }
+                
+                Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpg");
+                if (writers.hasNext()) {
+                    writers.next().dispose();
+                }
+                Iterator<ImageReader> readers = ImageIO.getImageReadersByFormatName("jpg");
+                if (readers.hasNext()) {
+                    readers.next().dispose();
+                }
+                logger.debug("图形环境预热完成，耗时: {} ms", System.currentTimeMillis() - start);
+            } catch (RuntimeException | Error e) {
+                // 预热失败不影响处理，真正绘制时会再报告错误
+                logger.debug("图形环境预热失败: {}", e.toString());
+            }
+        }, "watermark-warmup");
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+    
     /**
      * 为图片添加水印
      * 
@@ -29,6 +109,21 @@ public class WatermarkEngine {
      * @return 是否成功添加水印
      */
     public static boolean addWatermark(File inputFile, File outputFile, String watermarkText, WatermarkConfig config) {
+        return addWatermark(inputFile, outputFile, watermarkText, config, null);
+    }
+    
+    /**
+     * 为图片添加水印，并按配置保留源图片的元数据
+     * 
+     * @param inputFile 输入图片文件
+     * @param outputFile 输出图片文件
+     * @param watermarkText 水印文本
+     * @param config 水印配置
+     * @param metadata 读取EXIF时获得的源图片元数据，可以为null
+     * @return 是否成功添加水印
+     */
+    public static boolean addWatermark(File inputFile, File outputFile, String watermarkText, WatermarkConfig config,
+                                       SourceMetadata metadata) {
         if (inputFile == null || !inputFile.exists() || !inputFile.isFile()) {
             logger.error("输入文件无效: {}", inputFile);
             return false;
@@ -45,15 +140,29 @@ public class WatermarkEngine {
         }
         
         try {
-            // 读取原始图片
-            BufferedImage originalImage = ImageIO.read(inputFile);
-            if (originalImage == null) {
+            // 读取原始图片（配置了最大输出尺寸时按目标尺寸子采样解码）
+            ImageDecoder.DecodedImage decoded = ImageDecoder.decode(inputFile, config.getMaxOutputDimension(),
+                    offHeapMinPixels(config));
+            if (decoded == null || decoded.getImage() == null) {
                 logger.error("无法读取图片文件: {}", inputFile.getName());
                 return false;
             }
             
-            // 创建带水印的图片
-            BufferedImage watermarkedImage = createWatermarkedImage(originalImage, watermarkText, config);
+            // 创建带水印的图片，解码结果用完后释放（就地绘制的堆外图片在编码后释放）
+            // 获取文件格式
+            String format = getImageFormat(inputFile.getName());
+            
+            BufferedImage watermarkedImage = null;
+            List<byte[]> segments;
+            try {
+                segments = preservedSegments(metadata, config, decoded.getImage());
+                watermarkedImage = render(decoded, watermarkText, config,
+                        orientationOf(metadata, config, format, segments));
+            } finally {
+                if (watermarkedImage != decoded.getImage()) {
+                    decoded.release();
+                }
+            }
             
             // 确保输出目录存在
             File outputDir = outputFile.getParentFile();
@@ -64,11 +173,13 @@ public class WatermarkEngine {
                 }
             }
             
-            // 获取文件格式
-            String format = getImageFormat(inputFile.getName());
-            
             // 保存带水印的图片
-            boolean success = ImageIO.write(watermarkedImage, format, outputFile);
+            boolean success;
+            try {
+                success = writeImage(watermarkedImage, format, -1f, segments, outputFile);
+            } finally {
+                release(decoded, watermarkedImage);
+            }
             
             if (success) {
                 logger.info("成功为图片 {} 添加水印，输出到: {}", inputFile.getName(), outputFile.getName());
@@ -88,62 +199,935 @@ public class WatermarkEngine {
     }
     
     /**
-     * 创建带水印的图片
+     * 一次解码，为图片生成多个规格的水印输出
+     * 
+     * 各规格按尺寸从大到小依次由上一级中间结果逐级缩小得到，水印按各规格的缩放比例绘制，
+     * 编码写出在指定的执行器上并行进行。
+     * 
+     * @param inputFile 输入图片文件
+     * @param outputs 输出规格及其对应的输出文件
+     * @param watermarkText 水印文本
+     * @param config 水印配置
+     * @param encodeExecutor 编码执行器
+     * @return 是否所有规格都成功输出
+     */
+    public static boolean addWatermark(File inputFile, Map<Rendition, File> outputs, String watermarkText,
+                                       WatermarkConfig config, Executor encodeExecutor) {
+        return addWatermark(inputFile, outputs, watermarkText, config, encodeExecutor, null);
+    }
+    
+    /**
+     * 一次解码，为图片生成多个规格的水印输出，并按配置保留源图片的元数据
+     * 
+     * @param inputFile 输入图片文件
+     * @param outputs 输出规格及其对应的输出文件
+     * @param watermarkText 水印文本
+     * @param config 水印配置
+     * @param encodeExecutor 编码执行器
+     * @param metadata 读取EXIF时获得的源图片元数据，可以为null
+     * @return 是否所有规格都成功输出
+     */
+    public static boolean addWatermark(File inputFile, Map<Rendition, File> outputs, String watermarkText,
+                                       WatermarkConfig config, Executor encodeExecutor, SourceMetadata metadata) {
+        if (inputFile == null || !inputFile.exists() || !inputFile.isFile()) {
+            logger.error("输入文件无效: {}", inputFile);
+            return false;
+        }
+        
+        if (watermarkText == null || watermarkText.trim().isEmpty()) {
+            logger.error("水印文本不能为空");
+            return false;
+        }
+        
+        if (config == null || outputs == null || outputs.isEmpty()) {
+            logger.error("水印配置和输出规格不能为空");
+            return false;
+        }
+        
+        try {
+            Map<Rendition, byte[]> encoded;
+            try (ImageInputStream input = new FileImageInputStream(inputFile)) {
+                encoded = watermarkRenditions(input, getImageFormat(inputFile.getName()), outputs.keySet(),
+                        watermarkText, config, encodeExecutor, metadata);
+            }
+            
+            if (encoded == null) {
+                logger.error("无法读取图片文件: {}", inputFile.getName());
+                return false;
+            }
+            
+            for (Map.Entry<Rendition, byte[]> entry : encoded.entrySet()) {
+                File outputFile = outputs.get(entry.getKey());
+                ImageFiles.write(outputFile, entry.getValue());
+                logger.debug("规格输出完成: {}", outputFile.getName());
+            }
+            
+            logger.info("成功为图片 {} 生成 {} 个规格的水印输出", inputFile.getName(), outputs.size());
+            return true;
+            
+        } catch (IOException e) {
+            logger.error("处理图片时发生IO错误: {}", inputFile.getName(), e);
+            return false;
+        } catch (Exception e) {
+            logger.error("添加水印时发生未知错误: {}", inputFile.getName(), e);
+            return false;
+        }
+    }
+    
+    /**
+     * 为内存中的图片添加水印
+     * 
+     * @param input 图片数据
+     * @param format 输出格式，为null时沿用源图片格式
+     * @param output 输出流，不会被关闭；传入 {@link ImageBuffer} 时编码器直接写入其中
+     * @param watermarkText 水印文本
+     * @param config 水印配置
+     * @return 是否成功添加水印
+     */
+    public static boolean addWatermark(byte[] input, String format, OutputStream output, String watermarkText,
+                                       WatermarkConfig config) {
+        if (input == null) {
+            logger.error("输入数据不能为空");
+            return false;
+        }
+        return addWatermark(ByteBuffer.wrap(input), format, output, watermarkText, config);
+    }
+    
+    /**
+     * 为内存中的图片添加水印
+     * 
+     * 直接从缓冲区解码，不复制输入数据，支持直接缓冲区。不改变缓冲区的位置。
+     * 
+     * @param input 图片数据，从当前位置到上限为有效数据
+     * @param format 输出格式，为null时沿用源图片格式
+     * @param output 输出流，不会被关闭；传入 {@link ImageBuffer} 时编码器直接写入其中
+     * @param watermarkText 水印文本
+     * @param config 水印配置
+     * @return 是否成功添加水印
+     */
+    public static boolean addWatermark(ByteBuffer input, String format, OutputStream output, String watermarkText,
+                                       WatermarkConfig config) {
+        if (input == null || output == null) {
+            logger.error("输入数据和输出流不能为空");
+            return false;
+        }
+        
+        if (watermarkText == null || watermarkText.trim().isEmpty()) {
+            logger.error("水印文本不能为空");
+            return false;
+        }
+        
+        if (config == null) {
+            logger.error("水印配置不能为空");
+            return false;
+        }
+        
+        try (ImageInputStream imageInput = new ByteBufferImageInputStream(input)) {
+            SourceMetadata metadata = config.isPreserveMetadata() || config.isOrientationAware()
+                    ? ExifReader.readMetadata(input)
+                    : null;
+            
+            if (!watermark(imageInput, format, watermarkText, config, metadata, output)) {
+                logger.error("无法解码内存中的图片或不支持输出格式: {}", format);
+                return false;
+            }
+            return true;
+            
+        } catch (IOException e) {
+            logger.error("处理内存中的图片时发生IO错误", e);
+            return false;
+        } catch (Exception e) {
+            logger.error("为内存中的图片添加水印时发生未知错误", e);
+            return false;
+        }
+    }
+    
+    /**
+     * 为输入流中的图片添加水印
+     * 
+     * 输入流的内容先读入池化缓冲区，再按内存数据处理。
+     * 
+     * @param input 图片输入流，不会被关闭
+     * @param format 输出格式，为null时沿用源图片格式
+     * @param output 输出流，不会被关闭；传入 {@link ImageBuffer} 时编码器直接写入其中
+     * @param watermarkText 水印文本
+     * @param config 水印配置
+     * @return 是否成功添加水印
+     */
+    public static boolean addWatermark(InputStream input, String format, OutputStream output, String watermarkText,
+                                       WatermarkConfig config) {
+        if (input == null) {
+            logger.error("输入流不能为空");
+            return false;
+        }
+        
+        ImageBuffer buffer = null;
+        try {
+            buffer = ImageBuffer.readFully(input);
+            return addWatermark(buffer.asByteBuffer(), format, output, watermarkText, config);
+        } catch (IOException e) {
+            logger.error("读取输入流时发生IO错误", e);
+            return false;
+        } finally {
+            if (buffer != null) {
+                buffer.release();
+            }
+        }
+    }
+    
+    /**
+     * 在内存中为图片添加水印，解码、绘制和编码都不涉及文件IO
+     * 
+     * @param input 图片输入流
+     * @param format 输出格式，为null时沿用源图片格式
+     * @param watermarkText 水印文本
+     * @param config 水印配置
+     * @param metadata 源图片元数据，可以为null
+     * @param output 输出流
+     * @return 是否成功，无法解码或没有对应格式的编码器时返回false
+     * @throws IOException 解码或编码失败时抛出
+     */
+    static boolean watermark(ImageInputStream input, String format, String watermarkText, WatermarkConfig config,
+                             SourceMetadata metadata, OutputStream output) throws IOException {
+        ImageDecoder.DecodedImage decoded = ImageDecoder.decode(input, config.getMaxOutputDimension(),
+                offHeapMinPixels(config));
+        if (decoded == null || decoded.getImage() == null) {
+            return false;
+        }
+        
+        String outputFormat = format != null ? format : decoded.getFormatName();
+        BufferedImage watermarkedImage = null;
+        List<byte[]> segments;
+        try {
+            segments = preservedSegments(metadata, config, decoded.getImage());
+            watermarkedImage = render(decoded, watermarkText, config,
+                    orientationOf(metadata, config, outputFormat, segments));
+        } finally {
+            if (watermarkedImage != decoded.getImage()) {
+                decoded.release();
+            }
+        }
+        
+        try {
+            return encode(watermarkedImage, outputFormat, -1f, segments, output);
+        } finally {
+            release(decoded, watermarkedImage);
+        }
+    }
+    
+    /**
+     * 在内存中为图片添加水印
+     * 
+     * @param input 图片输入流
+     * @param format 输出格式
+     * @param watermarkText 水印文本
+     * @param config 水印配置
+     * @param metadata 源图片元数据，可以为null
+     * @return 编码后的图片数据，无法解码或没有对应格式的编码器时返回null
+     * @throws IOException 解码或编码失败时抛出
+     */
+    static byte[] watermark(ImageInputStream input, String format, String watermarkText, WatermarkConfig config,
+                            SourceMetadata metadata) throws IOException {
+        ImageBuffer buffer = ImageBuffer.acquire();
+        try {
+            if (!watermark(input, format, watermarkText, config, metadata, buffer)) {
+                return null;
+            }
+            return buffer.toByteArray();
+        } finally {
+            buffer.release();
+        }
+    }
+    
+    /**
+     * 在内存中一次解码，生成多个规格的水印输出
+     * 
+     * 各规格按尺寸从大到小依次由上一级中间结果逐级缩小得到，水印按各规格的缩放比例绘制，
+     * 编码在指定的执行器上并行进行。
+     * 
+     * 保留元数据时，缩小的规格同样原样拼接源图片的EXIF段：其中的方向标记决定了水印的放置，
+     * 去掉后查看器会按存储方向显示图片；EXIF中的像素尺寸 (PixelXDimension/PixelYDimension)
+     * 和缩略图仍描述原图，不随规格改写。
+     * 
+     * @param input 图片输入流
+     * @param sourceFormat 源图片格式，规格未指定格式时使用
+     * @param renditions 输出规格
+     * @param watermarkText 水印文本
+     * @param config 水印配置
+     * @param encodeExecutor 编码执行器
+     * @param metadata 源图片元数据，可以为null
+     * @return 各规格编码后的图片数据，无法解码时返回null
+     * @throws IOException 解码或任一规格编码失败时抛出
+     */
+    static Map<Rendition, byte[]> watermarkRenditions(ImageInputStream input, String sourceFormat,
+                                                      Collection<Rendition> renditions, String watermarkText,
+                                                      WatermarkConfig config, Executor encodeExecutor,
+                                                      SourceMetadata metadata) throws IOException {
+        // 按最大规格子采样解码（只解码一次）；任一规格需要原始尺寸时完整解码
+        int decodeTarget = 0;
+        for (Rendition rendition : renditions) {
+            int maxSize = effectiveMaxSize(rendition, config);
+            if (maxSize == 0) {
+                decodeTarget = 0;
+                break;
+            }
+            decodeTarget = Math.max(decodeTarget, maxSize);
+        }
+        
+        ImageDecoder.DecodedImage decoded = ImageDecoder.decode(input, decodeTarget);
+        if (decoded == null || decoded.getImage() == null) {
+            return null;
+        }
+        
+        int sourceLongEdge = decoded.getSourceLongEdge();
+        List<byte[]> segments = preservedSegments(metadata, config, decoded.getImage());
+        
+        // 按目标尺寸从大到小排序，使每一级都可以复用上一级的缩小结果
+        List<Rendition> ordered = new ArrayList<>(renditions);
+        ordered.sort(Comparator.comparingInt((Rendition r) -> targetLongEdge(r, config, sourceLongEdge)).reversed());
+        
+        Map<Rendition, CompletableFuture<byte[]>> encodes = new LinkedHashMap<>();
+        List<BufferedImage> intermediates = new ArrayList<>();
+        BufferedImage intermediate = decoded.getImage();
+        
+        try {
+            for (Rendition rendition : ordered) {
+                int longEdge = targetLongEdge(rendition, config, sourceLongEdge);
+                double scale = (double) longEdge / sourceLongEdge;
+                int width = Math.max(1, (int) Math.round(decoded.getSourceWidth() * scale));
+                int height = Math.max(1, (int) Math.round(decoded.getSourceHeight() * scale));
+                
+                BufferedImage scaled = downscale(intermediate, width, height);
+                if (scaled != intermediate) {
+                    intermediates.add(scaled);
+                    intermediate = scaled;
+                }
+                String format = rendition.getFormat() != null ? rendition.getFormat().toLowerCase() : sourceFormat;
+                BufferedImage watermarkedImage = createWatermarkedImage(intermediate, watermarkText, config, scale,
+                        orientationOf(metadata, config, format, segments));
+                float quality = rendition.getQuality();
+                
+                encodes.put(rendition, CompletableFuture.supplyAsync(
+                        () -> encodeRendition(watermarkedImage, format, quality, segments), encodeExecutor));
+            }
+        } finally {
+            // 各级中间结果只在绘制时使用，编码使用的是带水印的副本
+            decoded.release();
+            for (BufferedImage image : intermediates) {
+                RasterPool.release(image);
+            }
+        }
+        
+        Map<Rendition, byte[]> results = new LinkedHashMap<>();
+        try {
+            for (Map.Entry<Rendition, CompletableFuture<byte[]>> entry : encodes.entrySet()) {
+                results.put(entry.getKey(), entry.getValue().join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            throw e;
+        }
+        return results;
+    }
+    
+    /**
+     * 编码单个规格，编码完成后图片归还缓冲池
+     * 
+     * @param image 带水印的图片
+     * @param format 输出格式
+     * @param quality 压缩质量
+     * @param segments 需要拼接的JPEG APP段
+     * @return 编码后的图片数据
+     */
+    private static byte[] encodeRendition(BufferedImage image, String format, float quality, List<byte[]> segments) {
+        ImageBuffer buffer = ImageBuffer.acquire();
+        try {
+            if (!encode(image, format, quality, segments, buffer)) {
+                throw new IOException("不支持的输出格式: " + format);
+            }
+            return buffer.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            buffer.release();
+            RasterPool.release(image);
+        }
+    }
+    
+    /**
+     * 按最大输出尺寸缩小解码结果并绘制水印，解码结果仍由调用方释放
+     * 
+     * 解码到堆外的图片（只在按原始尺寸输出时使用）直接在原像素上绘制，返回解码结果本身。
+     * 
+     * @param decoded 解码结果
+     * @param watermarkText 水印文本
+     * @param config 水印配置
+     * @param orientation 绘制水印时考虑的EXIF方向
+     * @return 带水印的图片
+     */
+    private static BufferedImage render(ImageDecoder.DecodedImage decoded, String watermarkText,
+                                        WatermarkConfig config, int orientation) {
+        if (decoded.getOffHeap() != null) {
+            watermarkInPlace(decoded.getOffHeap(), watermarkText, config, orientation);
+            return decoded.getImage();
+        }
+        
+        BufferedImage originalImage = decoded.getImage();
+        int maxDimension = config.getMaxOutputDimension();
+        double scale = 1.0;
+        if (maxDimension > 0 && maxDimension < decoded.getSourceLongEdge()) {
+            scale = (double) maxDimension / decoded.getSourceLongEdge();
+            originalImage = downscale(originalImage,
+                    Math.max(1, (int) Math.round(decoded.getSourceWidth() * scale)),
+                    Math.max(1, (int) Math.round(decoded.getSourceHeight() * scale)));
+        }
+        
+        try {
+            return createWatermarkedImage(originalImage, watermarkText, config, scale, orientation);
+        } finally {
+            if (originalImage != decoded.getImage()) {
+                RasterPool.release(originalImage);
+            }
+        }
+    }
+    
+    /**
+     * 编码完成后释放绘制结果；就地绘制的堆外图片即解码结果本身
+     * 
+     * @param decoded 解码结果
+     * @param watermarkedImage 带水印的图片
+     */
+    private static void release(ImageDecoder.DecodedImage decoded, BufferedImage watermarkedImage) {
+        if (watermarkedImage == decoded.getImage()) {
+            decoded.release();
+        } else {
+            RasterPool.release(watermarkedImage);
+        }
+    }
+    
+    /**
+     * 堆外解码的像素数阈值
+     * 
+     * @param config 水印配置
+     * @return 像素数，0表示不使用堆外内存
+     */
+    private static long offHeapMinPixels(WatermarkConfig config) {
+        return Math.max(0, config.getOffHeapMinMegapixels()) * 1_000_000L;
+    }
+    
+    /**
+     * 计算规格的有效长边上限，同时受规格尺寸和全局最大输出尺寸约束
+     * 
+     * @param rendition 输出规格
+     * @param config 水印配置
+     * @return 长边上限像素，0表示不限制
+     */
+    private static int effectiveMaxSize(Rendition rendition, WatermarkConfig config) {
+        int maxSize = rendition.getMaxSize();
+        int maxDimension = config.getMaxOutputDimension();
+        if (maxSize <= 0) {
+            return Math.max(0, maxDimension);
+        }
+        return maxDimension > 0 ? Math.min(maxSize, maxDimension) : maxSize;
+    }
+    
+    /**
+     * 计算规格的目标长边尺寸（不放大）
+     * 
+     * @param rendition 输出规格
+     * @param config 水印配置
+     * @param sourceLongEdge 原图长边
+     * @return 目标长边像素
+     */
+    private static int targetLongEdge(Rendition rendition, WatermarkConfig config, int sourceLongEdge) {
+        int maxSize = effectiveMaxSize(rendition, config);
+        return (maxSize <= 0 || maxSize >= sourceLongEdge) ? sourceLongEdge : maxSize;
+    }
+    
+    /**
+     * 写出图片
+     * 
+     * 编码到池化缓冲区后一次写出到临时文件，再原子地替换输出文件。
+     * 
+     * @param image 图片
+     * @param format 输出格式
+     * @param quality 压缩质量 (0.0-1.0)，小于0时使用编码器默认值，格式不支持压缩时忽略
+     * @param segments 需要拼接的JPEG APP段，可以为空
+     * @param outputFile 输出文件
+     * @return 是否找到对应格式的写入器并写出成功
+     * @throws IOException 写出失败时抛出
+     */
+    static boolean writeImage(BufferedImage image, String format, float quality, List<byte[]> segments,
+                              File outputFile) throws IOException {
+        ImageBuffer buffer = ImageBuffer.acquire();
+        try {
+            if (!encode(image, format, quality, segments, buffer)) {
+                return false;
+            }
+            ImageFiles.write(outputFile, buffer.asByteBuffer(), false);
+            return true;
+        } finally {
+            buffer.release();
+        }
+    }
+    
+    /**
+     * 编码图片到输出流
+     * 
+     * 编码器总是写入池化缓冲区：目标本身是 {@link ImageBuffer} 且无需拼接时直接写入目标，
+     * 否则先编码到临时缓冲区，再（在段级别拼接元数据后）一次写出。
+     * 
+     * @param image 图片
+     * @param format 输出格式
+     * @param quality 压缩质量 (0.0-1.0)，小于0时使用编码器默认值
+     * @param segments 需要拼接的JPEG APP段，可以为空
+     * @param output 输出流
+     * @return 是否找到对应格式的写入器并编码成功
+     * @throws IOException 编码失败时抛出
+     */
+    private static boolean encode(BufferedImage image, String format, float quality, List<byte[]> segments,
+                                  OutputStream output) throws IOException {
+        boolean splice = segments != null && !segments.isEmpty() && JpegSegmentSplicer.isJpegFormat(format);
+        if (!splice && output instanceof ImageBuffer) {
+            return encode(image, format, quality, (ImageBuffer) output);
+        }
+        
+        ImageBuffer encoded = ImageBuffer.acquire();
+        try {
+            if (!encode(image, format, quality, encoded)) {
+                return false;
+            }
+            if (splice) {
+                JpegSegmentSplicer.splice(encoded.array(), encoded.size(), segments, output);
+            } else {
+                encoded.writeTo(output);
+            }
+            return true;
+        } finally {
+            encoded.release();
+        }
+    }
+    
+    /**
+     * 编码图片到缓冲区
+     * 
+     * @param image 图片
+     * @param format 输出格式
+     * @param quality 压缩质量 (0.0-1.0)，小于0时使用编码器默认值
+     * @param buffer 目标缓冲区
+     * @return 是否找到对应格式的写入器并编码成功
+     * @throws IOException 编码失败时抛出
+     */
+    private static boolean encode(BufferedImage image, String format, float quality, ImageBuffer buffer)
+            throws IOException {
+        try (ImageOutputStream imageOutput = new ImageBufferOutputStream(buffer)) {
+            return encode(image, format, quality, imageOutput);
+        }
+    }
+    
+    /**
+     * 编码图片
+     * 
+     * @param image 图片
+     * @param format 输出格式
+     * @param quality 压缩质量 (0.0-1.0)，小于0时使用编码器默认值
+     * @param output 图片输出流
+     * @return 是否找到对应格式的写入器并编码成功
+     * @throws IOException 编码失败时抛出
+     */
+    private static boolean encode(BufferedImage image, String format, float quality, ImageOutputStream output)
+            throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(format);
+        if (!writers.hasNext()) {
+            return false;
+        }
+        
+        ImageWriter writer = writers.next();
+        try {
+            writer.setOutput(output);
+            
+            ImageWriteParam param = null;
+            if (quality >= 0) {
+                param = writer.getDefaultWriteParam();
+                if (param.canWriteCompressed()) {
+                    param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                    if (param.getCompressionType() == null && param.getCompressionTypes() != null) {
+                        param.setCompressionType(param.getCompressionTypes()[0]);
+                    }
+                    param.setCompressionQuality(quality);
+                }
+            }
+            
+            writer.write(null, new IIOImage(image, null, null), param);
+            return true;
+        } finally {
+            writer.dispose();
+        }
+    }
+    
+    /**
+     * 确定绘制水印时需要考虑的EXIF方向
+     * 
+     * 只有方向标记随EXIF APP1写入JPEG输出时，查看器才会按标记旋转显示，水印按显示方向绘制；
+     * 不保留元数据或输出其他格式时输出不带方向标记，水印按存储方向绘制。
+     * 
+     * @param metadata 源图片元数据
+     * @param config 水印配置
+     * @param format 输出格式
+     * @param segments 随输出保留的JPEG APP段
+     * @return 方向标记值，未启用方向感知或方向标记不会写入输出时为1
+     */
+    private static int orientationOf(SourceMetadata metadata, WatermarkConfig config, String format,
+                                     List<byte[]> segments) {
+        if (!config.isOrientationAware() || metadata == null || !JpegSegmentSplicer.isJpegFormat(format)
+                || !JpegSegmentSplicer.containsExif(segments)) {
+            return SourceMetadata.ORIENTATION_NORMAL;
+        }
+        return metadata.getOrientation();
+    }
+    
+    /**
+     * 确定需要随输出保留的JPEG APP段
+     * 
+     * 解码时源图片的ICC配置文件不是sRGB的，像素在绘制时已转换为sRGB，此时不再保留ICC段，
+     * 避免颜色被重复转换。
+     * 
+     * @param metadata 源图片元数据
+     * @param config 水印配置
+     * @param decodedImage 解码得到的图片
+     * @return 需要保留的APP段，未启用或没有时为空列表
+     */
+    private static List<byte[]> preservedSegments(SourceMetadata metadata, WatermarkConfig config,
+                                                  BufferedImage decodedImage) {
+        if (!config.isPreserveMetadata() || metadata == null || !metadata.hasJpegSegments()) {
+            return Collections.emptyList();
+        }
+        
+        if (decodedImage.getColorModel().getColorSpace().isCS_sRGB()) {
+            return metadata.getJpegSegments();
+        }
+        
+        List<byte[]> segments = new ArrayList<>();
+        for (byte[] segment : metadata.getJpegSegments()) {
+            if ((segment[1] & 0xFF) != APP2_MARKER) {
+                segments.add(segment);
+            }
+        }
+        return segments;
+    }
+    
+    /**
+     * 逐级缩小图片
+     * 
+     * 每次最多缩小一半，避免一次大比例双线性插值产生锯齿；目标尺寸不小于原图时直接返回原图。
+     * 中间结果和返回的图片来自 {@link RasterPool}，中间结果在下一级完成后归还，返回的图片由调用方归还。
+     * 
+     * @param source 源图片
+     * @param targetWidth 目标宽度
+     * @param targetHeight 目标高度
+     * @return 缩小后的图片
+     */
+    static BufferedImage downscale(BufferedImage source, int targetWidth, int targetHeight) {
+        if (targetWidth >= source.getWidth() && targetHeight >= source.getHeight()) {
+            return source;
+        }
+        
+        BufferedImage current = source;
+        int width = source.getWidth();
+        int height = source.getHeight();
+        
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            
+            BufferedImage scaled = RasterPool.acquire(width, height);
+            Graphics2D g2d = scaled.createGraphics();
+            try {
+                g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                g2d.drawImage(current, 0, 0, width, height, null);
+            } finally {
+                g2d.dispose();
+            }
+            if (current != source) {
+                RasterPool.release(current);
+            }
+            current = scaled;
+        } while (width != targetWidth || height != targetHeight);
+        
+        return current;
+    }
+    
+    /**
+     * 创建带水印的图片，字体大小、边距和阴影偏移按缩放比例缩放
+     * 
+     * 图片带有EXIF方向标记时，水印位置按查看器旋转后的显示方向计算，
+     * 只把文字小图按方向的逆变换贴回原始像素，像素数据和方向标记都保持不变。
      * 
      * @param originalImage 原始图片
      * @param watermarkText 水印文本
      * @param config 水印配置
+     * @param scale 相对原图的缩放比例
+     * @param orientation EXIF方向标记值 (1-8)
      * @return 带水印的图片
      */
-    private static BufferedImage createWatermarkedImage(BufferedImage originalImage, String watermarkText, WatermarkConfig config) {
+    private static BufferedImage createWatermarkedImage(BufferedImage originalImage, String watermarkText,
+                                                        WatermarkConfig config, double scale, int orientation) {
         int width = originalImage.getWidth();
         int height = originalImage.getHeight();
         
-        // 创建新的图片对象
-        BufferedImage watermarkedImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        // 创建新的图片对象（像素数组来自缓冲池，由调用方在编码完成后归还）
+        BufferedImage watermarkedImage = RasterPool.acquire(width, height);
         Graphics2D g2d = watermarkedImage.createGraphics();
         
         try {
             // 绘制原始图片
             g2d.drawImage(originalImage, 0, 0, null);
             
-            // 设置抗锯齿
+            WatermarkLayout layout = layoutWatermark(g2d, width, height, watermarkText, config, scale, orientation);
+            paintWatermark(g2d, layout, watermarkText, config);
+        } finally {
+            g2d.dispose();
+        }
+        
+        return watermarkedImage;
+    }
+    
+    /**
+     * 在堆外图片的原像素上绘制水印
+     * 
+     * 水印先绘制到只覆盖水印区域的透明小图上，再按 SRC_OVER 混合到堆外像素，不复制整张图片。
+     * 
+     * @param image 堆外图片
+     * @param watermarkText 水印文本
+     * @param config 水印配置
+     * @param orientation EXIF方向标记值 (1-8)
+     */
+    private static void watermarkInPlace(OffHeapImage image, String watermarkText, WatermarkConfig config,
+                                         int orientation) {
+        BufferedImage scratch = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D measure = scratch.createGraphics();
+        WatermarkLayout layout;
+        try {
+            layout = layoutWatermark(measure, image.getWidth(), image.getHeight(), watermarkText, config, 1.0,
+                    orientation);
+        } finally {
+            measure.dispose();
+        }
+        
+        Rectangle bounds = layout.getBounds().intersection(new Rectangle(0, 0, image.getWidth(), image.getHeight()));
+        if (bounds.isEmpty()) {
+            return;
+        }
+        
+        BufferedImage overlay = new BufferedImage(bounds.width, bounds.height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2d = overlay.createGraphics();
+        try {
+            g2d.translate(-bounds.x, -bounds.y);
+            paintWatermark(g2d, layout, watermarkText, config);
+        } finally {
+            g2d.dispose();
+        }
+        image.blend(overlay, bounds.x, bounds.y);
+    }
+    
+    /**
+     * 计算水印的字体和位置，并在绘图上下文中设置抗锯齿和字体
+     * 
+     * @param g2d 绘图上下文
+     * @param width 图片宽度（原始像素）
+     * @param height 图片高度（原始像素）
+     * @param watermarkText 水印文本
+     * @param config 水印配置
+     * @param scale 相对原图的缩放比例
+     * @param orientation EXIF方向标记值 (1-8)
+     * @return 水印布局
+     */
+    private static WatermarkLayout layoutWatermark(Graphics2D g2d, int width, int height, String watermarkText,
+                                                   WatermarkConfig config, double scale, int orientation) {
+        int fontSize = Math.max(1, (int) Math.round(config.getFontSize() * scale));
+        int margin = (int) Math.round(config.getMargin() * scale);
+        int shadowOffset = (int) Math.round(config.getShadowOffset() * scale);
+        
+        // 设置抗锯齿
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        
+        // 设置字体（从字体注册表按字号派生）
+        Font font = FontRegistry.getFont(config.getFontName(), config.getFontStyle(), fontSize);
+        g2d.setFont(font);
+        
+        // 获取字体度量信息
+        FontMetrics fontMetrics = g2d.getFontMetrics();
+        int textWidth = fontMetrics.stringWidth(watermarkText);
+        int textHeight = fontMetrics.getHeight();
+        
+        // 有方向标记时按显示方向计算位置（方向5-8显示时宽高互换）
+        AffineTransform toDisplay = orientationTransform(orientation, width, height);
+        boolean swapped = toDisplay != null && orientation >= 5;
+        Point position = calculateWatermarkPosition(swapped ? height : width, swapped ? width : height,
+                textWidth, textHeight, config.getPosition(), margin);
+        
+        return new WatermarkLayout(font, fontMetrics, textWidth, textHeight, position, shadowOffset, toDisplay);
+    }
+    
+    /**
+     * 按布局绘制水印
+     * 
+     * @param g2d 绘图上下文
+     * @param layout 水印布局
+     * @param watermarkText 水印文本
+     * @param config 水印配置
+     */
+    private static void paintWatermark(Graphics2D g2d, WatermarkLayout layout, String watermarkText,
+                                       WatermarkConfig config) {
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g2d.setFont(layout.font);
+        
+        // 设置透明度
+        g2d.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, config.getOpacity()));
+        
+        Point position = layout.position;
+        if (layout.toDisplay != null) {
+            BufferedImage sprite = createTextSprite(watermarkText, layout.font, layout.fontMetrics, config,
+                    layout.shadowOffset);
+            
+            try {
+                g2d.transform(layout.toDisplay.createInverse());
+            } catch (NoninvertibleTransformException e) {
+                // 方向变换都是旋转/镜像，总是可逆的
+                throw new IllegalStateException(e);
+            }
+            g2d.drawImage(sprite, position.x, position.y - layout.fontMetrics.getAscent(), null);
+            
+            logger.debug("水印绘制完成 - 显示位置: ({}, {}), 文本: {}", position.x, position.y, watermarkText);
+            return;
+        }
+        
+        // 绘制阴影（如果启用）
+        if (config.isEnableShadow()) {
+            g2d.setColor(config.getShadowColor());
+            g2d.drawString(watermarkText, position.x + layout.shadowOffset, position.y + layout.shadowOffset);
+        }
+        
+        // 绘制水印文本
+        g2d.setColor(config.getColor());
+        g2d.drawString(watermarkText, position.x, position.y);
+        
+        logger.debug("水印绘制完成 - 位置: ({}, {}), 文本: {}", position.x, position.y, watermarkText);
+    }
+    
+    /**
+     * 水印布局：字体、显示坐标中的基线位置和方向变换
+     */
+    private static final class WatermarkLayout {
+        private final Font font;
+        private final FontMetrics fontMetrics;
+        private final int textWidth;
+        private final int textHeight;
+        private final Point position;
+        private final int shadowOffset;
+        private final AffineTransform toDisplay;
+        
+        WatermarkLayout(Font font, FontMetrics fontMetrics, int textWidth, int textHeight, Point position,
+                        int shadowOffset, AffineTransform toDisplay) {
+            this.font = font;
+            this.fontMetrics = fontMetrics;
+            this.textWidth = textWidth;
+            this.textHeight = textHeight;
+            this.position = position;
+            this.shadowOffset = shadowOffset;
+            this.toDisplay = toDisplay;
+        }
+        
+        /**
+         * 计算水印在原始像素坐标中可能覆盖的区域，四周留出字形超出步进宽度的余量
+         * 
+         * @return 覆盖区域
+         */
+        Rectangle getBounds() {
+            int offset = Math.abs(shadowOffset);
+            int pad = font.getSize() / 2 + 2;
+            Rectangle display = new Rectangle(position.x - offset - pad,
+                    position.y - fontMetrics.getAscent() - offset - pad,
+                    textWidth + 2 * (offset + pad), textHeight + 2 * (offset + pad));
+            if (toDisplay == null) {
+                return display;
+            }
+            try {
+                return toDisplay.createInverse().createTransformedShape(display).getBounds();
+            } catch (NoninvertibleTransformException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+    
+    /**
+     * 绘制文字小图（含阴影），透明背景，左上角对应文本行的顶部
+     * 
+     * @param watermarkText 水印文本
+     * @param font 字体
+     * @param fontMetrics 字体度量信息
+     * @param config 水印配置
+     * @param shadowOffset 阴影偏移
+     * @return 文字小图
+     */
+    private static BufferedImage createTextSprite(String watermarkText, Font font, FontMetrics fontMetrics,
+                                                  WatermarkConfig config, int shadowOffset) {
+        int offset = config.isEnableShadow() ? Math.max(0, shadowOffset) : 0;
+        int spriteWidth = Math.max(1, fontMetrics.stringWidth(watermarkText) + offset);
+        int spriteHeight = Math.max(1, fontMetrics.getHeight() + offset);
+        
+        BufferedImage sprite = new BufferedImage(spriteWidth, spriteHeight, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2d = sprite.createGraphics();
+        try {
             g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
             g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
-            
-            // 设置字体
-            Font font = new Font(config.getFontName(), config.getFontStyle(), config.getFontSize());
             g2d.setFont(font);
             
-            // 获取字体度量信息
-            FontMetrics fontMetrics = g2d.getFontMetrics();
-            int textWidth = fontMetrics.stringWidth(watermarkText);
-            int textHeight = fontMetrics.getHeight();
-            
-            // 计算水印位置
-            Point position = calculateWatermarkPosition(width, height, textWidth, textHeight, config.getPosition(), config.getMargin());
-            
-            // 设置透明度
-            AlphaComposite alphaComposite = AlphaComposite.getInstance(AlphaComposite.SRC_OVER, config.getOpacity());
-            g2d.setComposite(alphaComposite);
-            
-            // 绘制阴影（如果启用）
+            int baseline = fontMetrics.getAscent();
             if (config.isEnableShadow()) {
                 g2d.setColor(config.getShadowColor());
-                g2d.drawString(watermarkText, position.x + config.getShadowOffset(), position.y + config.getShadowOffset());
+                g2d.drawString(watermarkText, offset, baseline + offset);
             }
-            
-            // 绘制水印文本
             g2d.setColor(config.getColor());
-            g2d.drawString(watermarkText, position.x, position.y);
-            
-            logger.debug("水印绘制完成 - 位置: ({}, {}), 文本: {}", position.x, position.y, watermarkText);
-            
+            g2d.drawString(watermarkText, 0, baseline);
         } finally {
             g2d.dispose();
         }
-        
-        return watermarkedImage;
+        return sprite;
+    }
+    
+    /**
+     * 计算EXIF方向对应的变换：把原始像素坐标映射到查看器旋转后的显示坐标
+     * 
+     * @param orientation EXIF方向标记值 (1-8)
+     * @param width 原始像素宽度
+     * @param height 原始像素高度
+     * @return 坐标变换，方向为1（无需变换）或无效时返回null
+     */
+    static AffineTransform orientationTransform(int orientation, int width, int height) {
+        switch (orientation) {
+            case 2: // 水平镜像
+                return new AffineTransform(-1, 0, 0, 1, width, 0);
+            case 3: // 旋转180度
+                return new AffineTransform(-1, 0, 0, -1, width, height);
+            case 4: // 垂直镜像
+                return new AffineTransform(1, 0, 0, -1, 0, height);
+            case 5: // 沿主对角线转置
+                return new AffineTransform(0, 1, 1, 0, 0, 0);
+            case 6: // 顺时针旋转90度
+                return new AffineTransform(0, 1, -1, 0, height, 0);
+            case 7: // 沿副对角线转置
+                return new AffineTransform(0, -1, -1, 0, height, width);
+            case 8: // 逆时针旋转90度
+                return new AffineTransform(0, -1, 1, 0, 0, width);
+            default:
+                return null;
+        }
     }
     
     /**
@@ -198,7 +1182,7 @@ public class WatermarkEngine {
      * @param fileName 文件名
      * @return 图片格式
      */
-    private static String getImageFormat(String fileName) {
+    static String getImageFormat(String fileName) {
         if (fileName == null || fileName.isEmpty()) {
             return "jpg";
         }
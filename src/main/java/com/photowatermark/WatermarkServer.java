@@ -0,0 +1,503 @@
+package com.photowatermark;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 本地HTTP水印服务
+ * 
+ * 常驻进程，JIT编译结果、字体缓存和线程池在请求之间保留，避免每次启动JVM的开销。
+ * 只监听本机回环地址；带有 Origin 头的请求 (浏览器中的网页发出的) 一律返回403，
+ * 本机浏览器打开的网页不能借此读写本地文件。
+ * 
+ * <pre>
+ * POST /watermark?text=...&amp;format=png   请求体为图片，响应为带水印的图片
+ * POST /jobs?input=...&amp;output=...&amp;text=...&amp;exif=true&amp;recursive=true
+ *                                      将目录批量处理加入队列，返回任务编号
+ * GET  /jobs/{id}                      查询批量任务状态
+ * GET  /metrics                        服务指标
+ * GET  /health                         存活检查
+ * </pre>
+ * 
+ * @author PhotoWatermark Team
+ * @version 1.0.0
+ */
+public class WatermarkServer {
+    
+    private static final Logger logger = LoggerFactory.getLogger(WatermarkServer.class);
+    
+    // 保留的已结束批量任务数
+    private static final int MAX_RETAINED_JOBS = 100;
+    
+    private final WatermarkConfig config;
+    private final String defaultText;
+    private final int port;
+    private final int maxConcurrentRequests;
+    private final int maxQueuedJobs;
+    private final long maxUploadBytes;
+    
+    private final Semaphore requestPermits;
+    private final Map<Long, JobStatus> jobs = new ConcurrentHashMap<>();
+    private final AtomicLong jobIds = new AtomicLong();
+    
+    // 指标
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong rejectedRequests = new AtomicLong();
+    private final AtomicLong imagesProcessed = new AtomicLong();
+    private final AtomicLong imagesFailed = new AtomicLong();
+    private final AtomicLong bytesIn = new AtomicLong();
+    private final AtomicLong bytesOut = new AtomicLong();
+    private final AtomicLong processingNanos = new AtomicLong();
+    private final AtomicLong jobsCompleted = new AtomicLong();
+    private final long startTime = System.currentTimeMillis();
+    
+    private HttpServer server;
+    private ExecutorService requestExecutor;
+    private ThreadPoolExecutor jobExecutor;
+    
+    // 批量任务共享的处理线程池，不随每个任务创建和销毁
+    private ProcessorExecutors processorExecutors;
+    private volatile FileProcessor runningJob;
+    
+    /**
+     * 构造函数
+     * 
+     * @param config 水印配置，所有请求共用
+     * @param defaultText 请求未指定水印文本时使用的文本
+     * @param port 监听端口，0表示由系统分配
+     * @param maxConcurrentRequests 同时处理的图片请求数上限，超出时返回503
+     * @param maxQueuedJobs 排队的批量任务数上限
+     * @param maxUploadBytes 单张上传图片的大小上限
+     */
+    public WatermarkServer(WatermarkConfig config, String defaultText, int port, int maxConcurrentRequests,
+                           int maxQueuedJobs, long maxUploadBytes) {
+        this.config = config;
+        this.defaultText = defaultText;
+        this.port = port;
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        this.maxQueuedJobs = maxQueuedJobs;
+        this.maxUploadBytes = maxUploadBytes;
+        this.requestPermits = new Semaphore(maxConcurrentRequests);
+    }
+    
+    /**
+     * 启动服务
+     * 
+     * @throws IOException 无法监听端口时抛出
+     */
+    public synchronized void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        
+        // 请求线程数略多于并发上限，使超出上限的请求能够立即得到503而不是排队
+        requestExecutor = Executors.newFixedThreadPool(maxConcurrentRequests + 2);
+        jobExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(maxQueuedJobs));
+        processorExecutors = new ProcessorExecutors();
+        
+        server.setExecutor(requestExecutor);
+        server.createContext("/watermark", this::handleWatermark);
+        server.createContext("/jobs", this::handleJobs);
+        server.createContext("/metrics", this::handleMetrics);
+        server.createContext("/health", exchange -> respond(exchange, 200, "text/plain", "OK"));
+        server.start();
+        
+        logger.info("水印服务已启动: http://{}:{}", InetAddress.getLoopbackAddress().getHostAddress(), getPort());
+    }
+    
+    /**
+     * 停止服务，取消正在运行的批量任务并等待其结束
+     * 
+     * @param delaySeconds 等待进行中请求完成的最长时间
+     */
+    public synchronized void stop(int delaySeconds) {
+        if (server == null) {
+            return;
+        }
+        
+        server.stop(delaySeconds);
+        FileProcessor job = runningJob;
+        if (job != null) {
+            job.cancel();
+        }
+        jobExecutor.shutdown();
+        requestExecutor.shutdown();
+        try {
+            jobExecutor.awaitTermination(60, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        processorExecutors.close();
+        server = null;
+        logger.info("水印服务已停止");
+    }
+    
+    /**
+     * 获取实际监听的端口
+     * 
+     * @return 端口
+     */
+    public int getPort() {
+        return server != null ? server.getAddress().getPort() : port;
+    }
+    
+    /**
+     * 处理单张图片水印请求
+     * 
+     * @param exchange HTTP交换
+     * @throws IOException 读写请求失败时抛出
+     */
+    private void handleWatermark(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        if (rejectBrowserRequest(exchange)) {
+            return;
+        }
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            respond(exchange, 405, "text/plain", "只支持POST");
+            return;
+        }
+        
+        if (!requestPermits.tryAcquire()) {
+            rejectedRequests.incrementAndGet();
+            respond(exchange, 503, "text/plain", "服务繁忙，请稍后重试");
+            return;
+        }
+        
+        ImageBuffer input = null;
+        ImageBuffer output = null;
+        try {
+            Map<String, String> params = parseQuery(exchange);
+            String text = params.getOrDefault("text", defaultText);
+            String format = params.get("format");
+            
+            input = readBody(exchange.getRequestBody());
+            if (input == null) {
+                respond(exchange, 413, "text/plain", "图片超过大小上限 " + maxUploadBytes + " 字节");
+                return;
+            }
+            bytesIn.addAndGet(input.size());
+            
+            long start = System.nanoTime();
+            output = ImageBuffer.acquire();
+            boolean success = WatermarkEngine.addWatermark(input.asByteBuffer(), format, output, text, config);
+            processingNanos.addAndGet(System.nanoTime() - start);
+            
+            if (!success) {
+                imagesFailed.incrementAndGet();
+                respond(exchange, 422, "text/plain", "无法处理图片");
+                return;
+            }
+            
+            imagesProcessed.incrementAndGet();
+            bytesOut.addAndGet(output.size());
+            
+            exchange.getResponseHeaders().set("Content-Type", contentType(format));
+            exchange.sendResponseHeaders(200, output.size());
+            try (OutputStream body = exchange.getResponseBody()) {
+                output.writeTo(body);
+            }
+        } finally {
+            if (input != null) {
+                input.release();
+            }
+            if (output != null) {
+                output.release();
+            }
+            requestPermits.release();
+            exchange.close();
+        }
+    }
+    
+    /**
+     * 处理批量任务的提交和查询
+     * 
+     * @param exchange HTTP交换
+     * @throws IOException 读写请求失败时抛出
+     */
+    private void handleJobs(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        if (rejectBrowserRequest(exchange)) {
+            return;
+        }
+        String path = exchange.getRequestURI().getPath();
+        
+        if ("GET".equals(exchange.getRequestMethod()) && path.startsWith("/jobs/")) {
+            JobStatus status = null;
+            try {
+                status = jobs.get(Long.parseLong(path.substring("/jobs/".length())));
+            } catch (NumberFormatException e) {
+                // 按不存在处理
+            }
+            if (status == null) {
+                respond(exchange, 404, "text/plain", "任务不存在");
+            } else {
+                respond(exchange, 200, "application/json", status.toJson());
+            }
+            return;
+        }
+        
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            respond(exchange, 405, "text/plain", "只支持POST提交或GET查询");
+            return;
+        }
+        
+        Map<String, String> params = parseQuery(exchange);
+        String input = params.get("input");
+        if (input == null || input.trim().isEmpty()) {
+            respond(exchange, 400, "text/plain", "必须指定input参数");
+            return;
+        }
+        
+        JobStatus status = new JobStatus(jobIds.incrementAndGet(), input);
+        File outputDir = params.containsKey("output") ? new File(params.get("output")) : null;
+        boolean useExifDate = Boolean.parseBoolean(params.get("exif"));
+        boolean recursive = Boolean.parseBoolean(params.get("recursive"));
+        String text = params.getOrDefault("text", defaultText);
+        
+        // 先登记再提交，任务开始运行或结束后总能查询到
+        jobs.put(status.id, status);
+        try {
+            FileProcessor processor = new FileProcessor(config, useExifDate, text, outputDir, recursive);
+            processor.setSharedExecutors(processorExecutors);
+            jobExecutor.execute(() -> runJob(status, processor));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(status.id);
+            rejectedRequests.incrementAndGet();
+            respond(exchange, 503, "text/plain", "任务队列已满");
+            return;
+        }
+        
+        pruneJobs();
+        respond(exchange, 202, "application/json", status.toJson());
+    }
+    
+    private void runJob(JobStatus status, FileProcessor processor) {
+        status.state = "RUNNING";
+        runningJob = processor;
+        try {
+            FileProcessor.ProcessResult result = processor.processPath(status.input);
+            status.message = result.getMessage();
+            status.state = result.isSuccess() ? "DONE" : "FAILED";
+        } catch (RuntimeException e) {
+            logger.error("批量任务执行失败: {}", status.input, e);
+            status.message = e.toString();
+            status.state = "FAILED";
+        } finally {
+            runningJob = null;
+            jobsCompleted.incrementAndGet();
+        }
+    }
+    
+    /**
+     * 移除最早结束的任务，使保留的任务数不超过上限
+     */
+    private void pruneJobs() {
+        if (jobs.size() <= MAX_RETAINED_JOBS) {
+            return;
+        }
+        for (Long id : new TreeSet<>(jobs.keySet())) {
+            if (jobs.size() <= MAX_RETAINED_JOBS) {
+                break;
+            }
+            JobStatus status = jobs.get(id);
+            if (status != null && ("DONE".equals(status.state) || "FAILED".equals(status.state))) {
+                jobs.remove(id);
+            }
+        }
+    }
+    
+    /**
+     * 输出服务指标（Prometheus文本格式）
+     * 
+     * @param exchange HTTP交换
+     * @throws IOException 写出响应失败时抛出
+     */
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        StringBuilder metrics = new StringBuilder();
+        appendMetric(metrics, "watermark_uptime_seconds", (System.currentTimeMillis() - startTime) / 1000);
+        appendMetric(metrics, "watermark_requests_total", requests.get());
+        appendMetric(metrics, "watermark_requests_rejected_total", rejectedRequests.get());
+        appendMetric(metrics, "watermark_requests_in_flight", maxConcurrentRequests - requestPermits.availablePermits());
+        appendMetric(metrics, "watermark_images_processed_total", imagesProcessed.get());
+        appendMetric(metrics, "watermark_images_failed_total", imagesFailed.get());
+        appendMetric(metrics, "watermark_bytes_in_total", bytesIn.get());
+        appendMetric(metrics, "watermark_bytes_out_total", bytesOut.get());
+        appendMetric(metrics, "watermark_processing_millis_total", TimeUnit.NANOSECONDS.toMillis(processingNanos.get()));
+        appendMetric(metrics, "watermark_jobs_queued", jobExecutor.getQueue().size());
+        appendMetric(metrics, "watermark_jobs_running", runningJob != null ? 1 : 0);
+        appendMetric(metrics, "watermark_jobs_completed_total", jobsCompleted.get());
+        appendMetric(metrics, "watermark_heap_used_bytes",
+                Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory());
+        respond(exchange, 200, "text/plain; version=0.0.4", metrics.toString());
+    }
+    
+    private static void appendMetric(StringBuilder metrics, String name, long value) {
+        metrics.append(name).append(' ').append(value).append('\n');
+    }
+    
+    /**
+     * 读取请求体，超过大小上限时返回null
+     * 
+     * @param body 请求体
+     * @return 包含请求体的缓冲区
+     * @throws IOException 读取失败时抛出
+     */
+    private ImageBuffer readBody(InputStream body) throws IOException {
+        ImageBuffer buffer = ImageBuffer.acquire();
+        byte[] chunk = new byte[8192];
+        try {
+            int read;
+            while ((read = body.read(chunk)) >= 0) {
+                if (buffer.size() + read > maxUploadBytes) {
+                    buffer.release();
+                    return null;
+                }
+                buffer.write(chunk, 0, read);
+            }
+            return buffer;
+        } catch (IOException | RuntimeException e) {
+            buffer.release();
+            throw e;
+        }
+    }
+    
+    /**
+     * 拒绝浏览器中的网页发出的请求
+     * 
+     * 浏览器对跨站的POST请求总是带上 Origin 头，命令行客户端和脚本不会带。
+     * 
+     * @param exchange HTTP交换
+     * @return 是否已拒绝 (已返回403)
+     * @throws IOException 写出响应失败时抛出
+     */
+    private boolean rejectBrowserRequest(HttpExchange exchange) throws IOException {
+        String origin = exchange.getRequestHeaders().getFirst("Origin");
+        if (origin == null) {
+            return false;
+        }
+        rejectedRequests.incrementAndGet();
+        logger.warn("拒绝来自浏览器的请求: {} {} (Origin: {})", exchange.getRequestMethod(),
+                exchange.getRequestURI().getPath(), origin);
+        respond(exchange, 403, "text/plain", "不接受浏览器发出的请求");
+        return true;
+    }
+    
+    /**
+     * 取得输出格式对应的 Content-Type
+     * 
+     * @param format 输出格式，可以为null
+     * @return MIME类型，未指定格式时为 application/octet-stream
+     */
+    static String contentType(String format) {
+        if (format == null) {
+            return "application/octet-stream";
+        }
+        String lower = format.toLowerCase();
+        return "jpg".equals(lower) ? "image/jpeg" : "image/" + lower;
+    }
+    
+    private static Map<String, String> parseQuery(HttpExchange exchange) throws UnsupportedEncodingException {
+        Map<String, String> params = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null || query.isEmpty()) {
+            return params;
+        }
+        
+        for (String pair : query.split("&")) {
+            int separator = pair.indexOf('=');
+            String key = separator >= 0 ? pair.substring(0, separator) : pair;
+            String value = separator >= 0 ? pair.substring(separator + 1) : "";
+            params.put(URLDecoder.decode(key, "UTF-8"), URLDecoder.decode(value, "UTF-8"));
+        }
+        return params;
+    }
+    
+    private static void respond(HttpExchange exchange, int status, String contentType, String body)
+            throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType + "; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(bytes);
+        }
+    }
+    
+    private static String jsonString(String value) {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder json = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            switch (c) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                case '\r':
+                    json.append("\\r");
+                    break;
+                case '\t':
+                    json.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        return json.append('"').toString();
+    }
+    
+    /**
+     * 批量任务状态
+     */
+    private static class JobStatus {
+        private final long id;
+        private final String input;
+        private volatile String state = "QUEUED";
+        private volatile String message;
+        
+        JobStatus(long id, String input) {
+            this.id = id;
+            this.input = input;
+        }
+        
+        String toJson() {
+            return "{\"id\":" + id +
+                    ",\"input\":" + jsonString(input) +
+                    ",\"state\":" + jsonString(state) +
+                    ",\"message\":" + jsonString(message) +
+                    "}";
+        }
+    }
+}
\ No newline at end of file
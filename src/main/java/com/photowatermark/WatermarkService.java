@@ -0,0 +1,193 @@
+package com.photowatermark;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.imageio.stream.ImageInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * 异步水印服务
+ * 
+ * 供作为库嵌入时使用：提交后立即返回 CompletableFuture，调用方可以在等待期间处理其他工作。
+ * 处理失败不会使 future 异常完成，失败原因记录在 {@link ImageResult} 中。
+ * 
+ * @author PhotoWatermark Team
+ * @version 1.0.0
+ */
+public class WatermarkService implements AutoCloseable {
+    
+    private static final Logger logger = LoggerFactory.getLogger(WatermarkService.class);
+    
+    private final Executor executor;
+    private final ExecutorService ownedExecutor;
+    
+    /**
+     * 使用按CPU核数创建的线程池，调用 {@link #close()} 时关闭
+     */
+    public WatermarkService() {
+        this.ownedExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        this.executor = ownedExecutor;
+    }
+    
+    /**
+     * 使用调用方提供的执行器，服务不负责关闭它
+     * 
+     * @param executor 执行器
+     */
+    public WatermarkService(Executor executor) {
+        if (executor == null) {
+            throw new IllegalArgumentException("执行器不能为空");
+        }
+        this.executor = executor;
+        this.ownedExecutor = null;
+    }
+    
+    /**
+     * 异步为单张图片添加水印
+     * 
+     * @param source 源图片文件
+     * @param target 输出文件
+     * @param watermarkText 水印文本
+     * @param options 水印配置
+     * @return 处理结果
+     */
+    public CompletableFuture<ImageResult> submit(File source, File target, String watermarkText,
+                                                 WatermarkConfig options) {
+        return CompletableFuture.supplyAsync(() -> process(source, target, watermarkText, options), executor);
+    }
+    
+    /**
+     * 异步批量添加水印
+     * 
+     * 每张图片完成时立即回调监听器（在执行处理的线程上），监听器抛出的异常只记录日志。
+     * 
+     * @param jobs 源图片文件到输出文件的映射
+     * @param watermarkText 水印文本
+     * @param options 水印配置
+     * @param listener 单张图片完成时的回调，可以为null
+     * @return 所有图片完成后按提交顺序给出的结果列表
+     */
+    public CompletableFuture<List<ImageResult>> submitAll(Map<File, File> jobs, String watermarkText,
+                                                         WatermarkConfig options, Consumer<ImageResult> listener) {
+        List<CompletableFuture<ImageResult>> futures = new ArrayList<>(jobs.size());
+        for (Map.Entry<File, File> job : jobs.entrySet()) {
+            CompletableFuture<ImageResult> future = submit(job.getKey(), job.getValue(), watermarkText, options);
+            if (listener != null) {
+                future = future.thenApply(result -> {
+                    notifyListener(listener, result);
+                    return result;
+                });
+            }
+            futures.add(future);
+        }
+        
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+                .thenApply(done -> {
+                    List<ImageResult> results = new ArrayList<>(futures.size());
+                    for (CompletableFuture<ImageResult> future : futures) {
+                        results.add(future.join());
+                    }
+                    return results;
+                });
+    }
+    
+    /**
+     * 处理单张图片，所有失败都记录在结果中
+     * 
+     * @param source 源图片文件
+     * @param target 输出文件
+     * @param watermarkText 水印文本
+     * @param options 水印配置
+     * @return 处理结果
+     */
+    private ImageResult process(File source, File target, String watermarkText, WatermarkConfig options) {
+        ImageResult.Builder result = new ImageResult.Builder(source, target);
+        try {
+            if (source == null || target == null) {
+                throw new IllegalArgumentException("源文件和输出文件不能为空");
+            }
+            if (watermarkText == null || watermarkText.trim().isEmpty()) {
+                throw new IllegalArgumentException("水印文本不能为空");
+            }
+            if (options == null) {
+                throw new IllegalArgumentException("水印配置不能为空");
+            }
+            
+            long start = System.nanoTime();
+            byte[] data = ImageFiles.read(source);
+            result.read(System.nanoTime() - start, data.length);
+            
+            start = System.nanoTime();
+            byte[] encoded = render(source, data, watermarkText, options);
+            result.process(System.nanoTime() - start);
+            
+            start = System.nanoTime();
+            // 单张图片的结果需要在返回前确定，分组提交也按逐个同步处理
+            ImageFiles.write(target, ByteBuffer.wrap(encoded), options.getFsyncPolicy() != FsyncPolicy.NONE);
+            result.write(System.nanoTime() - start, encoded.length);
+            
+        } catch (Exception e) {
+            logger.debug("处理图片失败: {}", source, e);
+            result.error(e);
+        }
+        return result.build();
+    }
+    
+    /**
+     * 在内存中解码、绘制水印并编码
+     * 
+     * @param source 源图片文件（用于确定格式）
+     * @param data 源图片数据
+     * @param watermarkText 水印文本
+     * @param options 水印配置
+     * @return 编码后的图片数据
+     * @throws IOException 无法解码或编码时抛出
+     */
+    private byte[] render(File source, byte[] data, String watermarkText, WatermarkConfig options)
+            throws IOException {
+        SourceMetadata metadata = null;
+        if (options.isPreserveMetadata() || (options.isOrientationAware() && ExifReader.isJpegFile(source))) {
+            metadata = ExifReader.readMetadata(new ByteArrayInputStream(data), source.getName());
+        }
+        
+        String format = WatermarkEngine.getImageFormat(source.getName());
+        byte[] encoded;
+        try (ImageInputStream input = new ByteBufferImageInputStream(data)) {
+            encoded = WatermarkEngine.watermark(input, format, watermarkText, options, metadata);
+        }
+        if (encoded == null) {
+            throw new IOException("无法解码或编码图片: " + source.getName());
+        }
+        return encoded;
+    }
+    
+    private void notifyListener(Consumer<ImageResult> listener, ImageResult result) {
+        try {
+            listener.accept(result);
+        } catch (RuntimeException e) {
+            logger.warn("结果监听器执行失败: {}", result.getSource(), e);
+        }
+    }
+    
+    /**
+     * 关闭服务自己创建的线程池，已提交的任务继续完成
+     */
+    @Override
+    public void close() {
+        if (ownedExecutor != null) {
+            ownedExecutor.shutdown();
+        }
+    }
+}
\ No newline at end of file
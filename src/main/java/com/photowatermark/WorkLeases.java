@@ -0,0 +1,246 @@
+package com.photowatermark;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * 基于共享目录的文件租约
+ * 
+ * 多个节点（或同一台机器上的多个进程）处理同一批文件时，处理前在租约目录中以
+ * 原子创建的方式占用该文件，完成后留下完成标记，其他节点遇到已占用或已完成的文件直接跳过。
+ * 持有期间后台线程每隔三分之一有效时间更新租约的修改时间，处理时间超过有效时间的文件不会被接手；
+ * 租约超过有效时间仍未更新时视为持有节点已失效。
+ * 
+ * 接手时不删除或改名旧租约，而是原子创建下一代租约文件 (第0代过期则创建第1代，依此类推)，
+ * 同一代只有一个节点能创建成功，任何时刻都不会出现租约文件暂时缺失、被第三个节点趁机占用的窗口。
+ * 各代租约在文件完成或释放时删除。
+ * 
+ * 租约文件名为相对路径的SHA-1加代数，内容为持有节点的标识，便于排查。
+ * 完成标记不会自动清除：同一目录下再次运行时已完成的文件都会被跳过，可用于中断后继续处理；
+ * 重新处理同一批文件时应使用新的运行标识 (租约目录下的子目录) 或清空租约目录。
+ * 
+ * @author PhotoWatermark Team
+ * @version 1.0.0
+ */
+public class WorkLeases implements Closeable {
+    
+    private static final Logger logger = LoggerFactory.getLogger(WorkLeases.class);
+    
+    private static final String LEASE_SUFFIX = ".lease";
+    private static final String DONE_SUFFIX = ".done";
+    private static final Pattern RUN_PATTERN = Pattern.compile("[A-Za-z0-9._-]+");
+    
+    private final Path directory;
+    private final long leaseMillis;
+    private final String nodeId;
+    
+    // 本节点持有的租约：相对路径到租约代数，由后台线程定期续期
+    private final Map<String, Integer> held = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService renewer;
+    
+    /**
+     * 构造函数
+     * 
+     * @param directory 所有节点共享的租约目录，不存在时创建
+     * @param leaseSeconds 租约有效时间（秒）
+     * @throws IOException 无法创建租约目录时抛出
+     */
+    public WorkLeases(File directory, int leaseSeconds) throws IOException {
+        this.directory = directory.toPath();
+        this.leaseMillis = leaseSeconds * 1000L;
+        this.nodeId = ManagementFactory.getRuntimeMXBean().getName();
+        Files.createDirectories(this.directory);
+        
+        this.renewer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "lease-renewer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1, leaseMillis / 3);
+        renewer.scheduleWithFixedDelay(this::renewHeld, period, period, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * 尝试占用文件
+     * 
+     * @param relativePath 文件相对于输入根目录的路径
+     * @return 是否占用成功；文件已完成或正由其他节点处理时返回false
+     * @throws IOException 访问租约目录失败时抛出
+     */
+    public boolean tryAcquire(String relativePath) throws IOException {
+        String key = key(relativePath);
+        if (Files.exists(directory.resolve(key + DONE_SUFFIX))) {
+            return false;
+        }
+        
+        // 跳过已过期的各代租约，在第一个不存在的代上原子创建；遇到未过期的租约说明正由其他节点处理
+        for (int generation = 0; ; generation++) {
+            Path lease = leasePath(key, generation);
+            if (create(lease, relativePath)) {
+                if (generation > 0) {
+                    logger.info("接手过期租约: {} (第 {} 代)", relativePath, generation);
+                }
+                held.put(relativePath, generation);
+                return true;
+            }
+            
+            long modified;
+            try {
+                modified = Files.getLastModifiedTime(lease).toMillis();
+            } catch (NoSuchFileException e) {
+                // 刚被其他节点完成时不再领取，刚被释放时重试同一代
+                if (Files.exists(directory.resolve(key + DONE_SUFFIX))) {
+                    return false;
+                }
+                generation--;
+                continue;
+            }
+            if (System.currentTimeMillis() - modified < leaseMillis) {
+                return false;
+            }
+        }
+    }
+    
+    /**
+     * 标记文件已完成并释放租约
+     * 
+     * @param relativePath 文件相对于输入根目录的路径
+     * @throws IOException 写入完成标记失败时抛出
+     */
+    public void complete(String relativePath) throws IOException {
+        String key = key(relativePath);
+        try {
+            Files.write(directory.resolve(key + DONE_SUFFIX), describe(relativePath));
+        } finally {
+            // 完成标记写出后其他节点不再领取，可以删除包括过期的各代租约
+            Integer heldGeneration = held.remove(relativePath);
+            int last = heldGeneration != null ? heldGeneration : 0;
+            for (int generation = 0; Files.deleteIfExists(leasePath(key, generation)) || generation < last;
+                    generation++) {
+                // 逐代删除
+            }
+        }
+    }
+    
+    /**
+     * 释放租约但不标记完成，其他节点之后可以重试该文件
+     * 
+     * 只删除本节点持有的这一代，过期的前几代保留，其他节点重试时仍从同一代开始占用。
+     * 
+     * @param relativePath 文件相对于输入根目录的路径
+     * @throws IOException 删除租约失败时抛出
+     */
+    public void release(String relativePath) throws IOException {
+        Integer generation = held.remove(relativePath);
+        if (generation != null) {
+            Files.deleteIfExists(leasePath(key(relativePath), generation));
+        }
+    }
+    
+    /**
+     * 停止续期；之后仍持有的租约会在有效时间后过期
+     */
+    @Override
+    public void close() {
+        renewer.shutdownNow();
+    }
+    
+    /**
+     * 更新本节点持有的所有租约的修改时间
+     */
+    void renewHeld() {
+        FileTime now = FileTime.fromMillis(System.currentTimeMillis());
+        for (Map.Entry<String, Integer> entry : held.entrySet()) {
+            try {
+                Files.setLastModifiedTime(leasePath(key(entry.getKey()), entry.getValue()), now);
+            } catch (NoSuchFileException e) {
+                logger.warn("租约已不存在，文件可能被其他节点接手: {}", entry.getKey());
+                held.remove(entry.getKey(), entry.getValue());
+            } catch (IOException e) {
+                logger.warn("租约续期失败: {}", entry.getKey(), e);
+            }
+        }
+    }
+    
+    /**
+     * 统计租约目录中已有的完成标记数
+     * 
+     * @return 完成标记数
+     * @throws IOException 列出目录失败时抛出
+     */
+    public long countCompleted() throws IOException {
+        try (Stream<Path> entries = Files.list(directory)) {
+            return entries.filter(path -> path.getFileName().toString().endsWith(DONE_SUFFIX)).count();
+        }
+    }
+    
+    /**
+     * 判断运行标识是否可以用作租约目录下的子目录名
+     * 
+     * @param run 运行标识
+     * @return 是否只包含字母、数字、点、下划线和连字符，且不是 "." 或 ".."
+     */
+    public static boolean isValidRun(String run) {
+        return run != null && RUN_PATTERN.matcher(run).matches() && !".".equals(run) && !"..".equals(run);
+    }
+    
+    public String getNodeId() {
+        return nodeId;
+    }
+    
+    private boolean create(Path lease, String relativePath) throws IOException {
+        try {
+            Files.write(Files.createFile(lease), describe(relativePath));
+        } catch (FileAlreadyExistsException e) {
+            return false;
+        }
+        
+        // 完成标记先于租约删除写出，占用成功后再检查一次，避免重复处理刚完成的文件
+        if (Files.exists(directory.resolve(key(relativePath) + DONE_SUFFIX))) {
+            Files.deleteIfExists(lease);
+            return false;
+        }
+        return true;
+    }
+    
+    private Path leasePath(String key, int generation) {
+        return directory.resolve(key + "." + generation + LEASE_SUFFIX);
+    }
+    
+    private byte[] describe(String relativePath) {
+        return (nodeId + "\t" + relativePath + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+    
+    private static String key(String relativePath) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(relativePath.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1不可用", e);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,54 @@
+package com.photowatermark;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * 多节点分片工具
+ * 
+ * 按文件相对于输入根目录的路径计算稳定哈希并取模分配到节点。路径使用 '/' 分隔，
+ * 与挂载点和操作系统无关，各节点只要输入根目录指向同一位置，就会得到相同且互不重叠的划分。
+ * 
+ * @author PhotoWatermark Team
+ * @version 1.0.0
+ */
+public class WorkPartition {
+    
+    /**
+     * 计算文件相对于输入根目录的路径
+     * 
+     * @param root 输入根目录，为文件本身时只使用文件名，为null时使用绝对路径
+     * @param file 文件
+     * @return 以 '/' 分隔的相对路径
+     */
+    public static String relativePath(File root, File file) {
+        if (root != null && !root.isDirectory()) {
+            return file.getName();
+        }
+        
+        String filePath = file.getAbsoluteFile().toPath().normalize().toString();
+        String rootPath = root != null ? root.getAbsoluteFile().toPath().normalize().toString() : null;
+        if (rootPath == null || !filePath.startsWith(rootPath + File.separator)) {
+            return filePath.replace(File.separatorChar, '/');
+        }
+        return filePath.substring(rootPath.length() + 1).replace(File.separatorChar, '/');
+    }
+    
+    /**
+     * 计算相对路径所属的分片
+     * 
+     * @param relativePath 相对路径
+     * @param shardCount 分片总数
+     * @return 分片序号 (0 到 shardCount-1)
+     */
+    public static int shardOf(String relativePath, int shardCount) {
+        if (shardCount <= 1) {
+            return 0;
+        }
+        CRC32 crc = new CRC32();
+        byte[] bytes = relativePath.getBytes(StandardCharsets.UTF_8);
+        crc.update(bytes, 0, bytes.length);
+        return (int) (crc.getValue() % shardCount);
+    }
+}
\ No newline at end of file
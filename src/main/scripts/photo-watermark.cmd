@@ -0,0 +1,31 @@
+@echo off
+rem 照片水印工具启动脚本，使用与JAR同目录的类数据共享归档加快启动 (说明见 photo-watermark)
+setlocal
+set "BASE_DIR=%~dp0"
+set "JAR=%BASE_DIR%photo-watermark-tool.jar"
+set "JSA=%BASE_DIR%photo-watermark-tool.jsa"
+set "JAVA=java"
+if defined JAVA_HOME set "JAVA=%JAVA_HOME%\bin\java"
+
+rem 归档只对生成时的JAR路径有效，路径记录在 .jsa.path 中；JAR比归档新时重新生成
+set "CDS_OPTS="
+set "RECORDED="
+set "NEWEST="
+if not exist "%JSA%" goto regenerate
+if exist "%JSA%.path" set /p RECORDED=<"%JSA%.path"
+if not "%RECORDED%"=="%JAR%" goto regenerate
+rem dir /o:d 按修改时间从旧到新列出，最后一行是较新的文件
+for /f "delims=" %%F in ('dir /b /o:d "%JAR%" "%JSA%"') do set "NEWEST=%%F"
+if /i "%NEWEST%"=="photo-watermark-tool.jar" goto regenerate
+set "CDS_OPTS=-XX:SharedArchiveFile=%JSA%"
+goto run
+
+:regenerate
+del /f /q "%JSA%" 2>nul
+rem 目录不可写时不生成归档
+2>nul >"%JSA%.path" echo %JAR%|| goto run
+set "CDS_OPTS=-XX:ArchiveClassesAtExit=%JSA%"
+
+:run
+
+"%JAVA%" -XX:+IgnoreUnrecognizedVMOptions -Xshare:auto -Xlog:cds=off -Xlog:cds+dynamic=off %CDS_OPTS% -XX:TieredStopAtLevel=1 -XX:+UseSerialGC -Djava.awt.headless=true %PHOTOWATERMARK_OPTS% -jar "%JAR%" %*
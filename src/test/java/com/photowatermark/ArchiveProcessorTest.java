@@ -0,0 +1,183 @@
+package com.photowatermark;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 压缩包流式处理测试类
+ * 
+ * @author PhotoWatermark Team
+ * @version 1.0.0
+ */
+public class ArchiveProcessorTest {
+    
+    @TempDir
+    Path tempDir;
+    
+    @Test
+    void testZipPreservesOrderAndSkipsBrokenImages() throws IOException {
+        File archive = tempDir.resolve("photos.zip").toFile();
+        try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(archive))) {
+            putZipEntry(zip, "a.png", image("png"));
+            putZipEntry(zip, "docs/", new byte[0]);
+            putZipEntry(zip, "docs/readme.txt", "说明".getBytes(StandardCharsets.UTF_8));
+            putZipEntry(zip, "docs/broken.png", new byte[] {1, 2, 3});
+            putZipEntry(zip, "b.jpg", image("jpg"));
+        }
+        
+        File outputDir = tempDir.resolve("output").toFile();
+        FileProcessor processor = new FileProcessor(new WatermarkConfig(), false, "测试水印", outputDir, false);
+        FileProcessor.ProcessResult result = processor.processPath(archive.getPath());
+        
+        assertFalse(result.isSuccess(), "损坏的图片条目应计为失败");
+        assertTrue(result.getMessage().contains("成功: 2, 失败: 1"), result.getMessage());
+        
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        try (ZipInputStream zip = new ZipInputStream(
+                new FileInputStream(new File(outputDir, "photos_watermarked.zip")))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                entries.put(entry.getName(), readAll(zip));
+            }
+        }
+        
+        assertEquals(Arrays.asList("a.png", "docs/readme.txt", "b.jpg"), new ArrayList<>(entries.keySet()));
+        assertEquals("说明", new String(entries.get("docs/readme.txt"), StandardCharsets.UTF_8));
+        assertNotNull(ImageIO.read(new ByteArrayInputStream(entries.get("a.png"))));
+        assertNotNull(ImageIO.read(new ByteArrayInputStream(entries.get("b.jpg"))));
+        assertFalse(new File(outputDir, "photos_watermarked.zip.partial").exists());
+    }
+    
+    @Test
+    void testTarGzWithLongNamesInCompletionOrder() throws IOException {
+        String longDirectory = repeat('d', 120) + "/photo.png";
+        String longName = repeat('n', 120) + ".png";
+        List<String> names = Arrays.asList("a.png", longDirectory, "notes.txt", longName);
+        
+        File archive = tempDir.resolve("photos.tar.gz").toFile();
+        try (TarWriter tar = new TarWriter(new GZIPOutputStream(new FileOutputStream(archive)))) {
+            for (String name : names) {
+                byte[] data = name.endsWith(".png") ? image("png") : "text".getBytes(StandardCharsets.UTF_8);
+                tar.putNextEntry(name, data.length, System.currentTimeMillis());
+                tar.write(data);
+                tar.closeEntry();
+            }
+            tar.finish();
+        }
+        
+        WatermarkConfig config = new WatermarkConfig();
+        config.setArchiveOrder(ArchiveOrder.COMPLETION);
+        FileProcessor processor = new FileProcessor(config, false, "测试水印", null, false);
+        FileProcessor.ProcessResult result = processor.processPath(archive.getPath());
+        assertTrue(result.isSuccess(), result.getMessage());
+        
+        List<String> written = new ArrayList<>();
+        File output = tempDir.resolve("photos_watermarked.tar.gz").toFile();
+        try (TarReader tar = new TarReader(new GZIPInputStream(new FileInputStream(output)))) {
+            TarReader.Entry entry;
+            while ((entry = tar.getNextEntry()) != null) {
+                written.add(entry.getName());
+                byte[] data = readAll(tar);
+                assertEquals(entry.getSize(), data.length);
+                if (entry.getName().endsWith(".png")) {
+                    assertNotNull(ImageIO.read(new ByteArrayInputStream(data)), entry.getName());
+                }
+            }
+        }
+        
+        assertEquals(new HashSet<>(names), new HashSet<>(written));
+        assertEquals(names.size(), written.size());
+    }
+    
+    @Test
+    void testRejectMalformedPaxRecord() throws IOException {
+        byte[] record = "1 k=v\n".getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (TarWriter tar = new TarWriter(bytes)) {
+            tar.putNextEntry("PaxHeaders/a.png", record.length, System.currentTimeMillis());
+            tar.write(record);
+            tar.closeEntry();
+            tar.finish();
+        }
+        
+        // 改为pax扩展头 (类型x) 并重新计算校验和
+        byte[] data = bytes.toByteArray();
+        data[156] = 'x';
+        Arrays.fill(data, 148, 156, (byte) ' ');
+        long checksum = 0;
+        for (int i = 0; i < 512; i++) {
+            checksum += data[i] & 0xFF;
+        }
+        byte[] octal = String.format("%06o\0", checksum).getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(octal, 0, data, 148, octal.length);
+        
+        try (TarReader tar = new TarReader(new ByteArrayInputStream(data))) {
+            IOException e = assertThrows(IOException.class, tar::getNextEntry);
+            assertEquals("无效的pax扩展头", e.getMessage());
+        }
+    }
+    
+    @Test
+    void testOutputNames() {
+        assertTrue(ArchiveProcessor.isArchive(new File("a.TGZ")));
+        assertFalse(ArchiveProcessor.isArchive(new File("a.gz")));
+        assertEquals("photos_watermarked.tar.gz", ArchiveProcessor.outputName(new File("photos.tar.gz")));
+        assertEquals("photos_watermarked.zip", ArchiveProcessor.outputName(new File("photos.zip")));
+        
+        Rendition web = new Rendition("web", 2048, "jpg", 0.85f, "_2048");
+        assertEquals("album.v1/img_2048.jpg", ArchiveProcessor.entryName("album.v1/img.png", web));
+        assertEquals("img.png", ArchiveProcessor.entryName("img.png", FileProcessor.SINGLE_OUTPUT));
+    }
+    
+    private static byte[] image(String format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(120, 90, BufferedImage.TYPE_INT_RGB), format, out);
+        return out.toByteArray();
+    }
+    
+    private static void putZipEntry(ZipOutputStream zip, String name, byte[] data) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        zip.write(data);
+        zip.closeEntry();
+    }
+    
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) >= 0) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+    
+    private static String repeat(char c, int count) {
+        return String.join("", Collections.nCopies(count, String.valueOf(c)));
+    }
+}
\ No newline at end of file
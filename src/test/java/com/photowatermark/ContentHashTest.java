@@ -0,0 +1,45 @@
+package com.photowatermark;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 内容哈希测试类
+ * 
+ * @author PhotoWatermark Team
+ * @version 1.0.0
+ */
+public class ContentHashTest {
+    
+    @Test
+    void testKnownXxh64Values() {
+        assertEquals(0xEF46DB3751D8E999L, ContentHash.xxh64(ByteBuffer.allocate(0)));
+        assertEquals(0x44BC2CF5AD770999L, hash("abc"));
+        assertEquals(0xFBCEA83C8A378BF1L, hash("Nobody inspects the spammish repetition"));
+    }
+    
+    @Test
+    void testHeapAndDirectBuffersAgree() {
+        byte[] data = new byte[1000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 31);
+        }
+        ByteBuffer direct = ByteBuffer.allocateDirect(data.length);
+        direct.put(data).flip();
+        
+        ByteBuffer heap = ByteBuffer.wrap(data);
+        heap.position(7);
+        direct.position(7);
+        assertEquals(ContentHash.xxh64(heap), ContentHash.xxh64(direct));
+        assertEquals(7, heap.position(), "不应改变缓冲区的位置");
+        assertNotEquals(ContentHash.xxh64(ByteBuffer.wrap(data)), ContentHash.xxh64(heap));
+    }
+    
+    private static long hash(String text) {
+        return ContentHash.xxh64(ByteBuffer.wrap(text.getBytes(StandardCharsets.US_ASCII)));
+    }
+}
\ No newline at end of file
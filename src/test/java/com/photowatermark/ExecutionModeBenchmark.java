@@ -0,0 +1,102 @@
+package com.photowatermark;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 执行模式性能基准
+ * 
+ * 用固定的读写延迟模拟NFS/SMB等高延迟文件系统，比较CPU模式和IO模式的吞吐量。
+ * 运行方式: mvn test -Pbenchmark
+ * 
+ * @author PhotoWatermark Team
+ * @version 1.0.0
+ */
+public class ExecutionModeBenchmark {
+    
+    private static final int FILE_COUNT = 64;
+    private static final long READ_LATENCY_MS = 40;
+    private static final long WRITE_LATENCY_MS = 40;
+    
+    @TempDir
+    Path tempDir;
+    
+    @Test
+    void benchmarkHighLatencyStorage() throws IOException {
+        File inputDir = tempDir.resolve("input").toFile();
+        assertTrue(inputDir.mkdirs());
+        for (int i = 0; i < FILE_COUNT; i++) {
+            BufferedImage image = new BufferedImage(800, 600, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g2d = image.createGraphics();
+            g2d.setColor(new Color(i * 3, 120, 200));
+            g2d.fillRect(0, 0, 800, 600);
+            g2d.dispose();
+            ImageIO.write(image, "jpg", new File(inputDir, "photo_" + i + ".jpg"));
+        }
+        
+        // 预热
+        run(ExecutionMode.CPU, inputDir, tempDir.resolve("warmup").toFile());
+        
+        long cpuMillis = run(ExecutionMode.CPU, inputDir, tempDir.resolve("cpu").toFile());
+        long ioMillis = run(ExecutionMode.IO, inputDir, tempDir.resolve("io").toFile());
+        
+        System.out.printf("高延迟存储 (读 %d ms / 写 %d ms)，%d 个文件:%n",
+                READ_LATENCY_MS, WRITE_LATENCY_MS, FILE_COUNT);
+        System.out.printf("  CPU模式: %d ms (%.1f 张/秒)%n", cpuMillis, FILE_COUNT * 1000.0 / cpuMillis);
+        System.out.printf("  IO模式:  %d ms (%.1f 张/秒)%n", ioMillis, FILE_COUNT * 1000.0 / ioMillis);
+    }
+    
+    private long run(ExecutionMode mode, File inputDir, File outputDir) {
+        WatermarkConfig config = new WatermarkConfig();
+        config.setExecutionMode(mode);
+        
+        FileProcessor processor = new HighLatencyFileProcessor(config, outputDir);
+        long start = System.nanoTime();
+        FileProcessor.ProcessResult result = processor.processPath(inputDir.getAbsolutePath());
+        long elapsed = (System.nanoTime() - start) / 1_000_000;
+        
+        assertTrue(result.isSuccess(), mode + " 模式处理应该成功");
+        return elapsed;
+    }
+    
+    /**
+     * 每次读写前固定等待，模拟网络文件系统的往返延迟
+     */
+    private static class HighLatencyFileProcessor extends FileProcessor {
+        
+        HighLatencyFileProcessor(WatermarkConfig config, File outputDir) {
+            super(config, false, "Benchmark", outputDir, false);
+        }
+        
+        @Override
+        byte[] readSource(File imageFile) throws IOException {
+            pause(READ_LATENCY_MS);
+            return super.readSource(imageFile);
+        }
+        
+        @Override
+        CompletableFuture<Void> writeOutput(File outputFile, byte[] data) throws IOException {
+            pause(WRITE_LATENCY_MS);
+            return super.writeOutput(outputFile, data);
+        }
+        
+        private static void pause(long millis) throws IOException {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("模拟延迟时被中断", e);
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,171 @@
+package com.photowatermark;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * EXIF日期索引测试类
+ * 
+ * @author PhotoWatermark Team
+ * @version 1.0.0
+ */
+public class ExifDateIndexTest {
+    
+    @TempDir
+    Path tempDir;
+    
+    @Test
+    void testRecordsPersistAcrossRuns() throws IOException {
+        File indexFile = tempDir.resolve("exif.idx").toFile();
+        ExifDateIndex.Key dated = new ExifDateIndex.Key("/photos/a.jpg", 1000, 42);
+        ExifDateIndex.Key undated = new ExifDateIndex.Key("/photos/b.png", 2000, 43);
+        
+        try (ExifDateIndex index = new ExifDateIndex(indexFile)) {
+            assertNull(index.lookup(dated), "新索引不应命中");
+            index.record(dated, new SourceMetadata("2023-05-01", 6, null));
+            index.record(undated, SourceMetadata.empty());
+            assertEquals("2023-05-01", index.lookup(dated).getDateTaken(), "未写入的记录也应命中");
+        }
+        assertEquals(ExifDateIndex.HEADER_SIZE + 2 * ExifDateIndex.RECORD_SIZE, currentDataFile(indexFile).length());
+        
+        try (ExifDateIndex index = new ExifDateIndex(indexFile)) {
+            SourceMetadata metadata = index.lookup(dated);
+            assertEquals("2023-05-01", metadata.getDateTaken());
+            assertEquals(6, metadata.getOrientation());
+            assertFalse(metadata.hasJpegSegments());
+            
+            SourceMetadata absent = index.lookup(undated);
+            assertNotNull(absent, "没有日期的文件也应命中");
+            assertNull(absent.getDateTaken());
+            assertEquals(2, index.getHits());
+        }
+    }
+    
+    @Test
+    void testChangedFileMisses() throws IOException {
+        File indexFile = tempDir.resolve("exif.idx").toFile();
+        File image = tempDir.resolve("photo.jpg").toFile();
+        Files.write(image.toPath(), new byte[] {1, 2, 3});
+        assertTrue(image.setLastModified(1_600_000_000_000L));
+        
+        try (ExifDateIndex index = new ExifDateIndex(indexFile)) {
+            index.record(ExifDateIndex.keyOf(image), new SourceMetadata("2020-01-01", 1, null));
+        }
+        try (ExifDateIndex index = new ExifDateIndex(indexFile)) {
+            assertNotNull(index.lookup(ExifDateIndex.keyOf(image)));
+            
+            assertTrue(image.setLastModified(1_600_000_001_000L));
+            assertNull(index.lookup(ExifDateIndex.keyOf(image)), "修改时间改变后不应命中");
+            
+            Files.write(image.toPath(), new byte[] {1, 2, 3, 4});
+            assertTrue(image.setLastModified(1_600_000_000_000L));
+            assertNull(index.lookup(ExifDateIndex.keyOf(image)), "大小改变后不应命中");
+        }
+    }
+    
+    @Test
+    void testMergesBatchesInOrder() throws IOException {
+        File indexFile = tempDir.resolve("exif.idx").toFile();
+        int count = ExifDateIndex.MIN_FLUSH_ENTRIES * 2 + 100;
+        
+        try (ExifDateIndex index = new ExifDateIndex(indexFile)) {
+            for (int i = 0; i < count; i++) {
+                index.record(new ExifDateIndex.Key("/photos/" + i + ".jpg", i, 1), new SourceMetadata(
+                        i % 3 == 0 ? null : "2024-01-" + (10 + i % 20), 1 + i % 8, null));
+            }
+            assertTrue(indexFile.isFile(), "累积足够多的记录后应写入索引文件");
+            index.record(new ExifDateIndex.Key("/photos/0.jpg", 0, 2), new SourceMetadata("1999-12-31", 1, null));
+        }
+        
+        try (ExifDateIndex index = new ExifDateIndex(indexFile)) {
+            for (int i = 1; i < count; i++) {
+                SourceMetadata metadata = index.lookup(new ExifDateIndex.Key("/photos/" + i + ".jpg", i, 1));
+                assertNotNull(metadata, "记录 " + i + " 应命中");
+                assertEquals(i % 3 == 0 ? null : "2024-01-" + (10 + i % 20), metadata.getDateTaken());
+                assertEquals(1 + i % 8, metadata.getOrientation());
+            }
+            assertNull(index.lookup(new ExifDateIndex.Key("/photos/0.jpg", 0, 1)), "被更新的记录不应命中旧键");
+            assertEquals("1999-12-31",
+                    index.lookup(new ExifDateIndex.Key("/photos/0.jpg", 0, 2)).getDateTaken());
+        }
+        assertEquals(ExifDateIndex.HEADER_SIZE + (long) count * ExifDateIndex.RECORD_SIZE,
+                currentDataFile(indexFile).length());
+    }
+    
+    @Test
+    void testRewriteUsesNewDataFile() throws IOException {
+        File indexFile = tempDir.resolve("exif.idx").toFile();
+        ExifDateIndex.Key first = new ExifDateIndex.Key("/photos/a.jpg", 1000, 42);
+        ExifDateIndex.Key second = new ExifDateIndex.Key("/photos/b.jpg", 2000, 43);
+        
+        try (ExifDateIndex index = new ExifDateIndex(indexFile)) {
+            index.record(first, new SourceMetadata("2023-05-01", 1, null));
+            index.flush();
+            File firstData = currentDataFile(indexFile);
+            assertEquals(1, ExifDateIndex.currentGeneration(indexFile));
+            
+            // 当前数据文件仍被映射，新记录应写入下一代数据文件而不是替换它
+            index.record(second, new SourceMetadata("2023-06-01", 1, null));
+            index.flush();
+            assertEquals(2, ExifDateIndex.currentGeneration(indexFile));
+            assertFalse(firstData.exists(), "旧的数据文件应被删除");
+            assertEquals("2023-05-01", index.lookup(first).getDateTaken());
+        }
+        
+        // 上次未能删除的旧数据文件在打开时清理
+        Files.write(ExifDateIndex.dataFile(indexFile, 1).toPath(), new byte[] {1, 2, 3});
+        try (ExifDateIndex index = new ExifDateIndex(indexFile)) {
+            assertEquals("2023-06-01", index.lookup(second).getDateTaken());
+        }
+        assertFalse(ExifDateIndex.dataFile(indexFile, 1).exists(), "过期的数据文件应在打开时删除");
+        assertEquals(2, tempDir.toFile().list().length, "只应留下索引文件和当前数据文件");
+    }
+    
+    @Test
+    void testCorruptIndexIsRebuilt() throws IOException {
+        File indexFile = tempDir.resolve("exif.idx").toFile();
+        ExifDateIndex.Key key = new ExifDateIndex.Key("/photos/a.jpg", 1000, 42);
+        try (ExifDateIndex index = new ExifDateIndex(indexFile)) {
+            index.record(key, new SourceMetadata("2023-05-01", 1, null));
+        }
+        
+        File dataFile = currentDataFile(indexFile);
+        try (RandomAccessFile file = new RandomAccessFile(dataFile, "rw")) {
+            file.seek(ExifDateIndex.HEADER_SIZE + 30);
+            file.write('9');
+        }
+        try (ExifDateIndex index = new ExifDateIndex(indexFile)) {
+            assertNull(index.lookup(key), "损坏的索引不应被使用");
+            assertFalse(indexFile.exists(), "损坏的索引应被删除");
+            assertFalse(dataFile.exists(), "损坏的数据文件应被删除");
+            index.record(key, new SourceMetadata("2023-05-01", 1, null));
+        }
+        try (ExifDateIndex index = new ExifDateIndex(indexFile)) {
+            assertEquals("2023-05-01", index.lookup(key).getDateTaken(), "重新建立的索引应可用");
+        }
+        
+        Files.write(currentDataFile(indexFile).toPath(), new byte[] {1, 2, 3});
+        try (ExifDateIndex index = new ExifDateIndex(indexFile)) {
+            assertNull(index.lookup(key), "截断的索引不应被使用");
+        }
+        
+        Files.write(indexFile.toPath(), "x".getBytes(StandardCharsets.US_ASCII));
+        try (ExifDateIndex index = new ExifDateIndex(indexFile)) {
+            assertNull(index.lookup(key), "代数无效的索引不应被使用");
+            assertFalse(indexFile.exists());
+        }
+    }
+    
+    private static File currentDataFile(File indexFile) throws IOException {
+        return ExifDateIndex.dataFile(indexFile, ExifDateIndex.currentGeneration(indexFile));
+    }
+}
\ No newline at end of file
@@ -4,9 +4,18 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.io.TempDir;
 
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.util.Collections;
+import javax.imageio.ImageIO;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -90,4 +99,64 @@ public class ExifReaderTest {
         String result = ExifReader.getExifInfo(invalidFile);
         assertTrue(result.startsWith("读取EXIF信息时出错:"), "无效文件应返回错误信息");
     }
+    
+    @Test
+    void testReadMetadataWithExifJpeg() throws IOException {
+        File jpegFile = tempDir.resolve("exif.jpg").toFile();
+        writeJpegWithExif(jpegFile, "2023:05:01 10:20:30", 6);
+        
+        SourceMetadata metadata = ExifReader.readMetadata(jpegFile);
+        assertEquals("2023-05-01", metadata.getDateTaken(), "应从EXIF中提取拍摄日期");
+        assertEquals(6, metadata.getOrientation(), "应从EXIF中提取方向标记");
+        assertEquals(1, metadata.getJpegSegments().size(), "应保留EXIF APP1段");
+        assertEquals("2023-05-01", ExifReader.extractDateTaken(jpegFile));
+    }
+    
+    @Test
+    void testReadMetadataWithInvalidFile() {
+        SourceMetadata metadata = ExifReader.readMetadata(invalidFile);
+        assertNull(metadata.getDateTaken(), "无效的图片文件不应有拍摄日期");
+        assertEquals(SourceMetadata.ORIENTATION_NORMAL, metadata.getOrientation(), "无效的图片文件应为默认方向");
+        assertFalse(metadata.hasJpegSegments(), "无效的图片文件不应有JPEG段");
+    }
+    
+    /**
+     * 写出带有EXIF拍摄日期和方向标记的测试JPEG
+     */
+    static void writeJpegWithExif(File file, String dateTimeOriginal, int orientation) throws IOException {
+        BufferedImage image = new BufferedImage(200, 100, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", encoded);
+        
+        try (OutputStream output = new FileOutputStream(file)) {
+            JpegSegmentSplicer.splice(encoded.toByteArray(),
+                    Collections.singletonList(createExifSegment(dateTimeOriginal, orientation)), output);
+        }
+    }
+    
+    /**
+     * 构造最小的EXIF APP1段：IFD0包含方向标记和EXIF子IFD指针，子IFD包含原始拍摄时间
+     */
+    static byte[] createExifSegment(String dateTimeOriginal, int orientation) {
+        ByteBuffer tiff = ByteBuffer.allocate(76).order(ByteOrder.LITTLE_ENDIAN);
+        tiff.put((byte) 'I').put((byte) 'I').putShort((short) 42).putInt(8);
+        
+        // IFD0
+        tiff.putShort((short) 2);
+        tiff.putShort((short) 0x0112).putShort((short) 3).putInt(1).putShort((short) orientation).putShort((short) 0);
+        tiff.putShort((short) 0x8769).putShort((short) 4).putInt(1).putInt(38);
+        tiff.putInt(0);
+        
+        // EXIF子IFD
+        tiff.putShort((short) 1);
+        tiff.putShort((short) 0x9003).putShort((short) 2).putInt(20).putInt(56);
+        tiff.putInt(0);
+        tiff.put(dateTimeOriginal.getBytes(StandardCharsets.US_ASCII)).put((byte) 0);
+        
+        byte[] exifId = "Exif\0\0".getBytes(StandardCharsets.US_ASCII);
+        int length = 2 + exifId.length + tiff.capacity();
+        ByteBuffer segment = ByteBuffer.allocate(2 + length);
+        segment.put((byte) 0xFF).put((byte) 0xE1).putShort((short) length).put(exifId).put(tiff.array());
+        return segment.array();
+    }
 }
\ No newline at end of file
@@ -8,7 +8,19 @@ import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.imageio.ImageIO;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -173,4 +185,277 @@ public class FileProcessorTest {
         FileProcessor.ProcessResult result = processor.processPath(testImageFile.getAbsolutePath());
         assertTrue(result.isSuccess(), "应该在指定的输出目录生成文件");
     }
+    
+    @Test
+    void testProcessPathWithRenditions() throws IOException {
+        config.getRenditions().add(new Rendition("full", 0, null, 0.9f, "_watermarked"));
+        config.getRenditions().add(new Rendition("web", 100, "png", 0.85f, "_100"));
+        
+        FileProcessor processor = new FileProcessor(config, false, "Test", outputDir, false);
+        FileProcessor.ProcessResult result = processor.processPath(testImageFile.getAbsolutePath());
+        assertTrue(result.isSuccess(), "多规格输出应该成功");
+        
+        assertTrue(new File(outputDir, "test_watermarked.jpg").exists(), "原尺寸规格输出应该存在");
+        File webOutput = new File(outputDir, "test_100.png");
+        assertTrue(webOutput.exists(), "缩小规格输出应该存在");
+        assertEquals(100, ImageIO.read(webOutput).getWidth(), "缩小规格应为指定尺寸");
+    }
+    
+    @Test
+    void testProcessPathInIoMode() throws IOException {
+        for (int i = 0; i < 5; i++) {
+            BufferedImage image = new BufferedImage(120, 80, BufferedImage.TYPE_INT_RGB);
+            ImageIO.write(image, "png", new File(inputDir, "io_" + i + ".png"));
+        }
+        config.setExecutionMode(ExecutionMode.IO);
+        config.setIoConcurrency(2);
+        
+        FileProcessor processor = new FileProcessor(config, false, "Test", outputDir, false);
+        FileProcessor.ProcessResult result = processor.processPath(inputDir.getAbsolutePath());
+        assertTrue(result.isSuccess(), "IO模式处理应该成功");
+        
+        for (int i = 0; i < 5; i++) {
+            File output = new File(outputDir, "io_" + i + "_watermarked.png");
+            assertTrue(output.exists(), "IO模式应该生成所有输出文件");
+            assertEquals(120, ImageIO.read(output).getWidth(), "输出尺寸应保持不变");
+        }
+        assertTrue(new File(outputDir, "test_watermarked.jpg").exists(), "JPEG输出应该存在");
+    }
+    
+    @Test
+    void testSharedExecutorsReusedAcrossProcessors() throws IOException {
+        config.getRenditions().add(new Rendition("full", 0, null, 0.9f, "_watermarked"));
+        config.getRenditions().add(new Rendition("web", 100, "png", 0.85f, "_100"));
+        config.setFileTimeoutSeconds(30);
+        
+        try (ProcessorExecutors executors = new ProcessorExecutors()) {
+            for (int i = 0; i < 3; i++) {
+                FileProcessor processor = new FileProcessor(config, false, "Test", outputDir, false);
+                processor.setSharedExecutors(executors);
+                assertTrue(processor.processPath(testImageFile.getAbsolutePath()).isSuccess(),
+                        "使用共享线程池处理应该成功");
+            }
+            
+            ThreadPoolExecutor workers = (ThreadPoolExecutor) executors.workers(ExecutionMode.CPU);
+            assertFalse(workers.isShutdown(), "批次结束时不应关闭共享线程池");
+            assertEquals(3, workers.getTaskCount(), "每个批次的工作线程都应运行在共享线程池中");
+            assertFalse(executors.encoder().isShutdown());
+            assertFalse(executors.watchdog().isShutdown());
+        }
+        assertTrue(new File(outputDir, "test_100.png").exists(), "缩小规格输出应该存在");
+    }
+    
+    @Test
+    void testFileTimeoutDoesNotStallBatch() throws IOException {
+        for (int i = 0; i < 3; i++) {
+            ImageIO.write(new BufferedImage(60, 40, BufferedImage.TYPE_INT_RGB), "png",
+                    new File(inputDir, "ok_" + i + ".png"));
+        }
+        ImageIO.write(new BufferedImage(60, 40, BufferedImage.TYPE_INT_RGB), "png", new File(inputDir, "hang.png"));
+        
+        File journalFile = tempDir.resolve("journal.tsv").toFile();
+        config.setFileTimeoutSeconds(1);
+        config.setJournalFile(journalFile.getAbsolutePath());
+        
+        // 模拟忽略中断、长时间卡住的解码
+        FileProcessor processor = new FileProcessor(config, false, "Test", outputDir, false) {
+            @Override
+            byte[] readSource(File imageFile) throws IOException {
+                if (imageFile.getName().equals("hang.png")) {
+                    long until = System.currentTimeMillis() + 10_000;
+                    while (System.currentTimeMillis() < until) {
+                        try {
+                            Thread.sleep(50);
+                        } catch (InterruptedException ignored) {
+                            // 忽略中断
+                        }
+                    }
+                }
+                return super.readSource(imageFile);
+            }
+        };
+        
+        long start = System.currentTimeMillis();
+        FileProcessor.ProcessResult result = processor.processPath(inputDir.getAbsolutePath());
+        long elapsed = System.currentTimeMillis() - start;
+        
+        assertFalse(result.isSuccess(), "有文件超时时批次不应成功");
+        assertTrue(elapsed < 8_000, "超时的文件不应拖住批次");
+        assertTrue(new File(outputDir, "ok_0_watermarked.png").exists(), "其他文件应该正常处理");
+        
+        List<String> lines = Files.readAllLines(journalFile.toPath(), StandardCharsets.UTF_8);
+        assertEquals(5, lines.size(), "日志应记录每个文件");
+        assertTrue(lines.stream().anyMatch(line -> line.startsWith("TIMEOUT\t") && line.contains("hang.png")),
+                "超时的文件应记为TIMEOUT");
+        assertEquals(4, lines.stream().filter(line -> line.startsWith("OK\t")).count(), "其他文件应记为OK");
+    }
+    
+    @Test
+    void testJournalKeepsEarlierBatches() throws IOException {
+        File second = new File(inputDir, "second.png");
+        ImageIO.write(new BufferedImage(60, 40, BufferedImage.TYPE_INT_RGB), "png", second);
+        File journalFile = tempDir.resolve("journal.tsv").toFile();
+        Files.write(journalFile.toPath(), "上次运行的记录\n".getBytes(StandardCharsets.UTF_8));
+        config.setJournalFile(journalFile.getAbsolutePath());
+        
+        // 监视模式下每批文件分别调用 processFiles
+        FileProcessor processor = new FileProcessor(config, false, "Test", outputDir, false);
+        assertTrue(processor.processFiles(Collections.singletonList(testImageFile)).isSuccess());
+        assertTrue(processor.processFiles(Collections.singletonList(second)).isSuccess());
+        
+        List<String> lines = Files.readAllLines(journalFile.toPath(), StandardCharsets.UTF_8);
+        assertEquals(2, lines.size(), "应覆盖上次运行的日志并保留本次运行的每一批: " + lines);
+        assertTrue(lines.get(0).startsWith("OK\t") && lines.get(0).contains("test.jpg"));
+        assertTrue(lines.get(1).startsWith("OK\t") && lines.get(1).contains("second.png"));
+    }
+    
+    @Test
+    void testBatchResultIgnoresEarlierBatches() throws IOException {
+        File broken = new File(inputDir, "broken.jpg");
+        Files.write(broken.toPath(), new byte[] {1, 2, 3});
+        
+        FileProcessor processor = new FileProcessor(config, false, "Test", outputDir, false);
+        assertFalse(processor.processFiles(Collections.singletonList(broken)).isSuccess());
+        
+        FileProcessor.ProcessResult result = processor.processFiles(Collections.singletonList(testImageFile));
+        assertTrue(result.isSuccess(), "之前批次的失败不应影响本批结果");
+        assertTrue(result.getMessage().contains("总计: 1, 成功: 1, 失败: 0"), result.getMessage());
+        assertTrue(processor.getStatistics().contains("失败: 1"), "累计统计应保留之前的失败");
+    }
+    
+    @Test
+    void testCancelSkipsPendingFiles() throws IOException {
+        for (int i = 0; i < 6; i++) {
+            ImageIO.write(new BufferedImage(60, 40, BufferedImage.TYPE_INT_RGB), "png",
+                    new File(inputDir, "batch_" + i + ".png"));
+        }
+        
+        File journalFile = tempDir.resolve("journal.tsv").toFile();
+        config.setExecutionMode(ExecutionMode.IO);
+        config.setIoConcurrency(1);
+        config.setJournalFile(journalFile.getAbsolutePath());
+        
+        // 处理第一个文件时取消批次
+        FileProcessor processor = new FileProcessor(config, false, "Test", outputDir, false) {
+            @Override
+            byte[] readSource(File imageFile) throws IOException {
+                cancel();
+                return super.readSource(imageFile);
+            }
+        };
+        
+        FileProcessor.ProcessResult result = processor.processPath(inputDir.getAbsolutePath());
+        assertFalse(result.isSuccess(), "取消的批次不应成功");
+        assertTrue(processor.isCancelled());
+        
+        List<String> lines = Files.readAllLines(journalFile.toPath(), StandardCharsets.UTF_8);
+        assertEquals(7, lines.size(), "日志应记录每个文件");
+        assertEquals(1, lines.stream().filter(line -> line.startsWith("OK\t")).count(), "进行中的文件应完成");
+        assertEquals(6, lines.stream().filter(line -> line.startsWith("SKIPPED\t")).count(), "其余文件应记为跳过");
+        assertTrue(processor.getStatistics().contains("跳过: 6"));
+    }
+    
+    @Test
+    void testMappedReadMatchesHeapRead() throws IOException {
+        // 随机噪点使JPEG超过内存映射的最小文件大小
+        BufferedImage noise = new BufferedImage(400, 300, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(42);
+        for (int y = 0; y < noise.getHeight(); y++) {
+            for (int x = 0; x < noise.getWidth(); x++) {
+                noise.setRGB(x, y, random.nextInt());
+            }
+        }
+        File noiseFile = new File(inputDir, "noise.jpg");
+        ImageIO.write(noise, "jpg", noiseFile);
+        assertTrue(noiseFile.length() >= ImageFiles.MIN_MAPPED_SIZE);
+        
+        File readDir = tempDir.resolve("read").toFile();
+        assertTrue(new FileProcessor(config, false, "Test", readDir, false)
+                .processPath(noiseFile.getAbsolutePath()).isSuccess());
+        
+        config.setInputReadMode(InputReadMode.MMAP);
+        File mappedDir = tempDir.resolve("mapped").toFile();
+        AtomicInteger mapped = new AtomicInteger();
+        FileProcessor processor = new FileProcessor(config, false, "Test", mappedDir, false) {
+            @Override
+            ByteBuffer mapSource(File imageFile) throws IOException {
+                mapped.incrementAndGet();
+                return super.mapSource(imageFile);
+            }
+        };
+        assertTrue(processor.processPath(inputDir.getAbsolutePath()).isSuccess());
+        
+        assertEquals(1, mapped.get(), "只有超过最小大小的文件使用内存映射");
+        assertArrayEquals(Files.readAllBytes(new File(readDir, "noise_watermarked.jpg").toPath()),
+                Files.readAllBytes(new File(mappedDir, "noise_watermarked.jpg").toPath()),
+                "内存映射和读入内存的输出应该相同");
+        assertTrue(new File(mappedDir, "test_watermarked.jpg").exists());
+    }
+    
+    @Test
+    void testNetworkFileSystemDetection() {
+        assertTrue(ImageFiles.isNetworkFileSystem("nfs4"));
+        assertTrue(ImageFiles.isNetworkFileSystem("cifs"));
+        assertTrue(ImageFiles.isNetworkFileSystem("fuse.sshfs"));
+        assertTrue(ImageFiles.isNetworkFileSystem(null), "未知类型按网络文件系统处理");
+        assertFalse(ImageFiles.isNetworkFileSystem("ext4"));
+        assertFalse(ImageFiles.isNetworkFileSystem("apfs"));
+        assertFalse(ImageFiles.isNetworkFileSystem("fuseblk"));
+    }
+    
+    @Test
+    void testDuplicateInputsReuseOutput() throws IOException {
+        BufferedImage other = new BufferedImage(120, 80, BufferedImage.TYPE_INT_RGB);
+        other.setRGB(5, 5, 0xFF0000);
+        ImageIO.write(other, "jpg", new File(inputDir, "other.jpg"));
+        Files.copy(testImageFile.toPath(), new File(inputDir, "copy_a.jpg").toPath());
+        Files.copy(testImageFile.toPath(), new File(inputDir, "copy_b.jpg").toPath());
+        
+        config.setDuplicateMode(DuplicateMode.LINK);
+        config.setFsyncPolicy(FsyncPolicy.GROUP);
+        FileProcessor processor = new FileProcessor(config, false, "Test", outputDir, false);
+        FileProcessor.ProcessResult result = processor.processPath(inputDir.getAbsolutePath());
+        
+        assertTrue(result.isSuccess());
+        assertTrue(result.getMessage().contains("内容重复直接复用输出: 2"), result.getMessage());
+        byte[] first = Files.readAllBytes(new File(outputDir, "test_watermarked.jpg").toPath());
+        for (String name : new String[] {"copy_a_watermarked.jpg", "copy_b_watermarked.jpg"}) {
+            assertArrayEquals(first, Files.readAllBytes(new File(outputDir, name).toPath()), name + " 应复用输出");
+        }
+        assertFalse(Arrays.equals(first, Files.readAllBytes(new File(outputDir, "other_watermarked.jpg").toPath())),
+                "内容不同的文件应单独处理");
+        assertEquals(4, outputDir.list().length, "不应留下临时文件");
+    }
+    
+    @Test
+    void testDuplicateWaitIsBoundedByDeadline() throws Exception {
+        CompletableFuture<Map<Rendition, File>> pending = new CompletableFuture<>();
+        long start = System.nanoTime();
+        assertNull(FileProcessor.awaitOriginal(pending, start + TimeUnit.MILLISECONDS.toNanos(50)),
+                "期限内未就位时应返回null由调用方自行处理");
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5), "等待不应超出期限太多");
+        
+        Map<Rendition, File> outputs = Collections.singletonMap(FileProcessor.SINGLE_OUTPUT, testImageFile);
+        assertSame(outputs, FileProcessor.awaitOriginal(CompletableFuture.completedFuture(outputs), 0));
+    }
+    
+    @Test
+    void testExifIndexReusedOnRerun() throws IOException {
+        File indexFile = tempDir.resolve("exif.idx").toFile();
+        config.setExifIndexFile(indexFile.getAbsolutePath());
+        
+        FileProcessor first = new FileProcessor(config, true, "Test", outputDir, false);
+        assertTrue(first.processPath(inputDir.getAbsolutePath()).isSuccess());
+        byte[] expected = Files.readAllBytes(new File(outputDir, "test_watermarked.jpg").toPath());
+        File dataFile = ExifDateIndex.dataFile(indexFile, ExifDateIndex.currentGeneration(indexFile));
+        assertEquals(ExifDateIndex.HEADER_SIZE + ExifDateIndex.RECORD_SIZE, dataFile.length(), "应记录一个文件");
+        
+        try (ExifDateIndex index = new ExifDateIndex(indexFile)) {
+            assertNotNull(index.lookup(ExifDateIndex.keyOf(testImageFile)), "第二次运行应命中索引");
+        }
+        FileProcessor second = new FileProcessor(config, true, "Test", outputDir, false);
+        assertTrue(second.processPath(inputDir.getAbsolutePath()).isSuccess());
+        assertArrayEquals(expected, Files.readAllBytes(new File(outputDir, "test_watermarked.jpg").toPath()),
+                "使用索引的输出应与解析EXIF时相同");
+    }
 }
\ No newline at end of file
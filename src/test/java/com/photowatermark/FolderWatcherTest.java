@@ -0,0 +1,127 @@
+package com.photowatermark;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 文件夹监视测试类
+ * 
+ * @author PhotoWatermark Team
+ * @version 1.0.0
+ */
+public class FolderWatcherTest {
+    
+    @TempDir
+    Path tempDir;
+    
+    private FolderWatcher watcher;
+    private Thread watchThread;
+    
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (watcher != null) {
+            watcher.close();
+            assertTrue(watcher.awaitTermination(5, TimeUnit.SECONDS), "监视线程应该结束");
+        }
+    }
+    
+    @Test
+    void testNewFileIsProcessed() throws Exception {
+        File inputDir = tempDir.resolve("input").toFile();
+        File outputDir = tempDir.resolve("output").toFile();
+        assertTrue(inputDir.mkdirs());
+        
+        startWatcher(inputDir, outputDir, true);
+        
+        File subDir = new File(inputDir, "day1");
+        assertTrue(subDir.mkdirs());
+        writeImage(new File(inputDir, "new.png"));
+        writeImage(new File(subDir, "nested.png"));
+        
+        assertTrue(waitFor(new File(outputDir, "new_watermarked.png")), "新文件应该被处理");
+        assertTrue(waitFor(new File(outputDir, "nested_watermarked.png")), "新子目录中的文件应该被处理");
+    }
+    
+    @Test
+    void testOutputsBesideSourcesAreNotReprocessed() throws Exception {
+        File inputDir = tempDir.resolve("input").toFile();
+        assertTrue(inputDir.mkdirs());
+        
+        startWatcher(inputDir, null, false);
+        writeImage(new File(inputDir, "photo.png"));
+        
+        assertTrue(waitFor(new File(inputDir, "photo_watermarked.png")), "新文件应该被处理");
+        Thread.sleep(800);
+        assertFalse(new File(inputDir, "photo_watermarked_watermarked.png").exists(), "输出文件不应被再次处理");
+    }
+    
+    @Test
+    void testStartupScanSkipsUpToDateFiles() throws Exception {
+        File inputDir = tempDir.resolve("input").toFile();
+        File outputDir = tempDir.resolve("output").toFile();
+        assertTrue(inputDir.mkdirs());
+        assertTrue(outputDir.mkdirs());
+        
+        File done = new File(inputDir, "done.png");
+        writeImage(done);
+        File doneOutput = new File(outputDir, "done_watermarked.png");
+        writeImage(doneOutput);
+        assertTrue(doneOutput.setLastModified(done.lastModified() + 1000));
+        long doneOutputModified = doneOutput.lastModified();
+        writeImage(new File(inputDir, "todo.png"));
+        
+        startWatcher(inputDir, outputDir, false);
+        
+        assertTrue(waitFor(new File(outputDir, "todo_watermarked.png")), "尚未处理的文件应该被处理");
+        assertEquals(doneOutputModified, doneOutput.lastModified(), "已有最新输出的文件不应被重新处理");
+    }
+    
+    @Test
+    void testEmptyPlaceholderDoesNotKeepPolling() throws Exception {
+        File inputDir = tempDir.resolve("input").toFile();
+        File outputDir = tempDir.resolve("output").toFile();
+        assertTrue(inputDir.mkdirs());
+        
+        startWatcher(inputDir, outputDir, false);
+        File placeholder = new File(inputDir, "upload.png");
+        assertTrue(placeholder.createNewFile());
+        
+        Thread.sleep(300);
+        for (int i = 0; i < 100 && !watcher.isIdle(); i++) {
+            Thread.sleep(50);
+        }
+        assertTrue(watcher.isIdle(), "稳定的空文件不应使监视循环一直轮询");
+        
+        writeImage(placeholder);
+        assertTrue(waitFor(new File(outputDir, "upload_watermarked.png")), "写入内容后应该被处理");
+    }
+    
+    private void startWatcher(File inputDir, File outputDir, boolean recursive) throws IOException {
+        FileProcessor processor = new FileProcessor(new WatermarkConfig(), false, "Watch", outputDir, recursive);
+        watcher = new FolderWatcher(processor, inputDir, recursive, 100);
+        watchThread = new Thread(watcher::run, "folder-watcher-test");
+        watchThread.setDaemon(true);
+        watchThread.start();
+    }
+    
+    private static void writeImage(File file) throws IOException {
+        ImageIO.write(new BufferedImage(64, 48, BufferedImage.TYPE_INT_RGB), "png", file);
+    }
+    
+    private static boolean waitFor(File file) throws InterruptedException {
+        for (int i = 0; i < 100 && !file.exists(); i++) {
+            Thread.sleep(50);
+        }
+        return file.exists();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,61 @@
+package com.photowatermark;
+
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.Font;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 字体注册表测试类
+ * 
+ * @author PhotoWatermark Team
+ * @version 1.0.0
+ */
+public class FontRegistryTest {
+    
+    @TempDir
+    Path tempDir;
+    
+    @Test
+    void testDerivesSizeFromSharedFont() {
+        Font small = FontRegistry.getFont(Font.SANS_SERIF, Font.BOLD, 12);
+        Font large = FontRegistry.getFont(Font.SANS_SERIF, Font.BOLD, 48);
+        
+        assertEquals(12, small.getSize2D(), 0.001);
+        assertEquals(48, large.getSize2D(), 0.001);
+        assertTrue(large.isBold(), "应保留字体样式");
+        assertEquals(small.getFamily(), large.getFamily());
+    }
+    
+    @Test
+    void testInvalidFontFileFallsBack() throws Exception {
+        File broken = tempDir.resolve("broken.ttf").toFile();
+        Files.write(broken.toPath(), new byte[] {1, 2, 3, 4});
+        
+        Font font = FontRegistry.getFont(broken.getAbsolutePath(), Font.PLAIN, 20);
+        assertEquals(Font.SANS_SERIF, font.getName(), "无效的字体文件应改用 SansSerif");
+        assertEquals(20, font.getSize());
+        
+        Font missing = FontRegistry.getFont(tempDir.resolve("missing.otf").toString(), Font.PLAIN, 20);
+        assertEquals(Font.SANS_SERIF, missing.getName(), "不存在的字体文件应改用 SansSerif");
+    }
+    
+    @Test
+    void testLoadsFontFromFile() {
+        File fontFile = new File("/usr/share/fonts/truetype/dejavu/DejaVuSans.ttf");
+        Assumptions.assumeTrue(fontFile.isFile(), "系统中没有可用于测试的字体文件");
+        
+        Font font = FontRegistry.getFont(fontFile.getPath(), Font.BOLD, 30);
+        assertEquals("DejaVu Sans", font.getFamily());
+        assertEquals(30, font.getSize());
+        assertTrue(font.isBold());
+        assertTrue(FontRegistry.isFontFile("Fonts/NotoSansSC.OTF"));
+        assertFalse(FontRegistry.isFontFile("Arial"));
+    }
+}
\ No newline at end of file
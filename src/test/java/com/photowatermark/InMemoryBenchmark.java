@@ -0,0 +1,92 @@
+package com.photowatermark;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 内存水印性能基准
+ * 
+ * 比较上传服务的两种做法：先落临时文件再调用文件接口并读回结果，与直接在内存中处理。
+ * 运行方式: mvn test -Pbenchmark
+ * 
+ * @author PhotoWatermark Team
+ * @version 1.0.0
+ */
+public class InMemoryBenchmark {
+    
+    private static final int WARMUP = 20;
+    private static final int ITERATIONS = 100;
+    
+    @TempDir
+    Path tempDir;
+    
+    @Test
+    void benchmarkInMemoryVersusTempFile() throws IOException {
+        BufferedImage image = new BufferedImage(1600, 1200, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = image.createGraphics();
+        g2d.setPaint(new GradientPaint(0, 0, Color.ORANGE, 1600, 1200, Color.BLUE));
+        g2d.fillRect(0, 0, 1600, 1200);
+        g2d.dispose();
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", encoded);
+        byte[] upload = encoded.toByteArray();
+        
+        WatermarkConfig config = new WatermarkConfig();
+        
+        for (int i = 0; i < WARMUP; i++) {
+            viaTempFile(upload, config);
+            inMemory(upload, config);
+        }
+        
+        long start = System.nanoTime();
+        long tempFileBytes = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            tempFileBytes += viaTempFile(upload, config).length;
+        }
+        long tempFileNanos = System.nanoTime() - start;
+        
+        start = System.nanoTime();
+        long inMemoryBytes = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            inMemoryBytes += inMemory(upload, config);
+        }
+        long inMemoryNanos = System.nanoTime() - start;
+        
+        assertTrue(tempFileBytes > 0 && inMemoryBytes > 0);
+        System.out.printf("上传图片 %d KB，%d 次:%n", upload.length / 1024, ITERATIONS);
+        System.out.printf("  临时文件: %.2f ms/张%n", tempFileNanos / 1e6 / ITERATIONS);
+        System.out.printf("  内存处理: %.2f ms/张%n", inMemoryNanos / 1e6 / ITERATIONS);
+    }
+    
+    private byte[] viaTempFile(byte[] upload, WatermarkConfig config) throws IOException {
+        File input = Files.createTempFile(tempDir, "upload", ".jpg").toFile();
+        File output = new File(tempDir.toFile(), input.getName().replace(".jpg", "_out.jpg"));
+        Files.write(input.toPath(), upload);
+        assertTrue(WatermarkEngine.addWatermark(input, output, "Benchmark", config));
+        byte[] result = Files.readAllBytes(output.toPath());
+        Files.delete(input.toPath());
+        Files.delete(output.toPath());
+        return result;
+    }
+    
+    private int inMemory(byte[] upload, WatermarkConfig config) {
+        ImageBuffer buffer = ImageBuffer.acquire();
+        try {
+            assertTrue(WatermarkEngine.addWatermark(upload, null, buffer, "Benchmark", config));
+            return buffer.size();
+        } finally {
+            buffer.release();
+        }
+    }
+}
\ No newline at end of file
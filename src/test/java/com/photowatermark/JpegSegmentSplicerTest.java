@@ -0,0 +1,80 @@
+package com.photowatermark;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JPEG段拼接测试类
+ * 
+ * @author PhotoWatermark Team
+ * @version 1.0.0
+ */
+public class JpegSegmentSplicerTest {
+    
+    @Test
+    void testExifReplacesApp0() throws IOException {
+        byte[] encoded = encodeJpeg();
+        assertEquals(0xE0, encoded[3] & 0xFF, "编码器应写出JFIF APP0段");
+        
+        byte[] exif = ExifReaderTest.createExifSegment("2023:05:01 10:20:30", 6);
+        byte[] spliced = splice(encoded, exif);
+        
+        assertEquals(0xE1, spliced[3] & 0xFF, "EXIF APP1应紧跟SOI");
+        assertFalse(containsMarker(spliced, 0xE0), "包含EXIF时应去掉APP0");
+    }
+    
+    @Test
+    void testSegmentsFollowApp0WithoutExif() throws IOException {
+        byte[] encoded = encodeJpeg();
+        int app0Length = ((encoded[4] & 0xFF) << 8) | (encoded[5] & 0xFF);
+        int app0End = 4 + app0Length;
+        
+        byte[] icc = {(byte) 0xFF, (byte) 0xE2, 0, 6, 'I', 'C', 'C', 0};
+        byte[] spliced = splice(encoded, icc);
+        
+        assertEquals(0xE0, spliced[3] & 0xFF, "不包含EXIF时APP0应紧跟SOI");
+        assertEquals(0xFF, spliced[app0End] & 0xFF);
+        assertEquals(0xE2, spliced[app0End + 1] & 0xFF, "拼接的段应位于APP0之后");
+        assertEquals(encoded.length + icc.length, spliced.length);
+        assertNotNull(ImageIO.read(new ByteArrayInputStream(spliced)), "拼接后的JPEG应可解码");
+    }
+    
+    private static byte[] encodeJpeg() throws IOException {
+        BufferedImage image = new BufferedImage(40, 20, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", encoded);
+        return encoded.toByteArray();
+    }
+    
+    private static byte[] splice(byte[] encoded, byte[] segment) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        JpegSegmentSplicer.splice(encoded, Collections.singletonList(segment), output);
+        return output.toByteArray();
+    }
+    
+    /**
+     * 在SOS之前的段头中查找指定标记
+     */
+    private static boolean containsMarker(byte[] jpeg, int marker) {
+        int offset = 2;
+        while (offset + 4 <= jpeg.length && (jpeg[offset] & 0xFF) == 0xFF) {
+            int current = jpeg[offset + 1] & 0xFF;
+            if (current == marker) {
+                return true;
+            }
+            if (current == 0xDA) {
+                return false;
+            }
+            offset += 2 + (((jpeg[offset + 2] & 0xFF) << 8) | (jpeg[offset + 3] & 0xFF));
+        }
+        return false;
+    }
+}
\ No newline at end of file
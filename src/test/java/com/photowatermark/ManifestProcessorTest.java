@@ -0,0 +1,164 @@
+package com.photowatermark;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 任务清单处理测试类
+ * 
+ * @author PhotoWatermark Team
+ * @version 1.0.0
+ */
+public class ManifestProcessorTest {
+    
+    @TempDir
+    Path tempDir;
+    
+    private File imageA;
+    private File imageB;
+    
+    @BeforeEach
+    void setUp() throws IOException {
+        imageA = tempDir.resolve("a.png").toFile();
+        imageB = tempDir.resolve("b.png").toFile();
+        ImageIO.write(new BufferedImage(100, 80, BufferedImage.TYPE_INT_RGB), "png", imageA);
+        ImageIO.write(new BufferedImage(100, 80, BufferedImage.TYPE_INT_RGB), "png", imageB);
+    }
+    
+    @Test
+    void testReadJsonlRecords() throws IOException {
+        String manifest = "{\"input\":\"a.png\",\"output\":\"out/a.png\",\"text\":\"摄影: \\\"张三\\\"\","
+                + "\"overrides\":{\"position\":\"CENTER\",\"size\":32}}\n"
+                + "\n"
+                + "# 注释行\n"
+                + "{\"input\":\"b.png\",\"color\":\"255,0,0\"}\n"
+                + "{\"input\":\"c.png\"\n"
+                + "{\"output\":\"d.png\"}\n";
+        
+        try (ManifestReader reader = new ManifestReader(new StringReader(manifest), false)) {
+            ManifestRecord first = reader.next();
+            assertTrue(first.isValid());
+            assertEquals("a.png", first.getInput());
+            assertEquals("out/a.png", first.getOutput());
+            assertEquals("摄影: \"张三\"", first.getText());
+            assertEquals("CENTER", first.getOverrides().get("position"));
+            assertEquals("32", first.getOverrides().get("size"));
+            
+            WatermarkConfig base = new WatermarkConfig();
+            WatermarkConfig applied = first.applyOverrides(base);
+            assertEquals(WatermarkPosition.CENTER, applied.getPosition());
+            assertEquals(32, applied.getFontSize());
+            assertEquals(24, base.getFontSize(), "基础配置不应被修改");
+            
+            ManifestRecord second = reader.next();
+            assertTrue(second.isValid());
+            assertNull(second.getText());
+            assertEquals(Color.RED, second.applyOverrides(base).getColor());
+            
+            ManifestRecord truncated = reader.next();
+            assertFalse(truncated.isValid(), "不完整的JSON应为无效记录");
+            assertEquals(5, truncated.getLineNumber());
+            
+            ManifestRecord missingInput = reader.next();
+            assertFalse(missingInput.isValid(), "缺少input应为无效记录");
+            
+            assertNull(reader.next());
+        }
+    }
+    
+    @Test
+    void testReadCsvRecords() throws IOException {
+        String manifest = "input,output,text,position\n"
+                + "a.png,,\"Credit, Inc.\",TOP_LEFT\n"
+                + "b.png,out/b.png,\"say \"\"hi\"\"\",\n"
+                + "\"c.png,x\n";
+        
+        try (ManifestReader reader = new ManifestReader(new StringReader(manifest), true)) {
+            ManifestRecord first = reader.next();
+            assertEquals("a.png", first.getInput());
+            assertNull(first.getOutput());
+            assertEquals("Credit, Inc.", first.getText());
+            assertEquals("TOP_LEFT", first.getOverrides().get("position"));
+            
+            ManifestRecord second = reader.next();
+            assertEquals("out/b.png", second.getOutput());
+            assertEquals("say \"hi\"", second.getText());
+            assertTrue(second.getOverrides().isEmpty());
+            
+            assertFalse(reader.next().isValid(), "引号未闭合应为无效记录");
+            assertNull(reader.next());
+        }
+    }
+    
+    @Test
+    void testRecordsWithoutTextUseExifDate() throws IOException {
+        File dated = tempDir.resolve("dated.jpg").toFile();
+        ExifReaderTest.writeJpegWithExif(dated, "2023:05:01 10:20:30", 1);
+        ManifestRecord plain = new ManifestRecord(1, "", dated.getPath(), null, null, null);
+        ManifestRecord optOut = new ManifestRecord(2, "", dated.getPath(), null, null,
+                Collections.singletonMap("exif", "false"));
+        ManifestRecord withText = new ManifestRecord(3, "", dated.getPath(), null, "Credit", null);
+        
+        ManifestProcessor exif = new ManifestProcessor(new WatermarkConfig(), true, "Default", null, null);
+        assertEquals("2023-05-01", exif.watermarkText(plain, dated), "启用EXIF日期时应使用拍摄日期");
+        assertEquals("Default", exif.watermarkText(optOut, dated), "exif覆盖项应能关闭EXIF日期");
+        assertEquals("Credit", exif.watermarkText(withText, dated), "记录指定的文本优先");
+        assertEquals("Default", exif.watermarkText(plain, imageA), "没有拍摄日期时应使用默认文本");
+        
+        ManifestProcessor plainText = new ManifestProcessor(new WatermarkConfig(), false, "Default", null, null);
+        assertEquals("Default", plainText.watermarkText(plain, dated), "未启用EXIF日期时应使用默认文本");
+        ManifestRecord optIn = new ManifestRecord(4, "", dated.getPath(), null, null,
+                Collections.singletonMap("exif", "true"));
+        assertEquals("2023-05-01", plainText.watermarkText(optIn, dated), "exif覆盖项应能开启EXIF日期");
+    }
+    
+    @Test
+    void testProcessManifestWithPerRecordText() throws IOException {
+        File outputDir = tempDir.resolve("output").toFile();
+        File custom = tempDir.resolve("custom").resolve("b_credit.png").toFile();
+        File errors = tempDir.resolve("errors.tsv").toFile();
+        File manifest = tempDir.resolve("jobs.jsonl").toFile();
+        List<String> lines = Arrays.asList(
+                "{\"input\":\"" + json(imageA) + "\",\"text\":\"摄影: 张三\"}",
+                "{\"input\":\"" + json(imageB) + "\",\"output\":\"" + json(custom) + "\","
+                        + "\"text\":\"Photo: Li\",\"overrides\":{\"position\":\"TOP_LEFT\"}}",
+                "{\"input\":\"" + json(tempDir.resolve("missing.png").toFile()) + "\"}",
+                "{\"input\":\"" + json(imageA) + "\",\"overrides\":{\"position\":\"NOWHERE\"}}",
+                "not json");
+        Files.write(manifest.toPath(), lines, StandardCharsets.UTF_8);
+        
+        ManifestProcessor processor = new ManifestProcessor(new WatermarkConfig(), "Default", outputDir, errors);
+        FileProcessor.ProcessResult result = processor.process(manifest);
+        
+        assertFalse(result.isSuccess(), "存在无效记录时结果应为失败");
+        assertTrue(result.getMessage().contains("成功: 2"), result.getMessage());
+        assertTrue(result.getMessage().contains("无效: 3"), result.getMessage());
+        assertTrue(new File(outputDir, "a_watermarked.png").exists(), "未指定输出时应使用默认输出路径");
+        assertTrue(custom.exists(), "应写出到记录指定的输出路径");
+        
+        List<String> rejected = Files.readAllLines(errors.toPath(), StandardCharsets.UTF_8);
+        assertEquals(3, rejected.size());
+        assertTrue(rejected.get(0).startsWith("3\t输入文件不存在\t"), rejected.get(0));
+        assertTrue(rejected.get(2).endsWith("\tnot json"), rejected.get(2));
+    }
+    
+    private static String json(File file) {
+        return file.getAbsolutePath().replace("\\", "\\\\");
+    }
+}
\ No newline at end of file
@@ -0,0 +1,128 @@
+package com.photowatermark;
+
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 原生可执行文件与JVM的启动时间和内存对比
+ * 
+ * 分别用 mvn package -Pnative 生成的 target/photo-watermark 和JVM处理同一张图片，比较耗时中位数和峰值RSS。
+ * 没有原生可执行文件时跳过；峰值RSS通过 /usr/bin/time 获取，不可用时只比较耗时。
+ * 运行方式: 先 mvn package -Pnative -DskipTests，再 mvn test -Pbenchmark -Dtest=NativeImageBenchmark
+ * 
+ * @author PhotoWatermark Team
+ * @version 1.0.0
+ */
+public class NativeImageBenchmark {
+    
+    private static final int WARMUP = 1;
+    private static final int ITERATIONS = 5;
+    private static final File TIME_COMMAND = new File("/usr/bin/time");
+    
+    @TempDir
+    Path tempDir;
+    
+    @Test
+    void benchmarkNativeVersusJvm() throws Exception {
+        File executable = new File("target", System.getProperty("os.name").startsWith("Windows")
+                ? "photo-watermark.exe" : "photo-watermark");
+        Assumptions.assumeTrue(executable.canExecute(), "未找到原生可执行文件，先运行 mvn package -Pnative");
+        
+        File image = tempDir.resolve("photo.jpg").toFile();
+        BufferedImage source = new BufferedImage(1600, 1200, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = source.createGraphics();
+        g2d.setPaint(new GradientPaint(0, 0, Color.ORANGE, 1600, 1200, Color.BLUE));
+        g2d.fillRect(0, 0, 1600, 1200);
+        g2d.dispose();
+        ImageIO.write(source, "jpg", image);
+        
+        List<String> jvm = Arrays.asList(System.getProperty("java.home") + File.separator + "bin" + File.separator
+                        + "java", "-Djava.awt.headless=true", "-cp", System.getProperty("java.class.path"),
+                PhotoWatermarkTool.class.getName());
+        List<String> nativeImage = Collections.singletonList(executable.getAbsolutePath());
+        
+        long[] jvmResult = measure(jvm, image, "jvm");
+        long[] nativeResult = measure(nativeImage, image, "native");
+        
+        System.out.printf("单文件调用 (%s)，每项 %d 次取中位数:%n", image.getName(), ITERATIONS);
+        System.out.printf("  JVM:    %5d ms, 峰值RSS %s%n", jvmResult[0], formatRss(jvmResult[1]));
+        System.out.printf("  原生:   %5d ms, 峰值RSS %s%n", nativeResult[0], formatRss(nativeResult[1]));
+    }
+    
+    /**
+     * 多次运行同一命令
+     * 
+     * @return 耗时中位数 (毫秒) 和峰值RSS中位数 (KB，无法获取时为-1)
+     */
+    private long[] measure(List<String> command, File image, String name) throws Exception {
+        File outputDir = tempDir.resolve(name).toFile();
+        File rssFile = tempDir.resolve(name + ".rss").toFile();
+        List<Long> times = new ArrayList<>();
+        List<Long> rss = new ArrayList<>();
+        
+        for (int i = 0; i < WARMUP + ITERATIONS; i++) {
+            List<String> full = new ArrayList<>();
+            if (TIME_COMMAND.canExecute()) {
+                full.addAll(Arrays.asList(TIME_COMMAND.getPath(), "-f", "%M", "-o", rssFile.getAbsolutePath()));
+            }
+            full.addAll(command);
+            full.addAll(Arrays.asList("-i", image.getAbsolutePath(), "-o", outputDir.getAbsolutePath(), "-t", "Native"));
+            
+            ProcessBuilder builder = new ProcessBuilder(full);
+            builder.redirectErrorStream(true);
+            builder.redirectOutput(tempDir.resolve(name + ".log").toFile());
+            long start = System.nanoTime();
+            Process process = builder.start();
+            assertTrue(process.waitFor(120, TimeUnit.SECONDS), "子进程应该结束");
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertEquals(0, process.exitValue(), name + " 运行失败");
+            assertNotNull(ImageIO.read(new File(outputDir, "photo_watermarked.jpg")), name + " 输出应可解码");
+            
+            if (i >= WARMUP) {
+                times.add(elapsed);
+                rss.add(readRss(rssFile));
+            }
+        }
+        return new long[] {median(times), median(rss)};
+    }
+    
+    private static long readRss(File rssFile) throws IOException {
+        if (!rssFile.isFile()) {
+            return -1;
+        }
+        List<String> lines = Files.readAllLines(rssFile.toPath(), StandardCharsets.UTF_8);
+        try {
+            return Long.parseLong(lines.get(lines.size() - 1).trim());
+        } catch (RuntimeException e) {
+            return -1;
+        }
+    }
+    
+    private static long median(List<Long> values) {
+        Collections.sort(values);
+        return values.get(values.size() / 2);
+    }
+    
+    private static String formatRss(long kilobytes) {
+        return kilobytes < 0 ? "未知" : String.format("%.1f MB", kilobytes / 1024.0);
+    }
+}
\ No newline at end of file
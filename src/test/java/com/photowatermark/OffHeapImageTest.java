@@ -0,0 +1,85 @@
+package com.photowatermark;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 堆外图片测试类
+ * 
+ * @author PhotoWatermark Team
+ * @version 1.0.0
+ */
+public class OffHeapImageTest {
+    
+    @Test
+    void testBlendAndRelease() {
+        OffHeapImage image = OffHeapImage.allocate(40, 30);
+        BufferedImage overlay = new BufferedImage(20, 20, BufferedImage.TYPE_INT_ARGB);
+        overlay.setRGB(0, 0, 0xFFFF0000);
+        overlay.setRGB(1, 0, 0x800000FF);
+        overlay.setRGB(9, 19, 0xFF00FF00);
+        
+        image.blend(overlay, 30, -5);
+        assertEquals(0xFF000000, image.getImage().getRGB(30, 0), "叠加图片超出上边界的部分应忽略");
+        assertEquals(0xFF00FF00, image.getImage().getRGB(39, 14));
+        
+        image.blend(overlay, 5, 5);
+        assertEquals(0xFFFF0000, image.getImage().getRGB(5, 5), "不透明像素应直接覆盖");
+        assertEquals(0xFF000080, image.getImage().getRGB(6, 5), "半透明像素应按透明度混合");
+        assertEquals(0xFF000000, image.getImage().getRGB(7, 5), "透明像素不应改变原像素");
+        
+        image.release();
+        image.release();
+        assertThrows(IllegalStateException.class, () -> image.blend(overlay, 0, 0), "释放后不能再使用");
+    }
+    
+    @Test
+    void testOffHeapWatermarkMatchesHeapWatermark() throws IOException {
+        BufferedImage source = new BufferedImage(1200, 1000, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = source.createGraphics();
+        g2d.setPaint(new GradientPaint(0, 0, Color.ORANGE, 1200, 1000, Color.BLUE));
+        g2d.fillRect(0, 0, 1200, 1000);
+        g2d.dispose();
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        ImageIO.write(source, "jpg", encoded);
+        
+        WatermarkConfig config = new WatermarkConfig();
+        config.setFontSize(64);
+        config.setEnableShadow(true);
+        config.setShadowOffset(3);
+        BufferedImage heap = watermark(encoded.toByteArray(), config);
+        
+        config.setOffHeapMinMegapixels(1);
+        BufferedImage offHeap = watermark(encoded.toByteArray(), config);
+        
+        assertEquals(heap.getWidth(), offHeap.getWidth());
+        assertEquals(heap.getHeight(), offHeap.getHeight());
+        int maxDifference = 0;
+        for (int y = 0; y < heap.getHeight(); y++) {
+            for (int x = 0; x < heap.getWidth(); x++) {
+                int a = heap.getRGB(x, y);
+                int b = offHeap.getRGB(x, y);
+                for (int shift = 0; shift < 24; shift += 8) {
+                    maxDifference = Math.max(maxDifference, Math.abs(((a >> shift) & 0xFF) - ((b >> shift) & 0xFF)));
+                }
+            }
+        }
+        assertTrue(maxDifference <= 2, "堆外就地绘制应与堆内绘制结果一致，最大差异: " + maxDifference);
+    }
+    
+    private static BufferedImage watermark(byte[] source, WatermarkConfig config) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        assertTrue(WatermarkEngine.addWatermark(source, "png", output, "Off-Heap 水印", config));
+        return ImageIO.read(new ByteArrayInputStream(output.toByteArray()));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,80 @@
+package com.photowatermark;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 输出同步策略性能基准
+ * 
+ * 多个线程同时写出一批与水印输出大小相近的文件，比较三种同步策略下写出线程被占用的时间
+ * (处理线程可以用来计算下一张图片的时间) 和所有文件就位的总耗时。
+ * 运行方式: mvn test -Pbenchmark -Dtest=OutputWriterBenchmark
+ * 
+ * @author PhotoWatermark Team
+ * @version 1.0.0
+ */
+public class OutputWriterBenchmark {
+    
+    private static final int FILE_COUNT = 400;
+    private static final int FILE_SIZE = 600 * 1024;
+    private static final int THREADS = 8;
+    
+    @TempDir
+    Path tempDir;
+    
+    @Test
+    void benchmarkFsyncPolicies() throws Exception {
+        byte[] data = new byte[FILE_SIZE];
+        new Random(1).nextBytes(data);
+        
+        run(FsyncPolicy.NONE, data, "warmup");
+        
+        System.out.printf("%d 个线程写出 %d 个 %d KB 的文件:%n", THREADS, FILE_COUNT, FILE_SIZE / 1024);
+        for (FsyncPolicy policy : FsyncPolicy.values()) {
+            long[] result = run(policy, data, policy.name());
+            System.out.printf("  %-6s 写出线程 %6d ms, 全部就位 %6d ms%n", policy.getDescription(), result[0],
+                    result[1]);
+        }
+    }
+    
+    /**
+     * @return 写出调用全部返回的耗时和所有文件提交完成的耗时 (毫秒)
+     */
+    private long[] run(FsyncPolicy policy, byte[] data, String name) throws Exception {
+        File outputDir = tempDir.resolve(name).toFile();
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        long start = System.nanoTime();
+        long written;
+        try (OutputWriter writer = new OutputWriter(policy, 50)) {
+            List<Future<CompletableFuture<Void>>> results = new ArrayList<>();
+            for (int i = 0; i < FILE_COUNT; i++) {
+                File target = new File(outputDir, "photo_" + i + ".jpg");
+                results.add(pool.submit(() -> writer.write(target, data)));
+            }
+            List<CompletableFuture<Void>> commits = new ArrayList<>();
+            for (Future<CompletableFuture<Void>> result : results) {
+                commits.add(result.get());
+            }
+            written = System.nanoTime() - start;
+            CompletableFuture.allOf(commits.toArray(new CompletableFuture<?>[0])).get();
+        } finally {
+            pool.shutdown();
+        }
+        long committed = System.nanoTime() - start;
+        assertEquals(FILE_COUNT, outputDir.list().length);
+        return new long[] {TimeUnit.NANOSECONDS.toMillis(written), TimeUnit.NANOSECONDS.toMillis(committed)};
+    }
+}
\ No newline at end of file
@@ -0,0 +1,97 @@
+package com.photowatermark;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 输出写入器测试类
+ * 
+ * @author PhotoWatermark Team
+ * @version 1.0.0
+ */
+public class OutputWriterTest {
+    
+    @TempDir
+    Path tempDir;
+    
+    @Test
+    void testWriteReplacesExistingFileWithoutTempFiles() throws Exception {
+        File target = tempDir.resolve("out/photo.jpg").toFile();
+        ImageFiles.write(target, "old".getBytes(StandardCharsets.UTF_8));
+        
+        for (FsyncPolicy policy : new FsyncPolicy[] {FsyncPolicy.NONE, FsyncPolicy.PER_FILE}) {
+            try (OutputWriter writer = new OutputWriter(policy, 10)) {
+                byte[] data = policy.name().getBytes(StandardCharsets.UTF_8);
+                CompletableFuture<Void> committed = writer.write(target, data);
+                assertTrue(committed.isDone(), "不分组提交时返回前已经写出");
+            }
+            assertEquals(policy.name(), new String(Files.readAllBytes(target.toPath()), StandardCharsets.UTF_8));
+        }
+        assertArrayEquals(new String[] {"photo.jpg"}, target.getParentFile().list(), "不应留下临时文件");
+    }
+    
+    @Test
+    void testGroupCommitRenamesAfterSync() throws Exception {
+        File outputDir = tempDir.resolve("group").toFile();
+        List<CompletableFuture<Void>> commits = new ArrayList<>();
+        try (OutputWriter writer = new OutputWriter(FsyncPolicy.GROUP, 200)) {
+            for (int i = 0; i < 20; i++) {
+                commits.add(writer.write(new File(outputDir, "photo" + i + ".jpg"), new byte[] {(byte) i}));
+            }
+            assertFalse(new File(outputDir, "photo0.jpg").exists(), "提交前输出文件不可见");
+            
+            CompletableFuture.allOf(commits.toArray(new CompletableFuture<?>[0])).get(10, TimeUnit.SECONDS);
+            assertTrue(new File(outputDir, "photo0.jpg").exists(), "提交后输出文件可见");
+            
+            commits.add(writer.write(new File(outputDir, "last.jpg"), new byte[] {1}));
+        }
+        
+        for (CompletableFuture<Void> commit : commits) {
+            assertTrue(commit.isDone() && !commit.isCompletedExceptionally(), "关闭时提交所有文件");
+        }
+        assertEquals(21, outputDir.list().length, "不应留下临时文件");
+        assertArrayEquals(new byte[] {7}, Files.readAllBytes(new File(outputDir, "photo7.jpg").toPath()));
+        assertThrows(IOException.class, () -> {
+            OutputWriter closed = new OutputWriter(FsyncPolicy.GROUP, 0);
+            closed.close();
+            closed.write(new File(outputDir, "closed.jpg"), new byte[] {1});
+        });
+    }
+    
+    @Test
+    void testBatchWithGroupCommit() throws IOException {
+        File inputDir = tempDir.resolve("input").toFile();
+        File outputDir = tempDir.resolve("output").toFile();
+        assertTrue(inputDir.mkdirs());
+        for (int i = 0; i < 8; i++) {
+            ImageIO.write(new BufferedImage(80, 60, BufferedImage.TYPE_INT_RGB), "png",
+                    new File(inputDir, "photo" + i + ".png"));
+        }
+        
+        File journalFile = tempDir.resolve("journal.tsv").toFile();
+        WatermarkConfig config = new WatermarkConfig();
+        config.setFsyncPolicy(FsyncPolicy.GROUP);
+        config.setJournalFile(journalFile.getAbsolutePath());
+        
+        FileProcessor processor = new FileProcessor(config, false, "Test", outputDir, false);
+        assertTrue(processor.processPath(inputDir.getAbsolutePath()).isSuccess());
+        
+        assertEquals(8, outputDir.list().length, "所有输出都应就位且没有临时文件");
+        assertEquals(8, Files.readAllLines(journalFile.toPath(), StandardCharsets.UTF_8).stream()
+                .filter(line -> line.startsWith("OK\t")).count());
+    }
+}
\ No newline at end of file
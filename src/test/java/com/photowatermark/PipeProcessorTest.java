@@ -0,0 +1,125 @@
+package com.photowatermark;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 管道模式测试类
+ * 
+ * @author PhotoWatermark Team
+ * @version 1.0.0
+ */
+public class PipeProcessorTest {
+    
+    @Test
+    void testSingleImage() throws IOException {
+        PipeProcessor pipe = new PipeProcessor(new WatermarkConfig(), false, "管道水印");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        
+        assertTrue(pipe.processSingle(new ByteArrayInputStream(image("png")), out));
+        assertEquals("png", PipeProcessor.detectFormat(out.toByteArray()));
+        assertNotNull(ImageIO.read(new ByteArrayInputStream(out.toByteArray())));
+        
+        ByteArrayOutputStream rejected = new ByteArrayOutputStream();
+        assertFalse(pipe.processSingle(new ByteArrayInputStream(new byte[] {1, 2, 3}), rejected));
+        assertEquals(0, rejected.size(), "失败时不应输出任何内容");
+    }
+    
+    @Test
+    void testFramedStreamKeepsOrder() throws IOException {
+        byte[][] frames = {image("jpg"), new byte[] {1, 2, 3}, image("png"), image("bmp")};
+        ByteArrayOutputStream input = new ByteArrayOutputStream();
+        DataOutputStream framed = new DataOutputStream(input);
+        for (byte[] frame : frames) {
+            framed.writeInt(frame.length);
+            framed.write(frame);
+        }
+        
+        PipeProcessor pipe = new PipeProcessor(new WatermarkConfig(), false, "管道水印");
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        FileProcessor.ProcessResult result = pipe.processFrames(new ByteArrayInputStream(input.toByteArray()), output);
+        
+        assertFalse(result.isSuccess());
+        assertTrue(result.getMessage().contains("总计: 4, 成功: 3, 失败: 1"), result.getMessage());
+        
+        DataInputStream results = new DataInputStream(new ByteArrayInputStream(output.toByteArray()));
+        String[] expected = {"jpg", null, "png", "bmp"};
+        for (String format : expected) {
+            int length = results.readInt();
+            if (format == null) {
+                assertEquals(PipeProcessor.FAILED_FRAME, length);
+                continue;
+            }
+            byte[] data = new byte[length];
+            results.readFully(data);
+            assertEquals(format, PipeProcessor.detectFormat(data));
+        }
+        assertEquals(-1, results.read(), "输出帧数应与输入帧数相同");
+    }
+    
+    @Test
+    void testFrameIsAnsweredBeforeNextArrives() throws Exception {
+        PipedOutputStream client = new PipedOutputStream();
+        PipedInputStream input = new PipedInputStream(client, 64 * 1024);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        PipeProcessor pipe = new PipeProcessor(new WatermarkConfig(), false, "管道水印");
+        CompletableFuture<FileProcessor.ProcessResult> done = CompletableFuture.supplyAsync(() -> {
+            try {
+                return pipe.processFrames(input, output);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        
+        // 请求/应答式客户端：发送一帧后保持输入打开，等待结果
+        byte[] frame = image("png");
+        DataOutputStream framed = new DataOutputStream(client);
+        framed.writeInt(frame.length);
+        framed.write(frame);
+        framed.flush();
+        
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        byte[] reply;
+        do {
+            Thread.sleep(20);
+            reply = output.toByteArray();
+        } while (reply.length < 4 && System.nanoTime() < deadline);
+        assertTrue(reply.length >= 4, "输入未结束时也应写出已完成的帧");
+        assertFalse(done.isDone(), "输入未结束时应继续等待下一帧");
+        
+        client.close();
+        assertTrue(done.get(10, TimeUnit.SECONDS).isSuccess());
+        DataInputStream results = new DataInputStream(new ByteArrayInputStream(output.toByteArray()));
+        byte[] data = new byte[results.readInt()];
+        results.readFully(data);
+        assertEquals("png", PipeProcessor.detectFormat(data));
+    }
+    
+    @Test
+    void testTruncatedFrameFails() {
+        byte[] truncated = {0, 0, 0, 10, 1, 2};
+        PipeProcessor pipe = new PipeProcessor(new WatermarkConfig(), false, "管道水印");
+        assertThrows(IOException.class,
+                () -> pipe.processFrames(new ByteArrayInputStream(truncated), new ByteArrayOutputStream()));
+    }
+    
+    private static byte[] image(String format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(120, 90, BufferedImage.TYPE_INT_RGB), format, out);
+        return out.toByteArray();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,187 @@
+package com.photowatermark;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 像素缓冲池的GC基准
+ * 
+ * 在使用G1的子进程中多线程处理同一批大尺寸JPEG，分别开启和关闭像素缓冲池，
+ * 从 -Xlog:gc 日志统计GC次数、暂停时间、巨型对象分配触发的GC、疏散失败次数和分配速率。
+ * 分配量按每次GC前的堆占用减去上次GC后的堆占用累计，是近似值。
+ * 运行方式: mvn test -Pbenchmark -Dtest=RasterPoolBenchmark
+ * 
+ * @author PhotoWatermark Team
+ * @version 1.0.0
+ */
+public class RasterPoolBenchmark {
+    
+    private static final int IMAGE_COUNT = 4;
+    private static final int ROUNDS = 6;
+    private static final String HEAP = "-Xmx768m";
+    
+    private static final Pattern PAUSE = Pattern.compile(
+            "Pause .*?(\\d+)M->(\\d+)M\\((\\d+)M\\) ([\\d.]+)ms");
+    
+    @TempDir
+    Path tempDir;
+    
+    @Test
+    void benchmarkGcWithAndWithoutPool() throws Exception {
+        File inputDir = tempDir.resolve("input").toFile();
+        assertTrue(inputDir.mkdirs());
+        for (int i = 0; i < IMAGE_COUNT; i++) {
+            BufferedImage image = new BufferedImage(4000, 3000, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g2d = image.createGraphics();
+            g2d.setPaint(new GradientPaint(0, 0, Color.ORANGE, 4000, 3000 - i * 100, Color.BLUE));
+            g2d.fillRect(0, 0, 4000, 3000);
+            g2d.dispose();
+            ImageIO.write(image, "jpg", new File(inputDir, "photo" + i + ".jpg"));
+        }
+        
+        GcStats withoutPool = run(inputDir, false);
+        GcStats withPool = run(inputDir, true);
+        
+        System.out.printf("G1 %s, %d 线程, 处理 %d 张 4000x3000 JPEG:%n", HEAP, threads(), IMAGE_COUNT * ROUNDS);
+        System.out.println("  不使用缓冲池: " + withoutPool);
+        System.out.println("  使用缓冲池:   " + withPool);
+    }
+    
+    private GcStats run(File inputDir, boolean pooled) throws Exception {
+        File gcLog = tempDir.resolve(pooled ? "gc-pooled.log" : "gc-plain.log").toFile();
+        List<String> command = Arrays.asList(
+                System.getProperty("java.home") + File.separator + "bin" + File.separator + "java",
+                HEAP, "-XX:+UseG1GC", "-Xlog:gc:file=" + gcLog.getAbsolutePath(), "-Djava.awt.headless=true",
+                "-cp", System.getProperty("java.class.path"), Worker.class.getName(),
+                inputDir.getAbsolutePath(), String.valueOf(threads()), String.valueOf(pooled));
+        
+        ProcessBuilder builder = new ProcessBuilder(command);
+        builder.redirectErrorStream(true);
+        File output = tempDir.resolve(pooled ? "pooled.out" : "plain.out").toFile();
+        builder.redirectOutput(output);
+        Process process = builder.start();
+        assertTrue(process.waitFor(600, TimeUnit.SECONDS), "子进程应该结束");
+        List<String> lines = Files.readAllLines(output.toPath(), StandardCharsets.UTF_8);
+        assertEquals(0, process.exitValue(), "子进程运行失败: " + lines);
+        
+        long elapsed = Long.parseLong(lines.get(lines.size() - 1).trim());
+        return GcStats.parse(Files.readAllLines(gcLog.toPath(), StandardCharsets.UTF_8), elapsed);
+    }
+    
+    private static int threads() {
+        return Math.max(2, Runtime.getRuntime().availableProcessors());
+    }
+    
+    /**
+     * 从GC日志统计的结果
+     */
+    static class GcStats {
+        int collections;
+        int humongousTriggered;
+        int evacuationFailures;
+        double totalPauseMs;
+        double maxPauseMs;
+        long allocatedMb;
+        long elapsedMs;
+        
+        static GcStats parse(List<String> log, long elapsedMs) {
+            GcStats stats = new GcStats();
+            stats.elapsedMs = elapsedMs;
+            long lastAfter = 0;
+            for (String line : log) {
+                Matcher matcher = PAUSE.matcher(line);
+                if (!matcher.find()) {
+                    continue;
+                }
+                long before = Long.parseLong(matcher.group(1));
+                long after = Long.parseLong(matcher.group(2));
+                double pause = Double.parseDouble(matcher.group(4));
+                
+                stats.collections++;
+                stats.totalPauseMs += pause;
+                stats.maxPauseMs = Math.max(stats.maxPauseMs, pause);
+                stats.allocatedMb += Math.max(0, before - lastAfter);
+                lastAfter = after;
+                if (line.contains("Humongous Allocation")) {
+                    stats.humongousTriggered++;
+                }
+                if (line.contains("Evacuation Failure") || line.contains("To-space exhausted")) {
+                    stats.evacuationFailures++;
+                }
+            }
+            return stats;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("耗时 %d ms, GC %d 次 (巨型分配触发 %d, 疏散失败 %d), 暂停合计 %.1f ms, "
+                            + "最长 %.1f ms, 分配约 %d MB (%.0f MB/s)", elapsedMs, collections, humongousTriggered,
+                    evacuationFailures, totalPauseMs, maxPauseMs, allocatedMb,
+                    allocatedMb * 1000.0 / Math.max(1, elapsedMs));
+        }
+    }
+    
+    /**
+     * 子进程入口：参数为输入目录、线程数、是否使用缓冲池，最后一行输出耗时 (毫秒)
+     */
+    public static class Worker {
+        
+        public static void main(String[] args) throws Exception {
+            File[] files = new File(args[0]).listFiles();
+            int threads = Integer.parseInt(args[1]);
+            RasterPool.setCapacity(Boolean.parseBoolean(args[2]) ? -1 : 0);
+            
+            List<byte[]> sources = new ArrayList<>();
+            for (File file : files) {
+                sources.add(Files.readAllBytes(file.toPath()));
+            }
+            WatermarkConfig config = new WatermarkConfig();
+            config.setFontSize(96);
+            
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            long start = System.nanoTime();
+            List<Future<byte[]>> results = new ArrayList<>();
+            for (int round = 0; round < ROUNDS; round++) {
+                for (byte[] source : sources) {
+                    results.add(pool.submit(() -> {
+                        try (ImageInputStream input = new ByteBufferImageInputStream(source)) {
+                            return WatermarkEngine.watermark(input, "jpg", "Benchmark", config, null);
+                        }
+                    }));
+                }
+            }
+            for (Future<byte[]> result : results) {
+                if (result.get() == null) {
+                    throw new IllegalStateException("处理失败");
+                }
+            }
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            pool.shutdown();
+            
+            System.out.println(RasterPool.getStatistics());
+            System.out.println(elapsed);
+        }
+    }
+}
\ No newline at end of file
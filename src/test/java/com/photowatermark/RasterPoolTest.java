@@ -0,0 +1,128 @@
+package com.photowatermark;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 像素缓冲池测试类
+ * 
+ * @author PhotoWatermark Team
+ * @version 1.0.0
+ */
+public class RasterPoolTest {
+    
+    @AfterEach
+    void tearDown() {
+        RasterPool.setCapacity(-1);
+        RasterPool.setIdleMillis(-1);
+    }
+    
+    @Test
+    void testSizeClass() {
+        assertEquals(1 << 20, RasterPool.sizeClass(1 << 20));
+        assertEquals(5 << 18, RasterPool.sizeClass((1 << 20) + 1), "应向上取到四等分的下一级");
+        assertEquals(6 << 20, RasterPool.sizeClass(6_000_000));
+        for (int pixels : new int[] {300_000, 1_000_000, 12_000_000, 24_000_000}) {
+            int size = RasterPool.sizeClass(pixels);
+            assertTrue(size >= pixels && size < pixels * 1.25 + 1, "分级容量最多浪费25%: " + pixels);
+            assertEquals(size, RasterPool.sizeClass(size), "分级容量应属于自身所在的级别");
+        }
+    }
+    
+    @Test
+    void testReleasedArrayIsReusedAndCleared() {
+        RasterPool.clear();
+        BufferedImage first = RasterPool.acquire(1000, 600);
+        assertEquals(BufferedImage.TYPE_INT_RGB, first.getType());
+        first.setRGB(10, 10, 0xFF123456);
+        int[] data = ((DataBufferInt) first.getRaster().getDataBuffer()).getData();
+        RasterPool.release(first);
+        
+        BufferedImage second = RasterPool.acquire(980, 610);
+        assertSame(data, ((DataBufferInt) second.getRaster().getDataBuffer()).getData(), "相近尺寸应复用同一数组");
+        assertEquals(980, second.getWidth());
+        assertEquals(0xFF000000, second.getRGB(10, 10), "复用的像素应清零");
+        
+        BufferedImage small = RasterPool.acquire(100, 100);
+        RasterPool.release(small);
+        assertEquals(0, RasterPool.getPooledBytes(), "小图片不进入缓冲池");
+        
+        RasterPool.setCapacity(0);
+        RasterPool.release(second);
+        assertEquals(0, RasterPool.getPooledBytes(), "缓冲池关闭时不应保留数组");
+    }
+    
+    @Test
+    void testOldestArrayIsEvictedAtCapacity() {
+        RasterPool.clear();
+        RasterPool.setCapacity(4);
+        BufferedImage older = RasterPool.acquire(1000, 600);
+        BufferedImage newer = RasterPool.acquire(1200, 600);
+        int[] olderData = ((DataBufferInt) older.getRaster().getDataBuffer()).getData();
+        int[] newerData = ((DataBufferInt) newer.getRaster().getDataBuffer()).getData();
+        
+        RasterPool.release(older);
+        RasterPool.release(newer);
+        assertEquals(4L * newerData.length, RasterPool.getPooledBytes(), "超过上限时应淘汰空闲最久的数组");
+        assertNotSame(olderData, ((DataBufferInt) RasterPool.acquire(1000, 600).getRaster().getDataBuffer()).getData());
+        assertSame(newerData, ((DataBufferInt) RasterPool.acquire(1200, 600).getRaster().getDataBuffer()).getData(),
+                "最近归还的数组应保留");
+    }
+    
+    @Test
+    void testIdleArraysAreTrimmed() throws InterruptedException {
+        RasterPool.clear();
+        RasterPool.setIdleMillis(50);
+        RasterPool.release(RasterPool.acquire(1000, 600));
+        assertTrue(RasterPool.getPooledBytes() > 0);
+        
+        Thread.sleep(100);
+        BufferedImage other = RasterPool.acquire(1200, 600);
+        assertEquals(0, RasterPool.getPooledBytes(), "空闲超时的数组应被丢弃");
+        RasterPool.release(other);
+    }
+    
+    @Test
+    void testPooledDecodeMatchesDefaultDecode() throws IOException {
+        BufferedImage source = new BufferedImage(1200, 800, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = source.createGraphics();
+        g2d.setPaint(new GradientPaint(0, 0, Color.ORANGE, 1200, 800, Color.BLUE));
+        g2d.fillRect(0, 0, 1200, 800);
+        g2d.dispose();
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        ImageIO.write(source, "jpg", encoded);
+        
+        BufferedImage expected = ImageIO.read(new ByteArrayInputStream(encoded.toByteArray()));
+        ImageDecoder.DecodedImage decoded;
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(encoded.toByteArray()))) {
+            decoded = ImageDecoder.decode(input, 0);
+        }
+        
+        BufferedImage image = decoded.getImage();
+        assertEquals(BufferedImage.TYPE_3BYTE_BGR, image.getType(), "应按解码器默认类型解码");
+        assertEquals(RasterPool.sizeClass(1200 * 800 * 3),
+                ((DataBufferByte) image.getRaster().getDataBuffer()).getData().length, "解码目标应来自缓冲池");
+        assertEquals(1200, image.getWidth());
+        assertEquals(800, image.getHeight());
+        for (int y = 0; y < 800; y += 37) {
+            for (int x = 0; x < 1200; x += 41) {
+                assertEquals(expected.getRGB(x, y), image.getRGB(x, y), "像素应与默认解码相同");
+            }
+        }
+        RasterPool.release(image);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,74 @@
+package com.photowatermark;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 调度策略性能基准
+ * 
+ * 少量大图混在大量小图中时，比较各调度策略的整批耗时。
+ * 运行方式: mvn test -Pbenchmark
+ * 
+ * @author PhotoWatermark Team
+ * @version 1.0.0
+ */
+public class SchedulingBenchmark {
+    
+    private static final int SMALL_COUNT = 96;
+    private static final int LARGE_COUNT = 3;
+    
+    @TempDir
+    Path tempDir;
+    
+    @Test
+    void benchmarkSkewedCorpus() throws IOException {
+        File inputDir = tempDir.resolve("input").toFile();
+        assertTrue(inputDir.mkdirs());
+        for (int i = 0; i < SMALL_COUNT; i++) {
+            writeImage(new File(inputDir, "small_" + i + ".jpg"), 640, 480);
+        }
+        for (int i = 0; i < LARGE_COUNT; i++) {
+            writeImage(new File(inputDir, "zz_panorama_" + i + ".jpg"), 8000, 3000);
+        }
+        
+        // 预热
+        run(SchedulingPolicy.FIFO, inputDir, tempDir.resolve("warmup").toFile());
+        
+        System.out.printf("%d 张小图 + %d 张全景图:%n", SMALL_COUNT, LARGE_COUNT);
+        for (SchedulingPolicy policy : SchedulingPolicy.values()) {
+            long millis = run(policy, inputDir, tempDir.resolve(policy.name()).toFile());
+            System.out.printf("  %-14s %d ms%n", policy.name(), millis);
+        }
+    }
+    
+    private void writeImage(File file, int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = image.createGraphics();
+        g2d.setPaint(new GradientPaint(0, 0, Color.ORANGE, width, height, Color.BLUE));
+        g2d.fillRect(0, 0, width, height);
+        g2d.dispose();
+        ImageIO.write(image, "jpg", file);
+    }
+    
+    private long run(SchedulingPolicy policy, File inputDir, File outputDir) {
+        WatermarkConfig config = new WatermarkConfig();
+        config.setSchedulingPolicy(policy);
+        
+        FileProcessor processor = new FileProcessor(config, false, "Benchmark", outputDir, false);
+        long start = System.nanoTime();
+        FileProcessor.ProcessResult result = processor.processPath(inputDir.getAbsolutePath());
+        long elapsed = (System.nanoTime() - start) / 1_000_000;
+        
+        assertTrue(result.isSuccess(), policy + " 策略处理应该成功");
+        return elapsed;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,79 @@
+package com.photowatermark;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 调度策略测试类
+ * 
+ * @author PhotoWatermark Team
+ * @version 1.0.0
+ */
+public class SchedulingPolicyTest {
+    
+    @TempDir
+    Path tempDir;
+    
+    private List<ImageJob> createJobs() {
+        return new ArrayList<>(Arrays.asList(
+                new ImageJob(new File("a.jpg"), 0, 300),
+                new ImageJob(new File("b.jpg"), 1, 9000),
+                new ImageJob(new File("c.jpg"), 2, 300),
+                new ImageJob(new File("d.jpg"), 3, 50)));
+    }
+    
+    private String names(List<ImageJob> jobs) {
+        StringBuilder names = new StringBuilder();
+        for (ImageJob job : jobs) {
+            names.append(job.getFile().getName().charAt(0));
+        }
+        return names.toString();
+    }
+    
+    @Test
+    void testLargestFirst() {
+        List<ImageJob> jobs = createJobs();
+        SchedulingPolicy.LARGEST_FIRST.sort(jobs);
+        assertEquals("bacd", names(jobs), "应该按开销从大到小排序，开销相同时保持扫描顺序");
+    }
+    
+    @Test
+    void testSmallestFirst() {
+        List<ImageJob> jobs = createJobs();
+        SchedulingPolicy.SMALLEST_FIRST.sort(jobs);
+        assertEquals("dacb", names(jobs), "应该按开销从小到大排序，开销相同时保持扫描顺序");
+    }
+    
+    @Test
+    void testFifo() {
+        List<ImageJob> jobs = createJobs();
+        SchedulingPolicy.LARGEST_FIRST.sort(jobs);
+        SchedulingPolicy.FIFO.sort(jobs);
+        assertEquals("abcd", names(jobs), "应该恢复扫描顺序");
+    }
+    
+    @Test
+    void testEstimateByHeaderDimensions() throws IOException {
+        File imageFile = tempDir.resolve("estimate.png").toFile();
+        ImageIO.write(new BufferedImage(120, 80, BufferedImage.TYPE_INT_RGB), "png", imageFile);
+        
+        assertEquals(120 * 80, JobSizeEstimator.estimate(imageFile, true), "应该按像素数估算");
+        assertEquals(imageFile.length(), JobSizeEstimator.estimate(imageFile, false), "应该按文件大小估算");
+        
+        File invalidFile = tempDir.resolve("invalid.png").toFile();
+        Files.write(invalidFile.toPath(), new byte[]{1, 2, 3});
+        assertEquals(3, JobSizeEstimator.estimate(invalidFile, true), "无法读取头部时应退回到文件大小");
+    }
+}
\ No newline at end of file
@@ -0,0 +1,231 @@
+package com.photowatermark;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 多节点分片和租约测试类
+ * 
+ * @author PhotoWatermark Team
+ * @version 1.0.0
+ */
+public class ShardingTest {
+    
+    private static final int FILE_COUNT = 24;
+    
+    @TempDir
+    Path tempDir;
+    
+    private File inputDir;
+    
+    @BeforeEach
+    void setUp() throws IOException {
+        inputDir = tempDir.resolve("input").toFile();
+        for (int i = 0; i < FILE_COUNT; i++) {
+            File dir = new File(inputDir, "day" + (i % 3));
+            assertTrue(dir.isDirectory() || dir.mkdirs());
+            ImageIO.write(new BufferedImage(32, 24, BufferedImage.TYPE_INT_RGB), "png",
+                    new File(dir, "photo_" + i + ".png"));
+        }
+    }
+    
+    @Test
+    void testShardOfIsStable() {
+        assertEquals(WorkPartition.shardOf("day0/photo_1.png", 4), WorkPartition.shardOf("day0/photo_1.png", 4));
+        assertEquals(0, WorkPartition.shardOf("day0/photo_1.png", 1));
+        
+        File file = new File(inputDir, "day0" + File.separator + "photo_1.png");
+        assertEquals("day0/photo_1.png", WorkPartition.relativePath(inputDir, file));
+        assertEquals("photo_1.png", WorkPartition.relativePath(file, file));
+    }
+    
+    @Test
+    void testShardsAreDisjointAndComplete() {
+        int shardCount = 3;
+        List<Set<String>> outputs = new ArrayList<>();
+        for (int i = 0; i < shardCount; i++) {
+            WatermarkConfig config = new WatermarkConfig();
+            config.setShardCount(shardCount);
+            config.setShardIndex(i);
+            File outputDir = tempDir.resolve("shard" + i).toFile();
+            FileProcessor processor = new FileProcessor(config, false, "Shard", outputDir, true);
+            assertTrue(processor.processPath(inputDir.getAbsolutePath()).isSuccess());
+            outputs.add(listOutputs(outputDir));
+        }
+        
+        assertDisjointAndComplete(outputs);
+    }
+    
+    @Test
+    void testLeasesProcessEachFileOnce() throws Exception {
+        File leaseDir = tempDir.resolve("leases").toFile();
+        List<Thread> nodes = new ArrayList<>();
+        List<File> outputDirs = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            WatermarkConfig config = new WatermarkConfig();
+            config.setShardCount(3);
+            config.setShardIndex(i);
+            config.setLeaseDirectory(leaseDir.getAbsolutePath());
+            File outputDir = tempDir.resolve("node" + i).toFile();
+            outputDirs.add(outputDir);
+            FileProcessor processor = new FileProcessor(config, false, "Lease", outputDir, true);
+            nodes.add(new Thread(() -> processor.processPath(inputDir.getAbsolutePath())));
+        }
+        for (Thread node : nodes) {
+            node.start();
+        }
+        for (Thread node : nodes) {
+            node.join(TimeUnit.SECONDS.toMillis(30));
+        }
+        
+        List<Set<String>> outputs = new ArrayList<>();
+        for (File outputDir : outputDirs) {
+            outputs.add(listOutputs(outputDir));
+        }
+        assertDisjointAndComplete(outputs);
+        
+        // 租约目录中只剩完成标记，再次运行时全部跳过
+        String[] markers = leaseDir.list();
+        assertNotNull(markers);
+        assertEquals(FILE_COUNT, markers.length);
+        for (String marker : markers) {
+            assertTrue(marker.endsWith(".done"), "不应残留租约: " + marker);
+        }
+    }
+    
+    @Test
+    void testCompletedMarkersAreScopedByRun() {
+        File leaseDir = tempDir.resolve("leases").toFile();
+        WatermarkConfig config = new WatermarkConfig();
+        config.setLeaseDirectory(leaseDir.getAbsolutePath());
+        config.setLeaseRun("first");
+        
+        FileProcessor.ProcessResult first = new FileProcessor(config, false, "Run", tempDir.resolve("out1").toFile(),
+                true).processPath(inputDir.getAbsolutePath());
+        assertTrue(first.getMessage().contains("成功: " + FILE_COUNT), first.getMessage());
+        assertEquals(FILE_COUNT, new File(leaseDir, "first").list().length, "完成标记应位于运行标识子目录");
+        
+        FileProcessor.ProcessResult resumed = new FileProcessor(config, false, "Run", tempDir.resolve("out2").toFile(),
+                true).processPath(inputDir.getAbsolutePath());
+        assertTrue(resumed.getMessage().contains("成功: 0"), "同一运行中已完成的文件应跳过: " + resumed.getMessage());
+        
+        config.setLeaseRun("second");
+        FileProcessor.ProcessResult rerun = new FileProcessor(config, false, "Run", tempDir.resolve("out3").toFile(),
+                true).processPath(inputDir.getAbsolutePath());
+        assertTrue(rerun.getMessage().contains("成功: " + FILE_COUNT), "新的运行应重新处理: " + rerun.getMessage());
+        
+        assertTrue(WorkLeases.isValidRun("2024-06_archive.v2"));
+        assertFalse(WorkLeases.isValidRun(".."));
+        assertFalse(WorkLeases.isValidRun("a/b"));
+    }
+    
+    @Test
+    void testExpiredLeaseCanBeTakenOver() throws IOException {
+        File leaseDir = tempDir.resolve("leases").toFile();
+        WorkLeases crashed = new WorkLeases(leaseDir, 1);
+        WorkLeases other = new WorkLeases(leaseDir, 1);
+        
+        assertTrue(crashed.tryAcquire("day0/photo_1.png"));
+        assertFalse(other.tryAcquire("day0/photo_1.png"), "未过期的租约不能被接手");
+        
+        // 模拟节点失效：停止续期并让租约过期
+        crashed.close();
+        File[] leases = leaseDir.listFiles();
+        assertNotNull(leases);
+        assertTrue(leases[0].setLastModified(System.currentTimeMillis() - 5000));
+        assertTrue(other.tryAcquire("day0/photo_1.png"), "过期的租约应该可以被接手");
+        
+        // 过期的上一代租约仍在，第三个节点不能再次接手
+        WorkLeases third = new WorkLeases(leaseDir, 1);
+        assertFalse(third.tryAcquire("day0/photo_1.png"), "已被接手的文件不能再被接手");
+        
+        other.complete("day0/photo_1.png");
+        assertFalse(third.tryAcquire("day0/photo_1.png"), "已完成的文件不应再被领取");
+        assertArrayEquals(new String[0], leaseDir.list((dir, name) -> name.endsWith(".lease")), "完成后不应残留租约");
+        other.close();
+        third.close();
+    }
+    
+    @Test
+    void testHeldLeaseIsRenewed() throws Exception {
+        File leaseDir = tempDir.resolve("leases").toFile();
+        try (WorkLeases slow = new WorkLeases(leaseDir, 1); WorkLeases other = new WorkLeases(leaseDir, 1)) {
+            assertTrue(slow.tryAcquire("day0/photo_1.png"));
+            
+            // 处理时间超过租约有效时间，持有期间续期，其他节点不能接手
+            Thread.sleep(2500);
+            assertFalse(other.tryAcquire("day0/photo_1.png"), "续期中的租约不能被接手");
+            
+            slow.release("day0/photo_1.png");
+            assertTrue(other.tryAcquire("day0/photo_1.png"), "释放后其他节点可以重试");
+        }
+    }
+    
+    @Test
+    void testSeparateJvmsShareWork() throws Exception {
+        File leaseDir = tempDir.resolve("leases").toFile();
+        String javaBin = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        String classPath = System.getProperty("java.class.path");
+        
+        List<Process> processes = new ArrayList<>();
+        List<File> outputDirs = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            File outputDir = tempDir.resolve("jvm" + i).toFile();
+            outputDirs.add(outputDir);
+            ProcessBuilder builder = new ProcessBuilder(javaBin, "-Djava.awt.headless=true", "-cp", classPath,
+                    PhotoWatermarkTool.class.getName(), "-i", inputDir.getAbsolutePath(),
+                    "-o", outputDir.getAbsolutePath(), "-t", "Node" + i, "-r",
+                    "--shard-count", "2", "--shard-index", String.valueOf(i),
+                    "--lease-dir", leaseDir.getAbsolutePath());
+            builder.redirectErrorStream(true);
+            builder.redirectOutput(tempDir.resolve("jvm" + i + ".log").toFile());
+            processes.add(builder.start());
+        }
+        for (Process process : processes) {
+            assertTrue(process.waitFor(60, TimeUnit.SECONDS), "子进程应该结束");
+            assertEquals(0, process.exitValue());
+        }
+        
+        List<Set<String>> outputs = new ArrayList<>();
+        for (File outputDir : outputDirs) {
+            outputs.add(listOutputs(outputDir));
+        }
+        assertDisjointAndComplete(outputs);
+    }
+    
+    private static Set<String> listOutputs(File outputDir) {
+        Set<String> names = new HashSet<>();
+        String[] files = outputDir.list();
+        if (files != null) {
+            for (String name : files) {
+                names.add(name);
+            }
+        }
+        return names;
+    }
+    
+    private static void assertDisjointAndComplete(List<Set<String>> outputs) {
+        Set<String> all = new HashSet<>();
+        int total = 0;
+        for (Set<String> names : outputs) {
+            total += names.size();
+            all.addAll(names);
+        }
+        assertEquals(FILE_COUNT, all.size(), "所有文件都应该被处理");
+        assertEquals(FILE_COUNT, total, "每个文件只应被一个节点处理");
+    }
+}
\ No newline at end of file
@@ -0,0 +1,125 @@
+package com.photowatermark;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 启动时间基准
+ * 
+ * 在新的JVM中处理一张图片，测量从启动进程到处理完成退出的时间，比较默认启动、使用AppCDS归档、
+ * 以及启动脚本的完整选项 (归档 + C1编译器 + 串行GC)。归档由 StartupTraining 训练运行生成，
+ * 与 mvn package -Pstartup 的做法相同；AppCDS 不支持目录形式的类路径，先把编译结果打成临时JAR。
+ * 运行方式: mvn test -Pbenchmark
+ * 
+ * @author PhotoWatermark Team
+ * @version 1.0.0
+ */
+public class StartupBenchmark {
+    
+    private static final int WARMUP = 1;
+    private static final int ITERATIONS = 5;
+    
+    @TempDir
+    Path tempDir;
+    
+    @Test
+    void benchmarkTimeToFirstFile() throws Exception {
+        String classPath = buildClassPath();
+        File image = tempDir.resolve("photo.jpg").toFile();
+        ImageIO.write(new BufferedImage(1600, 1200, BufferedImage.TYPE_INT_RGB), "jpg", image);
+        
+        File archive = tempDir.resolve("app.jsa").toFile();
+        int exitCode = run(classPath, Arrays.asList("-XX:ArchiveClassesAtExit=" + archive, "-Djava.awt.headless=true"),
+                StartupTraining.class.getName());
+        assertEquals(0, exitCode, "训练运行应该成功");
+        assertTrue(archive.isFile(), "训练运行应该生成归档");
+        
+        List<String> cds = Arrays.asList("-XX:SharedArchiveFile=" + archive, "-Djava.awt.headless=true");
+        List<String> launcher = Arrays.asList("-XX:SharedArchiveFile=" + archive, "-XX:TieredStopAtLevel=1",
+                "-XX:+UseSerialGC", "-Djava.awt.headless=true");
+        
+        System.out.printf("单文件调用 (%s)，每项 %d 次取中位数:%n", image.getName(), ITERATIONS);
+        System.out.printf("  默认启动:       %d ms%n", measure(classPath, Collections.<String>emptyList(), image));
+        System.out.printf("  AppCDS:         %d ms%n", measure(classPath, cds, image));
+        System.out.printf("  AppCDS+启动选项: %d ms%n", measure(classPath, launcher, image));
+    }
+    
+    private long measure(String classPath, List<String> jvmOptions, File image) throws Exception {
+        File outputDir = tempDir.resolve("output").toFile();
+        List<Long> times = new ArrayList<>();
+        for (int i = 0; i < WARMUP + ITERATIONS; i++) {
+            long start = System.nanoTime();
+            int exitCode = run(classPath, jvmOptions, PhotoWatermarkTool.class.getName(),
+                    "-i", image.getAbsolutePath(), "-o", outputDir.getAbsolutePath(), "-t", "Startup");
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertEquals(0, exitCode);
+            assertTrue(new File(outputDir, "photo_watermarked.jpg").isFile());
+            if (i >= WARMUP) {
+                times.add(elapsed);
+            }
+        }
+        Collections.sort(times);
+        return times.get(times.size() / 2);
+    }
+    
+    private int run(String classPath, List<String> jvmOptions, String mainClass, String... args) throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.addAll(jvmOptions);
+        command.add("-cp");
+        command.add(classPath);
+        command.add(mainClass);
+        command.addAll(Arrays.asList(args));
+        
+        ProcessBuilder builder = new ProcessBuilder(command);
+        builder.redirectErrorStream(true);
+        builder.redirectOutput(tempDir.resolve("run.log").toFile());
+        Process process = builder.start();
+        assertTrue(process.waitFor(120, TimeUnit.SECONDS), "子进程应该结束");
+        return process.exitValue();
+    }
+    
+    /**
+     * 把编译结果打成JAR，与依赖JAR组成类路径
+     */
+    private String buildClassPath() throws IOException, URISyntaxException {
+        Path classes = new File(PhotoWatermarkTool.class.getProtectionDomain().getCodeSource().getLocation().toURI())
+                .toPath();
+        Path jar = tempDir.resolve("photo-watermark-tool.jar");
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar.toFile()));
+             Stream<Path> files = Files.walk(classes)) {
+            for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                out.putNextEntry(new JarEntry(classes.relativize(file).toString().replace(File.separatorChar, '/')));
+                Files.copy(file, out);
+                out.closeEntry();
+            }
+        }
+        
+        StringBuilder classPath = new StringBuilder(jar.toString());
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            if (entry.endsWith(".jar")) {
+                classPath.append(File.pathSeparator).append(entry);
+            }
+        }
+        return classPath.toString();
+    }
+}
\ No newline at end of file
@@ -5,11 +5,21 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.io.TempDir;
 
 import java.awt.*;
+import java.awt.geom.Point2D;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageInputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -142,4 +152,207 @@ public class WatermarkEngineTest {
             assertTrue(positionOutputFile.exists(), "输出文件应该存在");
         }
     }
+    
+    @Test
+    void testAddWatermarkWithRenditions() throws IOException {
+        Map<Rendition, File> outputs = new LinkedHashMap<>();
+        outputs.put(new Rendition("thumb", 50, "png", 0.8f, "_50"), tempDir.resolve("out_50.png").toFile());
+        outputs.put(new Rendition("full", 0, null, 0.9f, "_full"), tempDir.resolve("out_full.jpg").toFile());
+        outputs.put(new Rendition("web", 100, "jpg", 0.85f, "_100"), tempDir.resolve("out_100.jpg").toFile());
+        
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            boolean result = WatermarkEngine.addWatermark(testImageFile, outputs, "Test", config, executor);
+            assertTrue(result, "多规格输出应该成功");
+        } finally {
+            executor.shutdown();
+        }
+        
+        assertEquals(200, ImageIO.read(tempDir.resolve("out_full.jpg").toFile()).getWidth(), "原尺寸规格应保持原尺寸");
+        assertEquals(100, ImageIO.read(tempDir.resolve("out_100.jpg").toFile()).getWidth(), "规格应缩小到指定长边");
+        assertEquals(50, ImageIO.read(tempDir.resolve("out_50.png").toFile()).getWidth(), "规格应缩小到指定长边");
+    }
+    
+    @Test
+    void testDownscaleProgressively() {
+        BufferedImage source = new BufferedImage(1000, 500, BufferedImage.TYPE_INT_RGB);
+        BufferedImage scaled = WatermarkEngine.downscale(source, 120, 60);
+        assertEquals(120, scaled.getWidth());
+        assertEquals(60, scaled.getHeight());
+        assertSame(source, WatermarkEngine.downscale(source, 1000, 500), "目标尺寸不小于原图时应直接返回原图");
+    }
+    
+    @Test
+    void testAddWatermarkWithMaxOutputDimension() throws IOException {
+        File largeImageFile = tempDir.resolve("large.png").toFile();
+        ImageIO.write(new BufferedImage(1200, 800, BufferedImage.TYPE_INT_RGB), "png", largeImageFile);
+        File largeOutputFile = tempDir.resolve("large_out.png").toFile();
+        
+        config.setMaxOutputDimension(150);
+        boolean result = WatermarkEngine.addWatermark(largeImageFile, largeOutputFile, "Test", config);
+        assertTrue(result, "限制输出尺寸时添加水印应该成功");
+        
+        BufferedImage output = ImageIO.read(largeOutputFile);
+        assertEquals(150, output.getWidth(), "输出长边应等于最大输出尺寸");
+        assertEquals(100, output.getHeight(), "输出应保持宽高比");
+    }
+    
+    @Test
+    void testSubsamplingFactor() {
+        assertEquals(1, ImageDecoder.subsamplingFactor(1000, 0), "未限制尺寸时不应子采样");
+        assertEquals(1, ImageDecoder.subsamplingFactor(1000, 2000), "目标大于原图时不应子采样");
+        assertEquals(1, ImageDecoder.subsamplingFactor(1000, 600), "解码结果应不小于目标的两倍");
+        assertEquals(5, ImageDecoder.subsamplingFactor(6000, 512), "6000像素子采样后应为1200像素");
+    }
+    
+    @Test
+    void testAddWatermarkPreservesMetadata() throws IOException {
+        File exifImageFile = tempDir.resolve("exif.jpg").toFile();
+        ExifReaderTest.writeJpegWithExif(exifImageFile, "2023:05:01 10:20:30", 1);
+        SourceMetadata metadata = ExifReader.readMetadata(exifImageFile);
+        
+        config.setPreserveMetadata(false);
+        assertTrue(WatermarkEngine.addWatermark(exifImageFile, outputFile, "Test", config, metadata));
+        assertNull(ExifReader.extractDateTaken(outputFile), "未启用时不应保留EXIF");
+        
+        config.setPreserveMetadata(true);
+        assertTrue(WatermarkEngine.addWatermark(exifImageFile, outputFile, "Test", config, metadata));
+        assertEquals("2023-05-01", ExifReader.extractDateTaken(outputFile), "启用时应保留EXIF");
+        assertNotNull(ImageIO.read(outputFile), "拼接后的JPEG应可正常解码");
+    }
+    
+    @Test
+    void testAddWatermarkFollowsExifOrientation() throws IOException {
+        // 原始像素200x100，方向6表示查看器顺时针旋转90度显示为100x200
+        File rotatedImageFile = tempDir.resolve("rotated.jpg").toFile();
+        ExifReaderTest.writeJpegWithExif(rotatedImageFile, "2023:05:01 10:20:30", 6);
+        SourceMetadata metadata = ExifReader.readMetadata(rotatedImageFile);
+        
+        config.setColor(Color.WHITE);
+        config.setShadowColor(Color.WHITE);
+        config.setOpacity(1.0f);
+        config.setFontSize(12);
+        config.setMargin(5);
+        config.setPosition(WatermarkPosition.BOTTOM_RIGHT);
+        
+        // 保留元数据的JPEG输出带有方向标记，水印按显示方向绘制
+        config.setPreserveMetadata(true);
+        File jpegOutput = tempDir.resolve("rotated_out.jpg").toFile();
+        assertTrue(WatermarkEngine.addWatermark(rotatedImageFile, jpegOutput, "WM", config, metadata));
+        assertEquals(6, ExifReader.readMetadata(jpegOutput).getOrientation(), "JPEG输出应保留方向标记");
+        
+        BufferedImage output = ImageIO.read(jpegOutput);
+        assertEquals(200, output.getWidth(), "像素数据不应被旋转");
+        assertEquals(100, output.getHeight(), "像素数据不应被旋转");
+        
+        // 显示时的右下角对应原始像素的右上角
+        assertTrue(countBrightPixels(output, 150, 0, 200, 50) > 0, "水印应位于原始像素的右上角");
+        assertEquals(0, countBrightPixels(output, 100, 50, 200, 100), "原始像素的右下角不应有水印");
+        
+        // PNG不带方向标记，查看器按存储方向显示，水印按存储方向绘制
+        byte[] png;
+        try (ImageInputStream input = ImageIO.createImageInputStream(rotatedImageFile)) {
+            png = WatermarkEngine.watermark(input, "png", "WM", config, metadata);
+        }
+        assertNormalPlacement(ImageIO.read(new ByteArrayInputStream(png)));
+        
+        // 不保留元数据时JPEG输出同样没有方向标记
+        config.setPreserveMetadata(false);
+        assertTrue(WatermarkEngine.addWatermark(rotatedImageFile, jpegOutput, "WM", config, metadata));
+        assertEquals(SourceMetadata.ORIENTATION_NORMAL, ExifReader.readMetadata(jpegOutput).getOrientation(),
+                "未保留元数据时不应有方向标记");
+        assertNormalPlacement(ImageIO.read(jpegOutput));
+    }
+    
+    private static void assertNormalPlacement(BufferedImage output) {
+        assertTrue(countBrightPixels(output, 100, 50, 200, 100) > 0, "没有方向标记的输出水印应位于右下角");
+        assertEquals(0, countBrightPixels(output, 150, 0, 200, 40), "没有方向标记的输出右上角不应有水印");
+    }
+    
+    @Test
+    void testOrientationTransform() {
+        assertNull(WatermarkEngine.orientationTransform(1, 200, 100), "正常方向不需要变换");
+        
+        Point2D corner = WatermarkEngine.orientationTransform(6, 200, 100)
+                .transform(new Point2D.Double(0, 0), null);
+        assertEquals(100, corner.getX(), 0.001, "顺时针旋转90度后左上角应移到右上角");
+        assertEquals(0, corner.getY(), 0.001);
+    }
+    
+    private static int countBrightPixels(BufferedImage image, int x0, int y0, int x1, int y1) {
+        int count = 0;
+        for (int y = y0; y < y1; y++) {
+            for (int x = x0; x < x1; x++) {
+                if ((image.getRGB(x, y) & 0xFF) > 128) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+    
+    @Test
+    void testAddWatermarkInMemory() throws IOException {
+        byte[] source = Files.readAllBytes(testImageFile.toPath());
+        
+        // byte[] -> 池化缓冲区，未指定格式时沿用源格式
+        ImageBuffer buffer = ImageBuffer.acquire();
+        try {
+            assertTrue(WatermarkEngine.addWatermark(source, null, buffer, "Memory", config), "内存水印应该成功");
+            BufferedImage result = ImageIO.read(new ByteArrayInputStream(buffer.toByteArray()));
+            assertNotNull(result, "输出应该是有效图片");
+            assertEquals(200, result.getWidth());
+            assertEquals(0xFF, buffer.asByteBuffer().get(0) & 0xFF, "应沿用JPEG格式");
+            assertEquals(0xD8, buffer.asByteBuffer().get(1) & 0xFF, "应沿用JPEG格式");
+        } finally {
+            buffer.release();
+        }
+        
+        // 直接缓冲区 -> OutputStream，转换输出格式
+        ByteBuffer direct = ByteBuffer.allocateDirect(source.length);
+        direct.put(source).flip();
+        ByteArrayOutputStream pngOutput = new ByteArrayOutputStream();
+        assertTrue(WatermarkEngine.addWatermark(direct, "png", pngOutput, "Memory", config), "直接缓冲区应该成功");
+        assertEquals(0, direct.position(), "不应改变输入缓冲区的位置");
+        assertEquals(200, ImageIO.read(new ByteArrayInputStream(pngOutput.toByteArray())).getHeight());
+        
+        // InputStream -> OutputStream
+        ByteArrayOutputStream streamOutput = new ByteArrayOutputStream();
+        assertTrue(WatermarkEngine.addWatermark(new ByteArrayInputStream(source), "jpg", streamOutput,
+                "Memory", config), "输入流应该成功");
+        assertNotNull(ImageIO.read(new ByteArrayInputStream(streamOutput.toByteArray())));
+        
+        assertFalse(WatermarkEngine.addWatermark(new byte[]{1, 2, 3}, "jpg", new ByteArrayOutputStream(),
+                "Memory", config), "无效数据应该失败");
+    }
+    
+    @Test
+    void testAddWatermarkInMemoryPreservesMetadata() throws IOException {
+        File exifFile = tempDir.resolve("exif.jpg").toFile();
+        ExifReaderTest.writeJpegWithExif(exifFile, "2023:05:01 10:00:00", 1);
+        config.setPreserveMetadata(true);
+        
+        ImageBuffer buffer = ImageBuffer.acquire();
+        try {
+            assertTrue(WatermarkEngine.addWatermark(Files.readAllBytes(exifFile.toPath()), "jpg", buffer,
+                    "Memory", config));
+            SourceMetadata metadata = ExifReader.readMetadata(buffer.asByteBuffer());
+            assertEquals("2023-05-01", metadata.getDateTaken(), "内存输出应保留EXIF");
+        } finally {
+            buffer.release();
+        }
+    }
+    
+    @Test
+    void testWarmUpRunsOnce() throws InterruptedException {
+        Thread first = WatermarkEngine.startWarmUp(config);
+        if (first != null) {
+            assertTrue(first.isDaemon(), "预热线程应该是守护线程");
+            first.join(30000);
+            assertFalse(first.isAlive(), "预热应该结束");
+        }
+        assertNull(WatermarkEngine.startWarmUp(config), "重复调用不应再次预热");
+        
+        assertTrue(WatermarkEngine.addWatermark(testImageFile, outputFile, "WarmUp", config));
+    }
 }
\ No newline at end of file
@@ -0,0 +1,161 @@
+package com.photowatermark;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.Socket;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 本地HTTP水印服务测试类
+ * 
+ * @author PhotoWatermark Team
+ * @version 1.0.0
+ */
+public class WatermarkServerTest {
+    
+    @TempDir
+    Path tempDir;
+    
+    private WatermarkServer server;
+    
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new WatermarkServer(new WatermarkConfig(), "Server", 0, 2, 4, 1024 * 1024);
+        server.start();
+    }
+    
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+    
+    @Test
+    void testWatermarkPostedImage() throws IOException {
+        ByteArrayOutputStream image = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(120, 90, BufferedImage.TYPE_INT_RGB), "png", image);
+        
+        HttpURLConnection connection = open("/watermark?text=" + URLEncoder.encode("测试", "UTF-8") + "&format=png");
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        try (OutputStream body = connection.getOutputStream()) {
+            body.write(image.toByteArray());
+        }
+        
+        assertEquals(200, connection.getResponseCode(), "水印请求应该成功");
+        assertEquals("image/png", connection.getContentType());
+        BufferedImage result = ImageIO.read(new ByteArrayInputStream(readAll(connection.getInputStream())));
+        assertNotNull(result, "响应应该是有效图片");
+        assertEquals(120, result.getWidth());
+        
+        String metrics = get("/metrics");
+        assertTrue(metrics.contains("watermark_images_processed_total 1"), "指标应记录处理的图片数");
+    }
+    
+    @Test
+    void testRejectInvalidImage() throws IOException {
+        HttpURLConnection connection = open("/watermark");
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        try (OutputStream body = connection.getOutputStream()) {
+            body.write(new byte[]{1, 2, 3});
+        }
+        assertEquals(422, connection.getResponseCode(), "无效图片应返回422");
+    }
+    
+    @Test
+    void testEnqueueDirectoryJob() throws Exception {
+        File inputDir = tempDir.resolve("input").toFile();
+        File outputDir = tempDir.resolve("output").toFile();
+        assertTrue(inputDir.mkdirs());
+        ImageIO.write(new BufferedImage(80, 60, BufferedImage.TYPE_INT_RGB), "png", new File(inputDir, "a.png"));
+        
+        HttpURLConnection connection = open("/jobs?input=" + URLEncoder.encode(inputDir.getAbsolutePath(), "UTF-8")
+                + "&output=" + URLEncoder.encode(outputDir.getAbsolutePath(), "UTF-8"));
+        connection.setRequestMethod("POST");
+        assertEquals(202, connection.getResponseCode(), "任务应被接受");
+        String accepted = new String(readAll(connection.getInputStream()), StandardCharsets.UTF_8);
+        assertTrue(accepted.contains("\"id\":1"));
+        
+        String status = "";
+        for (int i = 0; i < 100 && !status.contains("\"DONE\""); i++) {
+            Thread.sleep(50);
+            status = get("/jobs/1");
+        }
+        assertTrue(status.contains("\"DONE\""), "任务应该完成: " + status);
+        assertTrue(new File(outputDir, "a_watermarked.png").exists(), "应该生成输出文件");
+        
+        assertEquals(404, open("/jobs/99").getResponseCode(), "不存在的任务应返回404");
+    }
+    
+    @Test
+    void testRejectBrowserRequests() throws Exception {
+        File inputDir = tempDir.resolve("input").toFile();
+        assertTrue(inputDir.mkdirs());
+        
+        // HttpURLConnection 不允许设置 Origin 头，直接写出请求
+        String response = rawRequest("POST /jobs?input=" + URLEncoder.encode(inputDir.getAbsolutePath(), "UTF-8")
+                + " HTTP/1.1\r\nHost: 127.0.0.1\r\nOrigin: http://example.com\r\nContent-Length: 0\r\n"
+                + "Connection: close\r\n\r\n");
+        assertTrue(response.startsWith("HTTP/1.1 403"), "浏览器发出的请求应返回403: " + response);
+        assertEquals(404, open("/jobs/1").getResponseCode(), "被拒绝的请求不应登记任务");
+        
+        response = rawRequest("POST /watermark HTTP/1.1\r\nHost: 127.0.0.1\r\nOrigin: null\r\n"
+                + "Content-Length: 0\r\nConnection: close\r\n\r\n");
+        assertTrue(response.startsWith("HTTP/1.1 403"), response);
+    }
+    
+    @Test
+    void testJpegContentType() {
+        assertEquals("image/jpeg", WatermarkServer.contentType("jpg"));
+        assertEquals("image/jpeg", WatermarkServer.contentType("JPEG"));
+        assertEquals("image/png", WatermarkServer.contentType("png"));
+        assertEquals("application/octet-stream", WatermarkServer.contentType(null));
+    }
+    
+    private String rawRequest(String request) throws IOException {
+        try (Socket socket = new Socket("127.0.0.1", server.getPort())) {
+            socket.getOutputStream().write(request.getBytes(StandardCharsets.UTF_8));
+            socket.getOutputStream().flush();
+            return new String(readAll(socket.getInputStream()), StandardCharsets.UTF_8);
+        }
+    }
+    
+    private HttpURLConnection open(String path) throws IOException {
+        return (HttpURLConnection) new URL("http://127.0.0.1:" + server.getPort() + path).openConnection();
+    }
+    
+    private String get(String path) throws IOException {
+        HttpURLConnection connection = open(path);
+        assertEquals(200, connection.getResponseCode());
+        return new String(readAll(connection.getInputStream()), StandardCharsets.UTF_8);
+    }
+    
+    private static byte[] readAll(InputStream input) throws IOException {
+        try (InputStream in = input) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                output.write(buffer, 0, read);
+            }
+            return output.toByteArray();
+        }
+    }
+}
\ No newline at end of file
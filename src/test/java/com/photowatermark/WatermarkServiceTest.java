@@ -0,0 +1,110 @@
+package com.photowatermark;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 异步水印服务测试类
+ * 
+ * @author PhotoWatermark Team
+ * @version 1.0.0
+ */
+public class WatermarkServiceTest {
+    
+    @TempDir
+    Path tempDir;
+    
+    private File sourceFile;
+    private WatermarkConfig config;
+    
+    @BeforeEach
+    void setUp() throws IOException {
+        sourceFile = tempDir.resolve("source.png").toFile();
+        ImageIO.write(new BufferedImage(160, 120, BufferedImage.TYPE_INT_RGB), "png", sourceFile);
+        config = new WatermarkConfig();
+    }
+    
+    @Test
+    void testSubmit() throws Exception {
+        File target = tempDir.resolve("out/result.png").toFile();
+        
+        try (WatermarkService service = new WatermarkService()) {
+            ImageResult result = service.submit(sourceFile, target, "Test", config).get();
+            
+            assertTrue(result.isSuccess(), "处理应该成功");
+            assertNull(result.getError());
+            assertEquals(sourceFile.length(), result.getSourceBytes(), "应记录源文件大小");
+            assertEquals(target.length(), result.getOutputBytes(), "应记录输出大小");
+            assertTrue(result.getTotalMillis() >= result.getProcessMillis());
+            assertEquals(160, ImageIO.read(target).getWidth(), "输出应该是有效图片");
+        }
+    }
+    
+    @Test
+    void testSubmitRecordsErrorCause() throws Exception {
+        File missing = tempDir.resolve("missing.png").toFile();
+        File target = tempDir.resolve("missing_out.png").toFile();
+        
+        try (WatermarkService service = new WatermarkService()) {
+            ImageResult result = service.submit(missing, target, "Test", config).get();
+            assertFalse(result.isSuccess(), "源文件不存在时应该失败");
+            assertTrue(result.getError() instanceof IOException, "失败原因应该是IO异常");
+            assertFalse(target.exists());
+            
+            ImageResult emptyText = service.submit(sourceFile, target, " ", config).get();
+            assertTrue(emptyText.getError() instanceof IllegalArgumentException, "空水印文本应该失败");
+        }
+    }
+    
+    @Test
+    void testSubmitAllWithListenerAndExecutor() throws Exception {
+        Map<File, File> jobs = new LinkedHashMap<>();
+        for (int i = 0; i < 4; i++) {
+            File source = tempDir.resolve("batch_" + i + ".png").toFile();
+            ImageIO.write(new BufferedImage(80, 60, BufferedImage.TYPE_INT_RGB), "png", source);
+            jobs.put(source, tempDir.resolve("batch_out/batch_" + i + ".png").toFile());
+        }
+        
+        AtomicInteger executions = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        List<ImageResult> notified = Collections.synchronizedList(new ArrayList<>());
+        
+        try {
+            WatermarkService service = new WatermarkService(task -> {
+                executions.incrementAndGet();
+                pool.execute(task);
+            });
+            List<ImageResult> results = service.submitAll(jobs, "Batch", config, notified::add).get();
+            
+            assertEquals(4, results.size(), "应返回每张图片的结果");
+            assertEquals(4, notified.size(), "每张图片完成时都应回调监听器");
+            assertEquals(4, executions.get(), "应使用调用方提供的执行器");
+            int i = 0;
+            for (Map.Entry<File, File> job : jobs.entrySet()) {
+                ImageResult result = results.get(i++);
+                assertEquals(job.getKey(), result.getSource(), "结果应按提交顺序排列");
+                assertTrue(result.isSuccess());
+                assertTrue(job.getValue().exists());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
\ No newline at end of file